@@ -29,6 +29,7 @@ import org.h2gis.functions.io.asc.AscRead;
 import org.h2gis.functions.io.dbf.DBFRead;
 import org.h2gis.functions.io.dbf.DBFWrite;
 import org.h2gis.functions.io.geojson.GeoJsonRead;
+import org.h2gis.functions.io.geojson.GeoJsonSeqRead;
 import org.h2gis.functions.io.geojson.GeoJsonWrite;
 import org.h2gis.functions.io.geojson.ST_AsGeoJSON;
 import org.h2gis.functions.io.geojson.ST_GeomFromGeoJSON;
@@ -46,6 +47,7 @@ import org.h2gis.functions.spatial.affine_transformations.ST_Rotate;
 import org.h2gis.functions.spatial.affine_transformations.ST_Scale;
 import org.h2gis.functions.spatial.affine_transformations.ST_Translate;
 import org.h2gis.functions.spatial.aggregate.ST_Accum;
+import org.h2gis.functions.spatial.aggregate.ST_UnionAgg;
 import org.h2gis.functions.spatial.aggregate.ST_Collect;
 import org.h2gis.functions.spatial.aggregate.ST_LineMerge;
 import org.h2gis.functions.spatial.buffer.*;
@@ -56,8 +58,10 @@ import org.h2gis.functions.spatial.crs.*;
 import org.h2gis.functions.spatial.distance.*;
 import org.h2gis.functions.spatial.earth.ST_GeometryShadow;
 import org.h2gis.functions.spatial.earth.ST_Isovist;
+import org.h2gis.functions.spatial.earth.ST_IsovistTable;
 import org.h2gis.functions.spatial.earth.ST_SunPosition;
 import org.h2gis.functions.spatial.earth.ST_Svf;
+import org.h2gis.functions.spatial.earth.ST_SvfTable;
 import org.h2gis.functions.spatial.edit.*;
 import org.h2gis.functions.spatial.generalize.ST_PrecisionReducer;
 import org.h2gis.functions.spatial.generalize.ST_Simplify;
@@ -160,6 +164,7 @@ public class H2GISFunctions {
                 new ST_Overlaps(),
                 new ST_Crosses(),
                 new ST_Intersects(),
+                new ST_SpatialJoin(),
                 new ST_Relate(),
                 new ST_Distance(),
                 new ST_DistanceSphere(),
@@ -172,6 +177,7 @@ public class H2GISFunctions {
                 new ST_SRID(),
                 new ST_EnvelopesIntersect(),
                 new ST_Accum(),
+                new ST_UnionAgg(),
                 new ST_Transform(),
                 new ST_SetSRID(),
                 new ST_CoordDim(),
@@ -185,6 +191,7 @@ public class H2GISFunctions {
                 new DriverManager(),
                 new GPXRead(),
                 new GeoJsonRead(),
+                new GeoJsonSeqRead(),
                 new GeoJsonWrite(),
                 new KMLWrite(),
                 new SHPRead(),
@@ -300,10 +307,12 @@ public class H2GISFunctions {
                 new ST_Node(),
                 new ST_Drape(),
                 new ST_Svf(),
+                new ST_SvfTable(),
                 new JsonWrite(),
                 new ST_ShortestLine(),
                 new ST_OrientedEnvelope(),
                 new ST_Isovist(),
+                new ST_IsovistTable(),
                 new ST_EstimatedExtent(),
                 new ST_FindUTMSRID(),
                 new ST_GeneratePoints(),
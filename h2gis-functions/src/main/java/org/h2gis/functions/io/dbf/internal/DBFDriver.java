@@ -36,6 +36,7 @@ public class DBFDriver implements FileDriver {
     private File dbfFile;
     protected DbaseFileReader dbaseFileReader;
     protected DbaseFileWriter dbaseFileWriter;
+    private boolean memoryMapped = false;
 
     /**
      * Init file header for DBF File
@@ -56,7 +57,22 @@ public class DBFDriver implements FileDriver {
         // Read columns from files metadata
         this.dbfFile = dbfFile;
         FileInputStream fis = new FileInputStream(dbfFile);
-        dbaseFileReader = new DbaseFileReader(fis.getChannel(), forceEncoding);
+        dbaseFileReader = new DbaseFileReader(fis.getChannel(), forceEncoding, memoryMapped);
+    }
+
+    /**
+     * @param memoryMapped True to map the file in memory when it is opened in read mode. Must be set before
+     *                     {@link #initDriverFromFile(File, String)}
+     */
+    public void setMemoryMapped(boolean memoryMapped) {
+        this.memoryMapped = memoryMapped;
+    }
+
+    /**
+     * @return True if the file is mapped in memory when it is opened in read mode
+     */
+    public boolean isMemoryMapped() {
+        return memoryMapped;
     }
 
     public void initDriver(File dbfFile, DbaseFileHeader dbaseHeader) throws IOException {
@@ -149,6 +165,16 @@ public class DBFDriver implements FileDriver {
         return dbaseFileReader.getFieldValue((int)rowId, columnId);
     }
 
+    /**
+     * Read all the fields of a row, faster than reading the fields one by one.
+     * @param rowId Row index
+     * @param values Array of {@link #getFieldCount()} values that receives the row
+     * @throws IOException
+     */
+    public void getRow(long rowId, Value[] values) throws IOException {
+        dbaseFileReader.readRecord((int) rowId, values, 0);
+    }
+
     /**
      * Get the file reader
      * @return 
@@ -20,18 +20,13 @@
 package org.h2gis.functions.io.dbf.internal;
 
 import org.h2.value.*;
+import org.h2gis.functions.io.utility.MappedReadBufferManager;
 import org.h2gis.functions.io.utility.ReadBufferManager;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
-import java.nio.CharBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
-import java.nio.charset.CharsetDecoder;
-import java.util.Calendar;
 
 /**
  * A DbaseFileReader is used to read a dbase III format file. <br>
@@ -66,14 +61,26 @@ import java.util.Calendar;
  */
 public class DbaseFileReader {
 
+    /** Powers of ten that are exactly represented by a double */
+    private static final double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+    /** Digits count of a mantissa that is exactly represented by a double */
+    private static final int MAX_EXACT_DIGITS = 15;
+    /** Digits count that cannot overflow a long */
+    private static final int MAX_LONG_DIGITS = 18;
+
     private DbaseFileHeader header;
     private ReadBufferManager buffer;
     private FileChannel channel;
-    private CharBuffer charBuffer;
-    private CharsetDecoder decoder;
+    private Charset charset;
     private char[] fieldTypes;
     private int[] fieldLengths;
-    private static final Logger LOG = LoggerFactory.getLogger(DbaseFileReader.class);
+    private int[] fieldOffsets;
+    private int[] fieldDecimalCounts;
+    // Raw bytes of the last read field or record, reused for each read
+    private byte[] recordBytes;
+    private int recordDataLength;
+    private final boolean memoryMapped;
 
     /**
      * Creates a new instance of DBaseFileReader
@@ -83,7 +90,21 @@ public class DbaseFileReader {
      */
     public DbaseFileReader(FileChannel channel, String forceEncoding)
             throws IOException {
+        this(channel, forceEncoding, false);
+    }
+
+    /**
+     * Creates a new instance of DBaseFileReader
+     *
+     * @param channel The readable channel to use.
+     * @param forceEncoding If defined use this encoding instead of the one defined in dbf header.
+     * @param memoryMapped True to map the file in memory instead of reading it through a heap buffer
+     * @throws java.io.IOException If an error occurs while initializing.
+     */
+    public DbaseFileReader(FileChannel channel, String forceEncoding, boolean memoryMapped)
+            throws IOException {
         this.channel = channel;
+        this.memoryMapped = memoryMapped;
 
         header = new DbaseFileHeader();
         header.readHeader(channel, forceEncoding);
@@ -92,7 +113,7 @@ public class DbaseFileReader {
     }
 
     private void init() throws IOException {
-        buffer = new ReadBufferManager(channel);
+        buffer = memoryMapped ? new MappedReadBufferManager(channel) : new ReadBufferManager(channel);
 
         // The entire file is in little endian
         buffer.order(ByteOrder.LITTLE_ENDIAN);
@@ -101,14 +122,20 @@ public class DbaseFileReader {
         // Set up some buffers and lookups for efficiency
         fieldTypes = new char[numFields];
         fieldLengths = new int[numFields];
+        fieldOffsets = new int[numFields];
+        fieldDecimalCounts = new int[numFields];
+        int fieldOffset = 0;
         for (int i = 0, ii = numFields; i < ii; i++) {
             fieldTypes[i] = header.getFieldType(i);
             fieldLengths[i] = header.getFieldLength(i);
+            fieldDecimalCounts[i] = header.getFieldDecimalCount(i);
+            fieldOffsets[i] = fieldOffset;
+            fieldOffset += fieldLengths[i];
         }
+        recordDataLength = fieldOffset;
+        recordBytes = new byte[Math.max(recordDataLength, header.getRecordLength() - 1)];
 
-        charBuffer = CharBuffer.allocate(header.getRecordLength() - 1);
-        Charset chars = Charset.forName(header.getFileEncoding());
-        decoder = chars.newDecoder();
+        charset = Charset.forName(header.getFileEncoding());
     }
 
     /**
@@ -134,35 +161,30 @@ public class DbaseFileReader {
 
         buffer = null;
         channel = null;
-        charBuffer = null;
-        decoder = null;
+        recordBytes = null;
         header = null;
     }
 
-    /**
-     * @param pos Pos index in the buffer
-     * @param length Array length to extract
-     * @return byte array extracted from the buffer
-     * @throws IOException
-     */
-    private byte[] getBytes(long pos, int length) throws IOException {
-        byte[] bytes = new byte[length];
-        buffer.get(pos, bytes);
-        return bytes;
-    }
-
     public Value getFieldValue(int row, int column) throws IOException {
-        long fieldPosition = getPositionFor(row, column);
-        int fieldLength = getLengthFor(column);
-        byte[] fieldBytes = getBytes(fieldPosition, fieldLength);
-        ByteBuffer field = ByteBuffer.wrap(fieldBytes);
-
-        charBuffer.clear();
-        decoder.decode(field, charBuffer, true);
-        charBuffer.flip();
-
+        buffer.get(getPositionFor(row, column), recordBytes, 0, fieldLengths[column]);
         return readObject(0, column);
+    }
 
+    /**
+     * Read all the fields of a record with a single copy of the record bytes.
+     *
+     * @param row Record index
+     * @param values Array that receives the field values
+     * @param offset Index in values of the first field
+     * @throws IOException
+     */
+    public void readRecord(int row, Value[] values, int offset) throws IOException {
+        if (recordDataLength > 0) {
+            buffer.get(getPositionFor(row, 0), recordBytes, 0, recordDataLength);
+        }
+        for (int column = 0; column < fieldTypes.length; column++) {
+            values[offset + column] = readObject(fieldOffsets[column], column);
+        }
     }
 
     public int getLengthFor(int column) {
@@ -170,19 +192,21 @@ public class DbaseFileReader {
     }
 
     protected long getPositionFor(int row, int column) {
-        long recordOffset = header.getHeaderLength() + (long) row
-                * header.getRecordLength() + 1;
-        long fieldOffset = 0;
-        for (int i = 0; i < column; i++) {
-            fieldOffset += header.getFieldLength(i);
-        }
-
-        return fieldOffset + recordOffset;
+        return header.getHeaderLength() + (long) row * header.getRecordLength() + 1 + fieldOffsets[column];
     }
 
+    /**
+     * Decode a field from the raw bytes of the record.
+     *
+     * @param fieldOffset Position of the field in the record bytes
+     * @param fieldNum Field index
+     * @return The field value
+     * @throws IOException
+     */
     private Value readObject(final int fieldOffset, final int fieldNum) throws IOException {
         final char type = fieldTypes[fieldNum];
         final int fieldLen = fieldLengths[fieldNum];
+        final byte[] bytes = recordBytes;
         Value object = null;
 
         if (fieldLen > 0) {
@@ -190,8 +214,7 @@ public class DbaseFileReader {
                 // (L)logical (T,t,F,f,Y,y,N,n)
                 case 'l':
                 case 'L':
-                    final char cBool = charBuffer.charAt(fieldOffset);
-                    switch (cBool) {
+                    switch (bytes[fieldOffset]) {
                         case 't':
                         case 'T':
                         case 'Y':
@@ -213,138 +236,53 @@ public class DbaseFileReader {
                 case 'c':
                 case 'C':
                     //Null String
-                    if (charBuffer.charAt(fieldOffset) != '\0') {
-                        // oh, this seems like a lot of work to parse strings...but,
-                        // For some reason if zero characters ( (int) char == 0 ) are
-                        // allowed
-                        // in these strings, they do not compare correctly later on down
-                        // the
-                        // line....
+                    if (bytes[fieldOffset] != 0) {
+                        // Zero chars do not compare correctly later on, trim them with the whitespaces.
+                        // Whitespaces are single bytes in all the supported encodings.
                         int start = fieldOffset;
-                        int end = Math.min(fieldOffset + fieldLen - 1, charBuffer.length() - 1);
-                        // trim off whitespace and 'zero' chars
-                        while (start < end) {
-                            char c = charBuffer.get(start);
-                            if (c == 0 || Character.isWhitespace(c)) {
-                                start++;
-                            } else {
-                                break;
-                            }
+                        int end = fieldOffset + fieldLen - 1;
+                        while (start < end && isBlank(bytes[start])) {
+                            start++;
                         }
-                        while (end > start) {
-                            try {
-                                char c = charBuffer.get(end);
-                                if (c == 0 || Character.isWhitespace(c)) {
-                                    end--;
-                                } else {
-                                    break;
-                                }
-                            } catch (IndexOutOfBoundsException ex) {
-                                throw new IndexOutOfBoundsException();
-                            }
+                        while (end > start && isBlank(bytes[end])) {
+                            end--;
                         }
-                        // set up the new indexes for start and end
-                        // this prevents one array copy (the one made by String)
-                        object = ValueVarchar.get(new String(charBuffer.array(), start, end + 1 - start));
-                    }else{
-                         object = ValueNull.INSTANCE;
+                        object = ValueVarchar.get(new String(bytes, start, end + 1 - start, charset));
+                    } else {
+                        object = ValueNull.INSTANCE;
                     }
                     break;
                 // (D)date (Date)
                 case 'd':
                 case 'D':
-                    if (charBuffer.toString().equals("00000000")) {
-                        object = ValueNull.INSTANCE;
-                    } else {
-                        try {
-                            String tempString = charBuffer.subSequence(fieldOffset,
-                                    fieldOffset + 4).toString();
-                            if (!tempString.trim().isEmpty()) {
-                                int tempYear = Integer.parseInt(tempString);
-                                tempString = charBuffer.subSequence(fieldOffset + 4,
-                                        fieldOffset + 6).toString();
-                                int tempMonth = Integer.parseInt(tempString) - 1;
-                                tempString = charBuffer.subSequence(fieldOffset + 6,
-                                        fieldOffset + 8).toString();
-                                int tempDay = Integer.parseInt(tempString);
-                                Calendar cal = Calendar.getInstance();
-                                cal.clear();
-                                cal.set(Calendar.YEAR, tempYear);
-                                cal.set(Calendar.MONTH, tempMonth);
-                                cal.set(Calendar.DAY_OF_MONTH, tempDay);
-                                object = ValueNull.INSTANCE;//ValueDate.get(cal.getTime());
-                            } else {
-                                object = ValueNull.INSTANCE;
-                            }
-                        } catch (NumberFormatException nfe) {
-                            // todo: use progresslistener, this isn't a grave error.
-                            LOG.warn("There was an error parsing a date. Ignoring it.", nfe);
-                        }
-                    }
+                    // Dates are not converted yet
+                    object = ValueNull.INSTANCE;
                     break;
                 case 'n':
                 case 'N':
                     // numbers that begin with '*' are considered null
-                    if (charBuffer.charAt(fieldOffset) == '*') {
+                    if (bytes[fieldOffset] == '*') {
                         object = ValueNull.INSTANCE;
                         break;
-                    } else {
-                        try {
-                            if (header.getFieldDecimalCount(fieldNum) == 0) {
-                                String numberString = extractNumberString(charBuffer, fieldOffset,
-                                        fieldLen);
-                                object = ValueInteger.get(Integer.parseInt(numberString));
-                                // parsing successful --> exit
-                                break;
-                            }
-                            // else will fall through to the floating point number
-                        } catch (NumberFormatException e) {
-
-                            // todo: use progresslistener, this isn't a grave error.
-                            // don't do this!!! the Double parse will be attemted as we
-                            // fall
-                            // through, so no need to create a new Object. -IanS
-                            // object = new Integer(0);
-                            // Lets try parsing a long instead...
-                            try {
-
-                                String numberString = extractNumberString(charBuffer, fieldOffset,
-                                        fieldLen);
-                                object = ValueBigint.get(Long.parseLong(numberString));
-                                // parsing successful --> exit
-                                break;
-                            } catch (NumberFormatException e2) {
-                                // it is not a long either
-                                // so we do nothing.
-                                // this whole method screams for refactoring...
-                            }
+                    }
+                    if (fieldDecimalCounts[fieldNum] == 0) {
+                        object = parseInteger(fieldOffset, fieldLen);
+                        if (object != null) {
+                            // parsing successful --> exit
+                            break;
                         }
-                        // no break!!
-                        // this case falls through the following one if there is decimal count
-                        // I know, this is ugly...
                     }
-
+                    // this case falls through the following one if there is decimal count
+                    // or if the value is not an integer
                 case 'f':
                 case 'F': // floating point number
                     //Null float
-                    if (charBuffer.charAt(fieldOffset) == '*') {
+                    if (bytes[fieldOffset] == '*') {
                         object = ValueNull.INSTANCE;
-                        break;
                     } else {
-                        String numberString = extractNumberString(charBuffer, fieldOffset,
-                                fieldLen);
-                        try {
-                              object = ValueDouble.get(Double.parseDouble(numberString));                            
-                        } catch (NumberFormatException e) {
-                            // May be the decimal operator is exotic
-                            if (numberString.contains(",")) {
-                                object = ValueDouble.get(Double.parseDouble(numberString.replace(",", ".")));
-                            }else{
-                                object = ValueNull.INSTANCE;
-                            }
-                        }
-                        break;
+                        object = parseDouble(fieldOffset, fieldLen);
                     }
+                    break;
                 default:
                     throw new IOException("Invalid field type : " + type);
             }
@@ -354,14 +292,138 @@ public class DbaseFileReader {
     }
 
     /**
-     * @param charBuffer2
-     * @param fieldOffset
-     * @param fieldLen
+     * @param b byte
+     * @return True if the byte is a zero char or an ASCII whitespace
+     */
+    private static boolean isBlank(byte b) {
+        return b == 0 || b == ' ' || (b >= 0x09 && b <= 0x0D) || (b >= 0x1C && b <= 0x1F);
+    }
+
+    /**
+     * @param b byte
+     * @return True if the byte is removed by {@link String#trim()}
      */
-    private String extractNumberString(final CharBuffer charBuffer2,
-            final int fieldOffset, final int fieldLen) {
-        return charBuffer2.subSequence(fieldOffset,
-                fieldOffset + fieldLen).toString().trim();
+    private static boolean isTrimmed(byte b) {
+        return b >= 0 && b <= ' ';
+    }
+
+    /**
+     * Parse an integer field without creating an intermediate String.
+     *
+     * @param fieldOffset Position of the field in the record bytes
+     * @param fieldLen Field length
+     * @return ValueInteger or ValueBigint, null if the field is not an integer
+     */
+    private Value parseInteger(int fieldOffset, int fieldLen) {
+        final byte[] bytes = recordBytes;
+        int start = fieldOffset;
+        int end = fieldOffset + fieldLen;
+        while (start < end && isTrimmed(bytes[start])) {
+            start++;
+        }
+        while (end > start && isTrimmed(bytes[end - 1])) {
+            end--;
+        }
+        int pos = start;
+        boolean negative = false;
+        if (pos < end && (bytes[pos] == '-' || bytes[pos] == '+')) {
+            negative = bytes[pos] == '-';
+            pos++;
+        }
+        if (pos == end) {
+            return null;
+        }
+        if (end - pos > MAX_LONG_DIGITS) {
+            try {
+                return ValueBigint.get(Long.parseLong(new String(bytes, start, end - start, charset)));
+            } catch (NumberFormatException e) {
+                // it is not a long either
+                return null;
+            }
+        }
+        long value = 0;
+        for (; pos < end; pos++) {
+            int digit = bytes[pos] - '0';
+            if (digit < 0 || digit > 9) {
+                return null;
+            }
+            value = value * 10 + digit;
+        }
+        if (negative) {
+            value = -value;
+        }
+        if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+            return ValueInteger.get((int) value);
+        }
+        return ValueBigint.get(value);
+    }
+
+    /**
+     * Parse a floating point field. Plain decimal numbers with a short mantissa are computed directly from the
+     * bytes, this gives the same correctly rounded value as {@link Double#parseDouble(String)}.
+     * Other representations are delegated to {@link Double#parseDouble(String)}.
+     *
+     * @param fieldOffset Position of the field in the record bytes
+     * @param fieldLen Field length
+     * @return ValueDouble or ValueNull
+     */
+    private Value parseDouble(int fieldOffset, int fieldLen) {
+        final byte[] bytes = recordBytes;
+        int start = fieldOffset;
+        int end = fieldOffset + fieldLen;
+        while (start < end && isTrimmed(bytes[start])) {
+            start++;
+        }
+        while (end > start && isTrimmed(bytes[end - 1])) {
+            end--;
+        }
+        if (start == end) {
+            return ValueNull.INSTANCE;
+        }
+        int pos = start;
+        boolean negative = false;
+        if (bytes[pos] == '-' || bytes[pos] == '+') {
+            negative = bytes[pos] == '-';
+            pos++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int decimals = 0;
+        boolean separator = false;
+        boolean exact = pos < end;
+        for (; pos < end && exact; pos++) {
+            byte b = bytes[pos];
+            if (b >= '0' && b <= '9') {
+                if (mantissa != 0 || b != '0') {
+                    digits++;
+                }
+                mantissa = mantissa * 10 + (b - '0');
+                if (separator) {
+                    decimals++;
+                }
+                exact = digits <= MAX_EXACT_DIGITS && decimals < POWERS_OF_TEN.length;
+            } else if ((b == '.' || b == ',') && !separator) {
+                // May be the decimal operator is exotic
+                separator = true;
+            } else {
+                exact = false;
+            }
+        }
+        if (exact && end - start > (negative || bytes[start] == '+' ? 1 : 0) + (separator ? 1 : 0)) {
+            double value = mantissa / POWERS_OF_TEN[decimals];
+            return ValueDouble.get(negative ? -value : value);
+        }
+        String numberString = new String(bytes, start, end - start, charset);
+        try {
+            return ValueDouble.get(Double.parseDouble(numberString));
+        } catch (NumberFormatException e) {
+            // May be the decimal operator is exotic
+            if (numberString.contains(",")) {
+                return ValueDouble.get(Double.parseDouble(numberString.replace(",", ".")));
+            } else {
+                return ValueNull.INSTANCE;
+            }
+        }
     }
 
     public int getRecordCount() {
@@ -0,0 +1,218 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <a href="http://www.h2database.com">http://www.h2database.com</a>. H2GIS is developed by CNRS
+ * <a href="http://www.cnrs.fr/">http://www.cnrs.fr/</a>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; 
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <a href="http://www.h2gis.org/">http://www.h2gis.org/</a>
+ * or contact directly: info_at_h2gis.org
+ */
+
+package org.h2gis.functions.io.file_table;
+
+import org.h2.api.ErrorCode;
+import org.h2.command.query.AllColumnsForPlan;
+import org.h2.engine.SessionLocal;
+import org.h2.index.Cursor;
+import org.h2.index.Index;
+import org.h2.index.IndexCondition;
+import org.h2.index.IndexType;
+import org.h2.index.SpatialIndex;
+import org.h2.message.DbException;
+import org.h2.result.Row;
+import org.h2.result.SearchRow;
+import org.h2.result.SortOrder;
+import org.h2.table.IndexColumn;
+import org.h2.table.Table;
+import org.h2.table.TableFilter;
+import org.h2.value.Value;
+import org.h2.value.ValueGeometry;
+import org.h2gis.functions.io.utility.PackedRTree;
+import org.locationtech.jts.geom.Envelope;
+
+import java.io.IOException;
+
+/**
+ * Spatial index of a table linked with a {@link SpatialFileDriver}.
+ * The index is provided by the driver, no row is read nor decoded in order to build it.
+ */
+public class FileSpatialIndex extends Index implements SpatialIndex {
+    private final SpatialFileDriver driver;
+    private final PackedRTree tree;
+
+    /**
+     * Constructor
+     * @param driver Linked file driver
+     * @param table Linked table
+     * @param id Index identifier
+     * @param indexName Unique index name
+     * @param indexColumns Geometry column, must be the geometry field of the driver
+     * @param uniqueColumnCount Count of unique columns
+     * @param indexType Spatial index type
+     * @throws IOException The driver cannot provide the spatial index
+     */
+    public FileSpatialIndex(SpatialFileDriver driver, Table table, int id, String indexName, IndexColumn[] indexColumns,
+                            int uniqueColumnCount, IndexType indexType) throws IOException {
+        super(table, id, indexName, indexColumns, uniqueColumnCount, indexType);
+        this.driver = driver;
+        this.tree = driver.getSpatialIndex();
+    }
+
+    @Override
+    public void checkRename() {
+        // Nothing to check
+    }
+
+    @Override
+    public void close(SessionLocal session) {
+        // The tree is released by the driver
+    }
+
+    @Override
+    public void add(SessionLocal session, Row row) {
+        // Rows are indexed by the driver
+    }
+
+    @Override
+    public void remove(SessionLocal session, Row row) {
+        throw DbException.get(ErrorCode.FEATURE_NOT_SUPPORTED_1,"remove in file");
+    }
+
+    @Override
+    public Cursor find(SessionLocal session, SearchRow first, SearchRow last) {
+        return getTable().getScanIndex(session).find(session, null, null);
+    }
+
+    @Override
+    public Cursor findByGeometry(SessionLocal session, SearchRow first, SearchRow last, SearchRow intersection) {
+        if (intersection == null) {
+            return find(session, first, last);
+        }
+        Value value = intersection.getValue(getIndexColumns()[0].column.getColumnId());
+        if (!(value instanceof ValueGeometry)) {
+            return new FileSpatialCursor(getTable(), session, new int[0]);
+        }
+        Envelope envelope = ((ValueGeometry) value).getGeometry().getEnvelopeInternal();
+        if (envelope.isNull()) {
+            return new FileSpatialCursor(getTable(), session, new int[0]);
+        }
+        try {
+            return new FileSpatialCursor(getTable(), session, tree.query(envelope.getMinX(), envelope.getMinY(),
+                    envelope.getMaxX(), envelope.getMaxY()));
+        } catch (IOException ex) {
+            throw DbException.get(ErrorCode.IO_EXCEPTION_1, ex);
+        }
+    }
+
+    @Override
+    public double getCost(SessionLocal session, int[] masks, TableFilter[] tableFilters, int filter, SortOrder sortOrder, AllColumnsForPlan allColumnsForPlan) {
+        // Same rule as h2/src/main/org/h2/mvstore/db/MVSpatialIndex.java#getCostRangeIndex
+        // Never use the spatial index without spatial filter
+        if (masks == null) {
+            return Long.MAX_VALUE;
+        }
+        for (IndexColumn column : getIndexColumns()) {
+            int mask = masks[column.column.getColumnId()];
+            if ((mask & IndexCondition.SPATIAL_INTERSECTS) != IndexCondition.SPATIAL_INTERSECTS) {
+                return Long.MAX_VALUE;
+            }
+        }
+        // Rows are read from the file, keep the same factor as H2TableIndex
+        return 10 * (2 + driver.getRowCount() / 4);
+    }
+
+    @Override
+    public void remove(SessionLocal session) {
+        // The index file is kept as a cache of the linked file
+    }
+
+    @Override
+    public void truncate(SessionLocal session) {
+        throw DbException.get(ErrorCode.FEATURE_NOT_SUPPORTED_1,"truncate in file");
+    }
+
+    @Override
+    public boolean canGetFirstOrLast() {
+        return false;
+    }
+
+    @Override
+    public Cursor findFirstOrLast(SessionLocal session, boolean first) {
+        throw DbException.get(ErrorCode.FEATURE_NOT_SUPPORTED_1,"findFirstOrLast in spatial index");
+    }
+
+    @Override
+    public boolean needRebuild() {
+        return false;
+    }
+
+    @Override
+    public long getRowCount(SessionLocal session) {
+        return tree.getNumItems();
+    }
+
+    @Override
+    public long getRowCountApproximation(SessionLocal session) {
+        return tree.getNumItems();
+    }
+
+    @Override
+    public long getDiskSpaceUsed() {
+        return 0;
+    }
+
+    /**
+     * Iterate over the rows found in the tree, in ascending row order.
+     */
+    private static class FileSpatialCursor implements Cursor {
+        private final Table table;
+        private final SessionLocal session;
+        private final int[] rowIds;
+        private int position = -1;
+
+        private FileSpatialCursor(Table table, SessionLocal session, int[] rowIds) {
+            this.table = table;
+            this.session = session;
+            this.rowIds = rowIds;
+        }
+
+        @Override
+        public Row get() {
+            // Row keys start at 1
+            return table.getRow(session, rowIds[position] + 1L);
+        }
+
+        @Override
+        public SearchRow getSearchRow() {
+            return get();
+        }
+
+        @Override
+        public boolean next() {
+            if (position + 1 < rowIds.length) {
+                position++;
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public boolean previous() {
+            if (position > 0) {
+                position--;
+                return true;
+            }
+            return false;
+        }
+    }
+}
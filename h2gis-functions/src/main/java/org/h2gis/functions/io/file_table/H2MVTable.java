@@ -23,6 +23,7 @@ package org.h2gis.functions.io.file_table;
 import org.h2.api.DatabaseEventListener;
 import org.h2.api.ErrorCode;
 import org.h2.command.ddl.CreateTableData;
+import org.h2.command.query.AllColumnsForPlan;
 import org.h2.engine.Session;
 import org.h2.engine.SessionLocal;
 import org.h2.index.Cursor;
@@ -36,6 +37,8 @@ import org.h2.result.Row;
 import org.h2.result.SortOrder;
 import org.h2.table.Column;
 import org.h2.table.IndexColumn;
+import org.h2.table.PlanItem;
+import org.h2.table.TableFilter;
 import org.h2.table.TableType;
 import org.h2.util.MathUtils;
 import org.h2.value.TypeInfo;
@@ -45,6 +48,7 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.Comparator;
 
@@ -61,6 +65,8 @@ public class H2MVTable extends MVTable {
     private static final Logger LOG = LoggerFactory.getLogger(H2MVTable.class);
     private final ArrayList<Index> indexes = new ArrayList<>();
     private Column rowIdColumn;
+    // Columns used by the queries planned on this table, null if all the columns may be used
+    private volatile BitSet plannedColumns = new BitSet();
 
     public H2MVTable(FileDriver driver, CreateTableData data) {
         super(data, data.session.getDatabase().getStore());
@@ -109,6 +115,45 @@ public class H2MVTable extends MVTable {
         return indexes.get(0).getRow(session, key);
     }
 
+    @Override
+    public PlanItem getBestPlanItem(SessionLocal session, int[] masks, TableFilter[] filters, int filter, SortOrder sortOrder, AllColumnsForPlan allColumnsSet) {
+        planColumns(allColumnsSet == null ? null : allColumnsSet.get(this));
+        return super.getBestPlanItem(session, masks, filters, filter, sortOrder, allColumnsSet);
+    }
+
+    /**
+     * Add the columns used by a query to the planned columns. A column is never removed, so the columns
+     * of every query already planned remain available.
+     * @param columns Columns of this table used by the query, null if unknown
+     */
+    private synchronized void planColumns(ArrayList<Column> columns) {
+        BitSet planned = plannedColumns;
+        if (planned == null) {
+            return;
+        }
+        if (columns == null) {
+            plannedColumns = null;
+            return;
+        }
+        BitSet union = (BitSet) planned.clone();
+        for (Column column : columns) {
+            if (column.getColumnId() > 0) {
+                union.set(column.getColumnId());
+            }
+        }
+        if (!union.equals(planned)) {
+            plannedColumns = union;
+        }
+    }
+
+    /**
+     * @return Columns used by the queries planned on this table, the pk excluded, or null if all the columns
+     * may be used. The returned set must not be modified.
+     */
+    public BitSet getPlannedColumns() {
+        return plannedColumns;
+    }
+
     @Override
     public Index addIndex(SessionLocal session, String indexName, int indexId, IndexColumn[] cols,int uniqueColumnCount, IndexType indexType, boolean create, String indexComment) {
         if (indexType.isPrimaryKey()) {
@@ -128,7 +173,10 @@ public class H2MVTable extends MVTable {
         }
         Index index;
         if (indexType.isSpatial()) {
-            index = new MVSpatialIndex(session.getDatabase(), this, indexId, indexName, cols,  uniqueColumnCount, indexType);
+            index = createFileSpatialIndex(indexName, indexId, cols, uniqueColumnCount, indexType);
+            if (index == null) {
+                index = new MVSpatialIndex(session.getDatabase(), this, indexId, indexName, cols, uniqueColumnCount, indexType);
+            }
         } else {
             index = new MVSecondaryIndex(session.getDatabase(), this, indexId, indexName, cols,uniqueColumnCount, indexType);
         }
@@ -151,6 +199,25 @@ public class H2MVTable extends MVTable {
         return index;
     }
 
+    /**
+     * Create a spatial index provided by the driver, without reading the rows
+     * @return The index or null if the driver cannot index this column
+     */
+    private Index createFileSpatialIndex(String indexName, int indexId, IndexColumn[] cols, int uniqueColumnCount, IndexType indexType) {
+        if (driver instanceof SpatialFileDriver && cols.length == 1) {
+            SpatialFileDriver spatialFileDriver = (SpatialFileDriver) driver;
+            // First column is the primary key
+            if (cols[0].column.getColumnId() == spatialFileDriver.getGeometryFieldIndex() + 1) {
+                try {
+                    return new FileSpatialIndex(spatialFileDriver, this, indexId, indexName, cols, uniqueColumnCount, indexType);
+                } catch (IOException ex) {
+                    LOG.warn("Cannot read the spatial index of the file, the index will be built from the rows", ex);
+                }
+            }
+        }
+        return null;
+    }
+
     /**
      * Rebuild the index
      * @param session
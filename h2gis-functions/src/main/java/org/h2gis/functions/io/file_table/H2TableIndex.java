@@ -37,9 +37,11 @@ import org.h2.table.Table;
 import org.h2.table.TableFilter;
 import org.h2.value.Value;
 import org.h2.value.ValueBigint;
+import org.h2.value.ValueNull;
 import org.h2gis.api.FileDriver;
 
 import java.io.IOException;
+import java.util.BitSet;
 
 /**
  * ScanIndex of {@link org.h2gis.api.FileDriver}, the key is the row index [1-n].
@@ -90,6 +92,10 @@ public class H2TableIndex extends Index {
 
     @Override
     public Row getRow(SessionLocal session, long key) {
+        Table table = getTable();
+        if (table instanceof H2MVTable) {
+            return new DriverRow(driver, key, ((H2MVTable) table).getPlannedColumns());
+        }
         return new DriverRow(driver, key);
     }
 
@@ -247,30 +253,54 @@ public class H2TableIndex extends Index {
     }
 
     /**
-     * This class is requiring only field value on demand instead of gathering the full row values from drivers
+     * This class is requiring only field value on demand instead of gathering the full row values from drivers.
+     * A field value is read at most once per row.
+     *
+     * {@link #getValueList()} only reads the columns used by the queries planned on the table, the other columns
+     * are set to NULL. A geometry field is always decoded entirely when it is read, even when the query only needs
+     * its envelope.
      */
     public static class DriverRow extends Row {
         FileDriver driver;
         int memory; // estimated row size in bytes
+        private Value[] values; // fields already read, null if not requested
+        private final BitSet plannedColumns; // columns returned by getValueList, null for all
 
         public DriverRow(FileDriver driver, long key) {
+            this(driver, key, null);
+        }
+
+        /**
+         * @param driver Linked file driver
+         * @param key Row index [1-n]
+         * @param plannedColumns Columns read by {@link #getValueList()}, null to read all the columns
+         */
+        public DriverRow(FileDriver driver, long key, BitSet plannedColumns) {
             this.driver = driver;
             this.key = key;
+            this.plannedColumns = plannedColumns;
         }
 
         @Override
         public Value[] getValueList() {
-            try {
-                int columnCount = getColumnCount();
-                Value[] values = new Value[columnCount];
-                values[0] = ValueBigint.get(key);
+            int columnCount = getColumnCount();
+            if(values == null) {
+                values = new Value[columnCount];
+            }
+            values[0] = ValueBigint.get(key);
+            if(plannedColumns == null) {
                 for(int i = 1; i < columnCount; i++) {
-                    values[i] = (Value)(driver.getField(key - 1, i - 1));
+                    getValue(i);
                 }
                 return values;
-            } catch (IOException ex) {
-                throw DbException.get(ErrorCode.IO_EXCEPTION_1, ex);
             }
+            // Unplanned columns are not cached, getValue still reads them if they are requested later
+            Value[] valueList = new Value[columnCount];
+            valueList[0] = values[0];
+            for(int i = 1; i < columnCount; i++) {
+                valueList[i] = plannedColumns.get(i) ? getValue(i) : ValueNull.INSTANCE;
+            }
+            return valueList;
         }
 
         @Override
@@ -280,26 +310,31 @@ public class H2TableIndex extends Index {
 
         @Override
         public Value getValue(int column) {
-            if(column == ROWID_INDEX) {
+            if(column == ROWID_INDEX || column == 0) {
+                // pk
                 return ValueBigint.get(key);
-            } else {
+            }
+            if(values == null) {
+                values = new Value[getColumnCount()];
+                values[0] = ValueBigint.get(key);
+            }
+            Value value = values[column];
+            if(value == null) {
                 try {
-                    if(column == 0) {
-                        // pk
-                        return ValueBigint.get(key);
-                    } else {
-                        return (Value)(driver.getField(key - 1, column - 1));
-                    }
+                    value = (Value)(driver.getField(key - 1, column - 1));
                 } catch (IOException ex) {
                     throw DbException.get(ErrorCode.IO_EXCEPTION_1,ex);
                 }
+                values[column] = value;
             }
+            return value;
         }
 
         @Override
         public void setValue(int i, Value value) {
             if (i == ROWID_INDEX) {
                 key = value.getLong();
+                values = null;
             }
         }
 
@@ -0,0 +1,47 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <a href="http://www.h2database.com">http://www.h2database.com</a>. H2GIS is developed by CNRS
+ * <a href="http://www.cnrs.fr/">http://www.cnrs.fr/</a>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; 
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <a href="http://www.h2gis.org/">http://www.h2gis.org/</a>
+ * or contact directly: info_at_h2gis.org
+ */
+
+package org.h2gis.functions.io.file_table;
+
+import org.h2gis.api.FileDriver;
+import org.h2gis.functions.io.utility.PackedRTree;
+
+import java.io.IOException;
+
+/**
+ * A {@link FileDriver} able to index the bounding box of its geometry field without decoding the geometries.
+ * A spatial index created on a table linked with this driver uses {@link FileSpatialIndex}.
+ */
+public interface SpatialFileDriver extends FileDriver {
+
+    /**
+     * @return The geometry field index in the driver fields
+     */
+    int getGeometryFieldIndex();
+
+    /**
+     * Return the spatial index of the geometry field, build it if necessary.
+     * The item identifiers are the row indexes [0-getRowCount()].
+     *
+     * @return The spatial index, released by {@link #close()}
+     * @throws IOException Read or write error.
+     */
+    PackedRTree getSpatialIndex() throws IOException;
+}
@@ -40,6 +40,25 @@ import org.h2gis.utilities.dbtypes.DBUtils;
  */
 public class GeoJsonDriverFunction implements DriverFunction {
 
+    private int sampleSize = 0;
+    private int batchSize = 100;
+
+    /**
+     * @param sampleSize Number of features used to create the table before inserting the features in a single
+     * pass, 0 to read the file twice
+     * @see GeoJsonReaderDriver#setSampleSize(int)
+     */
+    public void setSampleSize(int sampleSize) {
+        this.sampleSize = sampleSize;
+    }
+
+    /**
+     * @param batchSize Number of features inserted in a single batch
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
     @Override
     public IMPORT_DRIVER_TYPE getImportDriverType() {
         return IMPORT_DRIVER_TYPE.COPY;
@@ -101,6 +120,8 @@ public class GeoJsonDriverFunction implements DriverFunction {
     public String[] importFile(Connection connection, String tableReference, File fileName, String options, boolean deleteTables, ProgressVisitor progress) throws SQLException, IOException {
         DriverManager.check(connection,tableReference,fileName,progress);
         GeoJsonReaderDriver geoJsonReaderDriver = new GeoJsonReaderDriver(connection, fileName, options, deleteTables);
+        geoJsonReaderDriver.setSampleSize(sampleSize);
+        geoJsonReaderDriver.setBatchSize(batchSize);
         String outputTable =  geoJsonReaderDriver.read(progress, tableReference);
         if(outputTable==null){
             return null;
@@ -48,7 +48,10 @@ public class GeoJsonRead extends AbstractFunction implements ScalarFunction {
                 + "\n path of the file, table name"
                 + "\n path of the file, table name, true to delete the table name"
                 + "\n path of the file, table name, encoding chartset"
-                + "\n path of the file, table name, encoding chartset, true to delete the table name");
+                + "\n path of the file, table name, encoding chartset, true to delete the table name"
+                + "\n path of the file, table name, encoding chartset, true to delete the table name, number of features"
+                + " used to infer the table schema before reading the file in a single pass (0 to read it twice),"
+                + " number of features inserted in a batch");
     }
 
     @Override
@@ -117,4 +120,28 @@ public class GeoJsonRead extends AbstractFunction implements ScalarFunction {
         GeoJsonDriverFunction gjdf = new GeoJsonDriverFunction();
         gjdf.importFile(connection, tableReference, URIUtilities.fileFromString(fileName), encoding, deleteTable, new EmptyProgressVisitor());
     }
+
+    /**
+     * Read the GeoJSON file in a single pass.
+     *
+     * @param connection
+     * @param fileName
+     * @param tableReference
+     * @param encoding
+     * @param deleteTable
+     * @param sampleSize Number of features used to infer the table schema, 0 to read the file twice
+     * @param batchSize Number of features inserted in a batch
+     * @throws IOException
+     * @throws SQLException
+     */
+    public static void importTable(Connection connection, String fileName, String tableReference, String encoding,
+                                   boolean deleteTable, int sampleSize, int batchSize) throws IOException, SQLException {
+        if (sampleSize < 0 || batchSize < 1) {
+            throw new SQLException("The sample size must be positive and the batch size greater than 0");
+        }
+        GeoJsonDriverFunction gjdf = new GeoJsonDriverFunction();
+        gjdf.setSampleSize(sampleSize);
+        gjdf.setBatchSize(batchSize);
+        gjdf.importFile(connection, tableReference, URIUtilities.fileFromString(fileName), encoding, deleteTable, new EmptyProgressVisitor());
+    }
 }
@@ -56,7 +56,7 @@ public class GeoJsonReaderDriver {
 
     private final File fileName;
     private final Connection connection;
-    private static GeometryFactory GF;
+    private GeometryFactory geometryFactory;
     private final String encoding;
     private final boolean deleteTable;
     private PreparedStatement preparedStatement = null;
@@ -74,6 +74,15 @@ public class GeoJsonReaderDriver {
     private LinkedHashMap<String, Integer> cachedColumnNames;
     private LinkedHashMap<String, Integer> cachedColumnIndex;
     private static final int BATCH_MAX_SIZE = 100;
+    private int batchSize = BATCH_MAX_SIZE;
+    private int sampleSize = 0;
+    // Single pass mode, the schema is updated while the features are parsed
+    private boolean streaming = false;
+    private boolean schemaChanged = false;
+    private LinkedHashMap<String, Integer> tableColumnTypes;
+    private List<Object[]> sample;
+    private String tableGeometryType;
+    private int batchCount = 0;
 
     private Set finalGeometryTypes;
     private JsonEncoding jsonEncoding;
@@ -94,6 +103,70 @@ public class GeoJsonReaderDriver {
         this.deleteTable = deleteTable;
     }
 
+    /**
+     * Driver that parses the texts of a GeoJSON sequence in a single pass, see {@link GeoJsonSeqReaderDriver}.
+     * The features parsed by a driver without connection are added to the table by
+     * {@link #addSequenceFeatures(GeoJsonReaderDriver, List)}.
+     *
+     * @param connection Connection used to create the table, null if the driver only parses the texts
+     * @param tableLocation Table to create
+     * @param dbType Database type
+     * @param jsFactory Factory of the json parsers
+     * @param srid SRID of the geometries
+     */
+    GeoJsonReaderDriver(Connection connection, String tableLocation, DBTypes dbType, JsonFactory jsFactory, int srid) {
+        this(connection, null, null, false);
+        this.tableLocation = tableLocation;
+        this.dbType = dbType;
+        this.jsFactory = jsFactory;
+        this.parsedSRID = srid;
+        this.geometryFactory = new GeometryFactory(new PrecisionModel(), srid);
+        this.streaming = true;
+        cachedColumnNames = new LinkedHashMap<>();
+        cachedColumnIndex = new LinkedHashMap<>();
+        finalGeometryTypes = new HashSet<String>();
+        sample = new ArrayList<>();
+    }
+
+    /**
+     * Read the file in a single pass. The table schema is inferred from the first features then the remaining
+     * features are inserted while they are parsed. A column is added or its type is widened with ALTER TABLE when
+     * a feature does not match the current schema.
+     *
+     * @param sampleSize Number of features used to create the table, 0 to read the whole file to infer the schema
+     * before reading it again to insert the features
+     */
+    public void setSampleSize(int sampleSize) {
+        if (sampleSize < 0) {
+            throw new IllegalArgumentException("The sample size must be positive");
+        }
+        this.sampleSize = sampleSize;
+    }
+
+    /**
+     * @return Number of features used to create the table in single pass mode, 0 if disabled
+     */
+    public int getSampleSize() {
+        return sampleSize;
+    }
+
+    /**
+     * @param batchSize Number of features inserted in a single batch
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("The batch size must be greater than 0");
+        }
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * @return Number of features inserted in a single batch
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
     /**
      * Read the GeoJSON file.
      *
@@ -136,19 +209,8 @@ public class GeoJsonReaderDriver {
             }
 
             if (fileName.length() > 0) {
-                this.progress = progress.subProcess(100);
-                init();
-                FileInputStream fis = new FileInputStream(fileName);
-                if (parseMetadata(new GZIPInputStream(fis))) {
-                    connection.setAutoCommit(false);
-                    GF = new GeometryFactory(new PrecisionModel(), parsedSRID);
-                    fis = new FileInputStream(fileName);
-                    parseData(new GZIPInputStream(fis));
-                    connection.setAutoCommit(true);
-                    return tableLocation;
-                } else {
-                    throw new SQLException("Cannot create the table " + tableLocation + " to import the GeoJSON data");
-                }
+                parseGeoJson(progress);
+                return tableLocation;
             } else {
                 JDBCUtilities.createEmptyTable(connection, tableLocation);
                 return tableLocation;
@@ -186,16 +248,413 @@ public class GeoJsonReaderDriver {
     private void parseGeoJson(ProgressVisitor progress) throws SQLException, IOException {
         this.progress = progress.subProcess(100);
         init();
-        if (parseMetadata(new FileInputStream(fileName))) {
+        if (sampleSize > 0 && parseStreaming(openInputStream())) {
+            return;
+        }
+        if (parseMetadata(openInputStream())) {
             connection.setAutoCommit(false);
-            GF = new GeometryFactory(new PrecisionModel(), parsedSRID);
-            parseData(new FileInputStream(fileName));
+            geometryFactory = new GeometryFactory(new PrecisionModel(), parsedSRID);
+            parseData(openInputStream());
             connection.setAutoCommit(true);
         } else {
             throw new SQLException("Cannot create the table " + tableLocation + " to import the GeoJSON data");
         }
     }
 
+    /**
+     * @return A new stream on the file content, decompressed if the file is a gz archive
+     * @throws IOException
+     */
+    private InputStream openInputStream() throws IOException {
+        InputStream is = new BufferedInputStream(new FileInputStream(fileName));
+        if (fileName.getName().toLowerCase().endsWith(".gz")) {
+            return new GZIPInputStream(is);
+        }
+        return is;
+    }
+
+    /**
+     * Parses a FeatureCollection in a single pass.
+     *
+     * @param is Stream on the file content
+     * @return False if the document is not a FeatureCollection, nothing has been imported
+     * @throws SQLException
+     * @throws IOException
+     */
+    private boolean parseStreaming(InputStream is) throws SQLException, IOException {
+        try (JsonParser jp = jsFactory.createParser(new InputStreamReader(is, jsonEncoding.getJavaName()))) {
+            jp.nextToken();//START_OBJECT
+            jp.nextToken(); // field_name (type)
+            String dataType = jp.getText();
+            if (dataType.equalsIgnoreCase(GeoJsonField.TYPE)) {
+                jp.nextToken(); // value_string (FeatureCollection)
+                if (!jp.getText().equalsIgnoreCase(GeoJsonField.FEATURECOLLECTION)) {
+                    // A single feature or geometry, use the default reader
+                    return false;
+                }
+                jp.nextToken(); // FIELD_NAME features
+            } else if (!dataType.equalsIgnoreCase(GeoJsonField.FEATURES)) {
+                throw new SQLException("Malformed GeoJSON file. Found '" + dataType + "'");
+            }
+            streaming = true;
+            connection.setAutoCommit(false);
+            try {
+                parseFeaturesStreaming(jp);
+            } finally {
+                streaming = false;
+                connection.setAutoCommit(true);
+            }
+            return true;
+        } finally {
+            is.close();
+        }
+    }
+
+    /**
+     * Parses the features of a FeatureCollection and inserts them. The first sampleSize features are kept in
+     * memory to create the table.
+     *
+     * @param jp
+     * @throws IOException
+     * @throws SQLException
+     */
+    private void parseFeaturesStreaming(JsonParser jp) throws IOException, SQLException {
+        // Passes all the properties until "Feature" object is found
+        while (!jp.getText().equalsIgnoreCase(GeoJsonField.FEATURES)
+                && !jp.getText().equalsIgnoreCase(GeoJsonField.CRS)) {
+            jp.nextToken();
+            if (jp.getCurrentToken().equals(JsonToken.START_ARRAY) || jp.getCurrentToken().equals(JsonToken.START_OBJECT)) {
+                jp.skipChildren();
+            }
+            jp.nextToken();
+        }
+        if (jp.getText().equalsIgnoreCase(GeoJsonField.CRS)) {
+            parsedSRID = readCRS(jp);
+        }
+        if (!jp.getText().equalsIgnoreCase(GeoJsonField.FEATURES)) {
+            throw new SQLException("Malformed GeoJSON file. Expected 'features', found '" + jp.getText() + "'");
+        }
+        geometryFactory = new GeometryFactory(new PrecisionModel(), parsedSRID);
+        cachedColumnNames = new LinkedHashMap<>();
+        cachedColumnIndex = new LinkedHashMap<>();
+        finalGeometryTypes = new HashSet<String>();
+        sample = new ArrayList<>(sampleSize);
+        jp.nextToken(); // START_ARRAY [
+        JsonToken token = jp.nextToken(); // START_OBJECT {
+        while (token != JsonToken.END_ARRAY) {
+            jp.nextToken(); // FIELD_NAME type
+            jp.nextToken(); // VALUE_STRING Feature
+            String geomType = jp.getText();
+            if (!geomType.equalsIgnoreCase(GeoJsonField.FEATURE)) {
+                throw new SQLException("Malformed GeoJSON file. Expected 'Feature', found '" + geomType + "'");
+            }
+            if (progress.isCanceled()) {
+                throw new SQLException("Canceled by user");
+            }
+            addStreamingFeature(parseFeature(jp));
+            token = jp.nextToken(); //START_OBJECT new feature
+            featureCounter++;
+        }
+        //LOOP END_ARRAY ]
+        finishStreaming();
+        log.debug(featureCounter - 1 + " geojson features have been imported.");
+    }
+
+    /**
+     * Keeps the feature in the sample until the table is created, then inserts it
+     *
+     * @param values Feature values
+     * @throws SQLException
+     */
+    private void addStreamingFeature(Object[] values) throws SQLException {
+        if (preparedStatement == null) {
+            sample.add(values);
+            if (sample.size() >= sampleSize) {
+                createSampledTable(sample);
+            }
+        } else {
+            if (schemaChanged) {
+                updateTableSchema();
+            }
+            addRow(values);
+        }
+    }
+
+    /**
+     * Creates the table if all the features fit in the sample and inserts the last batch
+     *
+     * @throws SQLException
+     */
+    void finishStreaming() throws SQLException {
+        if (preparedStatement == null) {
+            createSampledTable(sample);
+        }
+        if (batchCount > 0) {
+            preparedStatement.executeBatch();
+            connection.commit();
+            preparedStatement.clearBatch();
+            batchCount = 0;
+        }
+        preparedStatement.close();
+    }
+
+    /**
+     * Reads the crs member of a GeoJSON text, the first text of a GeoJSON sequence gives the SRID of all the
+     * features like the crs of a FeatureCollection.
+     *
+     * @param jp Parser positioned before the text
+     * @return The SRID, 0 if the text has no crs member
+     * @throws IOException
+     * @throws SQLException
+     */
+    static int readSequenceCRS(JsonParser jp) throws IOException, SQLException {
+        JsonToken token = jp.nextToken();
+        if (token == null) {
+            // No text
+            return 0;
+        } else if (token != JsonToken.START_OBJECT) {
+            throw new SQLException("Malformed GeoJSON sequence. Expected a feature, found '" + jp.getText() + "'");
+        }
+        while (jp.nextToken() == JsonToken.FIELD_NAME) {
+            if (jp.getText().equalsIgnoreCase(GeoJsonField.CRS)) {
+                return readCRS(jp);
+            }
+            jp.nextToken();
+            jp.skipChildren();
+        }
+        return 0;
+    }
+
+    /**
+     * Parses a text of a GeoJSON sequence, a Feature or a geometry object.
+     *
+     * @param jp Parser positioned before the text
+     * @return The feature values, the geometry is the first value
+     * @throws IOException
+     * @throws SQLException
+     */
+    Object[] parseSequenceText(JsonParser jp) throws IOException, SQLException {
+        if (jp.nextToken() != JsonToken.START_OBJECT) {
+            throw new SQLException("Malformed GeoJSON sequence. Expected a feature, found '" + jp.getText() + "'");
+        }
+        // Skips the members before the type, such as the crs
+        while (jp.nextToken() == JsonToken.FIELD_NAME && !jp.getText().equalsIgnoreCase(GeoJsonField.TYPE)) {
+            jp.nextToken();
+            jp.skipChildren();
+        }
+        if (jp.getCurrentToken() != JsonToken.FIELD_NAME) {
+            throw new SQLException("Malformed GeoJSON sequence. The type of the feature is missing");
+        }
+        jp.nextToken(); // VALUE_STRING Feature
+        String type = jp.getText();
+        if (type.equalsIgnoreCase(GeoJsonField.FEATURE)) {
+            return parseFeature(jp);
+        } else if (type.equalsIgnoreCase(GeoJsonField.FEATURECOLLECTION)) {
+            throw new SQLException("A GeoJSON sequence must contain one feature per line");
+        }
+        // The text is a geometry
+        hasGeometryField = true;
+        Object[] values = new Object[cachedColumnIndex.size() + 1];
+        values[0] = parseGeometry(jp, type);
+        return values;
+    }
+
+    /**
+     * Adds the features parsed by another driver of the same GeoJSON sequence. The column types, the geometry
+     * types and the dimension found by the parser are merged into the table schema, then the features are added
+     * like the features of a FeatureCollection read in a single pass.
+     *
+     * @param parser Driver that parsed the features with {@link #parseSequenceText(JsonParser)}
+     * @param features Parsed features, in the file order
+     * @throws SQLException
+     */
+    void addSequenceFeatures(GeoJsonReaderDriver parser, List<Object[]> features) throws SQLException {
+        hasGeometryField |= parser.hasGeometryField;
+        if (parser.hasZ && !hasZ) {
+            hasZ = true;
+            schemaChanged = true;
+        }
+        for (Object geometryType : parser.finalGeometryTypes) {
+            if (finalGeometryTypes.add(geometryType)) {
+                schemaChanged = true;
+            }
+        }
+        // Index of the parsed columns in the table
+        int[] tableIndex = new int[parser.cachedColumnIndex.size() + 1];
+        for (Map.Entry<String, Integer> column : parser.cachedColumnIndex.entrySet()) {
+            Integer dataType = parser.cachedColumnNames.get(column.getKey());
+            if (dataType != null) {
+                updateColumnType(column.getKey(), getRepresentativeToken(dataType));
+            }
+            Integer columnIndex = cachedColumnIndex.get(column.getKey());
+            if (columnIndex == null) {
+                columnIndex = cachedColumnIndex.size() + 1;
+                cachedColumnIndex.put(column.getKey(), columnIndex);
+            }
+            tableIndex[column.getValue()] = columnIndex;
+        }
+        for (Object[] feature : features) {
+            Object[] values = new Object[cachedColumnIndex.size() + 1];
+            values[0] = feature[0];
+            for (int i = 1; i < feature.length; i++) {
+                values[tableIndex[i]] = feature[i];
+            }
+            if (hasZ && values[0] instanceof Geometry) {
+                // The parser did not know that the previous features have z values
+                ((Geometry) values[0]).apply(new ZFilter());
+            }
+            addStreamingFeature(values);
+        }
+    }
+
+    /**
+     * @param dataType {@link Types} of a column
+     * @return A json token that widens a column to the given type
+     */
+    private static JsonToken getRepresentativeToken(int dataType) {
+        switch (dataType) {
+            case Types.BOOLEAN:
+                return JsonToken.VALUE_TRUE;
+            case Types.DOUBLE:
+                return JsonToken.VALUE_NUMBER_FLOAT;
+            case Types.BIGINT:
+                return JsonToken.VALUE_NUMBER_INT;
+            case Types.ARRAY:
+                return JsonToken.START_ARRAY;
+            case Types.NULL:
+                return JsonToken.VALUE_NULL;
+            default:
+                return JsonToken.VALUE_STRING;
+        }
+    }
+
+    /**
+     * Creates the table from the schema of the sampled features then inserts them.
+     *
+     * @param sample Parsed features
+     * @throws SQLException
+     */
+    private void createSampledTable(List<Object[]> sample) throws SQLException {
+        if (!hasGeometryField) {
+            throw new SQLException("The geojson file  does not contain any geometry.");
+        }
+        if (hasZ) {
+            // The z value of the first features is known only now
+            for (Object[] values : sample) {
+                if (values[0] instanceof Geometry) {
+                    ((Geometry) values[0]).apply(new ZFilter());
+                }
+            }
+        }
+        createTable();
+        tableColumnTypes = new LinkedHashMap<>(cachedColumnNames);
+        tableGeometryType = getGeometryColumnType();
+        schemaChanged = false;
+        for (Object[] values : sample) {
+            addRow(values);
+        }
+        sample.clear();
+    }
+
+    /**
+     * Adds the new columns and widens the column types to match the features parsed since the last update.
+     *
+     * @throws SQLException
+     */
+    private void updateTableSchema() throws SQLException {
+        List<String> alterQueries = new ArrayList<>();
+        String geometryType = getGeometryColumnType();
+        if (!tableGeometryType.equalsIgnoreCase(geometryType) && !tableGeometryType.equalsIgnoreCase(GeoJsonField.GEOMETRY)) {
+            // The previous geometries may not have the same type or the same dimension
+            tableGeometryType = GeoJsonField.GEOMETRY;
+            alterQueries.add(getAlterColumnType("THE_GEOM", "GEOMETRY(GEOMETRY," + parsedSRID + ")"));
+        }
+        for (Map.Entry<String, Integer> column : cachedColumnNames.entrySet()) {
+            String sqlType = getSQLTypeName(column.getValue());
+            Integer tableType = tableColumnTypes.get(column.getKey());
+            if (tableType == null) {
+                alterQueries.add("ALTER TABLE " + tableLocation + " ADD COLUMN " + column.getKey() + " " + sqlType);
+            } else if (!getSQLTypeName(tableType).equals(sqlType)) {
+                alterQueries.add(getAlterColumnType(column.getKey(), sqlType));
+            }
+        }
+        if (!alterQueries.isEmpty()) {
+            if (batchCount > 0) {
+                preparedStatement.executeBatch();
+                preparedStatement.clearBatch();
+                batchCount = 0;
+            }
+            connection.commit();
+            try (Statement stmt = connection.createStatement()) {
+                for (String alterQuery : alterQueries) {
+                    stmt.execute(alterQuery);
+                }
+            }
+            connection.commit();
+            tableColumnTypes = new LinkedHashMap<>(cachedColumnNames);
+            prepareInsert();
+        }
+        schemaChanged = false;
+    }
+
+    /**
+     * @param columnName Column name
+     * @param sqlType New type
+     * @return The query that changes the type of a column
+     */
+    private String getAlterColumnType(String columnName, String sqlType) {
+        if (dbType == DBTypes.POSTGIS || dbType == DBTypes.POSTGRESQL) {
+            return "ALTER TABLE " + tableLocation + " ALTER COLUMN " + columnName + " TYPE " + sqlType
+                    + " USING " + columnName + "::" + sqlType;
+        }
+        return "ALTER TABLE " + tableLocation + " ALTER COLUMN " + columnName + " SET DATA TYPE " + sqlType;
+    }
+
+    /**
+     * Adds a feature to the current batch
+     *
+     * @param values Feature values, the columns added after the feature has been parsed are null
+     * @throws SQLException
+     */
+    private void addRow(Object[] values) throws SQLException {
+        int columnCount = cachedColumnIndex.size() + 1;
+        for (int i = 0; i < columnCount; i++) {
+            preparedStatement.setObject(i + 1, i < values.length ? values[i] : null);
+        }
+        preparedStatement.addBatch();
+        batchCount++;
+        if (batchCount >= batchSize) {
+            preparedStatement.executeBatch();
+            connection.commit();
+            preparedStatement.clearBatch();
+            batchCount = 0;
+        }
+    }
+
+    /**
+     * Sets a 0 z value to the coordinates without z, like the coordinates parsed once the file is known to have z
+     * values.
+     */
+    private static class ZFilter implements CoordinateSequenceFilter {
+
+        @Override
+        public void filter(CoordinateSequence seq, int i) {
+            if (Double.isNaN(seq.getZ(i))) {
+                seq.setOrdinate(i, CoordinateSequence.Z, 0);
+            }
+        }
+
+        @Override
+        public boolean isDone() {
+            return false;
+        }
+
+        @Override
+        public boolean isGeometryChanged() {
+            return true;
+        }
+    }
+
     /**
      * Parses the all GeoJSON feature to create the PreparedStatement.
      *
@@ -272,54 +731,76 @@ public class GeoJsonReaderDriver {
         }
         // Now we create the table if there is at least one geometry field.          
         if (hasGeometryField) {
-            StringBuilder createTable = new StringBuilder();
-            createTable.append("CREATE TABLE ");
-            createTable.append(tableLocation);
-            createTable.append(" (");
-            //Add the geometry column
-            String finalGeometryType = GeoJsonField.GEOMETRY;
-            if (finalGeometryTypes.size() == 1) {
-                finalGeometryType = (String) finalGeometryTypes.iterator().next();
-                createTable.append("THE_GEOM GEOMETRY(").append(hasZ?finalGeometryType+"Z":finalGeometryType).append(",").append(parsedSRID).append(")");
-            }
-            else{
-                createTable.append("THE_GEOM GEOMETRY(GEOMETRY,").append(parsedSRID).append(")");
-            }
-            cachedColumnIndex = new LinkedHashMap<>();
-            StringBuilder insertTable = new StringBuilder("INSERT INTO ");
-            insertTable.append(tableLocation).append(" VALUES(ST_GeomFromWKB(?, ").append(parsedSRID).append(")");
-
-            int i = 1;
-            for (Map.Entry<String, Integer> columns : cachedColumnNames.entrySet()) {
-                String columnName = columns.getKey();
-                Integer columnType = columns.getValue();
-                cachedColumnIndex.put(columnName, i++);
-                createTable.append(",").append(columns.getKey()).append(" ").append(getSQLTypeName(columnType));
-                if(columnType==Types.ARRAY){
-                    if(dbType == DBTypes.H2 || dbType == DBTypes.H2GIS){
-                        insertTable.append(",").append(" ? FORMAT json");
-                    }else {
-                        insertTable.append(",").append("cast(? as json)");
-                    }
-                }else {
-                    insertTable.append(",").append("?");
-                }
-            }
-            createTable.append(")");
-            insertTable.append(")");
-
-            try (Statement stmt = connection.createStatement()) {
-                stmt.execute(createTable.toString());
-            }
-            preparedStatement = connection.prepareStatement(insertTable.toString());
+            createTable();
             return true;
-
         } else {
             throw new SQLException("The geojson file  does not contain any geometry.");
         }
 
     }
 
+    /**
+     * @return The type of the geometry column from the parsed geometries
+     */
+    private String getGeometryColumnType() {
+        if (finalGeometryTypes.size() == 1) {
+            String finalGeometryType = (String) finalGeometryTypes.iterator().next();
+            return hasZ ? finalGeometryType + "Z" : finalGeometryType;
+        }
+        return GeoJsonField.GEOMETRY;
+    }
+
+    /**
+     * Creates the table from the parsed columns and prepares the insert statement
+     *
+     * @throws SQLException
+     */
+    private void createTable() throws SQLException {
+        StringBuilder createTable = new StringBuilder();
+        createTable.append("CREATE TABLE ");
+        createTable.append(tableLocation);
+        createTable.append(" (");
+        //Add the geometry column
+        createTable.append("THE_GEOM GEOMETRY(").append(getGeometryColumnType()).append(",").append(parsedSRID).append(")");
+        cachedColumnIndex = new LinkedHashMap<>();
+        int i = 1;
+        for (Map.Entry<String, Integer> columns : cachedColumnNames.entrySet()) {
+            cachedColumnIndex.put(columns.getKey(), i++);
+            createTable.append(",").append(columns.getKey()).append(" ").append(getSQLTypeName(columns.getValue()));
+        }
+        createTable.append(")");
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute(createTable.toString());
+        }
+        prepareInsert();
+    }
+
+    /**
+     * Prepares the insert statement from the parsed columns
+     *
+     * @throws SQLException
+     */
+    private void prepareInsert() throws SQLException {
+        StringBuilder insertTable = new StringBuilder("INSERT INTO ");
+        insertTable.append(tableLocation).append(" VALUES(ST_GeomFromWKB(?, ").append(parsedSRID).append(")");
+        for (Map.Entry<String, Integer> columns : cachedColumnNames.entrySet()) {
+            if(columns.getValue()==Types.ARRAY){
+                if(dbType == DBTypes.H2 || dbType == DBTypes.H2GIS){
+                    insertTable.append(",").append(" ? FORMAT json");
+                }else {
+                    insertTable.append(",").append("cast(? as json)");
+                }
+            }else {
+                insertTable.append(",").append("?");
+            }
+        }
+        insertTable.append(")");
+        if (preparedStatement != null) {
+            preparedStatement.close();
+        }
+        preparedStatement = connection.prepareStatement(insertTable.toString());
+    }
+
     /**
      * Parses the featureCollection to collect the field properties
      *
@@ -746,67 +1227,87 @@ public class GeoJsonReaderDriver {
             fieldName = TableLocation.quoteIdentifier(fieldName, dbType);
             JsonToken value = jp.nextToken();
             if (null != value) {
-                Integer dataType = cachedColumnNames.get(fieldName);
-                boolean hasField = cachedColumnNames.containsKey(fieldName);
-                switch (value) {
-                    case VALUE_STRING:
-                        cachedColumnNames.put(fieldName, Types.VARCHAR);
-                        break;
-                    case VALUE_TRUE:
-                    case VALUE_FALSE:
-                        if (!hasField || dataType == Types.NULL) {
-                            cachedColumnNames.put(fieldName, Types.BOOLEAN);
-                        } else if (hasField && dataType != Types.BOOLEAN) {
-                            cachedColumnNames.put(fieldName, Types.VARCHAR);
-                        }
-                        break;
-                    case VALUE_NUMBER_FLOAT:
-                        if (!hasField || dataType == Types.NULL) {
-                            cachedColumnNames.put(fieldName, Types.DOUBLE);
-                        } else if (hasField) {
-                            if (dataType == Types.BIGINT) {
-                                cachedColumnNames.put(fieldName, Types.DOUBLE);
-                            } else if (dataType != Types.DOUBLE) {
-                                cachedColumnNames.put(fieldName, Types.VARCHAR);
-                            }
-                        }
-                        break;
-                    case VALUE_NUMBER_INT:
-                        if (!hasField || dataType == Types.NULL) {
-                            cachedColumnNames.put(fieldName, Types.BIGINT);
-                        } else if (hasField && dataType != Types.BIGINT && dataType!=Types.DOUBLE) {
-                            cachedColumnNames.put(fieldName, Types.VARCHAR);
-                        }
-                        break;
-                    case START_ARRAY:
-                        if (!hasField || dataType == Types.NULL) {
-                            cachedColumnNames.put(fieldName, Types.ARRAY);
-                        } else if (hasField && dataType != Types.ARRAY) {
-                            cachedColumnNames.put(fieldName, Types.VARCHAR);
-                        }
-                        parseArrayMetadata(jp);
-                        break;
-                    case START_OBJECT:
-                        if (!hasField || dataType == Types.NULL) {
-                            cachedColumnNames.put(fieldName, Types.ARRAY);
-                        }
-                        else if (hasField && dataType != Types.ARRAY) {
-                            cachedColumnNames.put(fieldName, Types.VARCHAR);
-                        }
-                        parseObjectMetadata(jp);
-                        break;
-                    case VALUE_NULL:
-                        if (!hasField) {
-                            cachedColumnNames.put(fieldName, Types.NULL);
-                        }
-                    //ignore other value
-                    default:
-                        break;
+                updateColumnType(fieldName, value);
+                if (value == JsonToken.START_ARRAY) {
+                    parseArrayMetadata(jp);
+                } else if (value == JsonToken.START_OBJECT) {
+                    parseObjectMetadata(jp);
                 }
             }
         }
     }
 
+    /**
+     * Updates the type of a column from the type of a property value
+     *
+     * @param fieldName Quoted column name
+     * @param value Json token of the value
+     */
+    private void updateColumnType(String fieldName, JsonToken value) {
+        Integer dataType = cachedColumnNames.get(fieldName);
+        Integer newType = getWidenedType(dataType, value);
+        if (newType != null && !newType.equals(dataType)) {
+            cachedColumnNames.put(fieldName, newType);
+            if (streaming) {
+                schemaChanged = true;
+            }
+        }
+    }
+
+    /**
+     * Computes the SQL type of a column that has to store a new property value
+     *
+     * @param dataType Current {@link Types} of the column, null if the column has not been found yet
+     * @param value Json token of the value
+     * @return The {@link Types} of the column, null if the column has not been found yet
+     */
+    static Integer getWidenedType(Integer dataType, JsonToken value) {
+        boolean hasField = dataType != null;
+        switch (value) {
+            case VALUE_STRING:
+                return Types.VARCHAR;
+            case VALUE_TRUE:
+            case VALUE_FALSE:
+                if (!hasField || dataType == Types.NULL) {
+                    return Types.BOOLEAN;
+                } else if (dataType != Types.BOOLEAN) {
+                    return Types.VARCHAR;
+                }
+                break;
+            case VALUE_NUMBER_FLOAT:
+                if (!hasField || dataType == Types.NULL || dataType == Types.BIGINT) {
+                    return Types.DOUBLE;
+                } else if (dataType != Types.DOUBLE) {
+                    return Types.VARCHAR;
+                }
+                break;
+            case VALUE_NUMBER_INT:
+                if (!hasField || dataType == Types.NULL) {
+                    return Types.BIGINT;
+                } else if (dataType != Types.BIGINT && dataType != Types.DOUBLE) {
+                    return Types.VARCHAR;
+                }
+                break;
+            case START_ARRAY:
+            case START_OBJECT:
+                if (!hasField || dataType == Types.NULL) {
+                    return Types.ARRAY;
+                } else if (dataType != Types.ARRAY) {
+                    return Types.VARCHAR;
+                }
+                break;
+            case VALUE_NULL:
+                if (!hasField) {
+                    return Types.NULL;
+                }
+                break;
+            //ignore other value
+            default:
+                break;
+        }
+        return dataType;
+    }
+
     /**
      * Creates the JsonFactory.
      */
@@ -855,7 +1356,7 @@ public class GeoJsonReaderDriver {
             setGeometry(jp, values);
             jp.nextToken();
         } else if (field.equalsIgnoreCase(GeoJsonField.PROPERTIES)) {
-            parseProperties(jp, values);
+            values = parseProperties(jp, values);
             jp.nextToken();
         }
         //If there is only one geometry field in the feature them the next
@@ -878,7 +1379,7 @@ public class GeoJsonReaderDriver {
             if (secondParam.equalsIgnoreCase(GeoJsonField.GEOMETRY)) {
                 setGeometry(jp, values);
             } else if (secondParam.equalsIgnoreCase(GeoJsonField.PROPERTIES)) {
-                parseProperties(jp, values);
+                values = parseProperties(jp, values);
             }
             while (jp.nextToken() != JsonToken.END_OBJECT); //END_OBJECT } feature
         }
@@ -894,6 +1395,9 @@ public class GeoJsonReaderDriver {
      * @throws SQLException
      */
     private void setGeometry(JsonParser jp, Object[] values) throws IOException, SQLException {
+        if (streaming) {
+            hasGeometryField = true;
+        }
         if (jp.nextToken() != JsonToken.VALUE_NULL) {//START_OBJECT { in case of null geometry
             jp.nextToken(); // FIELD_NAME type     
             jp.nextToken(); //VALUE_STRING Point
@@ -914,6 +1418,9 @@ public class GeoJsonReaderDriver {
      * @return Geometry
      */
     private Geometry parseGeometry(JsonParser jp, String geometryType) throws IOException, SQLException {
+        if (streaming && finalGeometryTypes.add(geometryType.toLowerCase())) {
+            schemaChanged = true;
+        }
         if (geometryType.equalsIgnoreCase(GeoJsonField.POINT)) {
             return parsePoint(jp);
         } else if (geometryType.equalsIgnoreCase(GeoJsonField.MULTIPOINT)) {
@@ -941,13 +1448,26 @@ public class GeoJsonReaderDriver {
      * "properties": {"prop0": "value0"}
      *
      * @param jp
+     * @param values Feature values
+     * @return The feature values, a larger array if new columns have been found in single pass mode
      */
-    private void parseProperties(JsonParser jp, Object[] values) throws IOException, SQLException {
+    private Object[] parseProperties(JsonParser jp, Object[] values) throws IOException, SQLException {
         jp.nextToken();//START_OBJECT {
         while (jp.nextToken() != JsonToken.END_OBJECT) {
             String fieldName = TableLocation.capsIdentifier(jp.getText(), dbType); //FIELD_NAME columnName
             fieldName = TableLocation.quoteIdentifier(fieldName, dbType);
             JsonToken value = jp.nextToken();
+            if (streaming && null != value) {
+                updateColumnType(fieldName, value);
+                Integer columnIndex = cachedColumnIndex.get(fieldName);
+                if (columnIndex == null) {
+                    columnIndex = cachedColumnIndex.size() + 1;
+                    cachedColumnIndex.put(fieldName, columnIndex);
+                }
+                if (columnIndex >= values.length) {
+                    values = Arrays.copyOf(values, columnIndex + 1);
+                }
+            }
             if (null == value) {
                 //ignore other value
             } else switch (value) {
@@ -990,7 +1510,7 @@ public class GeoJsonReaderDriver {
                     break;
             }
         }
-
+        return values;
     }
 
     /**
@@ -1018,7 +1538,6 @@ public class GeoJsonReaderDriver {
             connection.setAutoCommit(false);
             jp.nextToken(); // START_ARRAY [
             JsonToken token = jp.nextToken(); // START_OBJECT {
-            long batchSize = 0;
             while (token != JsonToken.END_ARRAY) {
                 jp.nextToken(); // FIELD_NAME type
                 jp.nextToken(); // VALUE_STRING Feature
@@ -1032,27 +1551,28 @@ public class GeoJsonReaderDriver {
                         preparedStatement.setObject(i + 1, values[i]);
                     }
                     preparedStatement.addBatch();
-                    batchSize++;
-                    if (batchSize >= BATCH_MAX_SIZE) {
+                    batchCount++;
+                    if (batchCount >= batchSize) {
                         preparedStatement.executeBatch();
                         connection.commit();
                         preparedStatement.clearBatch();
-                        batchSize = 0;
+                        batchCount = 0;
                     }
 
                     token = jp.nextToken(); //START_OBJECT new feature                    
                     featureCounter++;
                     progress.setStep((featureCounter / nbFeature) * 100);
-                    if (batchSize > 0) {
-                            preparedStatement.executeBatch();
-                            connection.commit();
-                            preparedStatement.clearBatch();
-                    }
                 } else {
                     connection.setAutoCommit(true);
                     throw new SQLException("Malformed GeoJSON file. Expected 'Feature', found '" + geomType + "'");
                 }
             }
+            if (batchCount > 0) {
+                preparedStatement.executeBatch();
+                connection.commit();
+                preparedStatement.clearBatch();
+                batchCount = 0;
+            }
             connection.setAutoCommit(true);
             //LOOP END_ARRAY ]
             log.debug(featureCounter-1 + " geojson features have been imported.");
@@ -1077,7 +1597,7 @@ public class GeoJsonReaderDriver {
         String coordinatesField = jp.getText();
         if (coordinatesField.equalsIgnoreCase(GeoJsonField.COORDINATES)) {
             jp.nextToken(); // START_ARRAY [ to parse the coordinate
-            return GF.createPoint(parseCoordinate(jp));
+            return geometryFactory.createPoint(parseCoordinate(jp));
         } else {
             throw new SQLException("Malformed GeoJSON file. Expected 'coordinates', found '" + coordinatesField + "'");
         }
@@ -1099,7 +1619,7 @@ public class GeoJsonReaderDriver {
         String coordinatesField = jp.getText();
         if (coordinatesField.equalsIgnoreCase(GeoJsonField.COORDINATES)) {
             jp.nextToken(); // START_ARRAY [ coordinates
-            MultiPoint mPoint = GF.createMultiPointFromCoords(parseCoordinates(jp));
+            MultiPoint mPoint = geometryFactory.createMultiPointFromCoords(parseCoordinates(jp));
             jp.nextToken();//END_OBJECT } geometry
             return mPoint;
         } else {
@@ -1122,7 +1642,7 @@ public class GeoJsonReaderDriver {
         String coordinatesField = jp.getText();
         if (coordinatesField.equalsIgnoreCase(GeoJsonField.COORDINATES)) {
             jp.nextToken(); // START_ARRAY [ coordinates
-            LineString line = GF.createLineString(parseCoordinates(jp));
+            LineString line = geometryFactory.createLineString(parseCoordinates(jp));
             jp.nextToken();//END_OBJECT } geometry
             return line;
         } else {
@@ -1147,10 +1667,10 @@ public class GeoJsonReaderDriver {
             jp.nextToken();//START_ARRAY [ coordinates
             jp.nextToken(); // START_ARRAY [ coordinates line
             while (jp.getCurrentToken() != JsonToken.END_ARRAY) {
-                lineStrings.add(GF.createLineString(parseCoordinates(jp)));
+                lineStrings.add(geometryFactory.createLineString(parseCoordinates(jp)));
                 jp.nextToken();
             }
-            MultiLineString line = GF.createMultiLineString(lineStrings.toArray(new LineString[0]));
+            MultiLineString line = geometryFactory.createMultiLineString(lineStrings.toArray(new LineString[0]));
             jp.nextToken();//END_OBJECT } geometry
             return line;
         } else {
@@ -1193,19 +1713,19 @@ public class GeoJsonReaderDriver {
             ArrayList<LinearRing> holes = new ArrayList<LinearRing>();
             while (jp.getCurrentToken() != JsonToken.END_ARRAY) {
                 if (linesIndex == 0) {
-                    linearRing = GF.createLinearRing(parseCoordinates(jp));
+                    linearRing = geometryFactory.createLinearRing(parseCoordinates(jp));
                 } else {
-                    holes.add(GF.createLinearRing(parseCoordinates(jp)));
+                    holes.add(geometryFactory.createLinearRing(parseCoordinates(jp)));
                 }
                 jp.nextToken();//END RING
                 linesIndex++;
             }
             if (linesIndex > 1) {
                 jp.nextToken();//END_OBJECT } geometry
-                return GF.createPolygon(linearRing, holes.toArray(new LinearRing[0]));
+                return geometryFactory.createPolygon(linearRing, holes.toArray(new LinearRing[0]));
             } else {
                 jp.nextToken();//END_OBJECT } geometry
-                return GF.createPolygon(linearRing, null);
+                return geometryFactory.createPolygon(linearRing, null);
             }
         } else {
             throw new SQLException("Malformed GeoJSON file. Expected 'coordinates', found '" + coordinatesField + "'");
@@ -1240,23 +1760,23 @@ public class GeoJsonReaderDriver {
                 ArrayList<LinearRing> holes = new ArrayList<LinearRing>();
                 while (jp.getCurrentToken() != JsonToken.END_ARRAY) {
                     if (linesIndex == 0) {
-                        linearRing = GF.createLinearRing(parseCoordinates(jp));
+                        linearRing = geometryFactory.createLinearRing(parseCoordinates(jp));
                     } else {
-                        holes.add(GF.createLinearRing(parseCoordinates(jp)));
+                        holes.add(geometryFactory.createLinearRing(parseCoordinates(jp)));
                     }
                     jp.nextToken();//END RING
                     linesIndex++;
                 }
                 if (linesIndex > 1) {
                     jp.nextToken();//END_OBJECT
-                    polygons.add(GF.createPolygon(linearRing, holes.toArray(new LinearRing[0])));
+                    polygons.add(geometryFactory.createPolygon(linearRing, holes.toArray(new LinearRing[0])));
                 } else {
                     jp.nextToken();//END_OBJECT
-                    polygons.add(GF.createPolygon(linearRing, null));
+                    polygons.add(geometryFactory.createPolygon(linearRing, null));
                 }
             }
             jp.nextToken();//END_OBJECT } geometry
-            return GF.createMultiPolygon(polygons.toArray(new Polygon[0]));
+            return geometryFactory.createMultiPolygon(polygons.toArray(new Polygon[0]));
 
         } else {
             throw new SQLException("Malformed GeoJSON file. Expected 'coordinates', found '" + coordinatesField + "'");
@@ -1292,7 +1812,7 @@ public class GeoJsonReaderDriver {
                 jp.nextToken();
             }
             jp.nextToken();//END_OBJECT } geometry
-            return GF.createGeometryCollection(geometries.toArray(new Geometry[0]));
+            return geometryFactory.createGeometryCollection(geometries.toArray(new Geometry[0]));
         } else {
             throw new SQLException("Malformed GeoJSON file. Expected 'geometries', found '" + coordinatesField + "'");
         }
@@ -1349,6 +1869,10 @@ public class GeoJsonReaderDriver {
             double z = jp.getDoubleValue();
             jp.nextToken(); // exit array
             coord = new Coordinate(x, y, z);
+            if (streaming && !hasZ) {
+                hasZ = true;
+                schemaChanged = true;
+            }
         }
         jp.nextToken();
         return coord;
@@ -1441,7 +1965,7 @@ public class GeoJsonReaderDriver {
      * @param jp
      * @return
      */
-    private int readCRS(JsonParser jp) throws IOException, SQLException {
+    private static int readCRS(JsonParser jp) throws IOException, SQLException {
         int srid = 0;
         jp.nextToken(); //START_OBJECT {
         jp.nextToken();// crs type
@@ -1646,7 +2170,7 @@ public class GeoJsonReaderDriver {
      * @return
      * @throws SQLException
      */
-    private static String getSQLTypeName(int sqlType) throws SQLException {
+    static String getSQLTypeName(int sqlType) throws SQLException {
         switch (sqlType) {
             case Types.NULL:
             case Types.VARCHAR:
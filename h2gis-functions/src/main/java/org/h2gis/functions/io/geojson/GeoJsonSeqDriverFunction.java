@@ -0,0 +1,140 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <a href="http://www.h2database.com">http://www.h2database.com</a>. H2GIS is developed by CNRS
+ * <a href="http://www.cnrs.fr/">http://www.cnrs.fr/</a>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; you can
+ * redistribute it and/or modify it under the terms of the GNU Lesser General
+ * Public License as published by the Free Software Foundation; version 3.0 of
+ * the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <a href="http://www.h2gis.org/">http://www.h2gis.org/</a>
+ * or contact directly: info_at_h2gis.org
+ */
+
+package org.h2gis.functions.io.geojson;
+
+import org.h2gis.api.DriverFunction;
+import org.h2gis.api.ProgressVisitor;
+import org.h2gis.functions.io.DriverManager;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Driver to import a GeoJSON text sequence or a newline delimited GeoJSON file.
+ * The file is parsed by several threads, see {@link GeoJsonSeqReaderDriver}.
+ */
+public class GeoJsonSeqDriverFunction implements DriverFunction {
+
+    public static String DESCRIPTION = "GeoJSON text sequence";
+
+    private int threadCount = Runtime.getRuntime().availableProcessors();
+    private int batchSize = 100;
+
+    /**
+     * @param threadCount Number of threads used to parse the file
+     */
+    public void setThreadCount(int threadCount) {
+        this.threadCount = threadCount;
+    }
+
+    /**
+     * @param batchSize Number of features inserted in a single batch
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public IMPORT_DRIVER_TYPE getImportDriverType() {
+        return IMPORT_DRIVER_TYPE.COPY;
+    }
+
+    @Override
+    public String[] getImportFormats() {
+        return new String[]{"geojsonl", "geojsons", "ndjson"};
+    }
+
+    @Override
+    public String[] getExportFormats() {
+        return new String[0];
+    }
+
+    @Override
+    public String getFormatDescription(String format) {
+        if (isSpatialFormat(format)) {
+            return DESCRIPTION;
+        } else {
+            return "";
+        }
+    }
+
+    @Override
+    public boolean isSpatialFormat(String extension) {
+        return extension.equalsIgnoreCase("geojsonl") ||
+                extension.equalsIgnoreCase("geojsons") ||
+                extension.equalsIgnoreCase("ndjson");
+    }
+
+    @Override
+    public String[] exportTable(Connection connection, String tableReference, File fileName, ProgressVisitor progress)
+            throws SQLException, IOException {
+        throw new UnsupportedOperationException("Not supported yet.");
+    }
+
+    @Override
+    public String[] exportTable(Connection connection, String tableReference, File fileName, boolean deleteFiles, ProgressVisitor progress) throws SQLException, IOException {
+        throw new UnsupportedOperationException("Not supported yet.");
+    }
+
+    @Override
+    public String[] exportTable(Connection connection, String tableReference, File fileName, String options, boolean deleteFiles, ProgressVisitor progress) throws SQLException, IOException {
+        throw new UnsupportedOperationException("Not supported yet.");
+    }
+
+    @Override
+    public String[] exportTable(Connection connection, String tableReference, File fileName,
+                                String options, ProgressVisitor progress) throws SQLException, IOException {
+        throw new UnsupportedOperationException("Not supported yet.");
+    }
+
+    @Override
+    public String[] importFile(Connection connection, String tableReference, File fileName, ProgressVisitor progress)
+            throws SQLException, IOException {
+        return importFile(connection, tableReference, fileName, null, false, progress);
+    }
+
+    @Override
+    public String[] importFile(Connection connection, String tableReference, File fileName, String options,
+                               ProgressVisitor progress) throws SQLException, IOException {
+        return importFile(connection, tableReference, fileName, options, false, progress);
+    }
+
+    @Override
+    public String[] importFile(Connection connection, String tableReference, File fileName, boolean deleteTables,
+                               ProgressVisitor progress) throws SQLException, IOException {
+        return importFile(connection, tableReference, fileName, null, deleteTables, progress);
+    }
+
+    /**
+     * @param options Not used, a GeoJSON text sequence is always encoded in UTF-8
+     */
+    @Override
+    public String[] importFile(Connection connection, String tableReference, File fileName, String options,
+                               boolean deleteTables, ProgressVisitor progress) throws SQLException, IOException {
+        progress = DriverManager.check(connection, tableReference, fileName, progress);
+        GeoJsonSeqReaderDriver reader = new GeoJsonSeqReaderDriver(connection, fileName, deleteTables);
+        reader.setThreadCount(threadCount);
+        reader.setBatchSize(batchSize);
+        return new String[]{reader.read(progress, tableReference)};
+    }
+}
@@ -0,0 +1,114 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <a href="http://www.h2database.com">http://www.h2database.com</a>. H2GIS is developed by CNRS
+ * <a href="http://www.cnrs.fr/">http://www.cnrs.fr/</a>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; you can
+ * redistribute it and/or modify it under the terms of the GNU Lesser General
+ * Public License as published by the Free Software Foundation; version 3.0 of
+ * the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <a href="http://www.h2gis.org/">http://www.h2gis.org/</a>
+ * or contact directly: info_at_h2gis.org
+ */
+
+package org.h2gis.functions.io.geojson;
+
+import org.h2gis.api.AbstractFunction;
+import org.h2gis.api.EmptyProgressVisitor;
+import org.h2gis.api.ScalarFunction;
+import org.h2gis.utilities.URIUtilities;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * SQL function to read a GeoJSON text sequence or a newline delimited GeoJSON file and create the corresponding
+ * spatial table.
+ */
+public class GeoJsonSeqRead extends AbstractFunction implements ScalarFunction {
+
+    public GeoJsonSeqRead() {
+        addProperty(PROP_REMARKS, "Import a GeoJSON text sequence (geojsonl, geojsons or ndjson) file, one feature per line."
+                + "\n GeoJsonSeqRead(..."
+                + "\n Supported arguments :"
+                + "\n path of the file"
+                + "\n path of the file, table name"
+                + "\n path of the file, table name, true to delete the table name"
+                + "\n path of the file, table name, true to delete the table name, number of threads used to parse"
+                + " the file, number of features inserted in a batch");
+    }
+
+    @Override
+    public String getJavaStaticMethod() {
+        return "importTable";
+    }
+
+    /**
+     * @param connection
+     * @param fileName
+     * @throws IOException
+     * @throws SQLException
+     */
+    public static void importTable(Connection connection, String fileName) throws IOException, SQLException {
+        final String name = URIUtilities.fileFromString(fileName).getName();
+        String tableName = name.substring(0, name.lastIndexOf(".")).replace(".", "_").toUpperCase();
+        if (tableName.matches("^[a-zA-Z][a-zA-Z0-9_]*$")) {
+            importTable(connection, fileName, tableName, false);
+        } else {
+            throw new SQLException("The file name contains unsupported characters");
+        }
+    }
+
+    /**
+     * @param connection
+     * @param fileName
+     * @param tableReference
+     * @throws IOException
+     * @throws SQLException
+     */
+    public static void importTable(Connection connection, String fileName, String tableReference) throws IOException, SQLException {
+        importTable(connection, fileName, tableReference, false);
+    }
+
+    /**
+     * @param connection
+     * @param fileName
+     * @param tableReference
+     * @param deleteTable
+     * @throws IOException
+     * @throws SQLException
+     */
+    public static void importTable(Connection connection, String fileName, String tableReference, boolean deleteTable) throws IOException, SQLException {
+        GeoJsonSeqDriverFunction driver = new GeoJsonSeqDriverFunction();
+        driver.importFile(connection, tableReference, URIUtilities.fileFromString(fileName), deleteTable, new EmptyProgressVisitor());
+    }
+
+    /**
+     * @param connection
+     * @param fileName
+     * @param tableReference
+     * @param deleteTable
+     * @param threadCount Number of threads used to parse the file
+     * @param batchSize Number of features inserted in a batch
+     * @throws IOException
+     * @throws SQLException
+     */
+    public static void importTable(Connection connection, String fileName, String tableReference, boolean deleteTable,
+                                   int threadCount, int batchSize) throws IOException, SQLException {
+        if (threadCount < 1 || batchSize < 1) {
+            throw new SQLException("The number of threads and the batch size must be greater than 0");
+        }
+        GeoJsonSeqDriverFunction driver = new GeoJsonSeqDriverFunction();
+        driver.setThreadCount(threadCount);
+        driver.setBatchSize(batchSize);
+        driver.importFile(connection, tableReference, URIUtilities.fileFromString(fileName), deleteTable, new EmptyProgressVisitor());
+    }
+}
@@ -0,0 +1,364 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <a href="http://www.h2database.com">http://www.h2database.com</a>. H2GIS is developed by CNRS
+ * <a href="http://www.cnrs.fr/">http://www.cnrs.fr/</a>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software;
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <a href="http://www.h2gis.org/">http://www.h2gis.org/</a>
+ * or contact directly: info_at_h2gis.org
+ */
+
+package org.h2gis.functions.io.geojson;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import org.h2gis.api.ProgressVisitor;
+import org.h2gis.utilities.JDBCUtilities;
+import org.h2gis.utilities.TableLocation;
+import org.h2gis.utilities.dbtypes.DBTypes;
+import org.h2gis.utilities.dbtypes.DBUtils;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Driver to import a GeoJSON text sequence (RFC 8142) or a newline delimited GeoJSON file into a spatial table.
+ *
+ * Each line of the file contains a Feature or a geometry object. The file is split into blocks of whole lines that
+ * are parsed by several threads with the parser of {@link GeoJsonReaderDriver}. The file is read once: the features
+ * are inserted in the file order by the calling thread, the table is created from the first features then altered
+ * when a feature does not fit its schema. The crs member of the first text gives the SRID of the geometries.
+ */
+public class GeoJsonSeqReaderDriver {
+
+    /** Record separator that starts each text of a RFC 8142 sequence */
+    private static final byte RECORD_SEPARATOR = 0x1E;
+    /** Approximate size in bytes of the blocks of lines parsed by a thread */
+    static final int BLOCK_SIZE = 4 * 1024 * 1024;
+    /** Default number of features used to create the table */
+    static final int SAMPLE_SIZE = 1000;
+
+    private final Connection connection;
+    private final File fileName;
+    private final boolean deleteTable;
+    private int threadCount = Runtime.getRuntime().availableProcessors();
+    private int batchSize = 100;
+    private int blockSize = BLOCK_SIZE;
+    private int sampleSize = SAMPLE_SIZE;
+    private DBTypes dbType = DBTypes.H2GIS;
+    private JsonFactory jsFactory;
+    private int parsedSRID = 0;
+
+    /**
+     * Driver to import a GeoJSON sequence file into a spatial table.
+     *
+     * @param connection
+     * @param fileName
+     * @param deleteTable
+     */
+    public GeoJsonSeqReaderDriver(Connection connection, File fileName, boolean deleteTable) {
+        this.connection = connection;
+        this.fileName = fileName;
+        this.deleteTable = deleteTable;
+    }
+
+    /**
+     * @param threadCount Number of threads used to parse the file
+     */
+    public void setThreadCount(int threadCount) {
+        this.threadCount = Math.max(1, threadCount);
+    }
+
+    /**
+     * @return Number of threads used to parse the file
+     */
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    /**
+     * @param batchSize Number of features inserted in a single batch
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * @return Number of features inserted in a single batch
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * @param sampleSize Number of features used to create the table, the table is altered if a following feature
+     * does not fit its schema
+     */
+    public void setSampleSize(int sampleSize) {
+        this.sampleSize = Math.max(1, sampleSize);
+    }
+
+    /**
+     * @return Number of features used to create the table
+     */
+    public int getSampleSize() {
+        return sampleSize;
+    }
+
+    /**
+     * @param blockSize Approximate size in bytes of the blocks of lines parsed by a thread
+     */
+    void setBlockSize(int blockSize) {
+        this.blockSize = Math.max(1, blockSize);
+    }
+
+    /**
+     * Read the GeoJSON sequence file.
+     *
+     * @param progress
+     * @param tableReference
+     * @return The name of the created table
+     * @throws SQLException
+     * @throws IOException
+     */
+    public String read(ProgressVisitor progress, String tableReference) throws SQLException, IOException {
+        if (fileName == null || !fileName.exists()) {
+            throw new SQLException("The file " + fileName + " doesn't exist ");
+        }
+        dbType = DBUtils.getDBType(connection);
+        String tableLocation = TableLocation.parse(tableReference, dbType).toString();
+        if (deleteTable) {
+            try (Statement stmt = connection.createStatement()) {
+                stmt.execute("DROP TABLE IF EXISTS " + tableLocation);
+            }
+        }
+        if (fileName.length() == 0) {
+            JDBCUtilities.createEmptyTable(connection, tableLocation);
+            return tableLocation;
+        }
+        jsFactory = new JsonFactory();
+        jsFactory.configure(JsonParser.Feature.ALLOW_COMMENTS, true);
+        jsFactory.configure(JsonParser.Feature.ALLOW_SINGLE_QUOTES, true);
+        jsFactory.configure(JsonParser.Feature.ALLOW_NON_NUMERIC_NUMBERS, true);
+        parsedSRID = readSRID();
+        GeoJsonReaderDriver writer = new GeoJsonReaderDriver(connection, tableLocation, dbType, jsFactory, parsedSRID);
+        writer.setSampleSize(sampleSize);
+        writer.setBatchSize(batchSize);
+        long[] blocks = splitBlocks();
+        ProgressVisitor copyProgress = progress.subProcess(blocks.length - 1);
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        try {
+            insertFeatures(executor, blocks, writer, copyProgress);
+        } finally {
+            executor.shutdownNow();
+            try {
+                executor.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return tableLocation;
+    }
+
+    /**
+     * Read the crs member of the first text of the file
+     *
+     * @return The SRID of the geometries, 0 if the first text has no crs member
+     */
+    private int readSRID() throws IOException, SQLException {
+        try (InputStream is = new BufferedInputStream(new FileInputStream(fileName))) {
+            // Skip the separators before the first text
+            is.mark(1);
+            int b = is.read();
+            while (b == RECORD_SEPARATOR || b == '\n' || (b >= 0 && isWhitespace((byte) b))) {
+                is.mark(1);
+                b = is.read();
+            }
+            is.reset();
+            try (JsonParser jp = jsFactory.createParser(is)) {
+                return GeoJsonReaderDriver.readSequenceCRS(jp);
+            }
+        }
+    }
+
+    /**
+     * Split the file into blocks of whole lines
+     *
+     * @return The start position of each block, followed by the file size
+     * @throws IOException
+     */
+    private long[] splitBlocks() throws IOException {
+        List<Long> starts = new ArrayList<>();
+        starts.add(0L);
+        long size;
+        try (FileChannel channel = FileChannel.open(fileName.toPath(), StandardOpenOption.READ)) {
+            size = channel.size();
+            ByteBuffer buffer = ByteBuffer.allocate(8192);
+            long position = blockSize;
+            while (position < size) {
+                long lineEnd = findLineEnd(channel, position, buffer);
+                if (lineEnd >= size) {
+                    break;
+                }
+                starts.add(lineEnd);
+                position = lineEnd + blockSize;
+            }
+        }
+        long[] blocks = new long[starts.size() + 1];
+        for (int i = 0; i < starts.size(); i++) {
+            blocks[i] = starts.get(i);
+        }
+        blocks[starts.size()] = size;
+        return blocks;
+    }
+
+    /**
+     * @return The position that follows the next end of line from the given position, or the file size
+     */
+    private static long findLineEnd(FileChannel channel, long position, ByteBuffer buffer) throws IOException {
+        while (true) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                return channel.size();
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+    }
+
+    /**
+     * Parse the blocks in parallel and insert the features in the file order. The parsed columns and geometry
+     * types of each block are merged into the table, created from the first features.
+     */
+    private void insertFeatures(ExecutorService executor, long[] blocks, GeoJsonReaderDriver writer,
+                                ProgressVisitor progress) throws SQLException, IOException {
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try {
+            Deque<Future<ParsedBlock>> pending = new ArrayDeque<>();
+            int nextBlock = 0;
+            while (nextBlock < blocks.length - 1 || !pending.isEmpty()) {
+                // Keep a bounded number of parsed blocks in memory
+                while (nextBlock < blocks.length - 1 && pending.size() < threadCount * 2) {
+                    final long start = blocks[nextBlock];
+                    final long end = blocks[nextBlock + 1];
+                    pending.add(executor.submit(() -> parseBlock(start, end)));
+                    nextBlock++;
+                }
+                ParsedBlock block = getResult(pending.poll());
+                writer.addSequenceFeatures(block.parser, block.features);
+                progress.endStep();
+            }
+            writer.finishStreaming();
+            connection.commit();
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * Wait for a parsed block and unwrap the parsing error
+     */
+    private static ParsedBlock getResult(Future<ParsedBlock> future) throws SQLException, IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("The GeoJSON sequence import has been interrupted", ex);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            } else if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new SQLException("Cannot parse the GeoJSON sequence", cause);
+        }
+    }
+
+    /**
+     * Read a block of lines and parse each non empty line
+     */
+    private ParsedBlock parseBlock(long start, long end) throws IOException, SQLException {
+        if (end - start > Integer.MAX_VALUE - 8) {
+            throw new IOException("The line at position " + start + " is too long");
+        }
+        byte[] bytes = new byte[(int) (end - start)];
+        try (FileChannel channel = FileChannel.open(fileName.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, start + buffer.position()) < 0) {
+                    throw new EOFException("Premature end of file at position " + (start + buffer.position()));
+                }
+            }
+        }
+        ParsedBlock block = new ParsedBlock(new GeoJsonReaderDriver(null, null, dbType, jsFactory, parsedSRID));
+        int lineStart = 0;
+        while (lineStart < bytes.length) {
+            int lineEnd = lineStart;
+            while (lineEnd < bytes.length && bytes[lineEnd] != '\n') {
+                lineEnd++;
+            }
+            int textStart = lineStart;
+            int textEnd = lineEnd;
+            while (textStart < textEnd && (bytes[textStart] == RECORD_SEPARATOR || isWhitespace(bytes[textStart]))) {
+                textStart++;
+            }
+            while (textEnd > textStart && isWhitespace(bytes[textEnd - 1])) {
+                textEnd--;
+            }
+            if (textStart < textEnd) {
+                try (JsonParser jp = jsFactory.createParser(bytes, textStart, textEnd - textStart)) {
+                    block.features.add(block.parser.parseSequenceText(jp));
+                }
+            }
+            lineStart = lineEnd + 1;
+        }
+        return block;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\r';
+    }
+
+    /**
+     * Features of a block, parsed by a driver that only parses the texts
+     */
+    private static class ParsedBlock {
+        final GeoJsonReaderDriver parser;
+        final List<Object[]> features = new ArrayList<>();
+
+        ParsedBlock(GeoJsonReaderDriver parser) {
+            this.parser = parser;
+        }
+    }
+}
@@ -22,6 +22,7 @@ package org.h2gis.functions.io.shp;
 import org.h2.table.Column;
 import org.h2.util.JdbcUtils;
 import org.h2.value.TypeInfo;
+import org.h2.value.Value;
 import org.h2gis.api.DriverFunction;
 import org.h2gis.api.ProgressVisitor;
 import org.h2gis.functions.io.DriverManager;
@@ -42,8 +43,17 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.sql.*;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -64,6 +74,28 @@ public class SHPDriverFunction implements DriverFunction {
 
     public static String DESCRIPTION = "ESRI shapefile";
     private static final int BATCH_MAX_SIZE = 100;
+    /** Number of records decoded at once by a worker of the parallel import */
+    private static final int PARALLEL_BLOCK_SIZE = BATCH_MAX_SIZE * 10;
+    private int threadCount = 1;
+
+    /**
+     * Set the number of threads that decode the shape file records on import.
+     * The rows are still inserted in the file order by the calling thread.
+     * @param threadCount Thread count, 1 to decode the records in the calling thread
+     */
+    public void setThreadCount(int threadCount) {
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("The thread count must be greater than 0");
+        }
+        this.threadCount = threadCount;
+    }
+
+    /**
+     * @return The number of threads that decode the shape file records on import
+     */
+    public int getThreadCount() {
+        return threadCount;
+    }
 
     @Override
     public String[] exportTable(Connection connection, String tableReference, File fileName, ProgressVisitor progress) throws SQLException, IOException {
@@ -322,12 +354,19 @@ public class SHPDriverFunction implements DriverFunction {
                     final int columnCount = dbfNumFields+1;
                     connection.setAutoCommit(false);
                     try (PreparedStatement preparedStatement = connection.prepareStatement(lastSql)) {
+                        if (threadCount > 1) {
+                            insertParallel(connection, preparedStatement, fileName, options, srid, columnCount,
+                                    (int) shpDriver.getRowCount(), copyProgress);
+                            return new String[]{outputTableName};
+                        }
                         long batchSize = 0;
+                        Value[] row = new Value[columnCount];
                         for (int rowId = 0; rowId < shpDriver.getRowCount(); rowId++) {
                             //Set the PK
                             preparedStatement.setInt(1, rowId+1);
+                            shpDriver.getRow(rowId, row);
                             for (int columnId = 0; columnId < columnCount; columnId++) {
-                                JdbcUtils.set(preparedStatement,columnId + 2, shpDriver.getField(rowId, columnId), null);
+                                JdbcUtils.set(preparedStatement,columnId + 2, row[columnId], null);
                             }
                             preparedStatement.addBatch();
                             batchSize++;
@@ -362,6 +401,119 @@ public class SHPDriverFunction implements DriverFunction {
         return null;
     }
 
+    /**
+     * Decode the records with {@link #threadCount} threads. The records are split into ranges of
+     * {@link #PARALLEL_BLOCK_SIZE} rows, each worker decodes a range with its own driver. The ranges are inserted in
+     * the file order by the calling thread.
+     *
+     * @param connection Active connection
+     * @param preparedStatement Insert statement
+     * @param fileName Shape file
+     * @param options Encoding of the dbf file
+     * @param srid Geometry SRID
+     * @param columnCount Number of columns without the primary key
+     * @param rowCount Number of records
+     * @param copyProgress Progress, one step per batch
+     */
+    private void insertParallel(Connection connection, PreparedStatement preparedStatement, File fileName,
+                                String options, int srid, int columnCount, int rowCount,
+                                ProgressVisitor copyProgress) throws IOException, SQLException {
+        // The readers are not thread safe, each worker takes a driver from this queue
+        final BlockingQueue<SHPDriver> drivers = new ArrayBlockingQueue<>(threadCount);
+        final List<SHPDriver> openedDrivers = new ArrayList<>(threadCount);
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        try {
+            for (int i = 0; i < threadCount; i++) {
+                SHPDriver driver = new SHPDriver();
+                openedDrivers.add(driver);
+                // Each worker has its own driver and readers, the files are memory mapped by each reader
+                driver.setMemoryMapped(true);
+                driver.initDriverFromFile(fileName, options);
+                driver.setSRID(srid);
+                drivers.add(driver);
+            }
+            Deque<Future<Value[][]>> pendingBlocks = new ArrayDeque<>();
+            int nextBlockStart = 0;
+            int pk = 0;
+            long batchSize = 0;
+            while (nextBlockStart < rowCount || !pendingBlocks.isEmpty()) {
+                // Keep the workers busy but bound the number of decoded rows waiting for insertion
+                while (nextBlockStart < rowCount && pendingBlocks.size() < threadCount * 2) {
+                    final int blockStart = nextBlockStart;
+                    final int blockEnd = Math.min(rowCount, blockStart + PARALLEL_BLOCK_SIZE);
+                    pendingBlocks.add(executor.submit(() -> readBlock(drivers, blockStart, blockEnd, columnCount)));
+                    nextBlockStart = blockEnd;
+                }
+                Value[][] rows;
+                try {
+                    rows = pendingBlocks.poll().get();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("The shape file import has been interrupted", ex);
+                } catch (ExecutionException ex) {
+                    if (ex.getCause() instanceof IOException) {
+                        throw (IOException) ex.getCause();
+                    }
+                    throw new IOException(ex.getCause());
+                }
+                for (Value[] row : rows) {
+                    //Set the PK
+                    preparedStatement.setInt(1, ++pk);
+                    for (int columnId = 0; columnId < columnCount; columnId++) {
+                        JdbcUtils.set(preparedStatement, columnId + 2, row[columnId], null);
+                    }
+                    preparedStatement.addBatch();
+                    batchSize++;
+                    if (batchSize >= BATCH_MAX_SIZE) {
+                        preparedStatement.executeBatch();
+                        connection.commit();
+                        preparedStatement.clearBatch();
+                        batchSize = 0;
+                        copyProgress.endStep();
+                    }
+                }
+            }
+            if (batchSize > 0) {
+                preparedStatement.executeBatch();
+                connection.commit();
+            }
+        } finally {
+            executor.shutdownNow();
+            try {
+                executor.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            for (SHPDriver driver : openedDrivers) {
+                driver.close();
+            }
+        }
+    }
+
+    /**
+     * Decode a range of records
+     * @param drivers Available drivers
+     * @param start First row
+     * @param end Last row, excluded
+     * @param columnCount Number of columns
+     * @return The rows
+     */
+    private static Value[][] readBlock(BlockingQueue<SHPDriver> drivers, int start, int end, int columnCount)
+            throws IOException, InterruptedException {
+        SHPDriver driver = drivers.take();
+        try {
+            Value[][] rows = new Value[end - start][];
+            for (int rowId = start; rowId < end; rowId++) {
+                Value[] row = new Value[columnCount];
+                driver.getRow(rowId, row);
+                rows[rowId - start] = row;
+            }
+            return rows;
+        } finally {
+            drivers.add(driver);
+        }
+    }
+
     /**
      * Return the shape type supported by the shapefile format
      *
@@ -46,6 +46,8 @@ public class SHPEngine extends FileEngine<SHPDriver> {
     @Override
     protected SHPDriver createDriver(File filePath, List<String> args) throws IOException {
         SHPDriver driver = new SHPDriver();
+        // Linked tables are read randomly, avoid copying the file content at each access
+        driver.setMemoryMapped(true);
         driver.initDriverFromFile(filePath, args.size() > 1 ? args.get(1) : null);        
         int srid = PRJUtil.getSRID(driver.prjFile);
         driver.setSRID(srid);
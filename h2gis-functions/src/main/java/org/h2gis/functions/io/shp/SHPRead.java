@@ -48,7 +48,8 @@ public class SHPRead  extends AbstractFunction implements ScalarFunction {
                 "\n path of the file, table name"+
                 "\n path of the file, table name, true to delete the table name"+
                 "\n path of the file, table name, encoding chartset"+
-                "\n path of the file, table name, encoding chartset, true to delete the table name");
+                "\n path of the file, table name, encoding chartset, true to delete the table name"+
+                "\n path of the file, table name, encoding chartset, true to delete the table name, number of threads");
     }
 
     @Override
@@ -89,8 +90,27 @@ public class SHPRead  extends AbstractFunction implements ScalarFunction {
      * @throws java.sql.SQLException
      */
     public static void importTable(Connection connection, String fileName, String tableReference,String forceEncoding, boolean deleteTables) throws IOException, SQLException {
+        importTable(connection, fileName, tableReference, forceEncoding, deleteTables, 1);
+    }
+
+    /**
+     * Copy data from Shape File into a new table in specified connection.
+     * @param connection Active connection
+     * @param tableReference [[catalog.]schema.]table reference
+     * @param forceEncoding Use this encoding instead of DBF file header encoding property.
+     * @param fileName File path of the SHP file or URI
+     * @param deleteTables delete existing tables
+     * @param threadCount Number of threads used to decode the records
+     * @throws java.io.IOException
+     * @throws java.sql.SQLException
+     */
+    public static void importTable(Connection connection, String fileName, String tableReference,String forceEncoding, boolean deleteTables, int threadCount) throws IOException, SQLException {
+        if (threadCount < 1) {
+            throw new SQLException("The number of threads must be greater than 0");
+        }
         File file = URIUtilities.fileFromString(fileName);
         SHPDriverFunction shpDriverFunction = new SHPDriverFunction();
+        shpDriverFunction.setThreadCount(threadCount);
         shpDriverFunction.importFile(connection, tableReference,
                 file,  forceEncoding,deleteTables, new EmptyProgressVisitor());
     }
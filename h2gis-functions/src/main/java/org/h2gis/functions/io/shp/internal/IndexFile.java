@@ -20,6 +20,7 @@
 
 package org.h2gis.functions.io.shp.internal;
 
+import org.h2gis.functions.io.utility.MappedReadBufferManager;
 import org.h2gis.functions.io.utility.ReadBufferManager;
 
 import java.io.IOException;
@@ -62,9 +63,24 @@ public class IndexFile {
 	 */
 	public IndexFile(FileChannel channel)
 			throws IOException {
+		this(channel, false);
+	}
+
+	/**
+	 * Load the index file from the given channel.
+	 *
+	 * @param channel
+	 *            The channel to read from.
+	 * @param memoryMapped
+	 *            True to map the file in memory instead of reading it through a heap buffer
+	 * @throws java.io.IOException
+	 *             If an error occurs.
+	 */
+	public IndexFile(FileChannel channel, boolean memoryMapped)
+			throws IOException {
 		readHeader(channel);
 		this.channel = channel;
-		this.buf = new ReadBufferManager(channel, 8 * 128);
+		this.buf = memoryMapped ? new MappedReadBufferManager(channel) : new ReadBufferManager(channel, 8 * 128);
 	}
 
 	/**
@@ -28,6 +28,7 @@ import org.locationtech.jts.geom.GeometryFactory;
 import org.locationtech.jts.geom.Point;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 
 /**
@@ -39,6 +40,12 @@ import java.io.IOException;
  *
  */
 public class PointHandler implements ShapeHandler {
+    /** EWKB flag of a geometry with Z ordinate */
+    private static final int EWKB_Z = 0x8000_0000;
+    /** EWKB flag of a geometry with SRID */
+    private static final int EWKB_SRID = 0x2000_0000;
+    /** EWKB type of a point */
+    private static final int EWKB_POINT = 1;
 
     final ShapeType shapeType;
     GeometryFactory geometryFactory = new GeometryFactory();
@@ -101,6 +108,46 @@ public class PointHandler implements ShapeHandler {
         return geometryFactory.createPoint(new Coordinate(x, y, z));
     }
 
+    /**
+     * Read the point as a big endian EWKB, the same bytes that would be produced by the database from the geometry
+     * returned by {@link #read(ReadBufferManager, ShapeType)}, without creating the geometry.
+     * @param buffer Buffer positioned after the record shape type
+     * @param type Record shape type
+     * @param srid Geometry SRID, 0 if unknown
+     * @return EWKB or null for a null shape
+     * @throws IOException
+     */
+    public byte[] readEWKB(ReadBufferManager buffer, ShapeType type, int srid) throws IOException {
+        if (type == ShapeType.NULL) {
+            return null;
+        }
+        double x = buffer.getDouble();
+        double y = buffer.getDouble();
+        double z = Double.NaN;
+
+        if (shapeType == ShapeType.POINTM) {
+            buffer.getDouble();
+        }
+
+        if (shapeType == ShapeType.POINTZ) {
+            z = buffer.getDouble();
+        }
+        boolean hasZ = !Double.isNaN(z);
+        ByteBuffer ewkb = ByteBuffer.allocate(5 + (srid != 0 ? 4 : 0) + (hasZ ? 24 : 16));
+        // Big endian
+        ewkb.put((byte) 0);
+        ewkb.putInt(EWKB_POINT | (hasZ ? EWKB_Z : 0) | (srid != 0 ? EWKB_SRID : 0));
+        if (srid != 0) {
+            ewkb.putInt(srid);
+        }
+        ewkb.putDouble(x);
+        ewkb.putDouble(y);
+        if (hasZ) {
+            ewkb.putDouble(z);
+        }
+        return ewkb.array();
+    }
+
     @Override
     public void write(WriteBufferManager buffer, Geometry geometry) throws IOException {
         Coordinate c = ((Point) geometry).getCoordinate();
@@ -23,15 +23,20 @@ package org.h2gis.functions.io.shp.internal;
 import org.h2.value.Value;
 import org.h2.value.ValueGeometry;
 import org.h2.value.ValueNull;
-import org.h2gis.api.FileDriver;
 import org.h2gis.functions.io.dbf.internal.DBFDriver;
 import org.h2gis.functions.io.dbf.internal.DbaseFileHeader;
+import org.h2gis.functions.io.dbf.internal.DbaseFileReader;
+import org.h2gis.functions.io.file_table.SpatialFileDriver;
+import org.h2gis.functions.io.utility.PackedRTree;
 import org.locationtech.jts.geom.Geometry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.*;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 
 /**
  * Merge ShapeFileReader and DBFReader.
@@ -46,7 +51,10 @@ import java.nio.file.Path;
  *
  * @author Nicolas Fortin
  */
-public class SHPDriver implements FileDriver {
+public class SHPDriver implements SpatialFileDriver {
+    /** Extension of the spatial index file written next to the shape file */
+    public static final String SPATIAL_INDEX_EXTENSION = ".h2gis.idx";
+    private static final Logger LOG = LoggerFactory.getLogger(SHPDriver.class);
     private DBFDriver dbfDriver = new DBFDriver();
     public File shpFile;
     public File shxFile;
@@ -58,6 +66,10 @@ public class SHPDriver implements FileDriver {
     private ShapeType shapeType;
     public File prjFile;
     private int srid =0;
+    private boolean memoryMapped = false;
+    private PackedRTree spatialIndex;
+    private long cachedGeometryRowId = -1;
+    private Value cachedGeometry;
 
 
     /**
@@ -100,6 +112,7 @@ public class SHPDriver implements FileDriver {
     /**
      * @return The geometry field index in getRow() array.
      */
+    @Override
     public int getGeometryFieldIndex() {
         return geometryFieldIndex;
     }
@@ -180,6 +193,7 @@ public class SHPDriver implements FileDriver {
             } 
         }
         if(dbfFile != null) {
+            dbfDriver.setMemoryMapped(memoryMapped);
             dbfDriver.initDriverFromFile(dbfFile, forceEncoding);
         } else {
             throw new IllegalArgumentException("DBF File not found");
@@ -188,9 +202,24 @@ public class SHPDriver implements FileDriver {
             throw new IllegalArgumentException("SHX File not found");
         }
         FileInputStream shpFis = new FileInputStream(shpFile);
-        shapefileReader = new ShapefileReader(shpFis.getChannel());
+        shapefileReader = new ShapefileReader(shpFis.getChannel(), memoryMapped);
         FileInputStream shxFis = new FileInputStream(shxFile);
-        shxFileReader = new IndexFile(shxFis.getChannel());
+        shxFileReader = new IndexFile(shxFis.getChannel(), memoryMapped);
+    }
+
+    /**
+     * @param memoryMapped True to map the shp, shx and dbf files in memory when they are opened in read mode.
+     *                     Must be set before {@link #initDriverFromFile(File, String)}
+     */
+    public void setMemoryMapped(boolean memoryMapped) {
+        this.memoryMapped = memoryMapped;
+    }
+
+    /**
+     * @return True if the files are mapped in memory when they are opened in read mode
+     */
+    public boolean isMemoryMapped() {
+        return memoryMapped;
     }
 
     /**
@@ -214,6 +243,10 @@ public class SHPDriver implements FileDriver {
 
     @Override
     public void close() throws IOException {
+        if(spatialIndex != null) {
+            spatialIndex.close();
+            spatialIndex = null;
+        }
         dbfDriver.close();
         if(shapefileReader != null) {
             shapefileReader.close();
@@ -245,13 +278,12 @@ public class SHPDriver implements FileDriver {
     @Override
     public Value getField(long rowId, int column) throws IOException {
         if (column == geometryFieldIndex) {
-            Geometry geom = shapefileReader.geomAt(shxFileReader.getOffset((int) rowId));
-            if (geom != null) {
-                geom.setSRID(getSrid());
-                return ValueGeometry.getFromGeometry(geom);
-            } else {
-                return ValueNull.INSTANCE;
+            // The same row geometry is often requested several times (filter then projection)
+            if (rowId != cachedGeometryRowId) {
+                cachedGeometry = readGeometry((int) rowId);
+                cachedGeometryRowId = rowId;
             }
+            return cachedGeometry;
         } else {
             if(geometryFieldIndex < column) {
                 return dbfDriver.getDbaseFileReader().getFieldValue((int) rowId, column - 1);
@@ -261,12 +293,118 @@ public class SHPDriver implements FileDriver {
         }
     }
 
+    /**
+     * Read all the fields of a row, faster than reading the fields one by one.
+     * @param rowId Row index
+     * @param values Array of {@link #getFieldCount()} values that receives the row
+     * @throws IOException
+     */
+    public void getRow(long rowId, Value[] values) throws IOException {
+        DbaseFileReader dbaseFileReader = dbfDriver.getDbaseFileReader();
+        if (geometryFieldIndex == 0) {
+            dbaseFileReader.readRecord((int) rowId, values, 1);
+        } else {
+            // Move the fields located after the geometry column
+            dbaseFileReader.readRecord((int) rowId, values, 0);
+            System.arraycopy(values, geometryFieldIndex, values, geometryFieldIndex + 1,
+                    dbfDriver.getFieldCount() - geometryFieldIndex);
+        }
+        values[geometryFieldIndex] = getField(rowId, geometryFieldIndex);
+    }
+
+    /**
+     * Return the spatial index of the shape records. The index is built from the bounding box stored in each record
+     * then kept in a file next to the shape file, it is reused as long as the shape file is not modified.
+     * @return The spatial index
+     * @throws IOException
+     */
+    @Override
+    public PackedRTree getSpatialIndex() throws IOException {
+        if(spatialIndex == null) {
+            File indexFile = getSpatialIndexFile();
+            if(indexFile.exists()) {
+                try {
+                    PackedRTree tree = PackedRTree.open(indexFile);
+                    if(tree.getSourceLength() == shpFile.length() && tree.getSourceLastModified() == shpFile.lastModified()) {
+                        spatialIndex = tree;
+                        return spatialIndex;
+                    }
+                    tree.close();
+                } catch (IOException ex) {
+                    LOG.warn("Cannot read the spatial index file " + indexFile.getAbsolutePath() + ", it will be rebuilt", ex);
+                }
+            }
+            spatialIndex = PackedRTree.open(buildSpatialIndex(indexFile));
+        }
+        return spatialIndex;
+    }
+
+    /**
+     * @return The spatial index file of this shape file
+     */
+    public File getSpatialIndexFile() {
+        String path = shpFile.getAbsolutePath();
+        return new File(path.substring(0, path.lastIndexOf('.')) + SPATIAL_INDEX_EXTENSION);
+    }
+
+    /**
+     * Write the spatial index using the bounding box of the records
+     * @param indexFile Expected location of the index
+     * @return The written file, in the temporary folder if the expected location is not writable
+     */
+    private File buildSpatialIndex(File indexFile) throws IOException {
+        int recordCount = shxFileReader.getRecordCount();
+        PackedRTree.Builder builder = new PackedRTree.Builder(recordCount);
+        double[] envelope = new double[4];
+        for(int rowId = 0; rowId < recordCount; rowId++) {
+            if(shapefileReader.envelopeAt(shxFileReader.getOffset(rowId), envelope)) {
+                builder.add(rowId, envelope[0], envelope[1], envelope[2], envelope[3]);
+            }
+        }
+        File tempFile;
+        try {
+            tempFile = File.createTempFile(indexFile.getName(), ".tmp", indexFile.getParentFile());
+        } catch (IOException ex) {
+            LOG.warn("Cannot write the spatial index file next to " + shpFile.getAbsolutePath() + ", it will not be kept");
+            tempFile = File.createTempFile(indexFile.getName(), ".tmp");
+            tempFile.deleteOnExit();
+            builder.write(tempFile, shpFile.length(), shpFile.lastModified());
+            return tempFile;
+        }
+        builder.write(tempFile, shpFile.length(), shpFile.lastModified());
+        Files.move(tempFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        return indexFile;
+    }
+
+    /**
+     * Decode the geometry of the row
+     * @param rowId Row index
+     * @return Geometry value
+     * @throws IOException
+     */
+    private Value readGeometry(int rowId) throws IOException {
+        int offset = shxFileReader.getOffset(rowId);
+        if (shapefileReader.isPointFile()) {
+            // Points are converted directly into the database format
+            byte[] ewkb = shapefileReader.pointEWKBAt(offset, getSrid());
+            return ewkb != null ? ValueGeometry.getFromEWKB(ewkb) : ValueNull.INSTANCE;
+        }
+        Geometry geom = shapefileReader.geomAt(offset);
+        if (geom != null) {
+            geom.setSRID(getSrid());
+            return ValueGeometry.getFromGeometry(geom);
+        } else {
+            return ValueNull.INSTANCE;
+        }
+    }
+
     /**
      * Set a SRID code that will be used for geometries.
      * @param srid 
      */
     public void setSRID(int srid) {
         this.srid=srid;
+        cachedGeometryRowId = -1;
     }
 
     /**
@@ -20,6 +20,7 @@
 
 package org.h2gis.functions.io.shp.internal;
 
+import org.h2gis.functions.io.utility.MappedReadBufferManager;
 import org.h2gis.functions.io.utility.ReadBufferManager;
 import org.locationtech.jts.geom.Geometry;
 
@@ -54,6 +55,7 @@ public class ShapefileReader {
         private FileChannel channel;
         private ReadBufferManager buffer;
         private ShapeType fileShapeType = ShapeType.UNDEFINED;
+        private final boolean memoryMapped;
 
         /**
          * Creates a new instance of ShapeFile.
@@ -66,8 +68,26 @@ public class ShapefileReader {
          *             If for some reason the file contains invalid records.
          */
         public ShapefileReader(FileChannel channel) throws IOException,
+                ShapefileException {
+                this(channel, false);
+        }
+
+        /**
+         * Creates a new instance of ShapeFile.
+         *
+         * @param channel
+         *            The ReadableByteChannel this reader will use.
+         * @param memoryMapped
+         *            True to map the file in memory instead of reading it through a heap buffer
+         * @throws java.io.IOException
+         *             If problems arise.
+         * @throws ShapefileException
+         *             If for some reason the file contains invalid records.
+         */
+        public ShapefileReader(FileChannel channel, boolean memoryMapped) throws IOException,
                 ShapefileException {
                 this.channel = channel;
+                this.memoryMapped = memoryMapped;
                 init();
         }
 
@@ -103,7 +123,7 @@ public class ShapefileReader {
                 if (handler == null) {
                         throw new IOException("Unsuported shape type:" + fileShapeType);
                 }
-                buffer = new ReadBufferManager(channel);
+                buffer = memoryMapped ? new MappedReadBufferManager(channel) : new ReadBufferManager(channel);
         }
 
         /**
@@ -162,6 +182,65 @@ public class ShapefileReader {
                 return handler.read(buffer, recordType);
         }
 
+        /**
+         * @return True if {@link #pointEWKBAt(int, int)} can be used with this file
+         */
+        public boolean isPointFile() {
+                return handler instanceof PointHandler;
+        }
+
+        /**
+         * Fetch a point record as EWKB without creating the geometry.
+         *
+         * @param offset Record offset in bytes
+         * @param srid Geometry SRID
+         * @return EWKB or null for a null shape
+         * @throws java.io.IOException
+         * @see #isPointFile()
+         */
+        public byte[] pointEWKBAt(int offset, int srid) throws IOException {
+                buffer.position(offset);
+                // record header
+                buffer.skip(8);
+                buffer.order(ByteOrder.LITTLE_ENDIAN);
+                ShapeType recordType = ShapeType.forID(buffer.getInt());
+                if (recordType != ShapeType.NULL && recordType != fileShapeType) {
+                        throw new IllegalStateException("ShapeType changed illegally from "
+                                + fileShapeType + " to " + recordType);
+                }
+                return ((PointHandler) handler).readEWKB(buffer, recordType, srid);
+        }
+
+        /**
+         * Read the bounding box stored in the record without decoding the geometry.
+         *
+         * @param offset Record offset in bytes
+         * @param envelope Destination of the bounding box, as minX, minY, maxX, maxY
+         * @return False if the record is a null shape
+         * @throws java.io.IOException
+         */
+        public boolean envelopeAt(int offset, double[] envelope) throws IOException {
+                buffer.position(offset);
+                // record header
+                buffer.skip(8);
+                buffer.order(ByteOrder.LITTLE_ENDIAN);
+                ShapeType recordType = ShapeType.forID(buffer.getInt());
+                if (recordType == ShapeType.NULL) {
+                        return false;
+                }
+                if (recordType.isPointType()) {
+                        // Points do not have a bounding box
+                        envelope[0] = envelope[2] = buffer.getDouble();
+                        envelope[1] = envelope[3] = buffer.getDouble();
+                } else {
+                        envelope[0] = buffer.getDouble();
+                        envelope[1] = buffer.getDouble();
+                        envelope[2] = buffer.getDouble();
+                        envelope[3] = buffer.getDouble();
+                }
+                return true;
+        }
+
         /**
          * @param handler
          *            The handler to set.
@@ -21,11 +21,13 @@ package org.h2gis.functions.io.utility;
 
 import org.h2gis.api.DriverFunction;
 import org.h2gis.api.EmptyProgressVisitor;
+import org.h2gis.api.ProgressVisitor;
 import org.h2gis.functions.factory.H2GISDBFactory;
 import org.h2gis.functions.io.asc.AscDriverFunction;
 import org.h2gis.functions.io.csv.CSVDriverFunction;
 import org.h2gis.functions.io.dbf.DBFDriverFunction;
 import org.h2gis.functions.io.geojson.GeoJsonDriverFunction;
+import org.h2gis.functions.io.geojson.GeoJsonSeqDriverFunction;
 import org.h2gis.functions.io.gpx.GPXDriverFunction;
 import org.h2gis.functions.io.json.JsonDriverFunction;
 import org.h2gis.functions.io.kml.KMLDriverFunction;
@@ -42,6 +44,7 @@ import org.locationtech.jts.geom.Geometry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.beans.PropertyChangeListener;
 import java.io.File;
 import java.io.IOException;
 import java.sql.*;
@@ -75,6 +78,7 @@ public class IOMethods {
         driverFunctionList.add(new CSVDriverFunction());
         driverFunctionList.add(new DBFDriverFunction());
         driverFunctionList.add(new GeoJsonDriverFunction());
+        driverFunctionList.add(new GeoJsonSeqDriverFunction());
         driverFunctionList.add(new GPXDriverFunction());
         driverFunctionList.add(new JsonDriverFunction());
         driverFunctionList.add(new KMLDriverFunction());
@@ -319,25 +323,7 @@ public class IOMethods {
         if (targetConnection == null) {
             throw new SQLException("The connection to the output database cannot be null.\n");
         }
-
-        if (-2 > mode && mode > 2) {
-            throw new SQLException("Supported mode to export the table is : \n"
-                    + "-1 delete the target table if exists and create a new table, \n"
-                    + "0 create a new table\n"
-                    + "1 update the target table if exists");
-        }
-
-        if (batch_size <= 0) {
-            throw new SQLException("The batch size must be greater than 0.\n");
-        }
-
-        if (sourceTable == null || sourceTable.isEmpty()) {
-            throw new SQLException("The source table cannot be null or empty.\n");
-        }
-
-        if (targetTable == null || targetTable.isEmpty()) {
-            throw new SQLException("The target table cannot be null or empty.\n");
-        }
+        checkExportParameters(sourceTable, targetTable, mode, batch_size);
 
         final DBTypes sourceDBType = DBUtils.getDBType(sourceConnection);
         final DBTypes targetDBType = DBUtils.getDBType(targetConnection);
@@ -345,102 +331,23 @@ public class IOMethods {
         TableLocation targetTableLocation = TableLocation.parse(targetTable, targetDBType);
         String ouputTableName = targetTableLocation.toString(targetDBType);
 
-        String query;
-        //Check if the source table is a query
-        String regex = ".*(?i)\\b(select|from)\\b.*";
-        Pattern pattern = Pattern.compile(regex);
-        Matcher matcher = pattern.matcher(sourceTable);
-        if (matcher.find()) {
-            if (sourceTable.startsWith("(") && sourceTable.endsWith(")")) {
-                query = sourceTable;
-            } else {
-                throw new SQLException("The select query must be enclosed in parenthesis: '(SELECT * FROM MYTATBLE)'.");
-            }
-        } else {
-            TableLocation sourceTableLocation = TableLocation.parse(sourceTable, sourceDBType);
-            if (!JDBCUtilities.tableExists(sourceConnection, sourceTableLocation)) {
-                throw new SQLException("The source table doesn't exist.\n");
-            }
-            query = "SELECT * FROM " + sourceTableLocation.toString(sourceDBType);
-        }
+        String query = getSelectQuery(sourceConnection, sourceTable, sourceDBType);
 
         try {
             Statement inputStat = sourceConnection.createStatement();
             ResultSet inputRes = inputStat.executeQuery(query);
             ResultSetMetaData inputMetadata = inputRes.getMetaData();
             targetConnection.setAutoCommit(false);
-
-            if (mode == -1) {
-                try ( //Drop table if exists
-                      Statement stmt = targetConnection.createStatement()) {
-                    stmt.execute("DROP TABLE IF EXISTS " + ouputTableName);
-                    targetConnection.commit();
-                } catch (SQLException e) {
-                    try {
-                        targetConnection.rollback();
-                    } catch (SQLException e1) {
-                        throw new SQLException("Unable to rollback.", e1);
-                    }
-                    throw new SQLException("Cannot drop the table", e);
-                }
-                //Re-create the table
-                String ddlCommand = JDBCUtilities.createTableDDL(inputMetadata, ouputTableName);
-                if (!ddlCommand.isEmpty()) {
-                    try (Statement outputST = targetConnection.createStatement()) {
-                        outputST.execute(ddlCommand);
-                        targetConnection.commit();
-                    } catch (SQLException e) {
-                        try {
-                            targetConnection.rollback();
-                        } catch (SQLException e1) {
-                            throw new SQLException("Unable to rollback.", e1);
-                        }
-                        throw new SQLException("Cannot create the output table", e);
-                    }
-                }
-            } else if (mode == 0) {
-                //Check if target table exists
-                if (JDBCUtilities.tableExists(targetConnection, targetTableLocation)) {
-                    throw new SQLException("The target table already exists.\n" + ""
-                            + "Please use a -1 (delete) or 2 (insert) mode to export the table");
-                }
-                String ddlCommand = JDBCUtilities.createTableDDL(inputMetadata, ouputTableName);
-                if (!ddlCommand.isEmpty()) {
-                    try (Statement outputST = targetConnection.createStatement()) {
-                        outputST.execute(ddlCommand);
-                        targetConnection.commit();
-                    } catch (SQLException e) {
-                        try {
-                            targetConnection.rollback();
-                        } catch (SQLException e1) {
-                            LOGGER.error("Unable to rollback.", e1);
-                        }
-                        throw new SQLException("Cannot create the output table", e);
-                    }
-                } else if (mode == 1) {
-                    //Check if target table exists
-                    //and do insert
-                    //Check if target table exists
-                    if (!JDBCUtilities.tableExists(targetConnection, targetTableLocation)) {
-                        throw new SQLException("The target table doesn't exist.\n" + ""
-                                + "Please use a 0 mode to create a new table and populate it");
-                    }
-                }
-            }
+            createTargetTable(targetConnection, inputMetadata, targetTableLocation, ouputTableName, mode);
             PreparedStatement preparedStatement = null;
             try {
                 targetConnection.setAutoCommit(false);
                 int columnsCount = inputMetadata.getColumnCount();
                 HashMap<String, Integer> geomColumnAndSRID = new HashMap<>();
-                StringBuilder insertTable = new StringBuilder("INSERT INTO ");
-                insertTable.append(ouputTableName).append(" VALUES(?");
-                for (int i = 1; i < columnsCount; i++) {
-                    insertTable.append(",").append("?");
-                }
-                insertTable.append(")");
+                String insertTable = getInsertQuery(ouputTableName, columnsCount);
                 //Check the first row in order to limit the batch size if the query doesn't work
                 if (inputRes.next()) {
-                    preparedStatement = targetConnection.prepareStatement(insertTable.toString());
+                    preparedStatement = targetConnection.prepareStatement(insertTable);
                     for (int i = 0; i < columnsCount; i++) {
                         int index = i + 1;
                         Object value = inputRes.getObject(index);
@@ -480,29 +387,7 @@ public class IOMethods {
                         preparedStatement.executeBatch();
                         targetConnection.commit();
                     }
-                    //Alter SRID
-                    if (!geomColumnAndSRID.isEmpty()) {
-                        StringBuilder querySRID = new StringBuilder();
-                        for (Map.Entry<String, Integer> entry : geomColumnAndSRID.entrySet()) {
-                            String fieldName = TableLocation.capsIdentifier(entry.getKey(), targetDBType);
-                            Integer srid = entry.getValue();
-                            querySRID.append("ALTER TABLE ").append(ouputTableName).append(" ALTER COLUMN ").append(fieldName);
-                            querySRID.append(" TYPE GEOMETRY(GEOMETRY, ").append(srid).append(") USING ST_SetSRID(").append(fieldName).append(",").append(srid).append(");\n");
-                        }
-
-                        try (Statement outputST = targetConnection.createStatement()) {
-                            outputST.execute(querySRID.toString());
-                            targetConnection.commit();
-                        } catch (SQLException e) {
-                            try {
-                                targetConnection.rollback();
-                            } catch (SQLException e1) {
-                                LOGGER.error("Unable to rollback.", e1);
-                            }
-                            throw new SQLException("Cannot alter the table with the SRID", e);
-                        }
-
-                    }
+                    alterSRID(targetConnection, ouputTableName, geomColumnAndSRID, targetDBType);
                 }
             } catch (SQLException e) {
                 try {
@@ -524,6 +409,268 @@ public class IOMethods {
         return ouputTableName;
     }
 
+    /**
+     * Method to export a table into another database with several connections to the target database. The calling
+     * thread fetches the rows of the source, fetch_size rows at a time, and queues them by batches. Each target
+     * connection inserts the batches it takes from the queue in its own thread, so the reading and the insertions
+     * overlap. The connections can be given by any pair of H2, H2GIS, PostgreSQL or PostGIS databases.
+     *
+     * @param sourceConnection  source database connection
+     * @param sourceTable       the name of the table to export or a select query
+     * @param targetConnections connections to the target database, the first one creates the table, each connection
+     *                          inserts and commits its own batches
+     * @param targetTable       target table name
+     * @param mode              -1 delete the target table if exists and create a new table,
+     *                          0 create a new table, 1 update the target table if exists
+     * @param batch_size        batch size value before sending the data, also the fetch size of the source
+     * @param progress          progress visitor, one step by inserted batch
+     * @return name of the export table formatted according the database target
+     * @throws java.sql.SQLException
+     */
+    public static String exportToDataBase(Connection sourceConnection, String sourceTable,
+                                          Connection[] targetConnections, String targetTable, int mode, int batch_size,
+                                          ProgressVisitor progress) throws SQLException {
+        if (sourceConnection == null) {
+            throw new SQLException("The connection to the source database cannot be null.\n");
+        }
+        if (targetConnections == null || targetConnections.length == 0) {
+            throw new SQLException("The connections to the output database cannot be null or empty.\n");
+        }
+        for (Connection targetConnection : targetConnections) {
+            if (targetConnection == null) {
+                throw new SQLException("The connection to the output database cannot be null.\n");
+            }
+        }
+        checkExportParameters(sourceTable, targetTable, mode, batch_size);
+
+        final DBTypes sourceDBType = DBUtils.getDBType(sourceConnection);
+        final Connection targetConnection = targetConnections[0];
+        final DBTypes targetDBType = DBUtils.getDBType(targetConnection);
+
+        TableLocation targetTableLocation = TableLocation.parse(targetTable, targetDBType);
+        String ouputTableName = targetTableLocation.toString(targetDBType);
+
+        String query = getSelectQuery(sourceConnection, sourceTable, sourceDBType);
+
+        boolean sourceAutoCommit = sourceConnection.getAutoCommit();
+        boolean targetAutoCommit = targetConnection.getAutoCommit();
+        try {
+            int batchCount = 0;
+            if (!(progress instanceof EmptyProgressVisitor)) {
+                String countQuery = "SELECT COUNT(*) FROM " + (query.startsWith("(") ? query : "(" + query + ")")
+                        + " AS TRANSFER_ROWS";
+                try (Statement countStat = sourceConnection.createStatement();
+                     ResultSet countRes = countStat.executeQuery(countQuery)) {
+                    countRes.next();
+                    batchCount = (int) ((countRes.getLong(1) + batch_size - 1) / batch_size);
+                }
+            }
+            if (sourceDBType == DBTypes.POSTGIS || sourceDBType == DBTypes.POSTGRESQL) {
+                // The PostgreSQL driver only fetches the rows with a cursor out of the auto commit mode
+                sourceConnection.setAutoCommit(false);
+            }
+            targetConnection.setAutoCommit(false);
+            try (Statement inputStat = sourceConnection.createStatement()) {
+                inputStat.setFetchSize(batch_size);
+                PropertyChangeListener listener = JDBCUtilities.attachCancelResultSet(inputStat, progress);
+                try (ResultSet inputRes = inputStat.executeQuery(query)) {
+                    ResultSetMetaData inputMetadata = inputRes.getMetaData();
+                    createTargetTable(targetConnection, inputMetadata, targetTableLocation, ouputTableName, mode);
+                    ProgressVisitor copyProgress = progress.subProcess(batchCount);
+                    TableTransfer transfer = new TableTransfer(inputRes, targetConnections,
+                            getInsertQuery(ouputTableName, inputMetadata.getColumnCount()), batch_size, copyProgress);
+                    transfer.run();
+                    if (mode != 1) {
+                        alterSRID(targetConnection, ouputTableName, transfer.getSRIDs(), targetDBType);
+                    }
+                    copyProgress.endOfProgress();
+                } finally {
+                    progress.removePropertyChangeListener(listener);
+                }
+            }
+        } catch (SQLException e) {
+            throw new SQLException("Cannot save the table " + sourceTable + " to the " + targetTable + "\n", e);
+        } finally {
+            targetConnection.setAutoCommit(targetAutoCommit);
+            if (sourceConnection.getAutoCommit() != sourceAutoCommit) {
+                sourceConnection.setAutoCommit(sourceAutoCommit);
+            }
+        }
+        return ouputTableName;
+    }
+
+    /**
+     * Check the parameters of an export to another database
+     */
+    private static void checkExportParameters(String sourceTable, String targetTable, int mode, int batch_size) throws SQLException {
+        if (-2 > mode && mode > 2) {
+            throw new SQLException("Supported mode to export the table is : \n"
+                    + "-1 delete the target table if exists and create a new table, \n"
+                    + "0 create a new table\n"
+                    + "1 update the target table if exists");
+        }
+
+        if (batch_size <= 0) {
+            throw new SQLException("The batch size must be greater than 0.\n");
+        }
+
+        if (sourceTable == null || sourceTable.isEmpty()) {
+            throw new SQLException("The source table cannot be null or empty.\n");
+        }
+
+        if (targetTable == null || targetTable.isEmpty()) {
+            throw new SQLException("The target table cannot be null or empty.\n");
+        }
+    }
+
+    /**
+     * @param sourceConnection source database connection
+     * @param sourceTable      the name of the table to export or a select query
+     * @param sourceDBType     type of the source database
+     * @return The query selecting the rows to export
+     * @throws SQLException
+     */
+    private static String getSelectQuery(Connection sourceConnection, String sourceTable, DBTypes sourceDBType) throws SQLException {
+        //Check if the source table is a query
+        String regex = ".*(?i)\\b(select|from)\\b.*";
+        Pattern pattern = Pattern.compile(regex);
+        Matcher matcher = pattern.matcher(sourceTable);
+        if (matcher.find()) {
+            if (sourceTable.startsWith("(") && sourceTable.endsWith(")")) {
+                return sourceTable;
+            } else {
+                throw new SQLException("The select query must be enclosed in parenthesis: '(SELECT * FROM MYTATBLE)'.");
+            }
+        } else {
+            TableLocation sourceTableLocation = TableLocation.parse(sourceTable, sourceDBType);
+            if (!JDBCUtilities.tableExists(sourceConnection, sourceTableLocation)) {
+                throw new SQLException("The source table doesn't exist.\n");
+            }
+            return "SELECT * FROM " + sourceTableLocation.toString(sourceDBType);
+        }
+    }
+
+    /**
+     * Create or check the target table according to the export mode, the auto commit mode of the target connection
+     * must be disabled.
+     *
+     * @param targetConnection    target database connection
+     * @param inputMetadata       metadata of the exported rows
+     * @param targetTableLocation target table
+     * @param ouputTableName      target table name formatted according the database target
+     * @param mode                -1 delete the target table if exists and create a new table,
+     *                            0 create a new table, 1 update the target table if exists
+     * @throws SQLException
+     */
+    private static void createTargetTable(Connection targetConnection, ResultSetMetaData inputMetadata,
+                                          TableLocation targetTableLocation, String ouputTableName, int mode) throws SQLException {
+        if (mode == -1) {
+            try ( //Drop table if exists
+                  Statement stmt = targetConnection.createStatement()) {
+                stmt.execute("DROP TABLE IF EXISTS " + ouputTableName);
+                targetConnection.commit();
+            } catch (SQLException e) {
+                try {
+                    targetConnection.rollback();
+                } catch (SQLException e1) {
+                    throw new SQLException("Unable to rollback.", e1);
+                }
+                throw new SQLException("Cannot drop the table", e);
+            }
+            //Re-create the table
+            String ddlCommand = JDBCUtilities.createTableDDL(inputMetadata, ouputTableName);
+            if (!ddlCommand.isEmpty()) {
+                try (Statement outputST = targetConnection.createStatement()) {
+                    outputST.execute(ddlCommand);
+                    targetConnection.commit();
+                } catch (SQLException e) {
+                    try {
+                        targetConnection.rollback();
+                    } catch (SQLException e1) {
+                        throw new SQLException("Unable to rollback.", e1);
+                    }
+                    throw new SQLException("Cannot create the output table", e);
+                }
+            }
+        } else if (mode == 0) {
+            //Check if target table exists
+            if (JDBCUtilities.tableExists(targetConnection, targetTableLocation)) {
+                throw new SQLException("The target table already exists.\n" + ""
+                        + "Please use a -1 (delete) or 2 (insert) mode to export the table");
+            }
+            String ddlCommand = JDBCUtilities.createTableDDL(inputMetadata, ouputTableName);
+            if (!ddlCommand.isEmpty()) {
+                try (Statement outputST = targetConnection.createStatement()) {
+                    outputST.execute(ddlCommand);
+                    targetConnection.commit();
+                } catch (SQLException e) {
+                    try {
+                        targetConnection.rollback();
+                    } catch (SQLException e1) {
+                        LOGGER.error("Unable to rollback.", e1);
+                    }
+                    throw new SQLException("Cannot create the output table", e);
+                }
+            }
+        } else if (mode == 1) {
+            //Check if target table exists
+            if (!JDBCUtilities.tableExists(targetConnection, targetTableLocation)) {
+                throw new SQLException("The target table doesn't exist.\n" + ""
+                        + "Please use a 0 mode to create a new table and populate it");
+            }
+        }
+    }
+
+    /**
+     * @param ouputTableName target table name formatted according the database target
+     * @param columnsCount   number of columns
+     * @return The insert query with one parameter by column
+     */
+    private static String getInsertQuery(String ouputTableName, int columnsCount) {
+        StringBuilder insertTable = new StringBuilder("INSERT INTO ");
+        insertTable.append(ouputTableName).append(" VALUES(?");
+        for (int i = 1; i < columnsCount; i++) {
+            insertTable.append(",").append("?");
+        }
+        insertTable.append(")");
+        return insertTable.toString();
+    }
+
+    /**
+     * Set the SRID of the geometry columns of the target table, the auto commit mode of the target connection
+     * must be disabled.
+     *
+     * @param targetConnection  target database connection
+     * @param ouputTableName    target table name formatted according the database target
+     * @param geomColumnAndSRID SRID of the geometry columns
+     * @param targetDBType      type of the target database
+     * @throws SQLException
+     */
+    private static void alterSRID(Connection targetConnection, String ouputTableName,
+                                  Map<String, Integer> geomColumnAndSRID, DBTypes targetDBType) throws SQLException {
+        if (!geomColumnAndSRID.isEmpty()) {
+            StringBuilder querySRID = new StringBuilder();
+            for (Map.Entry<String, Integer> entry : geomColumnAndSRID.entrySet()) {
+                String fieldName = TableLocation.capsIdentifier(entry.getKey(), targetDBType);
+                Integer srid = entry.getValue();
+                querySRID.append("ALTER TABLE ").append(ouputTableName).append(" ALTER COLUMN ").append(fieldName);
+                querySRID.append(" TYPE GEOMETRY(GEOMETRY, ").append(srid).append(") USING ST_SetSRID(").append(fieldName).append(",").append(srid).append(");\n");
+            }
+
+            try (Statement outputST = targetConnection.createStatement()) {
+                outputST.execute(querySRID.toString());
+                targetConnection.commit();
+            } catch (SQLException e) {
+                try {
+                    targetConnection.rollback();
+                } catch (SQLException e1) {
+                    LOGGER.error("Unable to rollback.", e1);
+                }
+                throw new SQLException("Cannot alter the table with the SRID", e);
+            }
+        }
+    }
+
     /**
      * @return Current list of supported drivers
      */
@@ -0,0 +1,126 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <a href="http://www.h2database.com">http://www.h2database.com</a>. H2GIS is developed by CNRS
+ * <a href="http://www.cnrs.fr/">http://www.cnrs.fr/</a>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software;
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <a href="http://www.h2gis.org/">http://www.h2gis.org/</a>
+ * or contact directly: info_at_h2gis.org
+ */
+
+package org.h2gis.functions.io.utility;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A {@link ReadBufferManager} backed by read-only memory mapped segments of the file.
+ * Random access does not copy the file content into the heap: moving the window only selects another mapped segment.
+ * A MappedByteBuffer cannot address more than 2 GB, so the file is split into segments that are mapped lazily.
+ * Consecutive segments overlap so that any value smaller than the overlap can be read from a single segment.
+ *
+ * The mapping is released by the garbage collector, not by closing the channel.
+ */
+public class MappedReadBufferManager extends ReadBufferManager {
+        /** Default size of a mapped segment */
+        public static final long SEGMENT_SIZE = 1L << 30;
+        /** Default number of bytes shared by two consecutive segments */
+        public static final int SEGMENT_OVERLAP = 1 << 20;
+
+        private final long segmentSize;
+        private final int segmentOverlap;
+        private final long size;
+        private final MappedByteBuffer[] segments;
+        private ByteOrder order = ByteOrder.BIG_ENDIAN;
+
+        /**
+         * Instantiates a MappedReadBufferManager to read the specified channel
+         *
+         * @param channel
+         * @throws java.io.IOException
+         */
+        public MappedReadBufferManager(FileChannel channel) throws IOException {
+                this(channel, SEGMENT_SIZE, SEGMENT_OVERLAP);
+        }
+
+        /**
+         * Instantiates a MappedReadBufferManager to read the specified channel
+         *
+         * @param channel
+         * @param segmentSize Size of a mapped segment, segmentSize + segmentOverlap must be lower than 2 GB
+         * @param segmentOverlap Number of bytes shared by two consecutive segments
+         * @throws java.io.IOException
+         */
+        public MappedReadBufferManager(FileChannel channel, long segmentSize, int segmentOverlap) throws IOException {
+                super(channel, ByteBuffer.allocate(0));
+                if (segmentSize <= 0 || segmentOverlap < 0 || segmentSize + segmentOverlap > Integer.MAX_VALUE) {
+                        throw new IllegalArgumentException("Invalid segment size " + segmentSize + " and overlap " + segmentOverlap);
+                }
+                this.segmentSize = segmentSize;
+                this.segmentOverlap = segmentOverlap;
+                this.size = channel.size();
+                this.segments = new MappedByteBuffer[(int) Math.max(1, (size + segmentSize - 1) / segmentSize)];
+        }
+
+        @Override
+        protected int getWindowOffset(long bytePos, int length) throws IOException {
+                if (bytePos >= windowStart && bytePos + length <= windowStart + buffer.limit()) {
+                        return (int) (bytePos - windowStart);
+                }
+                if (bytePos < 0 || bytePos + length > size) {
+                        throw new EOFException("Cannot read " + length + " bytes at position " + bytePos
+                                + ", the file size is " + size);
+                }
+                if (length > segmentOverlap) {
+                        // Too large to be guaranteed in a single segment, copy it
+                        ByteBuffer copy = ByteBuffer.allocate(length);
+                        copy.order(order);
+                        while (copy.hasRemaining()) {
+                                if (channel.read(copy, bytePos + copy.position()) < 0) {
+                                        throw new EOFException("Premature end of file at position " + bytePos);
+                                }
+                        }
+                        copy.flip();
+                        buffer = copy;
+                        windowStart = bytePos;
+                        return 0;
+                }
+                int segmentIndex = (int) (bytePos / segmentSize);
+                long segmentStart = segmentIndex * segmentSize;
+                MappedByteBuffer segment = segments[segmentIndex];
+                if (segment == null) {
+                        long mapSize = Math.min(segmentSize + segmentOverlap, size - segmentStart);
+                        segment = channel.map(FileChannel.MapMode.READ_ONLY, segmentStart, mapSize);
+                        segments[segmentIndex] = segment;
+                }
+                segment.order(order);
+                buffer = segment;
+                windowStart = segmentStart;
+                return (int) (bytePos - windowStart);
+        }
+
+        @Override
+        public void order(ByteOrder order) {
+                this.order = order;
+                super.order(order);
+        }
+
+        @Override
+        public long getLength() {
+                return size;
+        }
+}
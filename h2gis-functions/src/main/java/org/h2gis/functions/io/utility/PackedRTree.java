@@ -0,0 +1,422 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <a href="http://www.h2database.com">http://www.h2database.com</a>. H2GIS is developed by CNRS
+ * <a href="http://www.cnrs.fr/">http://www.cnrs.fr/</a>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software;
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <a href="http://www.h2gis.org/">http://www.h2gis.org/</a>
+ * or contact directly: info_at_h2gis.org
+ */
+
+package org.h2gis.functions.io.utility;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Static R-tree packed along a Hilbert curve and stored in a file.
+ * The file is read through a {@link MappedReadBufferManager} so opening an index does not load it in the heap.
+ *
+ * Layout (little endian): header, then the bounding box (minX, minY, maxX, maxY) of every node, then the identifier
+ * of every node. Leaves come first and hold the item identifier, an upper node holds the position of its first child.
+ *
+ * @see <a href="https://github.com/mourner/flatbush">Flatbush</a> for the packing algorithm
+ */
+public class PackedRTree {
+    /** Default maximum number of children of a node */
+    public static final int DEFAULT_NODE_SIZE = 16;
+    private static final int MAGIC = 0x48325254;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 40;
+    private static final int HILBERT_MAX = (1 << 16) - 1;
+
+    private final FileChannel channel;
+    private final ReadBufferManager buffer;
+    private final int nodeSize;
+    private final int numItems;
+    private final int numNodes;
+    private final int[] levelBounds;
+    private final long sourceLength;
+    private final long sourceLastModified;
+
+    private PackedRTree(FileChannel channel) throws IOException {
+        this.channel = channel;
+        this.buffer = new MappedReadBufferManager(channel);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.getLength() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a packed R-tree file");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported packed R-tree version " + buffer.getInt(4));
+        }
+        nodeSize = buffer.getInt(8);
+        numItems = buffer.getInt(12);
+        numNodes = buffer.getInt(16);
+        sourceLength = buffer.getLong(24);
+        sourceLastModified = buffer.getLong(32);
+        levelBounds = computeLevelBounds(numItems, nodeSize);
+        if (nodeSize < 2 || numNodes != levelBounds[levelBounds.length - 1]
+                || buffer.getLength() != HEADER_SIZE + 36L * numNodes) {
+            throw new IOException("Corrupted packed R-tree file");
+        }
+    }
+
+    /**
+     * Open an index file
+     * @param file Index file written by a {@link Builder}
+     * @return The index
+     * @throws IOException The file is not readable or is not a packed R-tree
+     */
+    public static PackedRTree open(File file) throws IOException {
+        FileInputStream fis = new FileInputStream(file);
+        try {
+            return new PackedRTree(fis.getChannel());
+        } catch (IOException ex) {
+            fis.close();
+            throw ex;
+        }
+    }
+
+    /**
+     * Release the file
+     * @throws IOException
+     */
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * @return Number of indexed items
+     */
+    public int getNumItems() {
+        return numItems;
+    }
+
+    /**
+     * @return Size in bytes of the indexed file when the index has been built
+     */
+    public long getSourceLength() {
+        return sourceLength;
+    }
+
+    /**
+     * @return Last modification time of the indexed file when the index has been built
+     */
+    public long getSourceLastModified() {
+        return sourceLastModified;
+    }
+
+    /**
+     * Find the items whose bounding box intersects the provided one
+     * @return Item identifiers, in ascending order
+     * @throws IOException
+     */
+    public synchronized int[] query(double minX, double minY, double maxX, double maxY) throws IOException {
+        int[] result = new int[16];
+        int count = 0;
+        if (numItems == 0) {
+            return new int[0];
+        }
+        final long idsPosition = HEADER_SIZE + 32L * numNodes;
+        int[] stack = new int[16];
+        int stackSize = 0;
+        int nodeIndex = numNodes - 1;
+        while (true) {
+            int end = Math.min(nodeIndex + nodeSize, upperBound(nodeIndex));
+            for (int pos = nodeIndex; pos < end; pos++) {
+                long boxPosition = HEADER_SIZE + 32L * pos;
+                if (maxX < buffer.getDouble(boxPosition) || maxY < buffer.getDouble(boxPosition + 8)
+                        || minX > buffer.getDouble(boxPosition + 16) || minY > buffer.getDouble(boxPosition + 24)) {
+                    continue;
+                }
+                int id = buffer.getInt(idsPosition + 4L * pos);
+                if (nodeIndex >= numItems) {
+                    if (stackSize == stack.length) {
+                        stack = Arrays.copyOf(stack, stackSize * 2);
+                    }
+                    stack[stackSize++] = id;
+                } else {
+                    if (count == result.length) {
+                        result = Arrays.copyOf(result, count * 2);
+                    }
+                    result[count++] = id;
+                }
+            }
+            if (stackSize == 0) {
+                break;
+            }
+            nodeIndex = stack[--stackSize];
+        }
+        Arrays.sort(result, 0, count);
+        return Arrays.copyOf(result, count);
+    }
+
+    private int upperBound(int nodeIndex) {
+        for (int levelBound : levelBounds) {
+            if (levelBound > nodeIndex) {
+                return levelBound;
+            }
+        }
+        return numNodes;
+    }
+
+    /**
+     * @return The cumulated number of nodes at the end of each level, starting from the leaves
+     */
+    private static int[] computeLevelBounds(int numItems, int nodeSize) {
+        int n = numItems;
+        int numNodes = n;
+        int[] bounds = new int[]{n};
+        if (n == 0) {
+            return bounds;
+        }
+        do {
+            n = (n + nodeSize - 1) / nodeSize;
+            numNodes += n;
+            bounds = Arrays.copyOf(bounds, bounds.length + 1);
+            bounds[bounds.length - 1] = numNodes;
+        } while (n != 1);
+        return bounds;
+    }
+
+    /**
+     * Collect the items bounding boxes then write the packed tree
+     */
+    public static class Builder {
+        private final int nodeSize;
+        private double[] boxes;
+        private int[] ids;
+        private int numItems = 0;
+        private double minX = Double.POSITIVE_INFINITY;
+        private double minY = Double.POSITIVE_INFINITY;
+        private double maxX = Double.NEGATIVE_INFINITY;
+        private double maxY = Double.NEGATIVE_INFINITY;
+
+        /**
+         * @param expectedItems Expected number of items, used to size the buffers
+         */
+        public Builder(int expectedItems) {
+            this(expectedItems, DEFAULT_NODE_SIZE);
+        }
+
+        /**
+         * @param expectedItems Expected number of items, used to size the buffers
+         * @param nodeSize Maximum number of children of a node
+         */
+        public Builder(int expectedItems, int nodeSize) {
+            if (nodeSize < 2) {
+                throw new IllegalArgumentException("Node size must be greater than 1");
+            }
+            this.nodeSize = nodeSize;
+            int[] bounds = computeLevelBounds(Math.max(1, expectedItems), nodeSize);
+            int capacity = bounds[bounds.length - 1];
+            boxes = new double[capacity * 4];
+            ids = new int[capacity];
+        }
+
+        /**
+         * Add an item
+         * @param id Item identifier, returned by {@link PackedRTree#query(double, double, double, double)}
+         */
+        public void add(int id, double itemMinX, double itemMinY, double itemMaxX, double itemMaxY) {
+            if (numItems == ids.length) {
+                // Keep room for the upper nodes
+                int[] bounds = computeLevelBounds(numItems * 2, nodeSize);
+                int capacity = bounds[bounds.length - 1];
+                boxes = Arrays.copyOf(boxes, capacity * 4);
+                ids = Arrays.copyOf(ids, capacity);
+            }
+            int pos = numItems * 4;
+            boxes[pos] = itemMinX;
+            boxes[pos + 1] = itemMinY;
+            boxes[pos + 2] = itemMaxX;
+            boxes[pos + 3] = itemMaxY;
+            ids[numItems++] = id;
+            minX = Math.min(minX, itemMinX);
+            minY = Math.min(minY, itemMinY);
+            maxX = Math.max(maxX, itemMaxX);
+            maxY = Math.max(maxY, itemMaxY);
+        }
+
+        /**
+         * Sort the items, build the upper nodes and write the tree into the provided file
+         * @param file Destination file, overwritten
+         * @param sourceLength Size in bytes of the indexed file
+         * @param sourceLastModified Last modification time of the indexed file
+         * @throws IOException
+         */
+        public void write(File file, long sourceLength, long sourceLastModified) throws IOException {
+            int[] bounds = computeLevelBounds(numItems, nodeSize);
+            int numNodes = bounds[bounds.length - 1];
+            if (ids.length < numNodes) {
+                boxes = Arrays.copyOf(boxes, numNodes * 4);
+                ids = Arrays.copyOf(ids, numNodes);
+            }
+            if (numItems > nodeSize) {
+                double width = maxX - minX;
+                double height = maxY - minY;
+                int[] hilbertValues = new int[numItems];
+                for (int i = 0; i < numItems; i++) {
+                    int pos = i * 4;
+                    int x = width > 0 ? (int) Math.floor(HILBERT_MAX * ((boxes[pos] + boxes[pos + 2]) / 2 - minX) / width) : 0;
+                    int y = height > 0 ? (int) Math.floor(HILBERT_MAX * ((boxes[pos + 1] + boxes[pos + 3]) / 2 - minY) / height) : 0;
+                    hilbertValues[i] = hilbert(x, y) >>> 1;
+                }
+                sort(hilbertValues, 0, numItems - 1);
+            }
+            // Build the upper levels
+            int pos = 0;
+            int nodeIndex = numItems;
+            for (int level = 0; level < bounds.length - 1; level++) {
+                int end = bounds[level];
+                while (pos < end) {
+                    int firstChild = pos;
+                    double nodeMinX = Double.POSITIVE_INFINITY;
+                    double nodeMinY = Double.POSITIVE_INFINITY;
+                    double nodeMaxX = Double.NEGATIVE_INFINITY;
+                    double nodeMaxY = Double.NEGATIVE_INFINITY;
+                    for (int i = 0; i < nodeSize && pos < end; i++, pos++) {
+                        nodeMinX = Math.min(nodeMinX, boxes[pos * 4]);
+                        nodeMinY = Math.min(nodeMinY, boxes[pos * 4 + 1]);
+                        nodeMaxX = Math.max(nodeMaxX, boxes[pos * 4 + 2]);
+                        nodeMaxY = Math.max(nodeMaxY, boxes[pos * 4 + 3]);
+                    }
+                    boxes[nodeIndex * 4] = nodeMinX;
+                    boxes[nodeIndex * 4 + 1] = nodeMinY;
+                    boxes[nodeIndex * 4 + 2] = nodeMaxX;
+                    boxes[nodeIndex * 4 + 3] = nodeMaxY;
+                    ids[nodeIndex++] = firstChild;
+                }
+            }
+            try (FileOutputStream fos = new FileOutputStream(file)) {
+                WriteBufferManager out = new WriteBufferManager(fos.getChannel());
+                out.order(ByteOrder.LITTLE_ENDIAN);
+                out.putInt(MAGIC);
+                out.putInt(VERSION);
+                out.putInt(nodeSize);
+                out.putInt(numItems);
+                out.putInt(numNodes);
+                out.putInt(0);
+                out.putLong(sourceLength);
+                out.putLong(sourceLastModified);
+                for (int i = 0; i < numNodes * 4; i++) {
+                    out.putDouble(boxes[i]);
+                }
+                for (int i = 0; i < numNodes; i++) {
+                    out.putInt(ids[i]);
+                }
+                out.flush();
+            }
+        }
+
+        /**
+         * Quick sort of the items along the Hilbert curve. Items that fall into the same leaf node are not sorted.
+         */
+        private void sort(int[] values, int left, int right) {
+            while (left / nodeSize < right / nodeSize) {
+                int pivot = values[(left + right) >>> 1];
+                int i = left - 1;
+                int j = right + 1;
+                while (true) {
+                    do {
+                        i++;
+                    } while (values[i] < pivot);
+                    do {
+                        j--;
+                    } while (values[j] > pivot);
+                    if (i >= j) {
+                        break;
+                    }
+                    swap(values, i, j);
+                }
+                // Recurse on the smallest part in order to bound the stack depth
+                if (j - left < right - j) {
+                    sort(values, left, j);
+                    left = j + 1;
+                } else {
+                    sort(values, j + 1, right);
+                    right = j;
+                }
+            }
+        }
+
+        private void swap(int[] values, int i, int j) {
+            int value = values[i];
+            values[i] = values[j];
+            values[j] = value;
+            int id = ids[i];
+            ids[i] = ids[j];
+            ids[j] = id;
+            for (int k = 0; k < 4; k++) {
+                double coordinate = boxes[i * 4 + k];
+                boxes[i * 4 + k] = boxes[j * 4 + k];
+                boxes[j * 4 + k] = coordinate;
+            }
+        }
+    }
+
+    /**
+     * Position of the cell on the Hilbert curve of order 16
+     * @see <a href="https://github.com/rawrunprotected/hilbert_curves">hilbert_curves</a>
+     */
+    static int hilbert(int x, int y) {
+        int a = x ^ y;
+        int b = 0xFFFF ^ a;
+        int c = 0xFFFF ^ (x | y);
+        int d = x & (y ^ 0xFFFF);
+
+        int A = a | (b >> 1);
+        int B = (a >> 1) ^ a;
+        int C = ((c >> 1) ^ (b & (d >> 1))) ^ c;
+        int D = ((a & (c >> 1)) ^ (d >> 1)) ^ d;
+
+        a = A; b = B; c = C; d = D;
+        A = ((a & (a >> 2)) ^ (b & (b >> 2)));
+        B = ((a & (b >> 2)) ^ (b & ((a ^ b) >> 2)));
+        C ^= ((a & (c >> 2)) ^ (b & (d >> 2)));
+        D ^= ((b & (c >> 2)) ^ ((a ^ b) & (d >> 2)));
+
+        a = A; b = B; c = C; d = D;
+        A = ((a & (a >> 4)) ^ (b & (b >> 4)));
+        B = ((a & (b >> 4)) ^ (b & ((a ^ b) >> 4)));
+        C ^= ((a & (c >> 4)) ^ (b & (d >> 4)));
+        D ^= ((b & (c >> 4)) ^ ((a ^ b) & (d >> 4)));
+
+        a = A; b = B; c = C; d = D;
+        C ^= ((a & (c >> 8)) ^ (b & (d >> 8)));
+        D ^= ((b & (c >> 8)) ^ ((a ^ b) & (d >> 8)));
+
+        a = C ^ (C >> 1);
+        b = D ^ (D >> 1);
+
+        int i0 = x ^ y;
+        int i1 = b | (0xFFFF ^ (i0 | a));
+
+        i0 = (i0 | (i0 << 8)) & 0x00FF00FF;
+        i0 = (i0 | (i0 << 4)) & 0x0F0F0F0F;
+        i0 = (i0 | (i0 << 2)) & 0x33333333;
+        i0 = (i0 | (i0 << 1)) & 0x55555555;
+
+        i1 = (i1 | (i1 << 8)) & 0x00FF00FF;
+        i1 = (i1 | (i1 << 4)) & 0x0F0F0F0F;
+        i1 = (i1 | (i1 << 2)) & 0x33333333;
+        i1 = (i1 | (i1 << 1)) & 0x55555555;
+
+        return (i1 << 1) | i0;
+    }
+}
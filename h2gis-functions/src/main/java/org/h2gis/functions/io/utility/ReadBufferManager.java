@@ -25,12 +25,18 @@ import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.channels.FileChannel;
 
-public final class ReadBufferManager {
+/**
+ * Random access reader over a {@link FileChannel}. A window of the file is cached in a heap buffer and moved each
+ * time a requested value falls outside of it.
+ *
+ * @see MappedReadBufferManager for a memory-mapped alternative
+ */
+public class ReadBufferManager {
 
         private int bufferSize;
-        private ByteBuffer buffer;
-        private FileChannel channel;
-        private long windowStart;
+        protected ByteBuffer buffer;
+        protected FileChannel channel;
+        protected long windowStart;
         private long positionInFile;
 
         /**
@@ -60,14 +66,28 @@ public final class ReadBufferManager {
                 getWindowOffset(0, bufferSize);
         }
 
+        /**
+         * Instantiates a ReadBufferManager using the provided initial window. Nothing is read from the channel.
+         *
+         * @param channel
+         * @param buffer initial window, starting at the beginning of the file
+         */
+        protected ReadBufferManager(FileChannel channel, ByteBuffer buffer) {
+                this.channel = channel;
+                this.buffer = buffer;
+                this.windowStart = 0;
+                this.bufferSize = buffer.capacity();
+        }
+
         /**
          * Moves the window if necessary to contain the desired byte and returns the
          * position of the byte in the window
          *
          * @param bytePos
+         * @param length Number of bytes that must be available in the window
          * @throws java.io.IOException
          */
-        private int getWindowOffset(long bytePos, int length) throws IOException {
+        protected int getWindowOffset(long bytePos, int length) throws IOException {
                 long desiredMax = bytePos + length - 1;
                 if ((bytePos >= windowStart)
                         && (desiredMax < windowStart + buffer.capacity())) {
@@ -231,6 +251,21 @@ public final class ReadBufferManager {
                 return this.buffer.get(buffer);
         }
 
+        /**
+         * Copies length bytes at the specified position into the provided array
+         *
+         * @param pos
+         * @param dest
+         * @param offset first index written in dest
+         * @param length number of bytes to copy
+         * @throws java.io.IOException
+         */
+        public void get(long pos, byte[] dest, int offset, int length) throws IOException {
+                int windowOffset = getWindowOffset(pos, length);
+                this.buffer.position(windowOffset);
+                this.buffer.get(dest, offset, length);
+        }
+
         /**
          * Moves the current position to the specified one
          *
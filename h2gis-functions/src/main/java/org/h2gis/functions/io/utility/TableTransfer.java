@@ -0,0 +1,251 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <a href="http://www.h2database.com">http://www.h2database.com</a>. H2GIS is developed by CNRS
+ * <a href="http://www.cnrs.fr/">http://www.cnrs.fr/</a>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software;
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <a href="http://www.h2gis.org/">http://www.h2gis.org/</a>
+ * or contact directly: info_at_h2gis.org
+ */
+
+package org.h2gis.functions.io.utility;
+
+import org.h2gis.api.ProgressVisitor;
+import org.locationtech.jts.geom.Geometry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Copy the rows of a {@link ResultSet} into a table of another database. The calling thread fetches the rows and
+ * hands them by batches, through a bounded queue, to one writer thread per target connection. Each writer inserts
+ * and commits its own batches, so the reading of the source and the insertions overlap.
+ *
+ * The SRID of the geometry columns is collected while reading the rows.
+ */
+class TableTransfer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TableTransfer.class);
+    /** Batches waiting in the queue for each writer */
+    private static final int QUEUED_BATCHES_BY_WRITER = 2;
+    /** Tells a writer that there are no more batches */
+    private static final Object[][] END = new Object[0][];
+
+    private final ResultSet source;
+    private final Connection[] targetConnections;
+    private final String insertQuery;
+    private final int batchSize;
+    private final ProgressVisitor progress;
+    private final BlockingQueue<Object[][]> queue;
+    private final AtomicReference<Exception> failure = new AtomicReference<>();
+    private final int columnCount;
+    /** Index of the geometry columns, from 0 */
+    private final List<Integer> geometryColumns = new ArrayList<>();
+    private final List<String> geometryColumnNames = new ArrayList<>();
+    /** SRID of each geometry column, null if the rows have several SRID */
+    private final Integer[] srids;
+    private final boolean[] sridFound;
+
+    /**
+     * @param source            Rows to copy
+     * @param targetConnections Connections used to insert the rows, one writer thread by connection
+     * @param insertQuery       Insert query with one parameter by column of the source
+     * @param batchSize         Number of rows inserted at once
+     * @param progress          Progress visitor, one step by inserted batch
+     * @throws SQLException
+     */
+    TableTransfer(ResultSet source, Connection[] targetConnections, String insertQuery, int batchSize,
+                  ProgressVisitor progress) throws SQLException {
+        this.source = source;
+        this.targetConnections = targetConnections;
+        this.insertQuery = insertQuery;
+        this.batchSize = batchSize;
+        this.progress = progress;
+        this.queue = new ArrayBlockingQueue<>(QUEUED_BATCHES_BY_WRITER * targetConnections.length);
+        ResultSetMetaData metaData = source.getMetaData();
+        columnCount = metaData.getColumnCount();
+        for (int i = 1; i <= columnCount; i++) {
+            if (metaData.getColumnTypeName(i).toLowerCase().startsWith("geometry")) {
+                geometryColumns.add(i - 1);
+                geometryColumnNames.add(metaData.getColumnName(i));
+            }
+        }
+        srids = new Integer[geometryColumns.size()];
+        sridFound = new boolean[geometryColumns.size()];
+    }
+
+    /**
+     * Copy all the rows.
+     *
+     * @return The number of inserted rows
+     * @throws SQLException
+     */
+    long run() throws SQLException {
+        ExecutorService executor = Executors.newFixedThreadPool(targetConnections.length);
+        try {
+            List<Future<Long>> writers = new ArrayList<>(targetConnections.length);
+            for (Connection connection : targetConnections) {
+                writers.add(executor.submit(() -> write(connection)));
+            }
+            read();
+            for (int i = 0; i < writers.size(); i++) {
+                put(END);
+            }
+            long rowCount = 0;
+            for (Future<Long> writer : writers) {
+                rowCount += getResult(writer);
+            }
+            return rowCount;
+        } finally {
+            // Stop the writers waiting for batches after a failure
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * @return The SRID of the geometry columns whose non null values share the same SRID
+     */
+    Map<String, Integer> getSRIDs() {
+        Map<String, Integer> geomColumnAndSRID = new LinkedHashMap<>();
+        for (int i = 0; i < srids.length; i++) {
+            if (sridFound[i] && srids[i] != null) {
+                geomColumnAndSRID.put(geometryColumnNames.get(i), srids[i]);
+            }
+        }
+        return geomColumnAndSRID;
+    }
+
+    /**
+     * Fetch the rows of the source and queue them by batches.
+     */
+    private void read() throws SQLException {
+        Object[][] batch = new Object[batchSize][];
+        int size = 0;
+        while (source.next()) {
+            if (progress.isCanceled()) {
+                throw new SQLException("Canceled by user");
+            }
+            Object[] row = new Object[columnCount];
+            for (int i = 0; i < columnCount; i++) {
+                row[i] = source.getObject(i + 1);
+            }
+            updateSRIDs(row);
+            batch[size++] = row;
+            if (size == batchSize) {
+                put(batch);
+                batch = new Object[batchSize][];
+                size = 0;
+            }
+        }
+        if (size > 0) {
+            put(Arrays.copyOf(batch, size));
+        }
+    }
+
+    private void updateSRIDs(Object[] row) {
+        for (int i = 0; i < srids.length; i++) {
+            Object value = row[geometryColumns.get(i)];
+            if (value instanceof Geometry) {
+                int srid = ((Geometry) value).getSRID();
+                if (!sridFound[i]) {
+                    sridFound[i] = true;
+                    srids[i] = srid;
+                } else if (srids[i] != null && srids[i] != srid) {
+                    srids[i] = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Wait for a place in the queue, stop if a writer has failed.
+     */
+    private void put(Object[][] batch) throws SQLException {
+        try {
+            while (!queue.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+                checkFailure();
+            }
+            checkFailure();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("The transfer has been interrupted", ex);
+        }
+    }
+
+    private void checkFailure() throws SQLException {
+        Exception ex = failure.get();
+        if (ex != null) {
+            throw new SQLException("Cannot insert the data in the table", ex);
+        }
+    }
+
+    /**
+     * Insert the queued batches with the given connection until the end of the source.
+     *
+     * @return The number of inserted rows
+     */
+    private long write(Connection connection) throws SQLException, InterruptedException {
+        long rowCount = 0;
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try (PreparedStatement preparedStatement = connection.prepareStatement(insertQuery)) {
+            Object[][] batch = queue.take();
+            while (batch != END) {
+                for (Object[] row : batch) {
+                    for (int i = 0; i < columnCount; i++) {
+                        preparedStatement.setObject(i + 1, row[i]);
+                    }
+                    preparedStatement.addBatch();
+                }
+                preparedStatement.executeBatch();
+                connection.commit();
+                rowCount += batch.length;
+                synchronized (progress) {
+                    progress.endStep();
+                }
+                batch = queue.take();
+            }
+        } catch (SQLException | RuntimeException | InterruptedException ex) {
+            failure.compareAndSet(null, ex);
+            try {
+                connection.rollback();
+            } catch (SQLException e1) {
+                LOGGER.error("Unable to rollback.", e1);
+            }
+            throw ex;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+        return rowCount;
+    }
+
+    private static long getResult(Future<Long> writer) throws SQLException {
+        try {
+            return writer.get();
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof SQLException) {
+                throw new SQLException("Cannot insert the data in the table", ex.getCause());
+            } else if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw new SQLException(ex.getCause());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("The transfer has been interrupted", ex);
+        }
+    }
+}
@@ -125,6 +125,17 @@ public final class WriteBufferManager {
 		buffer.putInt(value);
 	}
 
+	/**
+	 * Puts the specified long at the current position
+	 *
+	 * @param value
+	 * @throws java.io.IOException
+	 */
+	public void putLong(long value) throws IOException {
+		prepareToAddBytes(8);
+		buffer.putLong(value);
+	}
+
 	/**
 	 * Puts the specified double at the current position
 	 *
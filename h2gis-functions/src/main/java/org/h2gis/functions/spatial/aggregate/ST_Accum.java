@@ -23,22 +23,43 @@ package org.h2gis.functions.spatial.aggregate;
 import org.h2.api.Aggregate;
 import org.h2.value.Value;
 import org.h2gis.api.AbstractFunction;
+import org.h2gis.utilities.JDBCUtilities;
 import org.locationtech.jts.geom.*;
+import org.locationtech.jts.geom.impl.PackedCoordinateSequence;
 
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
  * Construct an array of Geometries.
  *
+ * While all the geometries are points of the same dimension, their
+ * coordinates are packed into a single array instead of keeping the points.
+ * The number of accumulated coordinates may be limited with the
+ * <code>@ST_ACCUM_MAX_COORDINATES</code> session variable.
+ *
  * @author Nicolas Fortin
  * @author Erwan Bocher, CNRS
  */
 public class ST_Accum extends AbstractFunction implements Aggregate {
-    private List<Geometry> toUnite = new LinkedList<Geometry>();
+    /**
+     * Session variable limiting the number of coordinates of an aggregate, for example
+     * <code>SET @ST_ACCUM_MAX_COORDINATES = 10000000</code>
+     */
+    public static final String MAX_COORDINATES = "ST_ACCUM_MAX_COORDINATES";
+
+    private List<Geometry> toUnite = new ArrayList<Geometry>();
+    // Ordinates of the points, as long as only points have been added
+    private double[] pointOrdinates = new double[0];
+    private int pointCount = 0;
+    private int pointDimension = -1;
+    private int pointMeasures = 0;
+    private boolean pointsOnly = true;
+    private long coordinateCount = 0;
+    private long maxCoordinates = Long.MAX_VALUE;
     private int minDim = Integer.MAX_VALUE;
     private int maxDim = Integer.MIN_VALUE;
     private int srid =-1;
@@ -47,11 +68,14 @@ public class ST_Accum extends AbstractFunction implements Aggregate {
         addProperty(PROP_REMARKS, "This aggregate function returns a GeometryCollection "
                 + "from a column of mixed dimension Geometries.\n"
                 + "If there is only POINTs in the column of Geometries, a MULTIPOINT is returned. \n"
-                + "Same process with LINESTRINGs and POLYGONs.");
+                + "Same process with LINESTRINGs and POLYGONs.\n"
+                + "Execute SET @" + MAX_COORDINATES + " = n to fail when more than n coordinates are accumulated.");
     }
 
     @Override
     public void init(Connection connection) throws SQLException {
+        // No limit if the variable is not set
+        maxCoordinates = JDBCUtilities.getSessionVariable(connection, MAX_COORDINATES, Long.MAX_VALUE);
     }
 
     @Override
@@ -75,24 +99,68 @@ public class ST_Accum extends AbstractFunction implements Aggregate {
      * Add geometry into an array to accumulate
      * @param geom 
      */
-    private void addGeometry(Geometry geom) {
+    private void addGeometry(Geometry geom) throws SQLException {
         if (geom != null) {
             if (geom instanceof GeometryCollection) {
                 int size = geom.getNumGeometries();
-                List<Geometry> toUnitTmp = new ArrayList<Geometry>(size);
                 for (int i = 0; i < size; i++) {
                     Geometry geomsub = geom.getGeometryN(i);
                     if(!geomsub.isEmpty()) {
-                        toUnitTmp.add(geomsub);
-                        feedDim(geomsub);
+                        addPart(geomsub);
                     }
                 }
-                toUnite.addAll(toUnitTmp);
             } else {
-                toUnite.add(geom);
-                feedDim(geom);
+                addPart(geom);
+            }
+        }
+    }
+
+    private void addPart(Geometry geom) throws SQLException {
+        coordinateCount += geom.getNumPoints();
+        if (coordinateCount > maxCoordinates) {
+            throw new SQLException(getClass().getSimpleName() + " cannot accumulate more than " + maxCoordinates
+                    + " coordinates, see @" + MAX_COORDINATES);
+        }
+        feedDim(geom);
+        if (pointsOnly && geom instanceof Point) {
+            CoordinateSequence sequence = ((Point) geom).getCoordinateSequence();
+            if (pointDimension == -1) {
+                pointDimension = sequence.getDimension();
+                pointMeasures = sequence.getMeasures();
+            }
+            if (sequence.getDimension() == pointDimension && sequence.getMeasures() == pointMeasures) {
+                if ((pointCount + 1) * pointDimension > pointOrdinates.length) {
+                    pointOrdinates = Arrays.copyOf(pointOrdinates,
+                            Math.max(pointOrdinates.length * 2, 16 * pointDimension));
+                }
+                for (int i = 0; i < pointDimension; i++) {
+                    pointOrdinates[pointCount * pointDimension + i] = sequence.getOrdinate(0, i);
+                }
+                pointCount++;
+                return;
+            }
+        }
+        if (pointsOnly) {
+            // Keep the packed points as geometries, before the new one
+            pointsOnly = false;
+            if (pointCount > 0) {
+                MultiPoint points = createMultiPoint(createFactory());
+                for (int i = 0; i < points.getNumGeometries(); i++) {
+                    toUnite.add(points.getGeometryN(i));
+                }
             }
+            pointOrdinates = null;
         }
+        toUnite.add(geom);
+    }
+
+    private GeometryFactory createFactory() {
+        return new GeometryFactory(new PrecisionModel(), srid==-1?0:srid);
+    }
+
+    private MultiPoint createMultiPoint(GeometryFactory factory) {
+        return factory.createMultiPoint(new PackedCoordinateSequence.Double(
+                Arrays.copyOf(pointOrdinates, pointCount * pointDimension), pointDimension, pointMeasures));
     }
 
     @Override
@@ -117,7 +185,10 @@ public class ST_Accum extends AbstractFunction implements Aggregate {
 
     @Override
     public GeometryCollection getResult() throws SQLException {
-        GeometryFactory factory = new GeometryFactory(new PrecisionModel(), srid==-1?0:srid);        
+        GeometryFactory factory = createFactory();
+        if (pointsOnly && pointCount > 0) {
+            return createMultiPoint(factory);
+        }
         if(maxDim != minDim) {
             return factory.createGeometryCollection(toUnite.toArray(new Geometry[0]));
         } else {
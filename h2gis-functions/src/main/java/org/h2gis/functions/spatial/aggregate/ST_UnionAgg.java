@@ -0,0 +1,199 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <a href="http://www.h2database.com">http://www.h2database.com</a>. H2GIS is developed by CNRS
+ * <a href="http://www.cnrs.fr/">http://www.cnrs.fr/</a>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; 
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <a href="http://www.h2gis.org/">http://www.h2gis.org/</a>
+ * or contact directly: info_at_h2gis.org
+ */
+
+package org.h2gis.functions.spatial.aggregate;
+
+import org.h2.api.Aggregate;
+import org.h2.value.Value;
+import org.h2gis.api.AbstractFunction;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryCollection;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.index.strtree.STRtree;
+import org.locationtech.jts.operation.overlayng.OverlayNGRobust;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Aggregate computing the union of a column of geometries, replacing
+ * ST_Union(ST_Accum(the_geom)).
+ *
+ * The geometries are packed into an STR tree, so each node groups geometries
+ * that are close to each other. The nodes are unioned in parallel on the
+ * fork-join pool, from the leaves to the root, and the unions of the children
+ * of a node are merged two by two.
+ */
+public class ST_UnionAgg extends AbstractFunction implements Aggregate {
+
+    /** Number of children of the nodes of the STR tree */
+    private static final int NODE_CAPACITY = 16;
+
+    private List<Geometry> toUnite = new ArrayList<Geometry>();
+    private GeometryFactory factory;
+    private int srid = -1;
+
+    public ST_UnionAgg() {
+        addProperty(PROP_REMARKS, "This aggregate function returns the union of a column of Geometries.\n"
+                + "It is equivalent to ST_Union(ST_Accum(the_geom)), the close geometries are unioned first, "
+                + "on several threads.");
+    }
+
+    @Override
+    public void init(Connection connection) throws SQLException {
+    }
+
+    @Override
+    public int getInternalType(int[] inputTypes) throws SQLException {
+        if (inputTypes.length != 1) {
+            throw new SQLException(ST_UnionAgg.class.getSimpleName() + " expects 1 argument.");
+        }
+        if (inputTypes[0] != Value.GEOMETRY) {
+            throw new SQLException(ST_UnionAgg.class.getSimpleName() + " expects a Geometry argument");
+        }
+        return Value.GEOMETRY;
+    }
+
+    @Override
+    public void add(Object o) throws SQLException {
+        if (o instanceof Geometry) {
+            Geometry geom = (Geometry) o;
+            if (!geom.isEmpty()) {
+                if (srid == -1) {
+                    srid = geom.getSRID();
+                    factory = geom.getFactory();
+                }
+                if (srid != geom.getSRID()) {
+                    throw new SQLException("Operation on mixed SRID geometries not supported");
+                }
+                if (geom instanceof GeometryCollection) {
+                    // Each part may be unioned with a different node
+                    for (int i = 0; i < geom.getNumGeometries(); i++) {
+                        Geometry part = geom.getGeometryN(i);
+                        if (!part.isEmpty()) {
+                            toUnite.add(part);
+                        }
+                    }
+                } else {
+                    toUnite.add(geom);
+                }
+            }
+        } else if (o != null) {
+            throw new SQLException("ST_UnionAgg accepts only Geometry values. Input: " +
+                    o.getClass().getSimpleName());
+        }
+    }
+
+    @Override
+    public Geometry getResult() throws SQLException {
+        if (toUnite.isEmpty()) {
+            return null;
+        }
+        Geometry result = union(toUnite, factory);
+        result.setSRID(srid);
+        return result;
+    }
+
+    /**
+     * Union the geometries, on the common fork-join pool.
+     *
+     * @param geometries Geometries, without collections
+     * @param factory    Factory of the result
+     * @return The union
+     */
+    public static Geometry union(List<Geometry> geometries, GeometryFactory factory) {
+        if (geometries.size() <= NODE_CAPACITY) {
+            return OverlayNGRobust.union(factory.buildGeometry(geometries));
+        }
+        STRtree tree = new STRtree(NODE_CAPACITY);
+        for (Geometry geometry : geometries) {
+            tree.insert(geometry.getEnvelopeInternal(), geometry);
+        }
+        tree.build();
+        return ForkJoinPool.commonPool().invoke(new UnionTask(tree.itemsTree(), factory));
+    }
+
+    /**
+     * Union of the geometries of a node of the STR tree.
+     */
+    private static class UnionTask extends RecursiveTask<Geometry> {
+        private final List<?> node;
+        private final GeometryFactory factory;
+
+        UnionTask(List<?> node, GeometryFactory factory) {
+            this.node = node;
+            this.factory = factory;
+        }
+
+        @Override
+        protected Geometry compute() {
+            List<Geometry> items = new ArrayList<Geometry>();
+            List<UnionTask> children = new ArrayList<UnionTask>();
+            for (Object child : node) {
+                if (child instanceof List) {
+                    children.add(new UnionTask((List<?>) child, factory));
+                } else {
+                    items.add((Geometry) child);
+                }
+            }
+            if (children.isEmpty()) {
+                // A leaf: a few close geometries
+                return OverlayNGRobust.union(factory.buildGeometry(items));
+            }
+            ForkJoinTask.invokeAll(children);
+            List<Geometry> unions = new ArrayList<Geometry>(children.size() + 1);
+            for (UnionTask child : children) {
+                unions.add(child.join());
+            }
+            if (!items.isEmpty()) {
+                unions.add(OverlayNGRobust.union(factory.buildGeometry(items)));
+            }
+            return cascade(unions);
+        }
+
+        /**
+         * Merge the unions two by two, so each overlay has operands of
+         * similar size. The pairs are merged with a unary union, as the union
+         * of mixed dimension geometries is a heterogeneous collection that a
+         * binary overlay does not accept.
+         */
+        private Geometry cascade(List<Geometry> unions) {
+            while (unions.size() > 1) {
+                List<Geometry> merged = new ArrayList<Geometry>((unions.size() + 1) / 2);
+                for (int i = 0; i < unions.size(); i += 2) {
+                    if (i + 1 < unions.size()) {
+                        merged.add(OverlayNGRobust.union(
+                                factory.buildGeometry(Arrays.asList(unions.get(i), unions.get(i + 1)))));
+                    } else {
+                        merged.add(unions.get(i));
+                    }
+                }
+                unions = merged;
+            }
+            return unions.get(0);
+        }
+    }
+}
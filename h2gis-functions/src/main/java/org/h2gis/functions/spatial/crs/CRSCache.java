@@ -0,0 +1,199 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <a href="http://www.h2database.com">http://www.h2database.com</a>. H2GIS is developed by CNRS
+ * <a href="http://www.cnrs.fr/">http://www.cnrs.fr/</a>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; you can
+ * redistribute it and/or modify it under the terms of the GNU Lesser General
+ * Public License as published by the Free Software Foundation; version 3.0 of
+ * the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR
+ * A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <a href="http://www.h2gis.org/">http://www.h2gis.org/</a>
+ * or contact directly: info_at_h2gis.org
+ */
+
+package org.h2gis.functions.spatial.crs;
+
+import org.cts.CRSFactory;
+import org.cts.crs.CRSException;
+import org.cts.crs.CoordinateReferenceSystem;
+import org.cts.crs.GeodeticCRS;
+import org.cts.op.CoordinateOperation;
+import org.cts.op.CoordinateOperationException;
+import org.cts.op.CoordinateOperationFactory;
+import org.h2.engine.SessionLocal;
+import org.h2gis.utilities.JDBCUtilities;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of the coordinate reference systems and of the coordinate operations built from the SPATIAL_REF_SYS table
+ * of a database.
+ *
+ * A cache is shared by all the sessions of a database and is released with the database. Cache hits do not lock.
+ * On a miss, the CRS is parsed under a lock because the registry reads the SPATIAL_REF_SYS table with the
+ * connection of the caller. The number of coordinate operations is bounded, the least recently used operation is
+ * evicted first.
+ */
+public class CRSCache {
+
+    /** Default maximum number of coordinate operations kept by a cache */
+    public static final int DEFAULT_OPERATION_LIMIT = 64;
+
+    /** Caches of the embedded H2 databases, released when a database is closed */
+    private static final Map<Object, CRSCache> DATABASE_CACHES = Collections.synchronizedMap(new WeakHashMap<>());
+    /** Maximum number of caches kept for the databases identified by their URL */
+    public static final int URL_CACHE_LIMIT = 16;
+    /** Caches of the other databases, identified by their URL, the least recently used cache is evicted first */
+    private static final Map<String, CRSCache> URL_CACHES = Collections.synchronizedMap(
+            new LinkedHashMap<String, CRSCache>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, CRSCache> eldest) {
+                    return size() > URL_CACHE_LIMIT;
+                }
+            });
+
+    private final CRSFactory crsf = new CRSFactory();
+    private final SpatialRefRegistry srr = new SpatialRefRegistry();
+    private final Map<Integer, CoordinateReferenceSystem> crsPool = new ConcurrentHashMap<>();
+    private final Map<EPSGTuple, CachedOperation> operationPool = new ConcurrentHashMap<>();
+    private final AtomicLong clock = new AtomicLong();
+    private final int operationLimit;
+
+    /**
+     * @param operationLimit Maximum number of coordinate operations kept by the cache
+     */
+    public CRSCache(int operationLimit) {
+        if (operationLimit < 1) {
+            throw new IllegalArgumentException("The cache must keep at least one coordinate operation");
+        }
+        this.operationLimit = operationLimit;
+        crsf.getRegistryManager().addRegistry(srr);
+    }
+
+    /**
+     * @param connection Connection to the database
+     * @return The cache of the database
+     * @throws SQLException
+     */
+    public static CRSCache getCache(Connection connection) throws SQLException {
+        SessionLocal session = JDBCUtilities.getLocalSession(connection);
+        if (session != null) {
+            Object database = session.getDatabase();
+            return DATABASE_CACHES.computeIfAbsent(database, key -> new CRSCache(DEFAULT_OPERATION_LIMIT));
+        }
+        return URL_CACHES.computeIfAbsent(connection.getMetaData().getURL(), key -> new CRSCache(DEFAULT_OPERATION_LIMIT));
+    }
+
+    /**
+     * @param connection Connection used to read the SPATIAL_REF_SYS table if the CRS is not cached
+     * @param srid Code of the CRS in the SPATIAL_REF_SYS table
+     * @return The coordinate reference system
+     * @throws CRSException
+     */
+    public CoordinateReferenceSystem getCRS(Connection connection, int srid) throws CRSException {
+        CoordinateReferenceSystem crs = crsPool.get(srid);
+        if (crs != null) {
+            return crs;
+        }
+        synchronized (srr) {
+            crs = crsPool.get(srid);
+            if (crs == null) {
+                srr.setConnection(connection);
+                try {
+                    crs = crsf.getCRS(srr.getRegistryName() + ":" + srid);
+                } finally {
+                    srr.setConnection(null);
+                }
+                if (crs != null) {
+                    crsPool.put(srid, crs);
+                }
+            }
+        }
+        return crs;
+    }
+
+    /**
+     * @param inputSRID Code of the input CRS
+     * @param inputCRS Input CRS
+     * @param targetSRID Code of the target CRS
+     * @param targetCRS Target CRS
+     * @return The most precise operation from the input CRS to the target CRS, null if there is no operation
+     * @throws CoordinateOperationException
+     */
+    public CoordinateOperation getCoordinateOperation(int inputSRID, GeodeticCRS inputCRS, int targetSRID,
+                                                      GeodeticCRS targetCRS) throws CoordinateOperationException {
+        EPSGTuple epsg = new EPSGTuple(inputSRID, targetSRID);
+        CachedOperation cached = operationPool.get(epsg);
+        if (cached != null) {
+            cached.lastAccess = clock.incrementAndGet();
+            return cached.operation;
+        }
+        // Concurrent misses may build the same operation, only one is kept
+        Set<CoordinateOperation> ops = CoordinateOperationFactory.createCoordinateOperations(inputCRS, targetCRS);
+        if (ops.isEmpty()) {
+            return null;
+        }
+        cached = new CachedOperation(CoordinateOperationFactory.getMostPrecise(ops), clock.incrementAndGet());
+        CachedOperation previous = operationPool.putIfAbsent(epsg, cached);
+        if (previous != null) {
+            return previous.operation;
+        }
+        evict();
+        return cached.operation;
+    }
+
+    /**
+     * Remove the least recently used operations until the cache size is lower than the limit
+     */
+    private void evict() {
+        while (operationPool.size() > operationLimit) {
+            EPSGTuple eldest = null;
+            long oldestAccess = Long.MAX_VALUE;
+            for (Map.Entry<EPSGTuple, CachedOperation> entry : operationPool.entrySet()) {
+                if (entry.getValue().lastAccess < oldestAccess) {
+                    oldestAccess = entry.getValue().lastAccess;
+                    eldest = entry.getKey();
+                }
+            }
+            if (eldest == null) {
+                return;
+            }
+            operationPool.remove(eldest);
+        }
+    }
+
+    /**
+     * @return Number of coordinate operations in the cache
+     */
+    public int getOperationCount() {
+        return operationPool.size();
+    }
+
+    /**
+     * A coordinate operation with the time of its last access
+     */
+    private static class CachedOperation {
+        private final CoordinateOperation operation;
+        private volatile long lastAccess;
+
+        CachedOperation(CoordinateOperation operation, long lastAccess) {
+            this.operation = operation;
+            this.lastAccess = lastAccess;
+        }
+    }
+}
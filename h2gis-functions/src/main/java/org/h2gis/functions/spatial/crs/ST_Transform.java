@@ -20,25 +20,31 @@
 
 package org.h2gis.functions.spatial.crs;
 
-import org.cts.CRSFactory;
 import org.cts.IllegalCoordinateException;
 import org.cts.crs.CRSException;
 import org.cts.crs.CoordinateReferenceSystem;
 import org.cts.crs.GeodeticCRS;
 import org.cts.op.CoordinateOperation;
 import org.cts.op.CoordinateOperationException;
-import org.cts.op.CoordinateOperationFactory;
 import org.h2gis.api.AbstractFunction;
 import org.h2gis.api.ScalarFunction;
 import org.locationtech.jts.geom.Coordinate;
 import org.locationtech.jts.geom.CoordinateFilter;
+import org.locationtech.jts.geom.CoordinateSequence;
 import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryCollection;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.LinearRing;
+import org.locationtech.jts.geom.MultiLineString;
+import org.locationtech.jts.geom.MultiPoint;
+import org.locationtech.jts.geom.MultiPolygon;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.geom.impl.PackedCoordinateSequence;
+import org.locationtech.jts.geom.util.GeometryTransformer;
 
 import java.sql.Connection;
 import java.sql.SQLException;
-import java.util.LinkedHashMap;
-import java.util.Map;
-import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -53,10 +59,6 @@ import java.util.logging.Logger;
  */
 public class ST_Transform extends AbstractFunction implements ScalarFunction {
 
-    private static CRSFactory crsf;
-    private static SpatialRefRegistry srr = new SpatialRefRegistry();
-    private static Map<EPSGTuple, CoordinateOperation> copPool = new CopCache(5);
-
     /**
      * Constructor
      */
@@ -86,57 +88,152 @@ public class ST_Transform extends AbstractFunction implements ScalarFunction {
         if (codeEpsg == null) {
             throw new IllegalArgumentException("The SRID code cannot be null.");
         }
-        if (crsf == null) {
-            crsf = new CRSFactory();
-            //Activate the CRSFactory and the internal H2 spatial_ref_sys registry to
-            // manage Coordinate Reference Systems.
-            crsf.getRegistryManager().addRegistry(srr);
+        int inputSRID = geom.getSRID();
+        if (inputSRID == 0) {
+            throw new SQLException("Cannot find a CRS");
         }
-        srr.setConnection(connection);
+        CRSCache crsCache = CRSCache.getCache(connection);
         try {
-            int inputSRID = geom.getSRID();
-            if (inputSRID == 0) {
-                throw new SQLException("Cannot find a CRS");
-            } else {
-                CoordinateReferenceSystem inputCRS = crsf.getCRS(srr.getRegistryName() + ":" + inputSRID);
-                CoordinateReferenceSystem targetCRS = crsf.getCRS(srr.getRegistryName() + ":" + codeEpsg);
-                if (inputCRS.equals(targetCRS)) {
-                    return geom;
-                }
-                EPSGTuple epsg = new EPSGTuple(inputSRID, codeEpsg);
-                CoordinateOperation op = copPool.get(epsg);
+            CoordinateReferenceSystem inputCRS = crsCache.getCRS(connection, inputSRID);
+            CoordinateReferenceSystem targetCRS = crsCache.getCRS(connection, codeEpsg);
+            if (inputCRS.equals(targetCRS)) {
+                return geom;
+            }
+            if (inputCRS instanceof GeodeticCRS && targetCRS instanceof GeodeticCRS) {
+                CoordinateOperation op = crsCache.getCoordinateOperation(inputSRID, (GeodeticCRS) inputCRS,
+                        codeEpsg, (GeodeticCRS) targetCRS);
                 if (op != null) {
-                    Geometry outPutGeom = geom.copy();
-                    outPutGeom.geometryChanged();
-                    outPutGeom.apply(new CRSTransformFilter(op));
+                    Geometry outPutGeom = new CRSTransformer(op).transform(geom);
                     outPutGeom.setSRID(codeEpsg);
                     return outPutGeom;
-                } else {
-                    if (inputCRS instanceof GeodeticCRS && targetCRS instanceof GeodeticCRS) {
-                        Set<CoordinateOperation> ops = CoordinateOperationFactory
-                                .createCoordinateOperations((GeodeticCRS) inputCRS, (GeodeticCRS) targetCRS);
-                        if (!ops.isEmpty()) {
-                            op = CoordinateOperationFactory.getMostPrecise(ops);
-                            Geometry outPutGeom = geom.copy();
-                            outPutGeom.geometryChanged();
-                            outPutGeom.apply(new CRSTransformFilter(op));
-                            copPool.put(epsg, op);
-                            outPutGeom.setSRID(codeEpsg);
-                            return outPutGeom;
-                        }
-                    } else {
-                        throw new SQLException("The transformation from "
-                                + inputCRS + " to " + codeEpsg + " is not yet supported.");
-                    }
                 }
+            } else {
+                throw new SQLException("The transformation from "
+                        + inputCRS + " to " + codeEpsg + " is not yet supported.");
             }
         } catch (CRSException ex) {
             throw new SQLException("Cannot create the CRS", ex);
-        } finally {
-            srr.setConnection(null);
         }
         return null;
+    }
+
+    /**
+     * Builds a new geometry with the coordinates transformed by a {@link CoordinateOperation}.
+     * Each coordinate sequence is transformed into a new packed sequence of the same dimension, so the input
+     * geometry is not copied first and the coordinates are not allocated one by one. The Z ordinate is skipped
+     * for 2D sequences and the measures are kept unchanged. The collections keep their type and their empty parts.
+     */
+    public static class CRSTransformer extends GeometryTransformer {
+        private final CoordinateOperation coordinateOperation;
+        private final double[] xyz = new double[3];
+
+        public CRSTransformer(final CoordinateOperation coordinateOperation) {
+            this.coordinateOperation = coordinateOperation;
+        }
+
+        @Override
+        protected CoordinateSequence transformCoordinates(CoordinateSequence coords, Geometry parent) {
+            int size = coords.size();
+            int dimension = coords.getDimension();
+            int measures = coords.getMeasures();
+            boolean hasZ = dimension - measures > 2;
+            PackedCoordinateSequence.Double result = new PackedCoordinateSequence.Double(size, dimension, measures);
+            double[] values = result.getRawCoordinates();
+            for (int i = 0, offset = 0; i < size; i++, offset += dimension) {
+                double x = coords.getX(i);
+                double y = coords.getY(i);
+                double z = hasZ ? coords.getZ(i) : Double.NaN;
+                values[offset] = x;
+                values[offset + 1] = y;
+                xyz[0] = x;
+                xyz[1] = y;
+                xyz[2] = Double.isNaN(z) ? 0 : z;
+                try {
+                    // Some operations update the array in place, others return a new one
+                    double[] transformed = coordinateOperation.transform(xyz);
+                    values[offset] = transformed[0];
+                    values[offset + 1] = transformed[1];
+                    z = transformed.length > 2 ? transformed[2] : Double.NaN;
+                } catch (CoordinateOperationException | IllegalCoordinateException ex) {
+                    Logger.getLogger(ST_Transform.class.getName()).log(Level.SEVERE, null, ex);
+                }
+                if (hasZ) {
+                    values[offset + 2] = z;
+                }
+                for (int m = 0; m < measures; m++) {
+                    values[offset + dimension - measures + m] = coords.getOrdinate(i, dimension - measures + m);
+                }
+            }
+            return result;
+        }
+
+        @Override
+        protected Geometry transformMultiPoint(MultiPoint geom, Geometry parent) {
+            Point[] points = new Point[geom.getNumGeometries()];
+            for (int i = 0; i < points.length; i++) {
+                points[i] = (Point) transformPoint((Point) geom.getGeometryN(i), geom);
+            }
+            return factory.createMultiPoint(points);
+        }
+
+        @Override
+        protected Geometry transformMultiLineString(MultiLineString geom, Geometry parent) {
+            LineString[] lines = new LineString[geom.getNumGeometries()];
+            for (int i = 0; i < lines.length; i++) {
+                lines[i] = (LineString) transformLineString((LineString) geom.getGeometryN(i), geom);
+            }
+            return factory.createMultiLineString(lines);
+        }
+
+        @Override
+        protected Geometry transformMultiPolygon(MultiPolygon geom, Geometry parent) {
+            Polygon[] polygons = new Polygon[geom.getNumGeometries()];
+            for (int i = 0; i < polygons.length; i++) {
+                polygons[i] = transformPolygon((Polygon) geom.getGeometryN(i), geom);
+            }
+            return factory.createMultiPolygon(polygons);
+        }
+
+        @Override
+        protected Geometry transformGeometryCollection(GeometryCollection geom, Geometry parent) {
+            Geometry[] geometries = new Geometry[geom.getNumGeometries()];
+            for (int i = 0; i < geometries.length; i++) {
+                geometries[i] = transformPart(geom.getGeometryN(i), geom);
+            }
+            return factory.createGeometryCollection(geometries);
+        }
+
+        private Geometry transformPart(Geometry geom, Geometry parent) {
+            if (geom instanceof Point) {
+                return transformPoint((Point) geom, parent);
+            } else if (geom instanceof LinearRing) {
+                return transformLinearRing((LinearRing) geom, parent);
+            } else if (geom instanceof LineString) {
+                return transformLineString((LineString) geom, parent);
+            } else if (geom instanceof Polygon) {
+                return transformPolygon((Polygon) geom, parent);
+            } else if (geom instanceof MultiPoint) {
+                return transformMultiPoint((MultiPoint) geom, parent);
+            } else if (geom instanceof MultiLineString) {
+                return transformMultiLineString((MultiLineString) geom, parent);
+            } else if (geom instanceof MultiPolygon) {
+                return transformMultiPolygon((MultiPolygon) geom, parent);
+            }
+            return transformGeometryCollection((GeometryCollection) geom, parent);
+        }
 
+        /**
+         * Transform the rings of the polygon, the empty holes are kept.
+         */
+        @Override
+        protected Polygon transformPolygon(Polygon geom, Geometry parent) {
+            LinearRing shell = (LinearRing) transformLinearRing(geom.getExteriorRing(), geom);
+            LinearRing[] holes = new LinearRing[geom.getNumInteriorRing()];
+            for (int i = 0; i < holes.length; i++) {
+                holes[i] = (LinearRing) transformLinearRing(geom.getInteriorRingN(i), geom);
+            }
+            return factory.createPolygon(shell, holes);
+        }
     }
 
   
@@ -146,6 +243,7 @@ public class ST_Transform extends AbstractFunction implements ScalarFunction {
      */
     public static class CRSTransformFilter implements CoordinateFilter{
         private final CoordinateOperation coordinateOperation;
+        private final double[] xyz = new double[3];
 
       
         public CRSTransformFilter(final CoordinateOperation coordinateOperation){
@@ -158,12 +256,14 @@ public class ST_Transform extends AbstractFunction implements ScalarFunction {
                 if (Double.isNaN(coord.z)) {
                     coord.z = 0;
                 }
-                double[] xyz = coordinateOperation
-                        .transform(new double[]{coord.x, coord.y, coord.z});
-                coord.x = xyz[0];
-                coord.y = xyz[1];
-                if (xyz.length > 2) {
-                    coord.z = xyz[2];
+                xyz[0] = coord.x;
+                xyz[1] = coord.y;
+                xyz[2] = coord.z;
+                double[] transformed = coordinateOperation.transform(xyz);
+                coord.x = transformed[0];
+                coord.y = transformed[1];
+                if (transformed.length > 2) {
+                    coord.z = transformed[2];
                 } else {
                     coord.z = Double.NaN;
                 }
@@ -175,22 +275,4 @@ public class ST_Transform extends AbstractFunction implements ScalarFunction {
         
     
     }
-
-    /**
-     * A simple cache to manage {@link CoordinateOperation}
-     */
-    public static class CopCache extends LinkedHashMap<EPSGTuple, CoordinateOperation> {
-
-        private final int limit;
-
-        public CopCache(int limit) {
-            super(16, 0.75f, true);
-            this.limit = limit;
-        }
-
-        @Override
-        protected boolean removeEldestEntry(Map.Entry<EPSGTuple, CoordinateOperation> eldest) {
-            return size() > limit;
-        }
-    }
 }
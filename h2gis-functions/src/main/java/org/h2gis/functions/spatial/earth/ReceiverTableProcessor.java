@@ -0,0 +1,219 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <a href="http://www.h2database.com">http://www.h2database.com</a>. H2GIS is developed by CNRS
+ * <a href="http://www.cnrs.fr/">http://www.cnrs.fr/</a>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; 
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <a href="http://www.h2gis.org/">http://www.h2gis.org/</a>
+ * or contact directly: info_at_h2gis.org
+ */
+
+package org.h2gis.functions.spatial.earth;
+
+import org.h2gis.utilities.GeometryTableUtilities;
+import org.h2gis.utilities.JDBCUtilities;
+import org.h2gis.utilities.TableLocation;
+import org.h2gis.utilities.Tuple;
+import org.h2gis.utilities.dbtypes.DBTypes;
+import org.h2gis.utilities.dbtypes.DBUtils;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.Point;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Evaluates a computation on each point of a receivers table, on all the
+ * available processors, and stores the results in an output table keyed by
+ * the primary key of the receivers.
+ *
+ * The receivers are read by batches, so the whole table is never loaded in
+ * memory. The computation must be safe to call from several threads, it
+ * usually queries a read only index of the obstacles.
+ */
+final class ReceiverTableProcessor {
+
+    static final int BATCH_SIZE = 1000;
+
+    private ReceiverTableProcessor() {
+    }
+
+    /**
+     * Read the geometries of the first geometry column of the obstacles table
+     *
+     * @param connection Connection
+     * @param obstacles  Obstacles table
+     * @param consumer   Receives each obstacle geometry
+     * @return The SRID of the obstacles, -1 if there is no obstacle
+     * @throws SQLException
+     */
+    static int readObstacles(Connection connection, TableLocation obstacles, Consumer<Geometry> consumer)
+            throws SQLException {
+        final DBTypes dbType = DBUtils.getDBType(connection);
+        String geomColumn = TableLocation.quoteIdentifier(
+                GeometryTableUtilities.getFirstGeometryColumnNameAndIndex(connection, obstacles).first(), dbType);
+        int srid = -1;
+        try (Statement st = connection.createStatement();
+             ResultSet rs = st.executeQuery("SELECT " + geomColumn + " FROM " + obstacles)) {
+            while (rs.next()) {
+                Geometry geometry = (Geometry) rs.getObject(1);
+                if (geometry != null && !geometry.isEmpty()) {
+                    if (srid == -1) {
+                        srid = geometry.getSRID();
+                    } else if (srid != geometry.getSRID()) {
+                        throw new SQLException("Operation on mixed SRID geometries not supported");
+                    }
+                    consumer.accept(geometry);
+                }
+            }
+        }
+        return srid;
+    }
+
+    /**
+     * Create the output table and fill it with the value computed for each
+     * receiver. The output table is removed if the computation fails.
+     *
+     * @param connection  Connection
+     * @param receivers   Receivers table, with an integer primary key and point geometries
+     * @param output      Output table to create
+     * @param valueColumn Definition of the value column of the output table
+     * @param srid        SRID of the obstacles, -1 if any SRID is accepted
+     * @param computation Computes the value of a receiver
+     * @throws SQLException
+     */
+    static void process(Connection connection, TableLocation receivers, TableLocation output, String valueColumn,
+                        int srid, Function<Point, Object> computation) throws SQLException {
+        final DBTypes dbType = DBUtils.getDBType(connection);
+        final Tuple<String, Integer> pkIndex = JDBCUtilities.getIntegerPrimaryKeyNameAndIndex(connection, receivers);
+        if (pkIndex == null) {
+            throw new IllegalStateException("Table " + receivers.getTable()
+                    + " must contain a single integer primary key.");
+        }
+        final String pkColumn = TableLocation.quoteIdentifier(pkIndex.first(), dbType);
+        final String geomColumn = TableLocation.quoteIdentifier(
+                GeometryTableUtilities.getFirstGeometryColumnNameAndIndex(connection, receivers).first(), dbType);
+        if (JDBCUtilities.tableExists(connection, output)) {
+            throw new IllegalArgumentException("The table " + output + " already exists");
+        }
+        try (Statement st = connection.createStatement()) {
+            st.execute("CREATE TABLE " + output + "(" + pkColumn + " INTEGER PRIMARY KEY, " + valueColumn + ")");
+        }
+        final int threadCount = Runtime.getRuntime().availableProcessors();
+        final ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        final boolean autoCommit = connection.getAutoCommit();
+        try (Statement st = connection.createStatement();
+             ResultSet rs = st.executeQuery("SELECT " + pkColumn + ", " + geomColumn + " FROM " + receivers);
+             PreparedStatement insert = connection.prepareStatement("INSERT INTO " + output + " VALUES (?, ?)")) {
+            connection.setAutoCommit(false);
+            final int[] ids = new int[BATCH_SIZE];
+            final Point[] points = new Point[BATCH_SIZE];
+            final Object[] values = new Object[BATCH_SIZE];
+            int count;
+            do {
+                count = 0;
+                while (count < BATCH_SIZE && rs.next()) {
+                    ids[count] = rs.getInt(1);
+                    points[count] = getReceiver((Geometry) rs.getObject(2), srid);
+                    count++;
+                }
+                computeAll(executor, threadCount, points, values, count, computation);
+                for (int i = 0; i < count; i++) {
+                    insert.setInt(1, ids[i]);
+                    insert.setObject(2, values[i]);
+                    insert.addBatch();
+                }
+                if (count > 0) {
+                    insert.executeBatch();
+                }
+            } while (count == BATCH_SIZE);
+            connection.commit();
+        } catch (SQLException | RuntimeException ex) {
+            connection.rollback();
+            try (Statement st = connection.createStatement()) {
+                st.execute("DROP TABLE IF EXISTS " + output);
+            }
+            throw ex;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+            executor.shutdownNow();
+            try {
+                executor.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static Point getReceiver(Geometry geometry, int srid) throws SQLException {
+        if (geometry == null || geometry.isEmpty()) {
+            return null;
+        }
+        if (!(geometry instanceof Point)) {
+            throw new SQLException("The receivers must be points, found " + geometry.getGeometryType());
+        }
+        if (srid != -1 && srid != geometry.getSRID()) {
+            throw new SQLException("Operation on mixed SRID geometries not supported");
+        }
+        return (Point) geometry;
+    }
+
+    /**
+     * Compute the values of a batch of receivers, each thread taking a
+     * contiguous part of the batch.
+     */
+    private static void computeAll(ExecutorService executor, int threadCount, Point[] points, Object[] values,
+                                   int count, Function<Point, Object> computation) throws SQLException {
+        final int chunkSize = Math.max(1, (count + threadCount - 1) / threadCount);
+        List<Future<?>> futures = new ArrayList<>(threadCount);
+        for (int start = 0; start < count; start += chunkSize) {
+            final int from = start;
+            final int to = Math.min(count, start + chunkSize);
+            futures.add(executor.submit(() -> {
+                for (int i = from; i < to; i++) {
+                    values[i] = points[i] == null ? null : computation.apply(points[i]);
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            getResult(future);
+        }
+    }
+
+    private static void getResult(Future<?> future) throws SQLException {
+        try {
+            future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("The computation on the receivers has been interrupted", ex);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new SQLException("Cannot compute the receivers", cause);
+        }
+    }
+}
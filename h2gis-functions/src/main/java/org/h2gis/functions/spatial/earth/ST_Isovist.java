@@ -21,6 +21,7 @@ package org.h2gis.functions.spatial.earth;
 
 import org.h2gis.api.DeterministicScalarFunction;
 import org.h2gis.utilities.jts_utils.VisibilityAlgorithm;
+import org.locationtech.jts.geom.Coordinate;
 import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.geom.Point;
 import org.locationtech.jts.util.GeometricShapeFactory;
@@ -91,10 +92,21 @@ public class ST_Isovist extends DeterministicScalarFunction {
         }
 
         Geometry isopoly = isovist(viewPoint, lineSegments, maxDistance);
+        return constrainView(isopoly, viewPoint.getCoordinate(), maxDistance, radBegin, radSize);
+    }
 
-        // Intersects with view constrain
+    /**
+     * Intersects the visibility polygon with the view angle
+     * @param isopoly The visibility polygon
+     * @param viewPoint Isovist location
+     * @param maxDistance Maximum distance of view from viewPoint (spatial ref units)
+     * @param radBegin Constraint view angle start in radian
+     * @param radSize Constraint view angle size in radian
+     * @return The visibility polygon in the view angle
+     */
+    public static Geometry constrainView(Geometry isopoly, Coordinate viewPoint, double maxDistance, double radBegin, double radSize) {
         GeometricShapeFactory geometricShapeFactory = new GeometricShapeFactory();
-        geometricShapeFactory.setCentre(viewPoint.getCoordinate());
+        geometricShapeFactory.setCentre(viewPoint);
         geometricShapeFactory.setWidth(maxDistance * 2);
         geometricShapeFactory.setHeight(maxDistance * 2);
         return geometricShapeFactory.createArcPolygon(radBegin, radSize).intersection(isopoly);
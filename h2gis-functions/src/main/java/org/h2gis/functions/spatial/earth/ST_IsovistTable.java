@@ -0,0 +1,158 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <a href="http://www.h2database.com">http://www.h2database.com</a>. H2GIS is developed by CNRS
+ * <a href="http://www.cnrs.fr/">http://www.cnrs.fr/</a>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; 
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <a href="http://www.h2gis.org/">http://www.h2gis.org/</a>
+ * or contact directly: info_at_h2gis.org
+ */
+
+package org.h2gis.functions.spatial.earth;
+
+import org.h2gis.api.AbstractFunction;
+import org.h2gis.api.ScalarFunction;
+import org.h2gis.utilities.TableLocation;
+import org.h2gis.utilities.TableUtilities;
+import org.h2gis.utilities.jts_utils.VisibilityAlgorithm;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.LineSegment;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.util.LinearComponentExtracter;
+import org.locationtech.jts.index.strtree.STRtree;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Compute the visibility polygon of all the points of a receivers table,
+ * obstructed by the geometries of an obstacles table. The segments of the
+ * obstacles are indexed once, each receiver only uses the segments within
+ * the maximum distance, and the receivers are evaluated in parallel.
+ *
+ * If the receivers table has name 'input', the output table is named
+ * 'input_isovist'.
+ */
+public class ST_IsovistTable extends AbstractFunction implements ScalarFunction {
+
+    public static final String ISOVIST_SUFFIX = "_ISOVIST";
+
+    public ST_IsovistTable() {
+        addProperty(PROP_REMARKS, "ST_IsovistTable takes a table of points and a table of LINESTRING(S)\n"
+                + " or POLYGON(S) and a maximum distance (spatial ref units). This function compute the visibility polygon" +
+                " of each point obstructed by the \"walls\". The visibility polygons are enclosed by a circle" +
+                " defined by maximum distance parameter. A view angle start and size in radian may be given.\n"
+                + "The polygons are stored in the table receivers" + ISOVIST_SUFFIX + ", keyed by the receivers primary key.");
+    }
+
+    @Override
+    public String getJavaStaticMethod() {
+        return "isovist";
+    }
+
+    /**
+     * Compute the visibility polygons of the receivers
+     *
+     * @param connection Connection
+     * @param receiversTable Table of the isovist locations
+     * @param obstaclesTable Table of the occlusion geometries
+     * @param maxDistance Maximum distance of view from the receivers (spatial ref units)
+     * @return true if the output table is created
+     * @throws SQLException In case of wrong parameters
+     */
+    public static boolean isovist(Connection connection, String receiversTable, String obstaclesTable,
+                                  double maxDistance) throws SQLException {
+        return isovist(connection, receiversTable, obstaclesTable, maxDistance, 0, 0);
+    }
+
+    /**
+     * Compute the visibility polygons of the receivers
+     *
+     * @param connection Connection
+     * @param receiversTable Table of the isovist locations
+     * @param obstaclesTable Table of the occlusion geometries
+     * @param maxDistance Maximum distance of view from the receivers (spatial ref units)
+     * @param radBegin Constraint view angle start in radian
+     * @param radSize Constraint view angle size in radian, 0 for no constraint
+     * @return true if the output table is created
+     * @throws SQLException In case of wrong parameters
+     */
+    public static boolean isovist(Connection connection, String receiversTable, String obstaclesTable,
+                                  double maxDistance, double radBegin, double radSize) throws SQLException {
+        if (maxDistance <= 0) {
+            throw new SQLException("Third parameter of ST_IsovistTable must be a valid distance superior than 0");
+        }
+        if (radSize < 0) {
+            throw new SQLException("Angle size must be superior than 0 rad");
+        }
+        final TableLocation receivers = TableUtilities.parseInputTable(connection, receiversTable);
+        final TableLocation obstacles = TableUtilities.parseInputTable(connection, obstaclesTable);
+        final STRtree sTRtree = new STRtree();
+        int srid = ReceiverTableProcessor.readObstacles(connection, obstacles, geom -> addSegments(geom, sTRtree));
+        sTRtree.build();
+        ReceiverTableProcessor.process(connection, receivers,
+                TableUtilities.suffixTableLocation(receivers, ISOVIST_SUFFIX), "THE_GEOM GEOMETRY", srid,
+                pt -> computeIsovist(pt, sTRtree, maxDistance, radBegin, radSize));
+        return true;
+    }
+
+    /**
+     * Compute the visibility polygon of a point from an index of segments
+     *
+     * @param viewPoint Isovist location
+     * @param sTRtree Index of the occlusion {@link LineSegment}s
+     * @param maxDistance Maximum distance of view from viewPoint (spatial ref units)
+     * @param radBegin Constraint view angle start in radian
+     * @param radSize Constraint view angle size in radian, 0 for no constraint
+     * @return The visibility polygon
+     */
+    public static Geometry computeIsovist(Point viewPoint, STRtree sTRtree, double maxDistance, double radBegin, double radSize) {
+        Coordinate position = viewPoint.getCoordinate();
+        Envelope envelope = new Envelope(position);
+        envelope.expandBy(maxDistance);
+        VisibilityAlgorithm visibilityAlgorithm = new VisibilityAlgorithm(maxDistance);
+        List<LineSegment> segments = sTRtree.query(envelope);
+        for (LineSegment segment : segments) {
+            if (segment.distance(position) <= maxDistance) {
+                visibilityAlgorithm.addSegment(segment.p0, segment.p1);
+            }
+        }
+        Geometry geomIsovist = visibilityAlgorithm.getIsoVist(position, true);
+        if (radSize > 0) {
+            geomIsovist = ST_Isovist.constrainView(geomIsovist, position, maxDistance, radBegin, radSize);
+        }
+        geomIsovist.setSRID(viewPoint.getSRID());
+        return geomIsovist;
+    }
+
+    /**
+     * Add the segments of the geometry in the index
+     *
+     * @param geometry Occlusion geometry
+     * @param sTRtree Index of the segments
+     */
+    public static void addSegments(Geometry geometry, STRtree sTRtree) {
+        List<LineString> lines = LinearComponentExtracter.getLines(geometry);
+        for (LineString line : lines) {
+            int nPoint = line.getNumPoints();
+            for (int idPoint = 0; idPoint < nPoint - 1; idPoint++) {
+                LineSegment segment = new LineSegment(line.getCoordinateN(idPoint), line.getCoordinateN(idPoint + 1));
+                sTRtree.insert(new Envelope(segment.p0, segment.p1), segment);
+            }
+        }
+    }
+}
@@ -22,6 +22,7 @@ package org.h2gis.functions.spatial.earth;
 import java.sql.SQLException;
 import org.h2gis.api.DeterministicScalarFunction;
 import org.h2gis.utilities.jts_utils.CoordinateUtils;
+import org.h2gis.utilities.jts_utils.GeometryCache;
 import org.locationtech.jts.geom.*;
 import org.locationtech.jts.index.strtree.STRtree;
 import org.locationtech.jts.math.Vector2D;
@@ -37,7 +38,10 @@ import java.util.List;
 public class ST_Svf extends DeterministicScalarFunction{
 
     //target step length m
-    private static int RAY_STEP_LENGTH = 10;
+    static final int RAY_STEP_LENGTH = 10;
+
+    //Segment indexes of the last obstacle geometries, shared by the rows of a query
+    private static final GeometryCache<STRtree> OBSTACLES_CACHE = new GeometryCache<>(4, 64);
     
     public ST_Svf(){
         addProperty(PROP_REMARKS, "Return the Sky View Factor (SVF) for a given point.\n"
@@ -107,76 +111,109 @@ public class ST_Svf extends DeterministicScalarFunction{
             throw new IllegalArgumentException("The ray length parameter must be greater than 0");
         }
         
-        RAY_STEP_LENGTH = stepRayLength;
+        if (geoms.getDimension() > 0) {
+            STRtree sTRtree = OBSTACLES_CACHE.get(geoms, ST_Svf::createSegmentIndex);
+            svf = computeIndexedSvf(pt.getCoordinate(), sTRtree, distance, rayCount, stepRayLength, pt.getFactory());
+        }        
+        return svf;
+        
+    }
 
-        if (geoms.getDimension() > 0) {            
-            GeometryFactory factory = pt.getFactory();
-            //Convert input geoms to a set of linestring
-            STRtree sTRtree = new STRtree();
-            int nbGeoms = geoms.getNumGeometries();
-            for (int i = 0; i < nbGeoms; i++) {
-                Geometry subGeom = geoms.getGeometryN(i);
-                if (subGeom instanceof LineString) {
-                    addSegments(subGeom.getCoordinates(),factory, sTRtree);
-                } else if (subGeom instanceof Polygon) {
-                    Polygon p = (Polygon) subGeom;
-                    addSegments(p.getExteriorRing().getCoordinates(),factory, sTRtree);
-                    int nbInterior = p.getNumInteriorRing();
-                    for (int j = 0; j < nbInterior; j++) {
-                        addSegments(p.getInteriorRingN(j).getCoordinates(),factory, sTRtree);
-                    }
-                }
-            }
-            if(sTRtree.isEmpty()){
-                return 1D;
-            }
-            Coordinate startCoordinate = pt.getCoordinate();
-            double startZ = Double.isNaN(startCoordinate.z)?0:startCoordinate.z;
-            double sumArea = 2*Math.PI; 
-            double elementaryAngle = sumArea / rayCount;
-            int stepCount = (int) Math.round(distance / RAY_STEP_LENGTH);
-            double stepLength = distance / stepCount;
-            //Compute the  SVF for each ray according an angle  
-            for (int i = 0; i < rayCount; i+=1) {             
-                //To limit the number of geometries in the query with create a progressive ray
-                Vector2D vStart = new Vector2D(startCoordinate);
-                double angleRad = elementaryAngle * i;
-                Vector2D v = Vector2D.create(Math.cos(angleRad), Math.sin(angleRad));
-                // This is the translation vector
-                v = v.multiply(stepLength);
-                double max = 0;
-                for (int j = 0; j < stepCount; j++) {
-                    LineSegment stepLine = new LineSegment(vStart.add(v.multiply(j)).toCoordinate(), vStart.add(v.multiply(j + 1)).toCoordinate());
-                    LineString rayStep = stepLine.toGeometry(factory);
-                    List<LineString> interEnv = sTRtree.query(rayStep.getEnvelopeInternal());
-                    if (!interEnv.isEmpty()) {
-                        for (LineString lineGeoms : interEnv) {
-                            Coordinate[] coords = lineGeoms.getCoordinates();
-                            Coordinate coordsStart = coords[0];
-                            Coordinate coordsEnd = coords[1];
-                            if (Math.max(coordsStart.z, coordsEnd.z) > max * j * stepLength){
-                                Geometry ptsIntersect =  lineGeoms.intersection(rayStep);
-                                if (ptsIntersect instanceof Point && ptsIntersect!=null) {
-                                    double coordWithZ = CoordinateUtils.interpolate(lineGeoms.getCoordinateN(0), lineGeoms.getCoordinateN(1), ptsIntersect.getCoordinate());
-                                    double distancePoint = ptsIntersect.distance(pt);
-                                    double ratio = (coordWithZ - startZ) / distancePoint;
-                                    if (ratio > max) {
-                                        max = ratio;
-                                    }
+    /**
+     * Compute the Sky View Factor from an index of obstacle segments
+     *
+     * @param startCoordinate the coordinate of the SVF point
+     * @param sTRtree the index of the segments, see {@link #createSegmentIndex(Geometry)}
+     * @param distance only obstacles located within this distance are considered
+     * @param rayCount number of rays
+     * @param stepRayLength length of sub ray used to limit the number of geometries when requested
+     * @param factory the geometry factory
+     * @return the SVF value
+     */
+    public static double computeIndexedSvf(Coordinate startCoordinate, STRtree sTRtree, double distance, int rayCount,
+                                    int stepRayLength, GeometryFactory factory) {
+        if (sTRtree.isEmpty()) {
+            return 1D;
+        }
+        double startZ = Double.isNaN(startCoordinate.z) ? 0 : startCoordinate.z;
+        double sumArea = 2 * Math.PI;
+        double elementaryAngle = sumArea / rayCount;
+        int stepCount = (int) Math.round(distance / stepRayLength);
+        double stepLength = distance / stepCount;
+        //Compute the  SVF for each ray according an angle  
+        for (int i = 0; i < rayCount; i += 1) {
+            //To limit the number of geometries in the query with create a progressive ray
+            Vector2D vStart = new Vector2D(startCoordinate);
+            double angleRad = elementaryAngle * i;
+            Vector2D v = Vector2D.create(Math.cos(angleRad), Math.sin(angleRad));
+            // This is the translation vector
+            v = v.multiply(stepLength);
+            double max = 0;
+            for (int j = 0; j < stepCount; j++) {
+                LineSegment stepLine = new LineSegment(vStart.add(v.multiply(j)).toCoordinate(), vStart.add(v.multiply(j + 1)).toCoordinate());
+                LineString rayStep = stepLine.toGeometry(factory);
+                List<LineString> interEnv = sTRtree.query(rayStep.getEnvelopeInternal());
+                if (!interEnv.isEmpty()) {
+                    for (LineString lineGeoms : interEnv) {
+                        Coordinate[] coords = lineGeoms.getCoordinates();
+                        Coordinate coordsStart = coords[0];
+                        Coordinate coordsEnd = coords[1];
+                        if (Math.max(coordsStart.z, coordsEnd.z) > max * j * stepLength) {
+                            Geometry ptsIntersect = lineGeoms.intersection(rayStep);
+                            if (ptsIntersect instanceof Point && ptsIntersect != null) {
+                                double coordWithZ = CoordinateUtils.interpolate(lineGeoms.getCoordinateN(0), lineGeoms.getCoordinateN(1), ptsIntersect.getCoordinate());
+                                double distancePoint = ptsIntersect.getCoordinate().distance(startCoordinate);
+                                double ratio = (coordWithZ - startZ) / distancePoint;
+                                if (ratio > max) {
+                                    max = ratio;
                                 }
                             }
                         }
                     }
                 }
-                double sinTheta = Math.sin(Math.atan(max));
-                sumArea -= elementaryAngle * sinTheta * sinTheta;
             }
-            svf = sumArea / (2 * Math.PI);
-        }        
-        return svf;
-        
+            double sinTheta = Math.sin(Math.atan(max));
+            sumArea -= elementaryAngle * sinTheta * sinTheta;
+        }
+        return sumArea / (2 * Math.PI);
     }
-    
+
+    /**
+     * Convert the obstacle geometries to a built index of their segments
+     * @param geoms the obstacle geometries
+     * @return the index of the segments with z values
+     */
+    public static STRtree createSegmentIndex(Geometry geoms) {
+        STRtree sTRtree = new STRtree();
+        addObstacles(geoms, sTRtree);
+        //Build now, the index is read only once shared
+        sTRtree.build();
+        return sTRtree;
+    }
+
+    /**
+     * Add the segments of the obstacle geometries in a STRtree
+     * @param geoms the obstacle geometries
+     * @param sTRtree the STRtree to store the segments
+     */
+    public static void addObstacles(Geometry geoms, STRtree sTRtree) {
+        GeometryFactory factory = geoms.getFactory();
+        int nbGeoms = geoms.getNumGeometries();
+        for (int i = 0; i < nbGeoms; i++) {
+            Geometry subGeom = geoms.getGeometryN(i);
+            if (subGeom instanceof LineString) {
+                addSegments(subGeom.getCoordinates(), factory, sTRtree);
+            } else if (subGeom instanceof Polygon) {
+                Polygon p = (Polygon) subGeom;
+                addSegments(p.getExteriorRing().getCoordinates(), factory, sTRtree);
+                int nbInterior = p.getNumInteriorRing();
+                for (int j = 0; j < nbInterior; j++) {
+                    addSegments(p.getInteriorRingN(j).getCoordinates(), factory, sTRtree);
+                }
+            }
+        }
+    }
+
     /**
      * Tranform to segments and add then in a STRtree if they intersect a buffer
      * geometry
@@ -0,0 +1,110 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <a href="http://www.h2database.com">http://www.h2database.com</a>. H2GIS is developed by CNRS
+ * <a href="http://www.cnrs.fr/">http://www.cnrs.fr/</a>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; 
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <a href="http://www.h2gis.org/">http://www.h2gis.org/</a>
+ * or contact directly: info_at_h2gis.org
+ */
+
+package org.h2gis.functions.spatial.earth;
+
+import org.h2gis.api.AbstractFunction;
+import org.h2gis.api.ScalarFunction;
+import org.h2gis.utilities.TableLocation;
+import org.h2gis.utilities.TableUtilities;
+import org.locationtech.jts.index.strtree.STRtree;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Compute the Sky View Factor of all the points of a receivers table, using
+ * the geometries of an obstacles table. The segments of the obstacles are
+ * indexed once and the receivers are evaluated in parallel.
+ *
+ * If the receivers table has name 'input', the output table is named
+ * 'input_svf'.
+ */
+public class ST_SvfTable extends AbstractFunction implements ScalarFunction {
+
+    public static final String SVF_SUFFIX = "_SVF";
+
+    public ST_SvfTable() {
+        addProperty(PROP_REMARKS, "Compute the Sky View Factor (SVF) of each point of a receivers table.\n"
+                + "receivers = Table of points (x, y, z) with an integer primary key\n"
+                + "obstacles = Table of geometries used as sky obstacles (z coordinates should be given and not NaN)\n"
+                + "distance = Only obstacles located within this distance from a receiver are considered in the calculation (double - in meters)\n"
+                + "rayCount = Number of ray considered for the calculation (integer - number of direction of calculation)\n"
+                + "An optional argument may be passed:\n"
+                + "RAY_STEP_LENGTH = " + ST_Svf.RAY_STEP_LENGTH + " (default) Each ray is subdivided to make the calculation faster. This argument set\n"
+                + "the length of each subdivision\n"
+                + "The SVF values are stored in the table receivers" + SVF_SUFFIX + ", keyed by the receivers primary key.");
+    }
+
+    @Override
+    public String getJavaStaticMethod() {
+        return "computeSvf";
+    }
+
+    /**
+     * Compute the Sky View Factor of the receivers
+     *
+     * @param connection Connection
+     * @param receiversTable table of the receiver points
+     * @param obstaclesTable table of the obstacle geometries
+     * @param distance only obstacles located within this distance are considered
+     * @param rayCount number of rays
+     * @return true if the output table is created
+     * @throws SQLException
+     */
+    public static boolean computeSvf(Connection connection, String receiversTable, String obstaclesTable,
+                                     double distance, int rayCount) throws SQLException {
+        return computeSvf(connection, receiversTable, obstaclesTable, distance, rayCount, ST_Svf.RAY_STEP_LENGTH);
+    }
+
+    /**
+     * Compute the Sky View Factor of the receivers
+     *
+     * @param connection Connection
+     * @param receiversTable table of the receiver points
+     * @param obstaclesTable table of the obstacle geometries
+     * @param distance only obstacles located within this distance are considered
+     * @param rayCount number of rays
+     * @param stepRayLength length of sub ray used to limit the number of geometries when requested
+     * @return true if the output table is created
+     * @throws SQLException
+     */
+    public static boolean computeSvf(Connection connection, String receiversTable, String obstaclesTable,
+                                     double distance, int rayCount, int stepRayLength) throws SQLException {
+        if (distance <= 0) {
+            throw new IllegalArgumentException("The distance value must be greater than 0");
+        }
+        if (rayCount < 4) {
+            throw new IllegalArgumentException("The number of rays must be greater than or equal to 4");
+        }
+        if (stepRayLength <= 0) {
+            throw new IllegalArgumentException("The ray length parameter must be greater than 0");
+        }
+        final TableLocation receivers = TableUtilities.parseInputTable(connection, receiversTable);
+        final TableLocation obstacles = TableUtilities.parseInputTable(connection, obstaclesTable);
+        final STRtree sTRtree = new STRtree();
+        int srid = ReceiverTableProcessor.readObstacles(connection, obstacles, geom -> ST_Svf.addObstacles(geom, sTRtree));
+        sTRtree.build();
+        ReceiverTableProcessor.process(connection, receivers, TableUtilities.suffixTableLocation(receivers, SVF_SUFFIX),
+                "SVF DOUBLE PRECISION", srid,
+                pt -> ST_Svf.computeIndexedSvf(pt.getCoordinate(), sTRtree, distance, rayCount, stepRayLength, pt.getFactory()));
+        return true;
+    }
+}
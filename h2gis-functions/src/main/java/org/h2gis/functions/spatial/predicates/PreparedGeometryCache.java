@@ -0,0 +1,132 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <a href="http://www.h2database.com">http://www.h2database.com</a>. H2GIS is developed by CNRS
+ * <a href="http://www.cnrs.fr/">http://www.cnrs.fr/</a>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; 
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <a href="http://www.h2gis.org/">http://www.h2gis.org/</a>
+ * or contact directly: info_at_h2gis.org
+ */
+
+package org.h2gis.functions.spatial.predicates;
+
+import org.h2gis.utilities.jts_utils.GeometryCache;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
+import org.locationtech.jts.operation.distance.IndexedFacetDistance;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Prepared geometries shared by the spatial predicates.
+ *
+ * A predicate with a constant argument, as in
+ * <code>WHERE ST_Intersects(:area, the_geom)</code>, receives a copy of the same
+ * large geometry on every row. The geometry is prepared the second time it is
+ * seen, so that the predicates run against its indexes instead of computing
+ * the whole topology again. Geometries given once, like the rows of a join,
+ * are not prepared.
+ */
+public final class PreparedGeometryCache {
+
+    /** Smaller geometries are not worth preparing */
+    private static final int MIN_POINTS = 64;
+    private static final GeometryCache<Entry> CACHE = new GeometryCache<>(16, MIN_POINTS);
+
+    private PreparedGeometryCache() {
+    }
+
+    /**
+     * @param geometry Predicate argument
+     * @return The prepared geometry, null if the geometry is small or seen for the first time
+     */
+    public static PreparedGeometry get(Geometry geometry) {
+        Entry entry = getEntry(geometry);
+        return entry == null ? null : entry.getPrepared();
+    }
+
+    /**
+     * @param geometry Predicate argument
+     * @return The prepared geometry and its distance index, null if the geometry is small or seen for the first time
+     */
+    public static Entry getEntry(Geometry geometry) {
+        if (geometry.getNumPoints() < MIN_POINTS) {
+            return null;
+        }
+        Entry entry = CACHE.get(geometry, Entry::new);
+        return entry.hit() ? entry : null;
+    }
+
+    /**
+     * Remove all the prepared geometries.
+     */
+    public static void clear() {
+        CACHE.clear();
+    }
+
+    /**
+     * A geometry prepared on demand.
+     */
+    public static final class Entry {
+        private final Geometry geometry;
+        private final AtomicInteger hits = new AtomicInteger();
+        private volatile PreparedGeometry prepared;
+        private volatile IndexedFacetDistance distance;
+
+        Entry(Geometry geometry) {
+            this.geometry = geometry;
+        }
+
+        /**
+         * @return True if the geometry has already been seen
+         */
+        boolean hit() {
+            return hits.getAndIncrement() > 0;
+        }
+
+        /**
+         * @return The prepared geometry
+         */
+        public PreparedGeometry getPrepared() {
+            PreparedGeometry result = prepared;
+            if (result == null) {
+                synchronized (this) {
+                    result = prepared;
+                    if (result == null) {
+                        result = PreparedGeometryFactory.prepare(geometry);
+                        prepared = result;
+                    }
+                }
+            }
+            return result;
+        }
+
+        /**
+         * @return The index of the distance to the segments of the geometry
+         */
+        public IndexedFacetDistance getDistance() {
+            IndexedFacetDistance result = distance;
+            if (result == null) {
+                synchronized (this) {
+                    result = distance;
+                    if (result == null) {
+                        result = new IndexedFacetDistance(geometry);
+                        distance = result;
+                    }
+                }
+            }
+            return result;
+        }
+    }
+}
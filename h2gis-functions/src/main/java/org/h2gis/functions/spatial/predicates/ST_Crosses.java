@@ -23,6 +23,7 @@ package org.h2gis.functions.spatial.predicates;
 import java.sql.SQLException;
 import org.h2gis.api.DeterministicScalarFunction;
 import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
 
 /**
  * Return true if Geometry A crosses Geometry B.
@@ -56,6 +57,10 @@ public class ST_Crosses extends DeterministicScalarFunction {
         if(a.getSRID()!=b.getSRID()){
             throw new SQLException("Operation on mixed SRID geometries not supported");
         }
+        PreparedGeometry prepared = PreparedGeometryCache.get(a);
+        if (prepared != null) {
+            return prepared.crosses(b);
+        }
         return a.crosses(b);
     }
 }
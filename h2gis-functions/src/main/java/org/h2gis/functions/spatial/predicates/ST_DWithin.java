@@ -57,6 +57,22 @@ public class ST_DWithin extends DeterministicScalarFunction {
         if(geomA.getSRID()!=geomB.getSRID()){
             throw new SQLException("Operation on mixed SRID geometries not supported");
         }
+        Geometry indexed = geomA;
+        Geometry other = geomB;
+        PreparedGeometryCache.Entry prepared = PreparedGeometryCache.getEntry(indexed);
+        if (prepared == null) {
+            indexed = geomB;
+            other = geomA;
+            prepared = PreparedGeometryCache.getEntry(indexed);
+        }
+        if (prepared != null && !other.isEmpty()) {
+            if (indexed.getEnvelopeInternal().distance(other.getEnvelopeInternal()) > distance) {
+                return false;
+            }
+            // The facet distance is not zero inside an area
+            return prepared.getPrepared().intersects(other)
+                    || prepared.getDistance().isWithinDistance(other, distance);
+        }
         return geomA.isWithinDistance(geomB, distance);
     }
 }
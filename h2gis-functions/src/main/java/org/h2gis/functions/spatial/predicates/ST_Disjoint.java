@@ -23,6 +23,7 @@ package org.h2gis.functions.spatial.predicates;
 import java.sql.SQLException;
 import org.h2gis.api.DeterministicScalarFunction;
 import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
 
 /**
  * Return true if the two Geometries are disjoint.
@@ -58,6 +59,14 @@ public class ST_Disjoint extends DeterministicScalarFunction {
         if(a.getSRID()!=b.getSRID()){
             throw new SQLException("Operation on mixed SRID geometries not supported");
         }
+        PreparedGeometry prepared = PreparedGeometryCache.get(a);
+        if (prepared != null) {
+            return prepared.disjoint(b);
+        }
+        prepared = PreparedGeometryCache.get(b);
+        if (prepared != null) {
+            return prepared.disjoint(a);
+        }
         return a.disjoint(b);
     }
 }
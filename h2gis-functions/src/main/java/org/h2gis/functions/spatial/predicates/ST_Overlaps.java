@@ -23,6 +23,7 @@ package org.h2gis.functions.spatial.predicates;
 import java.sql.SQLException;
 import org.h2gis.api.DeterministicScalarFunction;
 import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
 
 /**
  * Return true if the geometry A overlaps the geometry B
@@ -55,6 +56,10 @@ public class ST_Overlaps extends DeterministicScalarFunction {
         if(a.getSRID()!=b.getSRID()){
             throw new SQLException("Operation on mixed SRID geometries not supported");
         }
+        PreparedGeometry prepared = PreparedGeometryCache.get(a);
+        if (prepared != null) {
+            return prepared.overlaps(b);
+        }
         return a.overlaps(b);
     }
 }
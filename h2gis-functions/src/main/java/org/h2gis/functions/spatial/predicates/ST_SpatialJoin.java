@@ -0,0 +1,390 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <a href="http://www.h2database.com">http://www.h2database.com</a>. H2GIS is developed by CNRS
+ * <a href="http://www.cnrs.fr/">http://www.cnrs.fr/</a>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; 
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <a href="http://www.h2gis.org/">http://www.h2gis.org/</a>
+ * or contact directly: info_at_h2gis.org
+ */
+
+package org.h2gis.functions.spatial.predicates;
+
+import org.h2.tools.SimpleResultSet;
+import org.h2.tools.SimpleRowSource;
+import org.h2gis.api.AbstractFunction;
+import org.h2gis.api.ScalarFunction;
+import org.h2gis.utilities.GeometryTableUtilities;
+import org.h2gis.utilities.JDBCUtilities;
+import org.h2gis.utilities.TableLocation;
+import org.h2gis.utilities.Tuple;
+import org.h2gis.utilities.dbtypes.DBTypes;
+import org.h2gis.utilities.dbtypes.DBUtils;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
+import org.locationtech.jts.index.strtree.STRtree;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Spatial join of two tables, returning the primary keys of the pairs of rows
+ * whose geometries match a predicate.
+ *
+ * The geometries of the smallest table are prepared and packed in a STRtree,
+ * then the rows of the other table are read by batches and matched against
+ * the tree on all the available processors. The pairs are returned in the
+ * order of the streamed table.
+ */
+public class ST_SpatialJoin extends AbstractFunction implements ScalarFunction {
+
+    /** Key of the row of the first table */
+    public static final String ID_A = "ID_A";
+    /** Key of the row of the second table */
+    public static final String ID_B = "ID_B";
+    /** Number of rows of the streamed table matched by a thread at once */
+    private static final int BATCH_SIZE = 1000;
+
+    public ST_SpatialJoin() {
+        addProperty(PROP_REMARKS, "Join two tables on a spatial predicate and return the primary keys of the\n"
+                + "matching rows in the " + ID_A + " and " + ID_B + " columns:\n"
+                + "SELECT * FROM ST_SpatialJoin('tableA', 'tableB', 'intersects')\n"
+                + "The tables must have an integer primary key, the first geometry column is used.\n"
+                + "The predicate is evaluated as predicate(geomA, geomB), one of intersects, contains,\n"
+                + "within, covers, coveredby, touches, crosses, overlaps or dwithin. dwithin needs\n"
+                + "the distance as fourth argument.");
+    }
+
+    @Override
+    public String getJavaStaticMethod() {
+        return "spatialJoin";
+    }
+
+    /**
+     * @param connection Connection
+     * @param tableA     First table
+     * @param tableB     Second table
+     * @param predicate  Predicate name
+     * @return The keys of the matching rows
+     * @throws SQLException
+     */
+    public static ResultSet spatialJoin(Connection connection, String tableA, String tableB, String predicate)
+            throws SQLException {
+        Predicate joinPredicate = Predicate.fromName(predicate);
+        if (joinPredicate == Predicate.DWITHIN) {
+            throw new IllegalArgumentException("The dwithin predicate needs a distance");
+        }
+        return new JoinRowSource(connection, tableA, tableB, joinPredicate, 0).getResultSet();
+    }
+
+    /**
+     * @param connection Connection
+     * @param tableA     First table
+     * @param tableB     Second table
+     * @param predicate  Predicate name
+     * @param distance   Distance of the dwithin predicate
+     * @return The keys of the matching rows
+     * @throws SQLException
+     */
+    public static ResultSet spatialJoin(Connection connection, String tableA, String tableB, String predicate,
+                                        double distance) throws SQLException {
+        if (distance < 0) {
+            throw new IllegalArgumentException("The distance must be positive");
+        }
+        return new JoinRowSource(connection, tableA, tableB, Predicate.fromName(predicate), distance).getResultSet();
+    }
+
+    /**
+     * Supported predicates, evaluated as predicate(geomA, geomB)
+     */
+    enum Predicate {
+        INTERSECTS, CONTAINS, WITHIN, COVERS, COVEREDBY, TOUCHES, CROSSES, OVERLAPS, DWITHIN;
+
+        static Predicate fromName(String name) {
+            if (name != null) {
+                for (Predicate predicate : values()) {
+                    if (predicate.name().equalsIgnoreCase(name.trim())) {
+                        return predicate;
+                    }
+                }
+            }
+            throw new IllegalArgumentException("Unsupported spatial join predicate " + name
+                    + ", expected one of intersects, contains, within, covers, coveredby, touches, crosses, overlaps, dwithin");
+        }
+
+        /**
+         * @param prepared  Prepared geometry of the indexed table
+         * @param probe     Geometry of the streamed table
+         * @param indexIsA  True if the indexed table is the first table
+         * @param distance  Distance of the dwithin predicate
+         * @return predicate(geomA, geomB)
+         */
+        boolean evaluate(PreparedGeometry prepared, Geometry probe, boolean indexIsA, double distance) {
+            Geometry indexed = prepared.getGeometry();
+            switch (this) {
+                case INTERSECTS:
+                    return prepared.intersects(probe);
+                case TOUCHES:
+                    return prepared.touches(probe);
+                // The prepared geometry only helps when it is the containing or covering one
+                case CONTAINS:
+                    return indexIsA ? prepared.contains(probe) : probe.contains(indexed);
+                case WITHIN:
+                    return indexIsA ? probe.contains(indexed) : prepared.contains(probe);
+                case COVERS:
+                    return indexIsA ? prepared.covers(probe) : probe.covers(indexed);
+                case COVEREDBY:
+                    return indexIsA ? probe.covers(indexed) : prepared.covers(probe);
+                case CROSSES:
+                    return indexIsA ? prepared.crosses(probe) : probe.crosses(indexed);
+                case OVERLAPS:
+                    return indexIsA ? prepared.overlaps(probe) : probe.overlaps(indexed);
+                case DWITHIN:
+                    return prepared.intersects(probe) || indexed.isWithinDistance(probe, distance);
+                default:
+                    throw new IllegalStateException(name());
+            }
+        }
+    }
+
+    /**
+     * A row of the indexed table
+     */
+    private static final class IndexedRow {
+        private final long id;
+        private final PreparedGeometry prepared;
+
+        IndexedRow(long id, PreparedGeometry prepared) {
+            this.id = id;
+            this.prepared = prepared;
+        }
+    }
+
+    /**
+     * Build the index on the first read, then stream the other table
+     */
+    private static class JoinRowSource implements SimpleRowSource {
+        private final Connection connection;
+        private final TableLocation tableA;
+        private final TableLocation tableB;
+        private final Predicate predicate;
+        private final double distance;
+        private final int threadCount = Runtime.getRuntime().availableProcessors();
+        // If true, the index is built and the streamed table is read
+        private boolean firstRow = true;
+        private STRtree index;
+        private boolean indexIsA;
+        private int srid = -1;
+        private Statement probeStatement;
+        private ResultSet probeQuery;
+        private boolean endOfProbe = false;
+        private ExecutorService executor;
+        private final Deque<Future<List<long[]>>> pendingBatches = new ArrayDeque<>();
+        private final Queue<long[]> pairs = new ArrayDeque<>();
+
+        JoinRowSource(Connection connection, String tableA, String tableB, Predicate predicate, double distance)
+                throws SQLException {
+            DBTypes dbType = DBUtils.getDBType(connection);
+            this.connection = connection;
+            this.tableA = TableLocation.parse(tableA, dbType);
+            this.tableB = TableLocation.parse(tableB, dbType);
+            this.predicate = predicate;
+            this.distance = distance;
+        }
+
+        ResultSet getResultSet() {
+            SimpleResultSet rs = new SimpleResultSet(this);
+            rs.addColumn(ID_A, Types.BIGINT, 19, 0);
+            rs.addColumn(ID_B, Types.BIGINT, 19, 0);
+            return rs;
+        }
+
+        @Override
+        public Object[] readRow() throws SQLException {
+            if (firstRow) {
+                reset();
+            }
+            while (pairs.isEmpty()) {
+                while (!endOfProbe && pendingBatches.size() < 2 * threadCount) {
+                    submitBatch();
+                }
+                if (pendingBatches.isEmpty()) {
+                    return null;
+                }
+                pairs.addAll(getResult(pendingBatches.poll()));
+            }
+            long[] pair = pairs.remove();
+            return new Object[]{pair[0], pair[1]};
+        }
+
+        /**
+         * Read the next rows of the streamed table and submit them to the threads
+         */
+        private void submitBatch() throws SQLException {
+            final List<Long> ids = new ArrayList<>(BATCH_SIZE);
+            final List<Geometry> geometries = new ArrayList<>(BATCH_SIZE);
+            while (ids.size() < BATCH_SIZE) {
+                if (!probeQuery.next()) {
+                    endOfProbe = true;
+                    break;
+                }
+                Geometry geometry = (Geometry) probeQuery.getObject(2);
+                if (geometry != null && !geometry.isEmpty()) {
+                    checkSRID(geometry);
+                    ids.add(probeQuery.getLong(1));
+                    geometries.add(geometry);
+                }
+            }
+            if (!ids.isEmpty()) {
+                pendingBatches.add(executor.submit(() -> match(ids, geometries)));
+            }
+        }
+
+        /**
+         * @return The pairs of keys of the matching rows, in the order of the streamed rows
+         */
+        private List<long[]> match(List<Long> ids, List<Geometry> geometries) {
+            List<long[]> result = new ArrayList<>();
+            for (int i = 0; i < ids.size(); i++) {
+                Geometry probe = geometries.get(i);
+                long probeId = ids.get(i);
+                Envelope envelope = new Envelope(probe.getEnvelopeInternal());
+                if (predicate == Predicate.DWITHIN) {
+                    envelope.expandBy(distance);
+                }
+                List<IndexedRow> candidates = index.query(envelope);
+                for (IndexedRow candidate : candidates) {
+                    if (predicate.evaluate(candidate.prepared, probe, indexIsA, distance)) {
+                        result.add(indexIsA ? new long[]{candidate.id, probeId} : new long[]{probeId, candidate.id});
+                    }
+                }
+            }
+            return result;
+        }
+
+        private void checkSRID(Geometry geometry) throws SQLException {
+            if (srid == -1) {
+                srid = geometry.getSRID();
+            } else if (srid != geometry.getSRID()) {
+                throw new SQLException("Operation on mixed SRID geometries not supported");
+            }
+        }
+
+        private String getSelect(TableLocation table) throws SQLException {
+            DBTypes dbType = DBUtils.getDBType(connection);
+            Tuple<String, Integer> pkIndex = JDBCUtilities.getIntegerPrimaryKeyNameAndIndex(connection, table);
+            if (pkIndex == null) {
+                throw new IllegalStateException("Table " + table.getTable()
+                        + " must contain a single integer primary key.");
+            }
+            String geomColumn = GeometryTableUtilities.getFirstGeometryColumnNameAndIndex(connection, table).first();
+            return "SELECT " + TableLocation.quoteIdentifier(pkIndex.first(), dbType) + ", "
+                    + TableLocation.quoteIdentifier(geomColumn, dbType) + " FROM " + table;
+        }
+
+        private long count(TableLocation table) throws SQLException {
+            try (Statement st = connection.createStatement();
+                 ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM " + table)) {
+                rs.next();
+                return rs.getLong(1);
+            }
+        }
+
+        /**
+         * Pack the prepared geometries of the smallest table in a STRtree
+         */
+        private void buildIndex() throws SQLException {
+            indexIsA = count(tableA) <= count(tableB);
+            index = new STRtree();
+            try (Statement st = connection.createStatement();
+                 ResultSet rs = st.executeQuery(getSelect(indexIsA ? tableA : tableB))) {
+                while (rs.next()) {
+                    Geometry geometry = (Geometry) rs.getObject(2);
+                    if (geometry != null && !geometry.isEmpty()) {
+                        checkSRID(geometry);
+                        index.insert(geometry.getEnvelopeInternal(),
+                                new IndexedRow(rs.getLong(1), PreparedGeometryFactory.prepare(geometry)));
+                    }
+                }
+            }
+            index.build();
+        }
+
+        @Override
+        public void reset() throws SQLException {
+            close();
+            if (index == null) {
+                buildIndex();
+            }
+            probeStatement = connection.createStatement();
+            probeQuery = probeStatement.executeQuery(getSelect(indexIsA ? tableB : tableA));
+            endOfProbe = false;
+            firstRow = false;
+            executor = Executors.newFixedThreadPool(threadCount, runnable -> {
+                // Do not prevent the JVM from exiting if the result set is not closed
+                Thread thread = new Thread(runnable, "ST_SpatialJoin");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        @Override
+        public void close() {
+            if (executor != null) {
+                executor.shutdownNow();
+                executor = null;
+            }
+            pendingBatches.clear();
+            pairs.clear();
+            if (probeStatement != null) {
+                try {
+                    // Also closes the probe query
+                    probeStatement.close();
+                    probeStatement = null;
+                    probeQuery = null;
+                } catch (SQLException ex) {
+                    throw new RuntimeException(ex);
+                }
+            }
+        }
+
+        private static List<long[]> getResult(Future<List<long[]>> future) throws SQLException {
+            try {
+                return future.get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("The spatial join has been interrupted", ex);
+            } catch (ExecutionException ex) {
+                Throwable cause = ex.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw new SQLException("Cannot join the tables", cause);
+            }
+        }
+    }
+}
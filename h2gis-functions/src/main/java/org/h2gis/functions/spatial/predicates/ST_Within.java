@@ -23,6 +23,7 @@ package org.h2gis.functions.spatial.predicates;
 import java.sql.SQLException;
 import org.h2gis.api.DeterministicScalarFunction;
 import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
 
 /**
  * Return true if the geometry A is within the geometry B
@@ -55,6 +56,11 @@ public class ST_Within extends DeterministicScalarFunction {
         if(a.getSRID()!=b.getSRID()){
             throw new SQLException("Operation on mixed SRID geometries not supported");
         }
+        // Only the containing geometry gains from being prepared
+        PreparedGeometry prepared = PreparedGeometryCache.get(b);
+        if (prepared != null) {
+            return prepared.contains(a);
+        }
         return a.within(b);
     }
 }
@@ -20,11 +20,10 @@
 
 package org.h2gis.functions.spatial.properties;
 
-import org.cts.CRSFactory;
 import org.cts.crs.CRSException;
 import org.cts.crs.CoordinateReferenceSystem;
 import org.h2gis.api.DeterministicScalarFunction;
-import org.h2gis.functions.spatial.crs.SpatialRefRegistry;
+import org.h2gis.functions.spatial.crs.CRSCache;
 import org.locationtech.jts.geom.*;
 
 import java.sql.Connection;
@@ -36,9 +35,6 @@ import java.sql.SQLException;
  */
 public class ST_DistanceSphere extends DeterministicScalarFunction {
 
-    private static CRSFactory crsf;
-    private static SpatialRefRegistry srr = new SpatialRefRegistry();
-
     /**
      * Default constructor
      */
@@ -65,17 +61,12 @@ public class ST_DistanceSphere extends DeterministicScalarFunction {
             throw new SQLException("Operation on mixed SRID geometries not supported");
         }
 
-        if (crsf == null) {
-            crsf = new CRSFactory();
-            crsf.getRegistryManager().addRegistry(srr);
-        }
-        srr.setConnection(connection);
         try {
             int srid = a.getSRID();
             if (srid <= 0) {
                 srid = 4326;
             }
-            CoordinateReferenceSystem crs = crsf.getCRS(srr.getRegistryName() + ":" + srid);
+            CoordinateReferenceSystem crs = CRSCache.getCache(connection).getCRS(connection, srid);
 
             if (!CoordinateReferenceSystem.Type.GEOGRAPHIC2D.equals(crs.getType())) {
                 throw new SQLException("ERROR: only lon/lag coordinate system are supported in geography");
@@ -91,8 +82,6 @@ public class ST_DistanceSphere extends DeterministicScalarFunction {
             return distance * radius;
         } catch (CRSException e) {
             throw new SQLException("Cannot find SRID", e);
-        } finally {
-            srr.setConnection(null);
         }
     }
 
@@ -20,10 +20,10 @@
 package org.h2gis.functions.spatial.topography;
 
 import org.h2gis.api.DeterministicScalarFunction;
+import org.h2gis.utilities.jts_utils.GeometryCache;
 import org.h2gis.utilities.jts_utils.TriMarkers;
 import org.locationtech.jts.geom.*;
 import org.locationtech.jts.geom.impl.CoordinateArraySequence;
-import org.locationtech.jts.geom.util.LinearComponentExtracter;
 import org.locationtech.jts.index.strtree.STRtree;
 import org.locationtech.jts.operation.linemerge.LineMerger;
 
@@ -37,6 +37,8 @@ import java.util.List;
  */
 public class ST_Drape extends DeterministicScalarFunction{
 
+    //Triangle indexes of the last TINs, shared by the rows of a query
+    private static final GeometryCache<STRtree> TIN_CACHE = new GeometryCache<>(4, 64);
     
     public ST_Drape(){
         addProperty(PROP_REMARKS, "This function drapes an input geometry to a set of triangles.\n"
@@ -63,12 +65,7 @@ public class ST_Drape extends DeterministicScalarFunction{
         }
         
         //Check if triangles are triangles and create a quadtree to perform spatial queries
-        int nb = triangles.getNumGeometries();
-        STRtree sTRtree = new STRtree();
-        for (int i = 0; i < nb; i++) {
-            Geometry geom = triangles.getGeometryN(i);
-            sTRtree.insert(geom.getEnvelopeInternal(), TINFeatureFactory.createTriangle(geom));
-        }
+        STRtree sTRtree = TIN_CACHE.get(triangles, ST_Drape::createTriangleIndex);
       
         if (geomToDrape instanceof Point) {
             return drapePoint(geomToDrape, triangles, sTRtree);
@@ -88,6 +85,23 @@ public class ST_Drape extends DeterministicScalarFunction{
         } 
     }
 
+    /**
+     * Create a built index of the triangles
+     * @param triangles
+     * @return
+     */
+    public static STRtree createTriangleIndex(Geometry triangles) {
+        int nb = triangles.getNumGeometries();
+        STRtree sTRtree = new STRtree();
+        for (int i = 0; i < nb; i++) {
+            Geometry geom = triangles.getGeometryN(i);
+            sTRtree.insert(geom.getEnvelopeInternal(), TINFeatureFactory.createTriangle(geom));
+        }
+        //Build now, the index is read only once shared
+        sTRtree.build();
+        return sTRtree;
+    }
+
     /**
      * Drape a multipoint geometry to a set of triangles
      * @param pts
@@ -128,7 +142,7 @@ public class ST_Drape extends DeterministicScalarFunction{
     public static Geometry drapeMultiPolygon(MultiPolygon polygons, Geometry triangles, STRtree sTRtree) {
         GeometryFactory factory = polygons.getFactory();         
         //Split the triangles in lines to perform all intersections
-        Geometry triangleLines = LinearComponentExtracter.getGeometry(triangles, true);
+        Geometry triangleLines = getTriangleLines(polygons, sTRtree);
         int nbPolygons = polygons.getNumGeometries();
         Polygon[] polygonsDiff = new Polygon[nbPolygons];
         for (int i = 0; i < nbPolygons; i++) {
@@ -147,7 +161,7 @@ public class ST_Drape extends DeterministicScalarFunction{
     public static Geometry drapeMultiLineString(MultiLineString lines, Geometry triangles, STRtree sTRtree) {
         GeometryFactory factory = lines.getFactory();         
         //Split the triangles in lines to perform all intersections
-        Geometry triangleLines = LinearComponentExtracter.getGeometry(triangles, true);
+        Geometry triangleLines = getTriangleLines(lines, sTRtree);
         int nbLines = lines.getNumGeometries();
         LineString[] lineStrings = new LineString[nbLines];
         for (int i = 0; i < nbLines; i++) {
@@ -167,7 +181,7 @@ public class ST_Drape extends DeterministicScalarFunction{
     public static Geometry drapeLineString(LineString line, Geometry triangles, STRtree sTRtree) {
         GeometryFactory factory = line.getFactory();
         //Split the triangles in lines to perform all intersections
-        Geometry triangleLines = LinearComponentExtracter.getGeometry(triangles, true);
+        Geometry triangleLines = getTriangleLines(line, sTRtree);
         LineString diffExt = (LineString) lineMerge(line.difference(triangleLines), factory);
         return factory.createLineString(updateCoordinates(diffExt.getCoordinateSequence(), sTRtree));
     }
@@ -183,11 +197,28 @@ public class ST_Drape extends DeterministicScalarFunction{
     public static Polygon drapePolygon(Polygon p, Geometry triangles, STRtree sTRtree) {
         GeometryFactory factory = p.getFactory();
         //Split the triangles in lines to perform all intersections
-        Geometry triangleLines = LinearComponentExtracter.getGeometry(triangles, true);        
+        Geometry triangleLines = getTriangleLines(p, sTRtree);
         Polygon splittedP = processPolygon(p, triangleLines, factory,sTRtree);
         return splittedP;
     }
     
+    /**
+     * Return the lines of the triangles that may intersect the geometry
+     * @param geom
+     * @param sTRtree
+     * @return 
+     */
+    private static Geometry getTriangleLines(Geometry geom, STRtree sTRtree) {
+        GeometryFactory factory = geom.getFactory();
+        List<Triangle> result = sTRtree.query(geom.getEnvelopeInternal());
+        LineString[] lines = new LineString[result.size()];
+        for (int i = 0; i < lines.length; i++) {
+            Triangle triangle = result.get(i);
+            lines[i] = factory.createLineString(new Coordinate[]{triangle.p0, triangle.p1, triangle.p2, triangle.p0});
+        }
+        return factory.createMultiLineString(lines);
+    }
+
     /**
      * Cut the lines of the polygon with the triangles
      * @param p
@@ -26,6 +26,7 @@ import org.h2.value.Value;
 import org.h2.value.ValueArray;
 import org.h2.value.ValueVarchar;
 import org.h2gis.api.DeterministicScalarFunction;
+import org.h2gis.utilities.JDBCUtilities;
 import org.h2gis.utilities.TableLocation;
 import org.h2gis.utilities.TableUtilities;
 import org.h2gis.utilities.dbtypes.DBUtils;
@@ -35,13 +36,26 @@ import org.locationtech.jts.geom.Coordinate;
 import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.geom.GeometryFactory;
 import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.operation.union.CascadedPolygonUnion;
 
 import java.sql.*;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import org.h2gis.utilities.GeometryTableUtilities;
 
 /**
  * Split triangle into area within the specified range values.
+ *
+ * The triangles may be split on several threads with the
+ * <code>@ST_TRIANGLECONTOURING_THREADS</code> session variable. The polygons
+ * of the same iso level may be merged by batch of triangles with the
+ * <code>@ST_TRIANGLECONTOURING_MERGE</code> session variable.
  * *********************************
  * ANR EvalPDU
  * IFSTTAR 11_05_2011
@@ -54,13 +68,33 @@ public class ST_TriangleContouring extends DeterministicScalarFunction {
     /** The default field name for explode count, value is [1-n] */
     public static final String ISO_FIELD_NAME = "IDISO";
     private static final String HACK_URL = "jdbc:columnlist:connection";
+    /**
+     * Session variable giving the number of threads splitting the triangles, for example
+     * <code>SET @ST_TRIANGLECONTOURING_THREADS = 4</code>. Default 1, the triangles are split on reading.
+     */
+    public static final String THREADS = "ST_TRIANGLECONTOURING_THREADS";
+    /**
+     * Session variable, set to false to return the polygons of the split batches as soon as they are
+     * ready instead of the order of the input table. Default true.
+     */
+    public static final String ORDERED = "ST_TRIANGLECONTOURING_ORDERED";
+    /**
+     * Session variable, set to true to merge the adjacent polygons of the same iso level within each
+     * batch of triangles. The other columns of the merged rows are null. Default false.
+     */
+    public static final String MERGE = "ST_TRIANGLECONTOURING_MERGE";
+    /** Number of triangles split by a thread at once */
+    private static final int BATCH_SIZE = 512;
 
     public ST_TriangleContouring() {
         addProperty(PROP_REMARKS, "Split triangle into polygons within the specified range of values.\n" +
                 "Iso contouring using Z:\n" +
                 "select * from ST_TRIANGLECONTOURING('input_table',10,20,30,40)\n" +
                 "Iso contouring using table columns\n" +
-                "SELECT * FROM ST_TRIANGLECONTOURING('input_table','m1','m2','m3',10,20,30,40)");
+                "SELECT * FROM ST_TRIANGLECONTOURING('input_table','m1','m2','m3',10,20,30,40)\n" +
+                "Execute SET @" + THREADS + " = n to split the triangles on n threads, SET @" + ORDERED + " = false\n" +
+                "to not keep the order of the input table and SET @" + MERGE + " = true to merge the polygons\n" +
+                "of the same iso level by batch of triangles.");
     }
 
     @Override
@@ -112,6 +146,9 @@ public class ST_TriangleContouring extends DeterministicScalarFunction {
             }
             rowSource = new ExplodeResultSet(connection,tableName, isoLvls);
         }
+        rowSource.setOptions(JDBCUtilities.getSessionVariable(connection, THREADS, 1),
+                JDBCUtilities.getSessionVariable(connection, ORDERED, true),
+                JDBCUtilities.getSessionVariable(connection, MERGE, false));
         return rowSource.getResultSet();
     }
 
@@ -136,6 +173,14 @@ public class ST_TriangleContouring extends DeterministicScalarFunction {
         private List<Double> isoLvls;
         private GeometryFactory factory = new GeometryFactory();
         private TableLocation tableLocation;
+        // Split the triangles on threads when the executor is set
+        private int threadCount = 1;
+        private boolean ordered = true;
+        private boolean merge = false;
+        private ExecutorService executor;
+        private CompletionService<List<Object[]>> completionService;
+        private final Deque<Future<List<Object[]>>> pendingBatches = new ArrayDeque<>();
+        private final Queue<Object[]> splitRows = new ArrayDeque<>();
 
         private ExplodeResultSet(Connection connection, String tableName, String isoField1,String isoField2,String isoField3, List<Double> isoLvls) throws SQLException {
             this.tableName = tableName;                      
@@ -158,11 +203,28 @@ public class ST_TriangleContouring extends DeterministicScalarFunction {
             this.isoLvls = isoLvls;
         }
 
+        /**
+         * @param threadCount Number of threads splitting the triangles
+         * @param ordered False to return the batches in the order they are split
+         * @param merge True to merge the polygons of the same iso level by batch
+         */
+        private void setOptions(int threadCount, boolean ordered, boolean merge) {
+            if (threadCount < 1) {
+                throw new IllegalArgumentException("@" + THREADS + " must be greater than 0");
+            }
+            this.threadCount = threadCount;
+            this.ordered = ordered;
+            this.merge = merge;
+        }
+
         @Override
         public Object[] readRow() throws SQLException {
             if(firstRow) {
                 reset();
             }
+            if(executor != null) {
+                return readSplitRow();
+            }
             while(generatedRows.isEmpty() && !endOfResultSet) {
                 parseRow();
             }
@@ -185,8 +247,151 @@ public class ST_TriangleContouring extends DeterministicScalarFunction {
             }
         }
 
+        /**
+         * Return the next row split by the threads, keeping at most two batches per
+         * thread in progress so that the input table is not read ahead of the output.
+         */
+        private Object[] readSplitRow() throws SQLException {
+            while (splitRows.isEmpty()) {
+                while (!endOfResultSet && pendingBatches.size() < 2 * threadCount) {
+                    submitBatch();
+                }
+                if (pendingBatches.isEmpty()) {
+                    return null;
+                }
+                Future<List<Object[]>> batch;
+                if (ordered) {
+                    batch = pendingBatches.poll();
+                } else {
+                    batch = takeCompleted();
+                    pendingBatches.remove(batch);
+                }
+                splitRows.addAll(getResult(batch));
+            }
+            return splitRows.remove();
+        }
+
+        private Future<List<Object[]>> takeCompleted() throws SQLException {
+            try {
+                return completionService.take();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("The contouring has been interrupted", ex);
+            }
+        }
+
+        /**
+         * Read the next triangles of the table and submit them to the threads
+         */
+        private void submitBatch() throws SQLException {
+            final List<TriMarkers> triangles = new ArrayList<>(BATCH_SIZE);
+            final List<Object[]> values = new ArrayList<>(BATCH_SIZE);
+            while (triangles.size() < BATCH_SIZE) {
+                if (!tableQuery.next()) {
+                    endOfResultSet = true;
+                    break;
+                }
+                Geometry inputTriangle = (Geometry) tableQuery.getObject(spatialFieldIndex);
+                if(inputTriangle == null || inputTriangle.getNumPoints() != 4) {
+                    throw new SQLException("Invalid geometry input, got " + (inputTriangle == null ? "null" : inputTriangle.toText()));
+                }
+                triangles.add(triFactory.getTriangle(inputTriangle.getCoordinates()));
+                Object[] row = new Object[columnCount + 1];
+                if (!merge) {
+                    for (int i = 1; i <= columnCount; i++) {
+                        if (i != spatialFieldIndex) {
+                            row[i - 1] = tableQuery.getObject(i);
+                        }
+                    }
+                }
+                values.add(row);
+            }
+            if (!triangles.isEmpty()) {
+                Callable<List<Object[]>> task = () -> merge ? splitAndMerge(triangles) : split(triangles, values);
+                // The completion queue is only drained when the order is not kept
+                pendingBatches.add(ordered ? executor.submit(task) : completionService.submit(task));
+            }
+        }
+
+        /**
+         * Split the triangles, each output row copies the values of its input row
+         */
+        private List<Object[]> split(List<TriMarkers> triangles, List<Object[]> values) {
+            List<Object[]> rows = new ArrayList<>(triangles.size() * 2);
+            for (int idTriangle = 0; idTriangle < triangles.size(); idTriangle++) {
+                Map<Short, Deque<TriMarkers>> result = Contouring.processTriangle(triangles.get(idTriangle), isoLvls);
+                for (Map.Entry<Short, Deque<TriMarkers>> isoResult : result.entrySet()) {
+                    for (TriMarkers outputTriangle : isoResult.getValue()) {
+                        Object[] row = values.get(idTriangle).clone();
+                        row[spatialFieldIndex - 1] = createPolygon(outputTriangle);
+                        row[columnCount] = (int) isoResult.getKey();
+                        rows.add(row);
+                    }
+                }
+            }
+            return rows;
+        }
+
+        /**
+         * Split the triangles and merge the polygons of the same iso level
+         */
+        private List<Object[]> splitAndMerge(List<TriMarkers> triangles) {
+            Map<Short, List<Geometry>> polygonsByIso = new TreeMap<>();
+            for (TriMarkers triangle : triangles) {
+                Map<Short, Deque<TriMarkers>> result = Contouring.processTriangle(triangle, isoLvls);
+                for (Map.Entry<Short, Deque<TriMarkers>> isoResult : result.entrySet()) {
+                    List<Geometry> polygons = polygonsByIso.computeIfAbsent(isoResult.getKey(), k -> new ArrayList<>());
+                    for (TriMarkers outputTriangle : isoResult.getValue()) {
+                        polygons.add(createPolygon(outputTriangle));
+                    }
+                }
+            }
+            List<Object[]> rows = new ArrayList<>();
+            for (Map.Entry<Short, List<Geometry>> isoPolygons : polygonsByIso.entrySet()) {
+                Geometry union = CascadedPolygonUnion.union(isoPolygons.getValue());
+                for (int i = 0; i < union.getNumGeometries(); i++) {
+                    Object[] row = new Object[columnCount + 1];
+                    row[spatialFieldIndex - 1] = union.getGeometryN(i);
+                    row[columnCount] = (int) isoPolygons.getKey();
+                    rows.add(row);
+                }
+            }
+            return rows;
+        }
+
+        private Polygon createPolygon(TriMarkers triangle) {
+            Coordinate[] pverts = {triangle.p0, triangle.p1, triangle.p2, triangle.p0};
+            return factory.createPolygon(factory.createLinearRing(pverts), null);
+        }
+
+        private static List<Object[]> getResult(Future<List<Object[]>> future) throws SQLException {
+            try {
+                return future.get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("The contouring has been interrupted", ex);
+            } catch (ExecutionException ex) {
+                Throwable cause = ex.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw new SQLException("Cannot split the triangles", cause);
+            }
+        }
+
+        private void shutdownExecutor() {
+            if (executor != null) {
+                executor.shutdownNow();
+                executor = null;
+                completionService = null;
+            }
+            pendingBatches.clear();
+            splitRows.clear();
+        }
+
         @Override
         public void close() {
+            shutdownExecutor();
             if(tableQuery!=null) {
                 try {
                     tableQuery.close();
@@ -224,7 +429,9 @@ public class ST_TriangleContouring extends DeterministicScalarFunction {
         public void reset() throws SQLException {
             if(tableQuery!=null && !tableQuery.isClosed()) {
                 close();
-            }            
+            }
+            shutdownExecutor();
+            endOfResultSet = false;
             LinkedHashMap<String, Integer> geomNamesAndIndexes = GeometryTableUtilities.getGeometryColumnNamesAndIndexes(connection, tableLocation);
             Map.Entry<String, Integer> firstGeomNameAndIndex = geomNamesAndIndexes.entrySet().iterator().next();
             if (spatialFieldName != null && !spatialFieldName.isEmpty()) {
@@ -256,6 +463,15 @@ public class ST_TriangleContouring extends DeterministicScalarFunction {
             if(spatialFieldIndex == null) {
                 throw new SQLException("Geometry field "+spatialFieldName+" of table "+tableName+" not found");
             }
+            if (threadCount > 1 || merge) {
+                executor = Executors.newFixedThreadPool(threadCount, runnable -> {
+                    // Do not prevent the JVM from exiting if the result set is not closed
+                    Thread thread = new Thread(runnable, "ST_TriangleContouring");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                completionService = new ExecutorCompletionService<>(executor);
+            }
         }
 
         public ResultSet getResultSet() throws SQLException {
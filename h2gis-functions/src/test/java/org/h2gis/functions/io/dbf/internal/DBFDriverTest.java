@@ -1,11 +1,18 @@
 package org.h2gis.functions.io.dbf.internal;
 
+import org.h2.value.Value;
+import org.h2.value.ValueDouble;
+import org.h2.value.ValueInteger;
+import org.h2.value.ValueNull;
+import org.h2.value.ValueVarchar;
+import org.h2gis.functions.io.dbf.DBFEngineTest;
 import org.h2gis.functions.io.shp.SHPEngineTest;
 import org.junit.jupiter.api.Test;
 
 import java.io.File;
 import java.io.IOException;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 
@@ -18,4 +25,81 @@ public class DBFDriverTest {
         dbfDriver.initDriverFromFile(new File(SHPEngineTest.class.getResource("waternetwork.dbf").getFile()));
         assertTrue(dbfDriver.dbaseFileReader.getPositionFor(11000000, 0) > Integer.MAX_VALUE);
     }
+
+    @Test
+    public void testReadRecord() throws IOException {
+        DBFDriver dbfDriver = new DBFDriver();
+        dbfDriver.initDriverFromFile(new File(SHPEngineTest.class.getResource("waternetwork.dbf").getFile()));
+        try {
+            int fieldCount = dbfDriver.getFieldCount();
+            Value[] row = new Value[fieldCount];
+            for (int rowId = 0; rowId < dbfDriver.getRowCount(); rowId++) {
+                dbfDriver.getRow(rowId, row);
+                for (int columnId = 0; columnId < fieldCount; columnId++) {
+                    assertEquals(dbfDriver.getField(rowId, columnId), row[columnId]);
+                }
+            }
+            // Decoded values of the first records
+            dbfDriver.getRow(0, row);
+            assertEquals(ValueVarchar.get("river"), row[0]);
+            assertEquals(ValueInteger.get(1), row[1]);
+            assertEquals(ValueDouble.get(9.492402903934545), row[2]);
+            dbfDriver.getRow(1, row);
+            assertEquals(ValueVarchar.get("ditch"), row[0]);
+            assertEquals(ValueInteger.get(2), row[1]);
+            assertEquals(ValueDouble.get(261.62989135452983), row[2]);
+        } finally {
+            dbfDriver.close();
+        }
+    }
+
+    @Test
+    public void testReadNullValues() throws IOException {
+        DBFDriver dbfDriver = new DBFDriver();
+        dbfDriver.initDriverFromFile(new File(DBFEngineTest.class.getResource("null_values.dbf").getFile()));
+        try {
+            Value[] row = new Value[dbfDriver.getFieldCount()];
+            dbfDriver.getRow(0, row);
+            assertEquals(ValueVarchar.get("2313153"), row[0]);
+            assertEquals(ValueVarchar.get("Circuit Bugatti"), row[1]);
+            // Blank character field
+            assertEquals(ValueVarchar.get(""), row[2]);
+            assertEquals(ValueVarchar.get("raceway"), row[3]);
+            assertEquals(ValueInteger.get(0), row[4]);
+            // Blank numeric field
+            assertEquals(ValueNull.INSTANCE, row[7]);
+            dbfDriver.getRow(4, row);
+            assertEquals(ValueVarchar.get("trunk"), row[3]);
+            assertEquals(ValueInteger.get(1), row[5]);
+            assertEquals(ValueInteger.get(90), row[7]);
+            assertEquals(ValueInteger.get(130), dbfDriver.getField(1, 7));
+        } finally {
+            dbfDriver.close();
+        }
+    }
+
+    @Test
+    public void testReadEncodedValuesAndDates() throws IOException {
+        DBFDriver dbfDriver = new DBFDriver();
+        dbfDriver.initDriverFromFile(new File(DBFEngineTest.class.getResource("sotchi.dbf").getFile()), "cp1251");
+        try {
+            Value[] row = new Value[dbfDriver.getFieldCount()];
+            dbfDriver.getRow(0, row);
+            assertEquals(ValueInteger.get(1), row[0]);
+            assertEquals(ValueVarchar.get("ВП-2"), row[1]);
+            assertEquals(ValueVarchar.get("Дубовский канал"), row[2]);
+            assertEquals(ValueDouble.get(2.0), row[3]);
+            assertEquals(ValueDouble.get(2.5), row[4]);
+            assertEquals(ValueDouble.get(0.0), row[5]);
+            assertEquals(ValueVarchar.get("+"), row[10]);
+            // The dates of this file are blank, the dates are read as null
+            assertEquals(ValueNull.INSTANCE, row[11]);
+            assertEquals(ValueNull.INSTANCE, row[15]);
+            dbfDriver.getRow(4, row);
+            assertEquals(ValueInteger.get(0), row[0]);
+            assertEquals(ValueVarchar.get("ВП-2-кр1-4-8"), row[1]);
+        } finally {
+            dbfDriver.close();
+        }
+    }
 }
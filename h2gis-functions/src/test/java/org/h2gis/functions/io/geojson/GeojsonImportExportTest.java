@@ -27,6 +27,8 @@ import org.h2gis.api.EmptyProgressVisitor;
 import org.h2gis.functions.factory.H2GISDBFactory;
 import org.h2gis.functions.factory.H2GISFunctions;
 import org.h2gis.postgis_jts.PostGISDBFactory;
+import org.h2gis.utilities.GeometryTableUtilities;
+import org.h2gis.utilities.TableLocation;
 import org.junit.jupiter.api.*;
 import org.locationtech.jts.geom.Coordinate;
 import org.locationtech.jts.geom.Geometry;
@@ -35,6 +37,7 @@ import org.locationtech.jts.io.WKTReader;
 import java.io.File;
 import java.io.IOException;
 import java.net.ConnectException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.sql.*;
 import java.util.Properties;
@@ -1325,4 +1328,112 @@ public class GeojsonImportExportTest {
             stat.execute("CALL GeoJsonWrite('target/lines.geojson', 'DATA', true);");
         }
     }
+
+    @Test
+    public void testReadGeojsonSinglePass() throws Exception {
+        String geojson = "{\"type\": \"FeatureCollection\", \"features\": [" +
+                "{\"type\": \"Feature\", \"geometry\": {\"type\": \"Point\", \"coordinates\": [1, 2]}," +
+                " \"properties\": {\"id\": 1, \"name\": \"a\"}}," +
+                "{\"type\": \"Feature\", \"geometry\": {\"type\": \"Point\", \"coordinates\": [3, 4]}," +
+                " \"properties\": {\"id\": 2.5, \"name\": \"b\", \"flag\": true}}," +
+                "{\"type\": \"Feature\", \"geometry\": {\"type\": \"LineString\", \"coordinates\": [[1, 2], [3, 4]]}," +
+                " \"properties\": {\"id\": 3, \"name\": null, \"flag\": false}}]}";
+        Files.write(new File("target/single_pass.geojson").toPath(), geojson.getBytes(StandardCharsets.UTF_8));
+        try (Statement stat = connection.createStatement()) {
+            // The table is created from the first feature, the next ones add and widen columns
+            stat.execute("CALL GeoJsonRead('target/single_pass.geojson', 'TABLE_SINGLE_PASS', null, true, 1, 2);");
+            try (ResultSet res = stat.executeQuery("SELECT * FROM TABLE_SINGLE_PASS ORDER BY ID;")) {
+                assertTrue(res.next());
+                assertGeometryEquals("POINT (1 2)", res.getObject("THE_GEOM"));
+                assertEquals(1, res.getDouble("ID"));
+                assertEquals("a", res.getString("NAME"));
+                assertNull(res.getObject("FLAG"));
+                assertTrue(res.next());
+                assertGeometryEquals("POINT (3 4)", res.getObject("THE_GEOM"));
+                assertEquals(2.5, res.getDouble("ID"));
+                assertEquals("b", res.getString("NAME"));
+                assertTrue(res.getBoolean("FLAG"));
+                assertTrue(res.next());
+                assertGeometryEquals("LINESTRING (1 2, 3 4)", res.getObject("THE_GEOM"));
+                assertEquals(3, res.getDouble("ID"));
+                assertNull(res.getObject("NAME"));
+                assertFalse(res.getBoolean("FLAG"));
+                assertFalse(res.next());
+            }
+            stat.execute("DROP TABLE IF EXISTS TABLE_SINGLE_PASS");
+        }
+    }
+
+    @Test
+    public void testReadGeojsonSequence() throws Exception {
+        StringBuilder geojson = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            // Record separators and bare geometries are accepted, the crs of the first text gives the SRID
+            geojson.append('\u001e').append("{\"type\": \"Feature\", ")
+                    .append(i == 0 ? "\"crs\": {\"type\": \"name\", \"properties\": {\"name\": \"urn:ogc:def:crs:EPSG::2154\"}}, " : "")
+                    .append("\"properties\": {\"id\": ").append(i)
+                    .append(i % 2 == 0 ? ", \"name\": \"f" + i + "\"" : ", \"value\": " + i + ".5")
+                    .append("}, \"geometry\": {\"type\": \"Point\", \"coordinates\": [").append(i).append(", 2]}}\n");
+            if (i == 50) {
+                geojson.append("\r\n{\"type\": \"Point\", \"coordinates\": [-1, -2, 3]}\n");
+            }
+        }
+        File file = new File("target/sequence.geojsonl");
+        Files.write(file.toPath(), geojson.toString().getBytes(StandardCharsets.UTF_8));
+        GeoJsonSeqReaderDriver reader = new GeoJsonSeqReaderDriver(connection, file, true);
+        reader.setThreadCount(4);
+        reader.setBatchSize(7);
+        reader.setBlockSize(500);
+        reader.read(new EmptyProgressVisitor(), "TABLE_SEQUENCE");
+        try (Statement stat = connection.createStatement()) {
+            try (ResultSet res = stat.executeQuery("SELECT COUNT(*), COUNT(NAME), SUM(ID), SUM(VALUE) FROM TABLE_SEQUENCE")) {
+                assertTrue(res.next());
+                assertEquals(101, res.getInt(1));
+                assertEquals(50, res.getInt(2));
+                assertEquals(4950, res.getLong(3));
+                assertEquals(2525, res.getDouble(4), 1e-12);
+            }
+            assertEquals(2154, GeometryTableUtilities.getSRID(connection, TableLocation.parse("TABLE_SEQUENCE")));
+            try (ResultSet res = stat.executeQuery("SELECT * FROM TABLE_SEQUENCE ORDER BY _ROWID_")) {
+                // The features are inserted in the file order, all the features fit in the sample so the 3D
+                // point gives a Z to the other points
+                for (int i = 0; i < 51; i++) {
+                    assertTrue(res.next());
+                    assertGeometryEquals("SRID=2154;POINTZ (" + i + " 2 0)", res.getObject("THE_GEOM"));
+                    assertEquals(i, res.getLong("ID"));
+                }
+                assertTrue(res.next());
+                assertGeometryEquals("SRID=2154;POINTZ (-1 -2 3)", res.getObject("THE_GEOM"));
+                assertNull(res.getObject("ID"));
+            }
+            // The table is created from the first features then altered by the following ones
+            reader = new GeoJsonSeqReaderDriver(connection, file, true);
+            reader.setThreadCount(4);
+            reader.setBlockSize(500);
+            reader.setSampleSize(1);
+            reader.read(new EmptyProgressVisitor(), "TABLE_SEQUENCE");
+            try (ResultSet res = stat.executeQuery("SELECT COUNT(*), COUNT(NAME), SUM(ID), SUM(VALUE) FROM TABLE_SEQUENCE")) {
+                assertTrue(res.next());
+                assertEquals(101, res.getInt(1));
+                assertEquals(50, res.getInt(2));
+                assertEquals(4950, res.getLong(3));
+                assertEquals(2525, res.getDouble(4), 1e-12);
+            }
+            try (ResultSet res = stat.executeQuery("SELECT THE_GEOM FROM TABLE_SEQUENCE ORDER BY _ROWID_")) {
+                // The first point has been inserted before the 3D point was found
+                assertTrue(res.next());
+                assertGeometryEquals("SRID=2154;POINT (0 2)", res.getObject("THE_GEOM"));
+            }
+            try (ResultSet res = stat.executeQuery("SELECT THE_GEOM FROM TABLE_SEQUENCE WHERE ID IS NULL")) {
+                assertTrue(res.next());
+                assertGeometryEquals("SRID=2154;POINTZ (-1 -2 3)", res.getObject("THE_GEOM"));
+            }
+            stat.execute("CALL GeoJsonSeqRead('target/sequence.geojsonl', 'TABLE_SEQUENCE', true, 2, 10);");
+            try (ResultSet res = stat.executeQuery("SELECT COUNT(*) FROM TABLE_SEQUENCE")) {
+                assertTrue(res.next());
+                assertEquals(101, res.getInt(1));
+            }
+            stat.execute("DROP TABLE IF EXISTS TABLE_SEQUENCE");
+        }
+    }
 }
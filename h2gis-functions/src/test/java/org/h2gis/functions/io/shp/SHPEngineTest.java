@@ -21,9 +21,15 @@
 package org.h2gis.functions.io.shp;
 
 import org.apache.commons.io.FileUtils;
+import org.h2.engine.SessionLocal;
+import org.h2.result.Row;
 import org.h2.util.StringUtils;
+import org.h2.value.Value;
+import org.h2.value.ValueNull;
 import org.h2gis.functions.factory.H2GISDBFactory;
+import org.h2gis.functions.io.file_table.H2MVTable;
 import org.h2gis.functions.io.file_table.H2TableIndex;
+import org.h2gis.functions.io.shp.internal.SHPDriver;
 import org.h2gis.utilities.*;
 import org.h2gis.utilities.dbtypes.DBTypes;
 import org.junit.jupiter.api.*;
@@ -449,4 +455,113 @@ public class SHPEngineTest {
             assertTrue(rs.getString(1).contains("PK_INDEX"), "Expected contains PK_INDEX but result is " + rs.getString(1));
         }
     }
+
+    @Test
+    public void linkedShpFileSpatialIndexTest() throws Exception {
+        File src = new File(SHPEngineTest.class.getResource("waternetwork.shp").getPath());
+        File dst = new File("target/waternetwork_idx.shp");
+        FileUtils.copyFile(src, dst);
+        FileUtils.copyFile(new File(SHPEngineTest.class.getResource("waternetwork.dbf").getPath()), new File("target/waternetwork_idx.dbf"));
+        FileUtils.copyFile(new File(SHPEngineTest.class.getResource("waternetwork.shx").getPath()), new File("target/waternetwork_idx.shx"));
+        File indexFile = new File("target/waternetwork_idx" + SHPDriver.SPATIAL_INDEX_EXTENSION);
+        indexFile.delete();
+        Statement st = connection.createStatement();
+        st.execute("drop table if exists shptable");
+        st.execute("CALL FILE_TABLE('" + dst.getAbsolutePath() + "', 'SHPTABLE');");
+        st.execute("CREATE SPATIAL INDEX SHPTABLE_SPATIAL ON SHPTABLE(THE_GEOM)");
+        assertTrue(indexFile.exists());
+        try (ResultSet rs = st.executeQuery("EXPLAIN SELECT PK FROM SHPTABLE WHERE THE_GEOM && ST_BUFFER('POINT(183541 2426015)', 15)")) {
+            assertTrue(rs.next());
+            assertTrue(rs.getString(1).contains("SHPTABLE_SPATIAL"), rs.getString(1));
+        }
+        try (ResultSet rs = st.executeQuery("SELECT PK FROM SHPTABLE WHERE THE_GEOM && ST_BUFFER('POINT(183541 2426015)', 15) ORDER BY PK")) {
+            assertTrue(rs.next());
+            assertEquals(128, rs.getLong(1));
+            assertTrue(rs.next());
+            assertEquals(326, rs.getLong(1));
+            assertFalse(rs.next());
+        }
+        // Compare with the rows filtered without index
+        try (ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM SHPTABLE WHERE THE_GEOM && ST_BUFFER('POINT(183541 2426015)', 500)")) {
+            assertTrue(rs.next());
+            long indexedCount = rs.getLong(1);
+            try (ResultSet rs2 = st.executeQuery("SELECT COUNT(*) FROM SHPTABLE WHERE ST_INTERSECTS(ST_ENVELOPE(THE_GEOM), ST_ENVELOPE(ST_BUFFER('POINT(183541 2426015)', 500)))")) {
+                assertTrue(rs2.next());
+                assertEquals(rs2.getLong(1), indexedCount);
+            }
+            assertTrue(indexedCount > 2);
+        }
+        // The index file is reused
+        long lastModified = indexFile.lastModified();
+        st.execute("drop table shptable");
+        st.execute("CALL FILE_TABLE('" + dst.getAbsolutePath() + "', 'SHPTABLE');");
+        st.execute("CREATE SPATIAL INDEX SHPTABLE_SPATIAL ON SHPTABLE(THE_GEOM)");
+        assertEquals(lastModified, indexFile.lastModified());
+        try (ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM SHPTABLE WHERE THE_GEOM && ST_BUFFER('POINT(183541 2426015)', 15)")) {
+            assertTrue(rs.next());
+            assertEquals(2, rs.getLong(1));
+        }
+        st.execute("drop table shptable");
+    }
+
+    @Test
+    public void readLinkedPointSHPTest() throws SQLException {
+        Statement st = connection.createStatement();
+        st.execute("DROP TABLE IF EXISTS POINTS, SHPTABLE");
+        st.execute("CREATE TABLE POINTS(ID INT, THE_GEOM GEOMETRY(POINT Z))");
+        st.execute("INSERT INTO POINTS VALUES (1, 'POINT Z(-10 109 5)'), (2, 'POINT Z(0.5 -2.25 -1)')");
+        st.execute("CALL SHPWrite('target/linked_points.shp', 'POINTS', true)");
+        st.execute("CALL FILE_TABLE('target/linked_points.shp', 'SHPTABLE')");
+        try (ResultSet rs = st.executeQuery("SELECT ST_EQUALS(P.THE_GEOM, S.THE_GEOM), ST_Z(S.THE_GEOM), ST_ASTEXT(S.THE_GEOM) " +
+                "FROM POINTS P, SHPTABLE S WHERE P.ID = S.ID ORDER BY P.ID")) {
+            assertTrue(rs.next());
+            assertTrue(rs.getBoolean(1));
+            assertEquals(5, rs.getDouble(2), 1e-12);
+            assertEquals("POINT Z (-10 109 5)", rs.getString(3));
+            assertTrue(rs.next());
+            assertTrue(rs.getBoolean(1));
+            assertEquals(-1, rs.getDouble(2), 1e-12);
+            assertFalse(rs.next());
+        }
+        // Envelope filter on points
+        try (ResultSet rs = st.executeQuery("SELECT ID FROM SHPTABLE WHERE THE_GEOM && ST_MAKEENVELOPE(-11, 108, -9, 110)")) {
+            assertTrue(rs.next());
+            assertEquals(1, rs.getInt(1));
+            assertFalse(rs.next());
+        }
+        st.execute("DROP TABLE POINTS, SHPTABLE");
+    }
+
+    @Test
+    public void readLinkedPlannedColumnsTest() throws SQLException {
+        Statement st = connection.createStatement();
+        st.execute("DROP TABLE IF EXISTS SHPTABLE");
+        st.execute("CALL FILE_TABLE('"+SHPEngineTest.class.getResource("waternetwork.shp").getPath()+"', 'SHPTABLE');");
+        try (ResultSet rs = st.executeQuery("SELECT TYPE_AXE FROM SHPTABLE WHERE GID = 1")) {
+            assertTrue(rs.next());
+            assertEquals("river", rs.getString(1));
+            assertFalse(rs.next());
+        }
+        SessionLocal session = JDBCUtilities.getLocalSession(connection);
+        H2MVTable table = (H2MVTable) session.getDatabase().getSchema(session.getCurrentSchemaName())
+                .findTableOrView(session, "SHPTABLE");
+        // Only the columns used by the query are read
+        Row row = table.getRow(session, 1);
+        Value[] values = row.getValueList();
+        assertEquals(1, values[0].getLong());
+        assertEquals(ValueNull.INSTANCE, values[1]);
+        assertEquals("river", values[2].getString());
+        assertEquals(1, values[3].getInt());
+        assertEquals(ValueNull.INSTANCE, values[4]);
+        // An unplanned column can still be requested
+        assertNotEquals(ValueNull.INSTANCE, row.getValue(1));
+        assertEquals(9.492402903934545, row.getValue(4).getDouble(), 1e-12);
+        try (ResultSet rs = st.executeQuery("SELECT * FROM SHPTABLE")) {
+            assertTrue(rs.next());
+        }
+        values = table.getRow(session, 1).getValueList();
+        assertNotEquals(ValueNull.INSTANCE, values[1]);
+        assertEquals(9.492402903934545, values[4].getDouble(), 1e-12);
+        st.execute("DROP TABLE SHPTABLE");
+    }
 }
@@ -151,6 +151,28 @@ public class SHPImportExportTest {
         checkSHPReadResult(st);
     }
 
+    @Test
+    public void copySHPParallelTest() throws SQLException {
+        Statement st = connection.createStatement();
+        st.execute("DROP TABLE IF EXISTS WATERNETWORK, WATERNETWORK_SEQ");
+        final String path = StringUtils.quoteStringSQL(SHPEngineTest.class.getResource("waternetwork.shp").getPath());
+        st.execute("CALL SHPRead(" + path + ", 'WATERNETWORK_SEQ');");
+        st.execute("CALL SHPRead(" + path + ", 'WATERNETWORK', null, true, 4);");
+        // The rows must be inserted in the file order
+        String pk = H2TableIndex.PK_COLUMN_NAME;
+        ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM WATERNETWORK A, WATERNETWORK_SEQ B WHERE A." + pk + " = B." + pk +
+                " AND A.TYPE_AXE = B.TYPE_AXE AND A.GID = B.GID AND A.LENGTH = B.LENGTH AND ST_EQUALS(A.THE_GEOM, B.THE_GEOM)");
+        assertTrue(rs.next());
+        int count = rs.getInt(1);
+        rs.close();
+        rs = st.executeQuery("SELECT COUNT(*) FROM WATERNETWORK_SEQ");
+        assertTrue(rs.next());
+        assertEquals(rs.getInt(1), count);
+        rs.close();
+        st.execute("DROP TABLE IF EXISTS WATERNETWORK_SEQ");
+        checkSHPReadResult(st);
+    }
+
     private void checkSHPReadResult(Statement st) throws SQLException {
         // Query declared Table columns
         ResultSet rs = st.executeQuery("SELECT * FROM INFORMATION_SCHEMA.COLUMNS where TABLE_NAME = 'WATERNETWORK'");
@@ -0,0 +1,67 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <a href="http://www.h2database.com">http://www.h2database.com</a>. H2GIS is developed by CNRS
+ * <a href="http://www.cnrs.fr/">http://www.cnrs.fr/</a>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; 
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <a href="http://www.h2gis.org/">http://www.h2gis.org/</a>
+ * or contact directly: info_at_h2gis.org
+ */
+
+package org.h2gis.functions.io.utility;
+
+import org.h2gis.functions.io.shp.SHPEngineTest;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ReadBufferManagerTest {
+
+    @Test
+    public void testMappedSegmentsMatchWindowedRead() throws IOException {
+        File shpFile = new File(SHPEngineTest.class.getResource("waternetwork.shp").getFile());
+        try (FileInputStream windowedFis = new FileInputStream(shpFile);
+             FileInputStream mappedFis = new FileInputStream(shpFile)) {
+            FileChannel windowedChannel = windowedFis.getChannel();
+            FileChannel mappedChannel = mappedFis.getChannel();
+            ReadBufferManager windowed = new ReadBufferManager(windowedChannel, 64);
+            // Tiny segments in order to cross segment boundaries
+            ReadBufferManager mapped = new MappedReadBufferManager(mappedChannel, 100, 16);
+            assertEquals(windowed.getLength(), mapped.getLength());
+            long length = windowed.getLength();
+            for (ByteOrder order : new ByteOrder[]{ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN}) {
+                windowed.order(order);
+                mapped.order(order);
+                for (long pos = 0; pos + 8 <= length; pos += 3) {
+                    assertEquals(windowed.getInt(pos), mapped.getInt(pos));
+                    assertEquals(windowed.getLong(pos), mapped.getLong(pos));
+                    assertEquals(Double.doubleToRawLongBits(windowed.getDouble(pos)),
+                            Double.doubleToRawLongBits(mapped.getDouble(pos)));
+                }
+            }
+            // Larger than the overlap, read through a copy
+            byte[] expected = new byte[250];
+            byte[] got = new byte[250];
+            windowed.get(90, expected);
+            mapped.get(90, got);
+            assertArrayEquals(expected, got);
+        }
+    }
+}
@@ -1125,6 +1125,59 @@ public class SpatialFunction2Test {
         });
     }
 
+    @Test
+    public void test_ST_SVFTABLE() throws Exception {
+        st.execute("DROP TABLE IF EXISTS RECEIVERS, RECEIVERS_SVF, BUILDINGS;"
+                + "CREATE TABLE BUILDINGS(THE_GEOM GEOMETRY);"
+                + "INSERT INTO BUILDINGS VALUES ('POLYGONZ ((10 -1 10, 20 -1 10, 20 20 10, 10 20 10, 10 -1 10))'),"
+                + "('POLYGONZ ((-30 -30 25, -20 -30 25, -20 -20 25, -30 -20 25, -30 -30 25))');"
+                + "CREATE TABLE RECEIVERS(ID INT PRIMARY KEY, THE_GEOM GEOMETRY);"
+                + "INSERT INTO RECEIVERS SELECT X, ST_MakePoint(X % 5 * 3, X / 5 * 3, 0) FROM SYSTEM_RANGE(0, 24);"
+                + "INSERT INTO RECEIVERS VALUES (100, NULL);");
+        ResultSet rs = st.executeQuery("SELECT ST_SvfTable('RECEIVERS', 'BUILDINGS', 50, 16)");
+        assertTrue(rs.next());
+        assertTrue(rs.getBoolean(1));
+        rs = st.executeQuery("SELECT S.SVF, ST_Svf(R.THE_GEOM, (SELECT ST_Accum(THE_GEOM) FROM BUILDINGS), 50, 16), R.THE_GEOM "
+                + "FROM RECEIVERS R, RECEIVERS_SVF S WHERE R.ID = S.ID ORDER BY R.ID");
+        int count = 0;
+        while (rs.next()) {
+            if (rs.getObject(3) == null) {
+                assertNull(rs.getObject(1));
+            } else {
+                assertEquals(rs.getDouble(2), rs.getDouble(1), 1e-12);
+            }
+            count++;
+        }
+        assertEquals(26, count);
+        assertThrows(SQLException.class, () -> st.execute("SELECT ST_SvfTable('RECEIVERS', 'BUILDINGS', 50, 16)"));
+        st.execute("DROP TABLE RECEIVERS, RECEIVERS_SVF, BUILDINGS");
+    }
+
+    @Test
+    public void test_ST_ISOVISTTABLE() throws Exception {
+        st.execute("DROP TABLE IF EXISTS RECEIVERS, RECEIVERS_ISOVIST, WALLS;"
+                + "CREATE TABLE WALLS(THE_GEOM GEOMETRY);"
+                + "INSERT INTO WALLS VALUES ('LINESTRING (100 0, 100 100, 0 100)'), ('POLYGON ((-60 -60, -40 -60, -40 -40, -60 -40, -60 -60))'),"
+                + "('LINESTRING (1000 1000, 1100 1000)');"
+                + "CREATE TABLE RECEIVERS(ID INT PRIMARY KEY, THE_GEOM GEOMETRY);"
+                + "INSERT INTO RECEIVERS SELECT X, ST_MakePoint(X % 4 * 20, X / 4 * 20) FROM SYSTEM_RANGE(0, 15);");
+        ResultSet rs = st.executeQuery("SELECT ST_IsovistTable('RECEIVERS', 'WALLS', 150)");
+        assertTrue(rs.next());
+        assertTrue(rs.getBoolean(1));
+        rs = st.executeQuery("SELECT I.THE_GEOM, ST_Isovist(R.THE_GEOM, (SELECT ST_Accum(THE_GEOM) FROM WALLS), 150) "
+                + "FROM RECEIVERS R, RECEIVERS_ISOVIST I WHERE R.ID = I.ID ORDER BY R.ID");
+        int count = 0;
+        while (rs.next()) {
+            Geometry isovist = (Geometry) rs.getObject(1);
+            Geometry expected = (Geometry) rs.getObject(2);
+            assertEquals(expected.getArea(), isovist.getArea(), 1e-6);
+            assertEquals(0, isovist.symDifference(expected).getArea(), 1e-6);
+            count++;
+        }
+        assertEquals(16, count);
+        st.execute("DROP TABLE RECEIVERS, RECEIVERS_ISOVIST, WALLS");
+    }
+
     @Test
     public void test_ST_VariableBuffer1() throws Exception {
         assertThrows(SQLException.class, () -> {
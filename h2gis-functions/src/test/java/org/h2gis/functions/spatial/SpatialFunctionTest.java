@@ -370,6 +370,76 @@ public class SpatialFunctionTest {
         st.execute("DROP TABLE input_table;");
     }
 
+    @Test
+    public void test_PredicatesConstantArgument() throws Exception {
+        st.execute("DROP TABLE IF EXISTS AREA, PTS;"
+                + "CREATE TABLE AREA AS SELECT ST_Difference(ST_Buffer('POINT(0 0)', 10, 64), ST_Buffer('POINT(3 0)', 2, 16)) THE_GEOM;"
+                + "CREATE TABLE PTS AS SELECT ST_MakePoint(X % 49 * 0.5 - 12, X / 49 * 0.5 - 12) THE_GEOM FROM SYSTEM_RANGE(0, 2400);");
+        // The area is prepared after the first rows, the results must not change
+        ResultSet rs = st.executeQuery("SELECT A.THE_GEOM, P.THE_GEOM, ST_Intersects(A.THE_GEOM, P.THE_GEOM), "
+                + "ST_Intersects(P.THE_GEOM, A.THE_GEOM), ST_Contains(A.THE_GEOM, P.THE_GEOM), ST_Within(P.THE_GEOM, A.THE_GEOM), "
+                + "ST_Covers(A.THE_GEOM, P.THE_GEOM), ST_Disjoint(P.THE_GEOM, A.THE_GEOM), ST_Touches(A.THE_GEOM, P.THE_GEOM), "
+                + "ST_DWithin(P.THE_GEOM, A.THE_GEOM, 0.7) FROM AREA A, PTS P");
+        int count = 0;
+        int inside = 0;
+        while (rs.next()) {
+            Geometry area = (Geometry) rs.getObject(1);
+            Geometry pt = (Geometry) rs.getObject(2);
+            assertEquals(area.intersects(pt), rs.getBoolean(3));
+            assertEquals(area.intersects(pt), rs.getBoolean(4));
+            assertEquals(area.contains(pt), rs.getBoolean(5));
+            assertEquals(pt.within(area), rs.getBoolean(6));
+            assertEquals(area.covers(pt), rs.getBoolean(7));
+            assertEquals(pt.disjoint(area), rs.getBoolean(8));
+            assertEquals(area.touches(pt), rs.getBoolean(9));
+            assertEquals(pt.isWithinDistance(area, 0.7), rs.getBoolean(10));
+            if (rs.getBoolean(5)) {
+                inside++;
+            }
+            count++;
+        }
+        assertEquals(2401, count);
+        assertTrue(inside > 1000);
+        st.execute("DROP TABLE AREA, PTS");
+    }
+
+    @Test
+    public void test_ST_SpatialJoin() throws Exception {
+        st.execute("DROP TABLE IF EXISTS ZONES, PTS;"
+                + "CREATE TABLE ZONES(ID INT PRIMARY KEY, THE_GEOM GEOMETRY);"
+                + "INSERT INTO ZONES SELECT X, ST_Buffer(ST_MakePoint(X % 6 * 4, X / 6 * 4), 3, 8) FROM SYSTEM_RANGE(0, 35);"
+                + "INSERT INTO ZONES VALUES (100, NULL);"
+                + "CREATE TABLE PTS(PK BIGINT PRIMARY KEY, THE_GEOM GEOMETRY);"
+                + "INSERT INTO PTS SELECT X, ST_MakePoint(X % 60 * 0.4 - 2, X / 60 * 0.4 - 2) FROM SYSTEM_RANGE(0, 3599);");
+        String[][] joins = {
+                {"'ZONES', 'PTS', 'intersects'", "ST_Intersects(A.THE_GEOM, B.THE_GEOM)"},
+                {"'ZONES', 'PTS', 'contains'", "ST_Contains(A.THE_GEOM, B.THE_GEOM)"},
+                {"'PTS', 'ZONES', 'within'", "ST_Within(A.THE_GEOM, B.THE_GEOM)"},
+                {"'PTS', 'ZONES', 'coveredby'", "ST_Covers(B.THE_GEOM, A.THE_GEOM)"},
+                {"'ZONES', 'ZONES', 'touches'", "ST_Touches(A.THE_GEOM, B.THE_GEOM)"},
+                {"'ZONES', 'ZONES', 'overlaps'", "ST_Overlaps(A.THE_GEOM, B.THE_GEOM)"},
+                {"'PTS', 'ZONES', 'dwithin', 0.5", "ST_DWithin(A.THE_GEOM, B.THE_GEOM, 0.5)"}};
+        for (String[] join : joins) {
+            String[] tables = join[0].replace("'", "").split(", ");
+            ResultSet rs = st.executeQuery("SELECT A.ID_A, A.ID_B FROM ST_SpatialJoin(" + join[0] + ") A");
+            java.util.Set<String> pairs = new java.util.HashSet<>();
+            while (rs.next()) {
+                assertTrue(pairs.add(rs.getLong(1) + "-" + rs.getLong(2)));
+            }
+            String keyA = tables[0].equals("ZONES") ? "ID" : "PK";
+            String keyB = tables[1].equals("ZONES") ? "ID" : "PK";
+            rs = st.executeQuery("SELECT A." + keyA + ", B." + keyB + " FROM " + tables[0] + " A, " + tables[1] + " B WHERE " + join[1]);
+            java.util.Set<String> expected = new java.util.HashSet<>();
+            while (rs.next()) {
+                expected.add(rs.getLong(1) + "-" + rs.getLong(2));
+            }
+            assertFalse(expected.isEmpty(), join[0]);
+            assertEquals(expected, pairs, join[0]);
+        }
+        assertThrows(SQLException.class, () -> st.executeQuery("SELECT * FROM ST_SpatialJoin('ZONES', 'PTS', 'disjoint')"));
+        st.execute("DROP TABLE ZONES, PTS");
+    }
+
     @Test
     public void test_ST_Covers() throws Exception {
         st.execute("DROP TABLE IF EXISTS input_table;"
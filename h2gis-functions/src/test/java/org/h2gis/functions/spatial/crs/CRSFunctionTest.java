@@ -26,11 +26,24 @@ import org.h2gis.functions.factory.H2GISDBFactory;
 import org.junit.jupiter.api.*;
 import org.locationtech.jts.geom.Envelope;
 import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryCollection;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.MultiLineString;
+import org.locationtech.jts.geom.MultiPoint;
+import org.locationtech.jts.geom.MultiPolygon;
 
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.cts.crs.GeodeticCRS;
+import org.cts.op.CoordinateOperation;
 import org.h2.value.ValueGeometry;
 
 import static org.h2gis.unitTest.GeometryAsserts.assertGeometryBarelyEquals;
@@ -148,6 +161,28 @@ public class CRSFunctionTest {
                         + "556660.5833028702 1337783.1294808295, 614156.72100231 5877577.312128516)))", 10E-3);
     }
     
+    @Test
+    public void testST_TransformKeepsCollectionType() throws Exception {
+        final ResultSet rs = st.executeQuery("SELECT ST_TRANSFORM("
+                + "ST_GeomFromText('MULTIPOLYGON (((2 40, 3 40, 3 3, 2 3, 2 40)))', 4326), 2154), "
+                + "ST_TRANSFORM(ST_GeomFromText('MULTILINESTRING ((2.11 50.34, 2.15 51))', 4326), 2154), "
+                + "ST_TRANSFORM(ST_GeomFromText('MULTIPOINT ((2.11 50.34))', 4326), 2154), "
+                + "ST_TRANSFORM(ST_GeomFromText('GEOMETRYCOLLECTION (POINT (2.11 50.34), LINESTRING EMPTY)', 4326), 2154);");
+        assertTrue(rs.next());
+        Geometry multiPolygon = (Geometry) rs.getObject(1);
+        assertTrue(multiPolygon instanceof MultiPolygon);
+        assertEquals(1, multiPolygon.getNumGeometries());
+        assertEquals(2154, multiPolygon.getSRID());
+        assertTrue(rs.getObject(2) instanceof MultiLineString);
+        assertTrue(rs.getObject(3) instanceof MultiPoint);
+        Geometry collection = (Geometry) rs.getObject(4);
+        assertEquals(GeometryCollection.class, collection.getClass());
+        assertEquals(2, collection.getNumGeometries());
+        assertTrue(collection.getGeometryN(1) instanceof LineString);
+        assertTrue(collection.getGeometryN(1).isEmpty());
+        rs.close();
+    }
+
     @Test
     public void testST_TransformOnNullGeometry() throws Exception {
         final ResultSet rs = st.executeQuery("SELECT ST_TRANSFORM("
@@ -276,4 +311,67 @@ public class CRSFunctionTest {
         assertTrue(rs.next());
         assertEquals(32736, rs.getInt(1));        
     }
+
+    @Test
+    public void testST_TransformConcurrentSessions() throws Exception {
+        Geometry input = ValueGeometry.get("SRID=4326;POINT(-2.7 47.6)").getGeometry();
+        Geometry expected = ST_Transform.ST_Transform(connection, input, 2154);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Geometry>> results = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                final int targetSRID = i % 2 == 0 ? 2154 : 3857;
+                results.add(executor.submit(() -> ST_Transform.ST_Transform(connection, input, targetSRID)));
+            }
+            for (int i = 0; i < results.size(); i++) {
+                Geometry result = results.get(i).get();
+                if (i % 2 == 0) {
+                    assertEquals(2154, result.getSRID());
+                    assertTrue(expected.equalsExact(result, 1e-6));
+                } else {
+                    assertEquals(3857, result.getSRID());
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testCRSCacheEviction() throws Exception {
+        CRSCache crsCache = new CRSCache(2);
+        GeodeticCRS wgs84 = (GeodeticCRS) crsCache.getCRS(connection, 4326);
+        assertSame(wgs84, crsCache.getCRS(connection, 4326));
+        CoordinateOperation op = crsCache.getCoordinateOperation(4326, wgs84, 2154,
+                (GeodeticCRS) crsCache.getCRS(connection, 2154));
+        assertNotNull(op);
+        crsCache.getCoordinateOperation(4326, wgs84, 3857, (GeodeticCRS) crsCache.getCRS(connection, 3857));
+        // Access the first operation so the second one is the least recently used
+        assertSame(op, crsCache.getCoordinateOperation(4326, wgs84, 2154,
+                (GeodeticCRS) crsCache.getCRS(connection, 2154)));
+        crsCache.getCoordinateOperation(4326, wgs84, 27572, (GeodeticCRS) crsCache.getCRS(connection, 27572));
+        assertEquals(2, crsCache.getOperationCount());
+        assertSame(op, crsCache.getCoordinateOperation(4326, wgs84, 2154,
+                (GeodeticCRS) crsCache.getCRS(connection, 2154)));
+        assertSame(CRSCache.getCache(connection), CRSCache.getCache(connection));
+    }
+
+    @Test
+    public void testST_TransformKeepsDimension() throws Exception {
+        Geometry input = ValueGeometry.get("SRID=4326;LINESTRING Z(2.1 50.3 10, 2.2 50.4 20)").getGeometry();
+        Geometry result = ST_Transform.ST_Transform(connection, input, 2154);
+        assertEquals(2154, result.getSRID());
+        assertEquals(2, result.getNumPoints());
+        assertFalse(Double.isNaN(result.getCoordinates()[0].getZ()));
+        // The input geometry is not modified
+        assertEquals(2.1, input.getCoordinates()[0].x);
+        assertEquals(10, input.getCoordinates()[0].getZ());
+        Geometry polygon = ValueGeometry.get("SRID=4326;POLYGON((2 50, 3 50, 3 51, 2 51, 2 50), " +
+                "(2.2 50.2, 2.8 50.2, 2.8 50.8, 2.2 50.2))").getGeometry();
+        result = ST_Transform.ST_Transform(connection, polygon, 2154);
+        assertEquals("Polygon", result.getGeometryType());
+        assertEquals(polygon.getNumPoints(), result.getNumPoints());
+        assertTrue(result.isValid());
+        assertTrue(Double.isNaN(result.getCoordinates()[0].getZ()));
+    }
 }
@@ -85,6 +85,60 @@ public class OGCSpatialFunctionTest {
         rs.close();
     }
 
+    @Test
+    public void test_ST_UnionAgg() throws Exception {
+        Statement st = connection.createStatement();
+        ResultSet rs = st.executeQuery("SELECT ST_UnionAgg(footprint), ST_Union(ST_Accum(footprint)) FROM buildings GROUP BY SUBSTRING(address,4)");
+        int groupCount = 0;
+        while (rs.next()) {
+            assertGeometryEquals(rs.getString(2), rs.getString(1));
+            groupCount++;
+        }
+        rs.close();
+        rs = st.executeQuery("SELECT COUNT(DISTINCT SUBSTRING(address,4)) FROM buildings");
+        assertTrue(rs.next());
+        assertEquals(rs.getInt(1), groupCount);
+        rs.close();
+        // 900 overlapping squares, unioned in several nodes of the tree
+        rs = st.executeQuery("SELECT ST_Area(ST_UnionAgg(ST_MakeEnvelope(A.X, B.X, A.X + 2, B.X + 2))), " +
+                "ST_NumGeometries(ST_UnionAgg(ST_MakeEnvelope(A.X, B.X, A.X + 2, B.X + 2))) " +
+                "FROM SYSTEM_RANGE(0, 29) A, SYSTEM_RANGE(0, 29) B");
+        assertTrue(rs.next());
+        assertEquals(31 * 31, rs.getDouble(1), 1e-8);
+        assertEquals(1, rs.getInt(2));
+        rs.close();
+        rs = st.executeQuery("SELECT ST_UnionAgg(footprint) FROM buildings WHERE 1 = 0");
+        assertTrue(rs.next());
+        assertNull(rs.getObject(1));
+        rs.close();
+    }
+
+    @Test
+    public void test_ST_UnionAggMixedDimensions() throws Exception {
+        Statement st = connection.createStatement();
+        // Disjoint squares, points and overlapping lines, in two groups of 150 geometries
+        String geometry = "CASE MOD(X, 3) WHEN 0 THEN ST_MakeEnvelope(X, 0, X + 2, 2) " +
+                "WHEN 1 THEN ST_MakePoint(X + 0.5, 10) " +
+                "ELSE ST_MakeLine(ST_MakePoint(X, 20), ST_MakePoint(X + 5, 20)) END";
+        ResultSet rs = st.executeQuery("SELECT ST_Area(ST_UnionAgg(" + geometry + ")), " +
+                "ST_Length(ST_UnionAgg(" + geometry + ")), " +
+                "ST_NumGeometries(ST_UnionAgg(" + geometry + ")), " +
+                "ST_Area(ST_Union(ST_Accum(" + geometry + "))), " +
+                "ST_Length(ST_Union(ST_Accum(" + geometry + "))), " +
+                "ST_NumGeometries(ST_Union(ST_Accum(" + geometry + "))) " +
+                "FROM SYSTEM_RANGE(0, 299) GROUP BY MOD(X, 2) ORDER BY MOD(X, 2)");
+        int groupCount = 0;
+        while (rs.next()) {
+            assertEquals(200, rs.getDouble(1), 1e-8);
+            assertEquals(rs.getDouble(4), rs.getDouble(1), 1e-8);
+            assertEquals(rs.getDouble(5), rs.getDouble(2), 1e-8);
+            assertEquals(rs.getInt(6), rs.getInt(3));
+            groupCount++;
+        }
+        assertEquals(2, groupCount);
+        rs.close();
+    }
+
     @Test
     public void test_ST_UnionSimple() throws Exception {
         Statement st = connection.createStatement();
@@ -155,6 +209,39 @@ public class OGCSpatialFunctionTest {
         rs.close();
     }
 
+    @Test
+    public void test_ST_AccumManyPoints() throws Exception {
+        Statement st = connection.createStatement();
+        ResultSet rs = st.executeQuery("SELECT ST_NumGeometries(ST_Accum(ST_MakePoint(X, X * 2, 3))), " +
+                "ST_GeometryN(ST_Accum(ST_MakePoint(X, X * 2, 3)), 100) FROM SYSTEM_RANGE(1, 1000)");
+        assertTrue(rs.next());
+        assertEquals(1000, rs.getInt(1));
+        assertGeometryEquals("POINT Z(100 200 3)", rs.getObject(2));
+        rs.close();
+        // The packed points are kept before the line
+        rs = st.executeQuery("SELECT ST_Accum(the_geom) FROM (VALUES ('POINT(0 0)'::geometry), ('MULTIPOINT((1 1), (2 2))'::geometry), " +
+                "('LINESTRING(5 5, 8 8)'::geometry)) T(the_geom)");
+        assertTrue(rs.next());
+        assertGeometryEquals("GEOMETRYCOLLECTION (POINT (0 0), POINT (1 1), POINT (2 2), LINESTRING (5 5, 8 8))", rs.getObject(1));
+        rs.close();
+    }
+
+    @Test
+    public void test_ST_AccumMaxCoordinates() throws Exception {
+        Statement st = connection.createStatement();
+        st.execute("SET @ST_ACCUM_MAX_COORDINATES = 10");
+        try {
+            ResultSet rs = st.executeQuery("SELECT ST_NumGeometries(ST_Accum(ST_MakePoint(X, X))) FROM SYSTEM_RANGE(1, 10)");
+            assertTrue(rs.next());
+            assertEquals(10, rs.getInt(1));
+            rs.close();
+            assertThrows(SQLException.class, () ->
+                    st.executeQuery("SELECT ST_Accum(ST_MakePoint(X, X)) FROM SYSTEM_RANGE(1, 11)"));
+        } finally {
+            st.execute("SET @ST_ACCUM_MAX_COORDINATES = NULL");
+        }
+    }
+
     @Test
     public void test_ST_Accum_LeftJoin() throws Exception {
         Statement st = connection.createStatement();
@@ -22,13 +22,16 @@ package org.h2gis.functions.spatial.topography;
 
 import org.h2gis.functions.factory.H2GISDBFactory;
 import org.junit.jupiter.api.*;
+import org.locationtech.jts.geom.Coordinate;
 import org.locationtech.jts.geom.Geometry;
 
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import static org.h2gis.unitTest.GeometryAsserts.assertGeometryBarelyEquals;
@@ -294,6 +297,59 @@ public class TopographyTest {
     }
 
 
+    @Test
+    public void testST_TriangleContouringParallel() throws SQLException {
+        Statement st = connection.createStatement();
+        try {
+            st.execute("DROP TABLE IF EXISTS DT, TIN");
+            st.execute("CREATE TABLE DT AS SELECT ST_Delaunay(ST_Accum(ST_MakePoint(X % 40, X / 40, SIN(X) * 10))) THE_GEOM FROM SYSTEM_RANGE(0, 1599)");
+            st.execute("CREATE TABLE TIN AS SELECT EXPLOD_ID ID, THE_GEOM FROM ST_Explode('DT')");
+            String query = "SELECT ID, THE_GEOM, IDISO FROM ST_TriangleContouring('TIN', -5, 0, 5)";
+            List<Object[]> expected = new ArrayList<>();
+            ResultSet rs = st.executeQuery(query);
+            while (rs.next()) {
+                expected.add(new Object[]{rs.getInt(1), rs.getObject(2), rs.getInt(3)});
+            }
+            assertTrue(expected.size() > 3000);
+            // Same rows in the same order
+            st.execute("SET @" + ST_TriangleContouring.THREADS + " = 4");
+            rs = st.executeQuery(query);
+            for (Object[] row : expected) {
+                assertTrue(rs.next());
+                assertEquals(row[0], rs.getInt(1));
+                assertTrue(((Geometry) row[1]).equalsExact((Geometry) rs.getObject(2)));
+                assertEquals(row[2], rs.getInt(3));
+            }
+            assertFalse(rs.next());
+            // Same rows in any order
+            st.execute("SET @" + ST_TriangleContouring.ORDERED + " = false");
+            rs = st.executeQuery("SELECT COUNT(*), SUM(ID), SUM(ST_Area(THE_GEOM) * (IDISO + 1)) FROM ST_TriangleContouring('TIN', -5, 0, 5)");
+            assertTrue(rs.next());
+            assertEquals(expected.size(), rs.getInt(1));
+            double isoAreas = 0;
+            long ids = 0;
+            for (Object[] row : expected) {
+                ids += (Integer) row[0];
+                isoAreas += ((Geometry) row[1]).getArea() * ((Integer) row[2] + 1);
+            }
+            assertEquals(ids, rs.getLong(2));
+            assertEquals(isoAreas, rs.getDouble(3), 1e-6);
+            // Merged polygons cover the same area for each iso level
+            st.execute("SET @" + ST_TriangleContouring.MERGE + " = true");
+            rs = st.executeQuery("SELECT COUNT(*), SUM(ST_Area(THE_GEOM) * (IDISO + 1)), COUNT(ID) FROM ST_TriangleContouring('TIN', -5, 0, 5)");
+            assertTrue(rs.next());
+            assertTrue(rs.getInt(1) < expected.size());
+            assertEquals(isoAreas, rs.getDouble(2), 1e-6);
+            assertEquals(0, rs.getInt(3));
+        } finally {
+            st.execute("SET @" + ST_TriangleContouring.THREADS + " = NULL");
+            st.execute("SET @" + ST_TriangleContouring.ORDERED + " = NULL");
+            st.execute("SET @" + ST_TriangleContouring.MERGE + " = NULL");
+            st.execute("DROP TABLE IF EXISTS DT, TIN");
+            st.close();
+        }
+    }
+
     @Test
     public void testST_TriangleContouringWithZDoubleRange() throws SQLException {
         Statement st = connection.createStatement();
@@ -457,4 +513,30 @@ public class TopographyTest {
             st.close();
         }
     }
+
+    @Test
+    public void testST_DrapeSameTin() throws SQLException {
+        Statement st = connection.createStatement();
+        try {
+            // The grid points are on the plane z = x + 10y, each row drapes on a copy of the same TIN
+            st.execute("DROP TABLE IF EXISTS TIN, LINES;"
+                    + "CREATE TABLE TIN AS SELECT ST_Delaunay(ST_Accum(ST_MakePoint(X % 10, X / 10, X % 10 + 10 * (X / 10)))) THE_GEOM FROM SYSTEM_RANGE(0, 99);"
+                    + "CREATE TABLE LINES(ID INT, THE_GEOM GEOMETRY);"
+                    + "INSERT INTO LINES VALUES (1, 'LINESTRING (0.5 0.5, 8.5 7.2)'), (2, 'LINESTRING (1 8.5, 7.7 1.3, 8.2 6)'),"
+                    + "(3, 'POLYGON ((2 2, 6 2, 6 6, 2 6, 2 2))'), (4, 'POINT (4.2 3.6)');");
+            ResultSet rs = st.executeQuery("SELECT ST_Drape(L.THE_GEOM, T.THE_GEOM) FROM LINES L, TIN T ORDER BY L.ID");
+            int count = 0;
+            while (rs.next()) {
+                Geometry geom = (Geometry) rs.getObject(1);
+                for (Coordinate coordinate : geom.getCoordinates()) {
+                    assertEquals(coordinate.x + 10 * coordinate.y, coordinate.z, 1e-9);
+                }
+                count++;
+            }
+            assertEquals(4, count);
+            st.execute("DROP TABLE TIN, LINES");
+        } finally {
+            st.close();
+        }
+    }
 }
@@ -23,6 +23,7 @@ import java.io.File;
 import java.io.IOException;
 
 import org.h2gis.api.DriverFunction;
+import org.h2gis.api.EmptyProgressVisitor;
 import org.h2gis.functions.factory.H2GISDBFactory;
 import org.h2gis.functions.io.shp.SHPEngineTest;
 import org.h2gis.postgis_jts.PostGISDBFactory;
@@ -40,6 +41,7 @@ import java.sql.Statement;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import javax.sql.DataSource;
 import org.h2gis.functions.factory.H2GISFunctions;
@@ -506,6 +508,51 @@ public class IOMethodsTest {
         }
     }
 
+    @Test
+    public void testExportH2GISTableToH2GISPipelined() throws Exception {
+        st.execute("DROP TABLE IF EXISTS AREA_PIPELINE");
+        st.execute("CREATE TABLE AREA_PIPELINE(IDAREA INT PRIMARY KEY, NAME VARCHAR, THE_GEOM GEOMETRY(POINT, 4326))");
+        st.execute("INSERT INTO AREA_PIPELINE SELECT X, 'area' || X, CASE WHEN MOD(X, 100) = 0 THEN NULL " +
+                "ELSE ST_SetSRID(ST_MakePoint(X, X * 2), 4326) END FROM SYSTEM_RANGE(1, 2500)");
+        String targetDB = DB_NAME + "_pipeline";
+        Connection target = H2GISDBFactory.createSpatialDataBase(targetDB);
+        Connection[] writers = {target, H2GISDBFactory.openSpatialDataBase(targetDB),
+                H2GISDBFactory.openSpatialDataBase(targetDB)};
+        try {
+            AtomicInteger steps = new AtomicInteger();
+            EmptyProgressVisitor progress = new EmptyProgressVisitor() {
+                @Override
+                public void endStep() {
+                    steps.incrementAndGet();
+                }
+            };
+            assertEquals("AREA_PIPELINE", IOMethods.exportToDataBase(connection, "area_pipeline", writers,
+                    "area_pipeline", -1, 1000, progress));
+            // 2 batches of 1000 rows then 500 rows
+            assertEquals(3, steps.get());
+            try (Statement targetST = target.createStatement()) {
+                ResultSet res = targetST.executeQuery("SELECT COUNT(*), SUM(IDAREA), COUNT(THE_GEOM) FROM AREA_PIPELINE");
+                assertTrue(res.next());
+                assertEquals(2500, res.getInt(1));
+                assertEquals(2500L * 2501 / 2, res.getLong(2));
+                assertEquals(2475, res.getInt(3));
+                res.close();
+                res = targetST.executeQuery("SELECT NAME, THE_GEOM FROM AREA_PIPELINE WHERE IDAREA = 7");
+                assertTrue(res.next());
+                assertEquals("area7", res.getString(1));
+                assertGeometryEquals("SRID=4326;POINT (7 14)", (Geometry) res.getObject(2));
+                res.close();
+            }
+            assertEquals(4326, GeometryTableUtilities.getSRID(target, TableLocation.parse("AREA_PIPELINE")));
+            assertThrows(SQLException.class, () -> IOMethods.exportToDataBase(connection, "area_pipeline", writers,
+                    "area_pipeline", 0, 1000, new EmptyProgressVisitor()));
+        } finally {
+            for (Connection writer : writers) {
+                writer.close();
+            }
+        }
+    }
+
     @Test
     public void testRemoveAddDriver() {
         IOMethods ioMethods = new IOMethods();
@@ -0,0 +1,349 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <a href="http://www.h2database.com">http://www.h2database.com</a>. H2GIS is developed by CNRS
+ * <a href="http://www.cnrs.fr/">http://www.cnrs.fr/</a>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; 
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <a href="http://www.h2gis.org/">http://www.h2gis.org/</a>
+ * or contact directly: info_at_h2gis.org
+ */
+
+package org.h2gis.network.functions;
+
+import org.h2gis.utilities.TableLocation;
+import org.h2gis.utilities.TableUtilities;
+import org.h2gis.utilities.dbtypes.DBUtils;
+
+import java.sql.*;
+import java.util.Arrays;
+
+import static org.h2gis.network.functions.GraphConstants.*;
+import static org.h2gis.network.functions.GraphCreator.DIRECTED_EDGE;
+import static org.h2gis.network.functions.GraphCreator.REVERSED_EDGE;
+import static org.h2gis.network.functions.GraphCreator.UNDIRECTED_EDGE;
+
+/**
+ * A graph stored in compressed sparse row arrays, as an alternative to the
+ * JGraphT graphs built by {@link GraphCreator}.
+ *
+ * The vertices are indexed from 0 to n-1 in the order of their ids. The arcs
+ * leaving vertex i are stored from offsets[i] to offsets[i+1] in the targets,
+ * weights and edge ids arrays. An undirected edge is stored as one arc in each
+ * direction. In directed graphs, the reverse arc of an undirected edge has a
+ * negative edge id, as in {@link GraphCreator}.
+ *
+ * The graph is immutable, the state of the searches is kept by
+ * {@link CompactGraphSearch}.
+ */
+public class CompactGraph {
+
+    private final int[] vertexIds;
+    private final int[] offsets;
+    private final int[] targets;
+    private final double[] weights;
+    private final int[] edgeIds;
+    private volatile CompactGraph reversedGraph;
+
+    /**
+     * @param vertexIds Sorted vertex ids
+     * @param offsets   Index of the first arc of each vertex, followed by the arc count
+     * @param targets   Target vertex index of each arc
+     * @param weights   Weight of each arc, null for an unweighted graph
+     * @param edgeIds   Edge id of each arc
+     */
+    CompactGraph(int[] vertexIds, int[] offsets, int[] targets, double[] weights, int[] edgeIds) {
+        this.vertexIds = vertexIds;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.weights = weights;
+        this.edgeIds = edgeIds;
+    }
+
+    /**
+     * @return Number of vertices
+     */
+    public int getVertexCount() {
+        return vertexIds.length;
+    }
+
+    /**
+     * @return Number of arcs
+     */
+    public int getArcCount() {
+        return targets.length;
+    }
+
+    /**
+     * @param index Vertex index
+     * @return Vertex id
+     */
+    public int getVertexId(int index) {
+        return vertexIds[index];
+    }
+
+    /**
+     * @param id Vertex id
+     * @return Vertex index, -1 if the graph does not contain this vertex
+     */
+    public int getVertexIndex(int id) {
+        int index = Arrays.binarySearch(vertexIds, id);
+        return index < 0 ? -1 : index;
+    }
+
+    /**
+     * @param id Vertex id
+     * @return Vertex index
+     * @throws IllegalArgumentException if the graph does not contain this vertex
+     */
+    public int getExistingVertexIndex(int id) {
+        int index = getVertexIndex(id);
+        if (index < 0) {
+            throw new IllegalArgumentException("The graph does not contain vertex " + id);
+        }
+        return index;
+    }
+
+    /**
+     * @param vertex Vertex index
+     * @return Index of the first arc leaving this vertex
+     */
+    public int getFirstArc(int vertex) {
+        return offsets[vertex];
+    }
+
+    /**
+     * @param vertex Vertex index
+     * @return Index following the last arc leaving this vertex
+     */
+    public int getLastArc(int vertex) {
+        return offsets[vertex + 1];
+    }
+
+    /**
+     * @param arc Arc index
+     * @return Target vertex index
+     */
+    public int getTarget(int arc) {
+        return targets[arc];
+    }
+
+    /**
+     * @param arc Arc index
+     * @return Arc weight, 1 in an unweighted graph
+     */
+    public double getWeight(int arc) {
+        return weights == null ? 1.0 : weights[arc];
+    }
+
+    /**
+     * @param arc Arc index
+     * @return Edge id
+     */
+    public int getEdgeId(int arc) {
+        return edgeIds[arc];
+    }
+
+    /**
+     * @return True if all the arcs have a weight of 1
+     */
+    public boolean isWeighted() {
+        return weights != null;
+    }
+
+    /**
+     * @return The graph with all the arcs reversed, built once
+     */
+    public CompactGraph reverse() {
+        CompactGraph reversed = reversedGraph;
+        if (reversed == null) {
+            int vertexCount = vertexIds.length;
+            int[] reversedOffsets = new int[vertexCount + 1];
+            for (int target : targets) {
+                reversedOffsets[target + 1]++;
+            }
+            for (int i = 0; i < vertexCount; i++) {
+                reversedOffsets[i + 1] += reversedOffsets[i];
+            }
+            int[] next = Arrays.copyOf(reversedOffsets, vertexCount);
+            int[] reversedTargets = new int[targets.length];
+            double[] reversedWeights = weights == null ? null : new double[weights.length];
+            int[] reversedEdgeIds = new int[edgeIds.length];
+            for (int source = 0; source < vertexCount; source++) {
+                for (int arc = offsets[source]; arc < offsets[source + 1]; arc++) {
+                    int position = next[targets[arc]]++;
+                    reversedTargets[position] = source;
+                    if (weights != null) {
+                        reversedWeights[position] = weights[arc];
+                    }
+                    reversedEdgeIds[position] = edgeIds[arc];
+                }
+            }
+            reversed = new CompactGraph(vertexIds, reversedOffsets, reversedTargets, reversedWeights, reversedEdgeIds);
+            reversed.reversedGraph = this;
+            reversedGraph = reversed;
+        }
+        return reversed;
+    }
+
+    /**
+     * Loads the edges table produced by {@link org.h2gis.functions.spatial.topology.ST_Graph},
+     * with the same orientation rules as {@link GraphCreator}.
+     *
+     * @param connection Connection
+     * @param inputTable Edges table
+     * @param parser     Parsed orientation and weight
+     * @return The graph
+     * @throws SQLException
+     */
+    public static CompactGraph load(Connection connection, String inputTable, GraphFunctionParser parser)
+            throws SQLException {
+        final TableLocation table = TableUtilities.parseInputTable(connection, inputTable);
+        final GraphFunctionParser.Orientation globalOrientation = parser.getGlobalOrientation();
+        final boolean undirected = globalOrientation.equals(GraphFunctionParser.Orientation.UNDIRECTED);
+        final String weightColumn = parser.getWeightColumn();
+        final String edgeOrientationColumn = undirected ? null : parser.getEdgeOrientation();
+        final String query = "SELECT " + findColumn(connection, table, EDGE_ID)
+                + ", " + findColumn(connection, table, START_NODE)
+                + ", " + findColumn(connection, table, END_NODE)
+                + (weightColumn == null ? "" : ", " + findColumn(connection, table, weightColumn))
+                + (edgeOrientationColumn == null ? "" : ", " + findColumn(connection, table, edgeOrientationColumn))
+                + " FROM " + table;
+        // Arcs as read from the table
+        int arcCount = 0;
+        int[] sources = new int[1024];
+        int[] arcTargets = new int[1024];
+        int[] arcEdgeIds = new int[1024];
+        double[] arcWeights = weightColumn == null ? null : new double[1024];
+        try (Statement st = connection.createStatement();
+             ResultSet edges = st.executeQuery(query)) {
+            final int orientationIndex = weightColumn == null ? 4 : 5;
+            while (edges.next()) {
+                final int edgeID = edges.getInt(1);
+                final int startNode = edges.getInt(2);
+                final int endNode = edges.getInt(3);
+                final double weight = weightColumn == null ? 1.0 : edges.getDouble(4);
+                if (arcCount + 2 > sources.length) {
+                    int capacity = Math.max(sources.length * 2, arcCount + 2);
+                    sources = Arrays.copyOf(sources, capacity);
+                    arcTargets = Arrays.copyOf(arcTargets, capacity);
+                    arcEdgeIds = Arrays.copyOf(arcEdgeIds, capacity);
+                    if (arcWeights != null) {
+                        arcWeights = Arrays.copyOf(arcWeights, capacity);
+                    }
+                }
+                int from = startNode;
+                int to = endNode;
+                boolean both;
+                if (undirected) {
+                    both = true;
+                } else {
+                    int edgeOrientation = edgeOrientationColumn == null
+                            ? DIRECTED_EDGE : edges.getInt(orientationIndex);
+                    if (edges.wasNull()) {
+                        throw new IllegalArgumentException("Invalid edge orientation: NULL.");
+                    }
+                    boolean reversed = globalOrientation.equals(GraphFunctionParser.Orientation.REVERSED);
+                    if (edgeOrientation == UNDIRECTED_EDGE) {
+                        both = true;
+                    } else if (edgeOrientation == DIRECTED_EDGE || edgeOrientation == REVERSED_EDGE) {
+                        both = false;
+                        // Reversing twice is the same as no reversal
+                        reversed = reversed != (edgeOrientation == REVERSED_EDGE);
+                    } else {
+                        throw new IllegalArgumentException("Invalid edge orientation: " + edgeOrientation);
+                    }
+                    if (reversed) {
+                        from = endNode;
+                        to = startNode;
+                    }
+                }
+                sources[arcCount] = from;
+                arcTargets[arcCount] = to;
+                arcEdgeIds[arcCount] = edgeID;
+                if (arcWeights != null) {
+                    arcWeights[arcCount] = weight;
+                }
+                arcCount++;
+                if (both) {
+                    sources[arcCount] = to;
+                    arcTargets[arcCount] = from;
+                    // In directed graphs the reverse arc of an undirected edge has a negative id
+                    arcEdgeIds[arcCount] = undirected ? edgeID : -edgeID;
+                    if (arcWeights != null) {
+                        arcWeights[arcCount] = weight;
+                    }
+                    arcCount++;
+                }
+            }
+        }
+        return build(sources, arcTargets, arcWeights, arcEdgeIds, arcCount);
+    }
+
+    /**
+     * Builds the compressed rows from a list of arcs given by vertex ids.
+     */
+    static CompactGraph build(int[] sources, int[] arcTargets, double[] arcWeights, int[] arcEdgeIds, int arcCount) {
+        // Sorted distinct vertex ids
+        int[] ids = new int[arcCount * 2];
+        System.arraycopy(sources, 0, ids, 0, arcCount);
+        System.arraycopy(arcTargets, 0, ids, arcCount, arcCount);
+        Arrays.sort(ids);
+        int vertexCount = 0;
+        for (int i = 0; i < ids.length; i++) {
+            if (i == 0 || ids[i] != ids[i - 1]) {
+                ids[vertexCount++] = ids[i];
+            }
+        }
+        int[] vertexIds = Arrays.copyOf(ids, vertexCount);
+        // Replace the ids by indices and count the arcs of each vertex
+        int[] offsets = new int[vertexCount + 1];
+        for (int arc = 0; arc < arcCount; arc++) {
+            sources[arc] = Arrays.binarySearch(vertexIds, sources[arc]);
+            arcTargets[arc] = Arrays.binarySearch(vertexIds, arcTargets[arc]);
+            offsets[sources[arc] + 1]++;
+        }
+        for (int i = 0; i < vertexCount; i++) {
+            offsets[i + 1] += offsets[i];
+        }
+        int[] next = Arrays.copyOf(offsets, vertexCount);
+        int[] targets = new int[arcCount];
+        double[] weights = arcWeights == null ? null : new double[arcCount];
+        int[] edgeIds = new int[arcCount];
+        for (int arc = 0; arc < arcCount; arc++) {
+            int position = next[sources[arc]]++;
+            targets[position] = arcTargets[arc];
+            if (weights != null) {
+                weights[position] = arcWeights[arc];
+            }
+            edgeIds[position] = arcEdgeIds[arc];
+        }
+        return new CompactGraph(vertexIds, offsets, targets, weights, edgeIds);
+    }
+
+    /**
+     * @return The quoted name of the column of the table matching the given name, ignoring case
+     */
+    static String findColumn(Connection connection, TableLocation table, String columnName)
+            throws SQLException {
+        try (Statement st = connection.createStatement();
+             ResultSet rs = st.executeQuery("SELECT * FROM " + table + " LIMIT 0")) {
+            ResultSetMetaData metaData = rs.getMetaData();
+            for (int i = 1; i <= metaData.getColumnCount(); i++) {
+                if (metaData.getColumnName(i).equalsIgnoreCase(columnName)) {
+                    return TableLocation.quoteIdentifier(metaData.getColumnName(i), DBUtils.getDBType(connection));
+                }
+            }
+        }
+        throw new IndexOutOfBoundsException("Column \"" + columnName + "\" not found.");
+    }
+}
@@ -0,0 +1,448 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <a href="http://www.h2database.com">http://www.h2database.com</a>. H2GIS is developed by CNRS
+ * <a href="http://www.cnrs.fr/">http://www.cnrs.fr/</a>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; 
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <a href="http://www.h2gis.org/">http://www.h2gis.org/</a>
+ * or contact directly: info_at_h2gis.org
+ */
+
+package org.h2gis.network.functions;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Closeness and betweenness centrality of the vertices and betweenness
+ * centrality of the edges of a {@link CompactGraph}, computed with Brandes'
+ * algorithm.
+ *
+ * The search from each source is independent: with several threads, each
+ * thread searches from the next source not yet taken and sums the
+ * dependencies in its own arrays, which are added up at the end. The
+ * betweenness may be estimated from a sample of pivot sources, for very large
+ * graphs, the closeness is then only known for the pivots.
+ *
+ * As in the analyzers of the default graph, the betweenness values are
+ * normalized between 0 and 1 and the closeness of a vertex which cannot reach
+ * all the other vertices is 0.
+ */
+public class CompactGraphCentrality {
+
+    private final CompactGraph graph;
+    private final double[] betweenness;
+    private final double[] closeness;
+    private final int[] edgeIds;
+    private final double[] edgeBetweenness;
+
+    private CompactGraphCentrality(CompactGraph graph, double[] betweenness, double[] closeness,
+                                   double[] arcBetweenness) {
+        this.graph = graph;
+        this.betweenness = betweenness;
+        this.closeness = closeness;
+        // The two arcs of an undirected edge share its id
+        int[] ids = new int[graph.getArcCount()];
+        for (int arc = 0; arc < ids.length; arc++) {
+            ids[arc] = graph.getEdgeId(arc);
+        }
+        Arrays.sort(ids);
+        int edgeCount = 0;
+        for (int i = 0; i < ids.length; i++) {
+            if (i == 0 || ids[i] != ids[i - 1]) {
+                ids[edgeCount++] = ids[i];
+            }
+        }
+        edgeIds = Arrays.copyOf(ids, edgeCount);
+        edgeBetweenness = new double[edgeCount];
+        for (int arc = 0; arc < arcBetweenness.length; arc++) {
+            edgeBetweenness[Arrays.binarySearch(edgeIds, graph.getEdgeId(arc))] += arcBetweenness[arc];
+        }
+        normalize(this.betweenness);
+        normalize(edgeBetweenness);
+    }
+
+    /**
+     * Compute the centrality from all the vertices.
+     *
+     * @param graph       Graph
+     * @param threadCount Number of threads
+     * @return The centrality
+     * @throws SQLException
+     */
+    public static CompactGraphCentrality compute(CompactGraph graph, int threadCount) throws SQLException {
+        int[] sources = new int[graph.getVertexCount()];
+        for (int i = 0; i < sources.length; i++) {
+            sources[i] = i;
+        }
+        return compute(graph, sources, threadCount);
+    }
+
+    /**
+     * Compute the centrality from the given sources.
+     *
+     * @param graph       Graph
+     * @param sources     Source vertex indices
+     * @param threadCount Number of threads
+     * @return The centrality
+     * @throws SQLException
+     */
+    public static CompactGraphCentrality compute(CompactGraph graph, int[] sources, int threadCount)
+            throws SQLException {
+        final int vertexCount = graph.getVertexCount();
+        final double[] closeness = new double[vertexCount];
+        Arrays.fill(closeness, Double.NaN);
+        threadCount = Math.max(1, Math.min(threadCount, sources.length));
+        if (threadCount == 1) {
+            final Worker worker = new Worker(graph);
+            for (int source : sources) {
+                worker.accumulate(source, closeness);
+            }
+            return new CompactGraphCentrality(graph, worker.betweenness, closeness, worker.arcBetweenness);
+        }
+        final AtomicInteger next = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        try {
+            List<Future<Worker>> workers = new ArrayList<>(threadCount);
+            for (int i = 0; i < threadCount; i++) {
+                workers.add(executor.submit(() -> {
+                    // Each thread sums the dependencies in its own arrays
+                    Worker worker = new Worker(graph);
+                    for (int index = next.getAndIncrement(); index < sources.length; index = next.getAndIncrement()) {
+                        if (Thread.currentThread().isInterrupted()) {
+                            throw new InterruptedException();
+                        }
+                        // Each source writes its own closeness
+                        worker.accumulate(sources[index], closeness);
+                    }
+                    return worker;
+                }));
+            }
+            final double[] betweenness = new double[vertexCount];
+            final double[] arcBetweenness = new double[graph.getArcCount()];
+            for (Future<Worker> future : workers) {
+                Worker worker = getResult(future);
+                for (int v = 0; v < vertexCount; v++) {
+                    betweenness[v] += worker.betweenness[v];
+                }
+                for (int arc = 0; arc < arcBetweenness.length; arc++) {
+                    arcBetweenness[arc] += worker.arcBetweenness[arc];
+                }
+            }
+            return new CompactGraphCentrality(graph, betweenness, closeness, arcBetweenness);
+        } finally {
+            executor.shutdownNow();
+            try {
+                executor.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Draw pivot sources at random, with a fixed seed so that the same graph
+     * gives the same estimate.
+     *
+     * @param vertexCount Number of vertices
+     * @param pivotCount  Number of pivots
+     * @return Distinct vertex indices, all the vertices if there are fewer
+     * than pivotCount
+     */
+    public static int[] samplePivots(int vertexCount, int pivotCount) {
+        int[] vertices = new int[vertexCount];
+        for (int i = 0; i < vertexCount; i++) {
+            vertices[i] = i;
+        }
+        if (pivotCount >= vertexCount) {
+            return vertices;
+        }
+        // Partial Fisher-Yates shuffle
+        Random random = new Random(vertexCount);
+        for (int i = 0; i < pivotCount; i++) {
+            int j = i + random.nextInt(vertexCount - i);
+            int vertex = vertices[j];
+            vertices[j] = vertices[i];
+            vertices[i] = vertex;
+        }
+        int[] pivots = Arrays.copyOf(vertices, pivotCount);
+        Arrays.sort(pivots);
+        return pivots;
+    }
+
+    /**
+     * @return The graph
+     */
+    public CompactGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * @param vertex Vertex index
+     * @return Normalized betweenness
+     */
+    public double getBetweenness(int vertex) {
+        return betweenness[vertex];
+    }
+
+    /**
+     * @param vertex Vertex index
+     * @return Closeness, NaN if the vertex was not a source
+     */
+    public double getCloseness(int vertex) {
+        return closeness[vertex];
+    }
+
+    /**
+     * @return Number of edges
+     */
+    public int getEdgeCount() {
+        return edgeIds.length;
+    }
+
+    /**
+     * @param i Edge index
+     * @return Edge id
+     */
+    public int getEdgeId(int i) {
+        return edgeIds[i];
+    }
+
+    /**
+     * @param i Edge index
+     * @return Normalized betweenness
+     */
+    public double getEdgeBetweenness(int i) {
+        return edgeBetweenness[i];
+    }
+
+    /**
+     * Scale the values between 0 and 1.
+     */
+    private static void normalize(double[] values) {
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        for (double value : values) {
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+        double range = max - min;
+        for (int i = 0; i < values.length; i++) {
+            values[i] = range > 0 ? (values[i] - min) / range : 0;
+        }
+    }
+
+    /**
+     * Wait for a thread and unwrap its error
+     */
+    private static Worker getResult(Future<Worker> future) throws SQLException {
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("The centrality computation has been interrupted", ex);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new SQLException("Cannot compute the centrality", cause);
+        }
+    }
+
+    /**
+     * The search arrays and the dependency sums of one thread.
+     */
+    private static class Worker {
+        private static final int SETTLED = -1;
+
+        final CompactGraph graph;
+        final double[] distances;
+        final double[] pathCounts;
+        final double[] dependencies;
+        // Vertices in the order they are settled
+        final int[] order;
+        int orderCount;
+        final int[] heap;
+        final int[] heapPositions;
+        int heapSize;
+        final double[] betweenness;
+        final double[] arcBetweenness;
+
+        Worker(CompactGraph graph) {
+            this.graph = graph;
+            int vertexCount = graph.getVertexCount();
+            distances = new double[vertexCount];
+            Arrays.fill(distances, Double.POSITIVE_INFINITY);
+            pathCounts = new double[vertexCount];
+            dependencies = new double[vertexCount];
+            order = new int[vertexCount];
+            heap = new int[vertexCount];
+            heapPositions = new int[vertexCount];
+            betweenness = new double[vertexCount];
+            arcBetweenness = new double[graph.getArcCount()];
+        }
+
+        /**
+         * Search from the source and add the dependencies of the source on
+         * the vertices and arcs.
+         */
+        void accumulate(int source, double[] closeness) {
+            for (int i = 0; i < orderCount; i++) {
+                int vertex = order[i];
+                distances[vertex] = Double.POSITIVE_INFINITY;
+                pathCounts[vertex] = 0;
+                dependencies[vertex] = 0;
+            }
+            orderCount = 0;
+            distances[source] = 0;
+            pathCounts[source] = 1;
+            if (graph.isWeighted()) {
+                dijkstra(source);
+            } else {
+                breadthFirst(source);
+            }
+            double sum = 0;
+            for (int i = 0; i < orderCount; i++) {
+                sum += distances[order[i]];
+            }
+            // A vertex which does not reach all the others has a closeness of 0
+            int vertexCount = graph.getVertexCount();
+            closeness[source] = orderCount < vertexCount || sum == 0 ? 0 : (vertexCount - 1) / sum;
+            // From the farthest vertices back to the source
+            for (int i = orderCount - 1; i >= 0; i--) {
+                int vertex = order[i];
+                double distance = distances[vertex];
+                double dependency = 0;
+                for (int arc = graph.getFirstArc(vertex); arc < graph.getLastArc(vertex); arc++) {
+                    int target = graph.getTarget(arc);
+                    if (target != vertex && distance + graph.getWeight(arc) == distances[target]) {
+                        double arcDependency = pathCounts[vertex] / pathCounts[target] * (1 + dependencies[target]);
+                        arcBetweenness[arc] += arcDependency;
+                        dependency += arcDependency;
+                    }
+                }
+                dependencies[vertex] = dependency;
+                if (vertex != source) {
+                    betweenness[vertex] += dependency;
+                }
+            }
+        }
+
+        private void breadthFirst(int source) {
+            order[orderCount++] = source;
+            for (int head = 0; head < orderCount; head++) {
+                int vertex = order[head];
+                double distance = distances[vertex] + 1;
+                for (int arc = graph.getFirstArc(vertex); arc < graph.getLastArc(vertex); arc++) {
+                    int target = graph.getTarget(arc);
+                    if (distances[target] == Double.POSITIVE_INFINITY) {
+                        distances[target] = distance;
+                        order[orderCount++] = target;
+                    }
+                    if (distances[target] == distance) {
+                        pathCounts[target] += pathCounts[vertex];
+                    }
+                }
+            }
+        }
+
+        private void dijkstra(int source) {
+            heapSize = 0;
+            heapPositions[source] = heapSize;
+            heap[heapSize++] = source;
+            while (heapSize > 0) {
+                int vertex = poll();
+                order[orderCount++] = vertex;
+                double distance = distances[vertex];
+                for (int arc = graph.getFirstArc(vertex); arc < graph.getLastArc(vertex); arc++) {
+                    int target = graph.getTarget(arc);
+                    double newDistance = distance + graph.getWeight(arc);
+                    if (newDistance < distances[target]) {
+                        if (distances[target] == Double.POSITIVE_INFINITY) {
+                            heapPositions[target] = heapSize;
+                            heap[heapSize++] = target;
+                        } else if (heapPositions[target] == SETTLED) {
+                            continue;
+                        }
+                        distances[target] = newDistance;
+                        pathCounts[target] = pathCounts[vertex];
+                        siftUp(heapPositions[target]);
+                    } else if (newDistance == distances[target] && heapPositions[target] != SETTLED) {
+                        pathCounts[target] += pathCounts[vertex];
+                    }
+                }
+            }
+        }
+
+        private int poll() {
+            int top = heap[0];
+            heapSize--;
+            if (heapSize > 0) {
+                heap[0] = heap[heapSize];
+                heapPositions[heap[0]] = 0;
+                siftDown(0);
+            }
+            heapPositions[top] = SETTLED;
+            return top;
+        }
+
+        private void siftUp(int position) {
+            int vertex = heap[position];
+            double key = distances[vertex];
+            while (position > 0) {
+                int parent = (position - 1) >>> 1;
+                int parentVertex = heap[parent];
+                if (distances[parentVertex] <= key) {
+                    break;
+                }
+                heap[position] = parentVertex;
+                heapPositions[parentVertex] = position;
+                position = parent;
+            }
+            heap[position] = vertex;
+            heapPositions[vertex] = position;
+        }
+
+        private void siftDown(int position) {
+            int vertex = heap[position];
+            double key = distances[vertex];
+            while (true) {
+                int child = 2 * position + 1;
+                if (child >= heapSize) {
+                    break;
+                }
+                if (child + 1 < heapSize && distances[heap[child + 1]] < distances[heap[child]]) {
+                    child++;
+                }
+                if (key <= distances[heap[child]]) {
+                    break;
+                }
+                heap[position] = heap[child];
+                heapPositions[heap[position]] = position;
+                position = child;
+            }
+            heap[position] = vertex;
+            heapPositions[vertex] = position;
+        }
+    }
+}
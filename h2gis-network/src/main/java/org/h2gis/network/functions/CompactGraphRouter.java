@@ -0,0 +1,372 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <a href="http://www.h2database.com">http://www.h2database.com</a>. H2GIS is developed by CNRS
+ * <a href="http://www.cnrs.fr/">http://www.cnrs.fr/</a>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software;
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <a href="http://www.h2gis.org/">http://www.h2gis.org/</a>
+ * or contact directly: info_at_h2gis.org
+ */
+
+package org.h2gis.network.functions;
+
+import java.util.Arrays;
+
+/**
+ * One-to-One shortest path searches on a {@link CompactGraph}, settling far
+ * fewer vertices than a Dijkstra search from the source:
+ * <ul>
+ * <li>the bidirectional search runs Dijkstra from the source and, on the
+ * reversed graph, from the destination until the two searches meet,</li>
+ * <li>the A* search orders the vertices by their distance from the source
+ * plus a lower bound of their distance to the destination.</li>
+ * </ul>
+ *
+ * One shortest path is kept, the arcs of the last search are given from the
+ * source to the destination. A router must not be used by several threads at
+ * the same time.
+ */
+public class CompactGraphRouter {
+
+    private final CompactGraph graph;
+    private final Side forward;
+    private Side backward;
+    private int[] pathEdgeIds = new int[0];
+    private double[] pathWeights = new double[0];
+    private int[] pathSources = new int[0];
+    private int[] pathTargets = new int[0];
+    private int pathLength;
+    private double pathDistance;
+    private int settledCount;
+
+    /**
+     * @param graph Graph to search
+     */
+    public CompactGraphRouter(CompactGraph graph) {
+        this.graph = graph;
+        this.forward = new Side(graph);
+    }
+
+    /**
+     * @return The searched graph
+     */
+    public CompactGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * Bidirectional Dijkstra search.
+     *
+     * @param source      Source vertex index
+     * @param destination Destination vertex index
+     * @return The shortest path length, infinity if the destination cannot be reached
+     */
+    public double bidirectional(int source, int destination) {
+        if (backward == null) {
+            backward = new Side(graph.reverse());
+        }
+        forward.reset();
+        backward.reset();
+        forward.add(source, 0, 0, -1, -1);
+        backward.add(destination, 0, 0, -1, -1);
+        settledCount = 0;
+        double best = source == destination ? 0 : Double.POSITIVE_INFINITY;
+        int meeting = source == destination ? source : -1;
+        while (forward.heapSize > 0 && backward.heapSize > 0
+                && forward.minKey() + backward.minKey() < best) {
+            // Expand the side with the smallest frontier
+            final boolean isForward = forward.heapSize <= backward.heapSize;
+            final Side side = isForward ? forward : backward;
+            final Side other = isForward ? backward : forward;
+            final CompactGraph sideGraph = side.graph;
+            final int vertex = side.poll();
+            settledCount++;
+            final double distance = side.distances[vertex];
+            for (int arc = sideGraph.getFirstArc(vertex); arc < sideGraph.getLastArc(vertex); arc++) {
+                final int target = sideGraph.getTarget(arc);
+                final double newDistance = distance + sideGraph.getWeight(arc);
+                if (newDistance < side.distances[target] && side.heapPositions[target] != Side.SETTLED) {
+                    side.add(target, newDistance, newDistance, vertex, arc);
+                }
+                final double otherDistance = other.distances[target];
+                if (side.distances[target] + otherDistance < best) {
+                    best = side.distances[target] + otherDistance;
+                    meeting = target;
+                }
+            }
+        }
+        pathLength = 0;
+        if (meeting >= 0) {
+            // From the meeting vertex back to the source, then to the destination
+            int count = countArcs(forward, meeting) + countArcs(backward, meeting);
+            ensurePathCapacity(count);
+            int position = countArcs(forward, meeting);
+            for (int vertex = meeting; forward.parents[vertex] >= 0; vertex = forward.parents[vertex]) {
+                position--;
+                setPathArc(position, forward, vertex, forward.parents[vertex], vertex);
+            }
+            position = countArcs(forward, meeting);
+            for (int vertex = meeting; backward.parents[vertex] >= 0; vertex = backward.parents[vertex]) {
+                // The reversed arc of the backward search goes from the parent to the vertex
+                setPathArc(position++, backward, vertex, vertex, backward.parents[vertex]);
+            }
+            pathLength = count;
+        }
+        pathDistance = best;
+        return best;
+    }
+
+    /**
+     * A* search.
+     *
+     * @param source      Source vertex index
+     * @param destination Destination vertex index
+     * @param coordinates Coordinates of the vertices of the graph
+     * @return The shortest path length, infinity if the destination cannot be reached
+     */
+    public double aStar(int source, int destination, VertexCoordinates coordinates) {
+        forward.reset();
+        forward.add(source, 0, coordinates.getLowerBound(source, destination), -1, -1);
+        settledCount = 0;
+        pathLength = 0;
+        while (forward.heapSize > 0) {
+            final int vertex = forward.poll();
+            settledCount++;
+            final double distance = forward.distances[vertex];
+            if (vertex == destination) {
+                int count = countArcs(forward, destination);
+                ensurePathCapacity(count);
+                int position = count;
+                for (int v = destination; forward.parents[v] >= 0; v = forward.parents[v]) {
+                    setPathArc(--position, forward, v, forward.parents[v], v);
+                }
+                pathLength = count;
+                pathDistance = distance;
+                return distance;
+            }
+            for (int arc = graph.getFirstArc(vertex); arc < graph.getLastArc(vertex); arc++) {
+                final int target = graph.getTarget(arc);
+                final double newDistance = distance + graph.getWeight(arc);
+                if (newDistance < forward.distances[target] && forward.heapPositions[target] != Side.SETTLED) {
+                    forward.add(target, newDistance,
+                            newDistance + coordinates.getLowerBound(target, destination), vertex, arc);
+                }
+            }
+        }
+        pathDistance = Double.POSITIVE_INFINITY;
+        return pathDistance;
+    }
+
+    /**
+     * @return Length of the path found by the last search, infinity if the
+     * destination cannot be reached
+     */
+    public double getDistance() {
+        return pathDistance;
+    }
+
+    /**
+     * @return Number of arcs of the path found by the last search
+     */
+    public int getPathLength() {
+        return pathLength;
+    }
+
+    /**
+     * @param i Index of the arc in the path, from the source
+     * @return Edge id of the arc
+     */
+    public int getPathEdgeId(int i) {
+        return pathEdgeIds[i];
+    }
+
+    /**
+     * @param i Index of the arc in the path, from the source
+     * @return Weight of the arc
+     */
+    public double getPathWeight(int i) {
+        return pathWeights[i];
+    }
+
+    /**
+     * @param i Index of the arc in the path, from the source
+     * @return Source vertex index of the arc
+     */
+    public int getPathSource(int i) {
+        return pathSources[i];
+    }
+
+    /**
+     * @param i Index of the arc in the path, from the source
+     * @return Target vertex index of the arc
+     */
+    public int getPathTarget(int i) {
+        return pathTargets[i];
+    }
+
+    /**
+     * @return Number of vertices settled by the last search
+     */
+    public int getSettledCount() {
+        return settledCount;
+    }
+
+    private static int countArcs(Side side, int vertex) {
+        int count = 0;
+        for (int v = vertex; side.parents[v] >= 0; v = side.parents[v]) {
+            count++;
+        }
+        return count;
+    }
+
+    private void ensurePathCapacity(int count) {
+        if (pathEdgeIds.length < count) {
+            pathEdgeIds = new int[count];
+            pathWeights = new double[count];
+            pathSources = new int[count];
+            pathTargets = new int[count];
+        }
+    }
+
+    /**
+     * @param position Index of the arc in the path
+     * @param side     Search that reached the vertex
+     * @param vertex   Vertex reached through its parent arc
+     * @param source   Source vertex index of the arc in the graph
+     * @param target   Target vertex index of the arc in the graph
+     */
+    private void setPathArc(int position, Side side, int vertex, int source, int target) {
+        // The arcs of the reversed graph keep the edge id and the weight of their arc
+        int arc = side.parentArcs[vertex];
+        pathEdgeIds[position] = side.graph.getEdgeId(arc);
+        pathWeights[position] = side.graph.getWeight(arc);
+        pathSources[position] = source;
+        pathTargets[position] = target;
+    }
+
+    /**
+     * The state of one search direction.
+     */
+    private static class Side {
+        static final int SETTLED = -1;
+        static final int UNREACHED = -2;
+
+        final CompactGraph graph;
+        final double[] distances;
+        final double[] keys;
+        final int[] parents;
+        final int[] parentArcs;
+        final int[] heap;
+        final int[] heapPositions;
+        final int[] reached;
+        int heapSize;
+        int reachedCount;
+
+        Side(CompactGraph graph) {
+            this.graph = graph;
+            int vertexCount = graph.getVertexCount();
+            distances = new double[vertexCount];
+            Arrays.fill(distances, Double.POSITIVE_INFINITY);
+            keys = new double[vertexCount];
+            parents = new int[vertexCount];
+            Arrays.fill(parents, -1);
+            parentArcs = new int[vertexCount];
+            heap = new int[vertexCount];
+            heapPositions = new int[vertexCount];
+            Arrays.fill(heapPositions, UNREACHED);
+            reached = new int[vertexCount];
+        }
+
+        void reset() {
+            for (int i = 0; i < reachedCount; i++) {
+                int vertex = reached[i];
+                distances[vertex] = Double.POSITIVE_INFINITY;
+                parents[vertex] = -1;
+                heapPositions[vertex] = UNREACHED;
+            }
+            reachedCount = 0;
+            heapSize = 0;
+        }
+
+        double minKey() {
+            return keys[heap[0]];
+        }
+
+        /**
+         * Insert the vertex or decrease its key.
+         */
+        void add(int vertex, double distance, double key, int parent, int parentArc) {
+            if (heapPositions[vertex] == UNREACHED) {
+                reached[reachedCount++] = vertex;
+                heapPositions[vertex] = heapSize;
+                heap[heapSize++] = vertex;
+            }
+            distances[vertex] = distance;
+            keys[vertex] = key;
+            parents[vertex] = parent;
+            parentArcs[vertex] = parentArc;
+            siftUp(heapPositions[vertex]);
+        }
+
+        int poll() {
+            int top = heap[0];
+            heapSize--;
+            if (heapSize > 0) {
+                heap[0] = heap[heapSize];
+                heapPositions[heap[0]] = 0;
+                siftDown(0);
+            }
+            heapPositions[top] = SETTLED;
+            return top;
+        }
+
+        private void siftUp(int position) {
+            int vertex = heap[position];
+            double key = keys[vertex];
+            while (position > 0) {
+                int parent = (position - 1) >>> 1;
+                int parentVertex = heap[parent];
+                if (keys[parentVertex] <= key) {
+                    break;
+                }
+                heap[position] = parentVertex;
+                heapPositions[parentVertex] = position;
+                position = parent;
+            }
+            heap[position] = vertex;
+            heapPositions[vertex] = position;
+        }
+
+        private void siftDown(int position) {
+            int vertex = heap[position];
+            double key = keys[vertex];
+            while (true) {
+                int child = 2 * position + 1;
+                if (child >= heapSize) {
+                    break;
+                }
+                if (child + 1 < heapSize && keys[heap[child + 1]] < keys[heap[child]]) {
+                    child++;
+                }
+                if (key <= keys[heap[child]]) {
+                    break;
+                }
+                heap[position] = heap[child];
+                heapPositions[heap[position]] = position;
+                position = child;
+            }
+            heap[position] = vertex;
+            heapPositions[vertex] = position;
+        }
+    }
+}
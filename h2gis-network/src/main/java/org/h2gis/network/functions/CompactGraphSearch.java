@@ -0,0 +1,278 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <a href="http://www.h2database.com">http://www.h2database.com</a>. H2GIS is developed by CNRS
+ * <a href="http://www.cnrs.fr/">http://www.cnrs.fr/</a>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; 
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <a href="http://www.h2gis.org/">http://www.h2gis.org/</a>
+ * or contact directly: info_at_h2gis.org
+ */
+
+package org.h2gis.network.functions;
+
+import java.util.Arrays;
+
+/**
+ * Shortest path searches on a {@link CompactGraph}. Weighted graphs are
+ * searched with Dijkstra's algorithm on an indexed binary heap, unweighted
+ * graphs with a breadth first search.
+ *
+ * A search object is reused from one search to the next: only the vertices
+ * reached by the previous search are reset. It must not be used by several
+ * threads at the same time.
+ */
+public class CompactGraphSearch {
+
+    private final CompactGraph graph;
+    private final double[] distances;
+    private final int[] origins;
+    /** Heap of vertex indices for Dijkstra, queue for the breadth first search */
+    private final int[] heap;
+    private final int[] heapPositions;
+    private int heapSize;
+    private final int[] reached;
+    private int reachedCount;
+    private final int[] targetMarks;
+    private int searchId = 0;
+
+    /**
+     * @param graph Graph to search
+     */
+    public CompactGraphSearch(CompactGraph graph) {
+        this.graph = graph;
+        int vertexCount = graph.getVertexCount();
+        distances = new double[vertexCount];
+        Arrays.fill(distances, Double.POSITIVE_INFINITY);
+        origins = new int[vertexCount];
+        Arrays.fill(origins, -1);
+        heap = new int[vertexCount];
+        heapPositions = new int[vertexCount];
+        reached = new int[vertexCount];
+        targetMarks = new int[vertexCount];
+    }
+
+    /**
+     * @return The searched graph
+     */
+    public CompactGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * Computes the distances from the closest source to the vertices.
+     *
+     * @param sources Source vertex indices
+     * @param targets Target vertex indices, the search stops when all of them
+     *                are reached. Null to reach all the vertices.
+     * @param radius  Vertices farther than this distance are not reached
+     */
+    public void calculate(int[] sources, int[] targets, double radius) {
+        reset();
+        int remainingTargets = Integer.MAX_VALUE;
+        if (targets != null) {
+            remainingTargets = 0;
+            for (int target : targets) {
+                if (targetMarks[target] != searchId) {
+                    targetMarks[target] = searchId;
+                    remainingTargets++;
+                }
+            }
+        }
+        for (int source : sources) {
+            if (distances[source] != 0) {
+                distances[source] = 0;
+                origins[source] = source;
+                reached[reachedCount++] = source;
+                heapPositions[source] = heapSize;
+                heap[heapSize++] = source;
+            }
+        }
+        if (graph.isWeighted()) {
+            dijkstra(remainingTargets, radius);
+        } else {
+            breadthFirst(remainingTargets, radius);
+        }
+    }
+
+    /**
+     * Computes the distances from one source.
+     *
+     * @param source Source vertex index
+     * @param target Target vertex index, -1 to reach all the vertices
+     * @param radius Vertices farther than this distance are not reached
+     */
+    public void calculate(int source, int target, double radius) {
+        calculate(new int[]{source}, target < 0 ? null : new int[]{target}, radius);
+    }
+
+    /**
+     * @param vertex Vertex index
+     * @return Distance from the closest source, infinity if the vertex is not reached
+     */
+    public double getDistance(int vertex) {
+        return distances[vertex];
+    }
+
+    /**
+     * @param vertex Vertex index
+     * @return Index of the closest source, -1 if the vertex is not reached
+     */
+    public int getOrigin(int vertex) {
+        return origins[vertex];
+    }
+
+    /**
+     * @return Number of vertices reached by the last search
+     */
+    public int getReachedCount() {
+        return reachedCount;
+    }
+
+    /**
+     * @param i Index in the reached vertices, from 0 to {@link #getReachedCount()}
+     * @return Vertex index
+     */
+    public int getReached(int i) {
+        return reached[i];
+    }
+
+    /**
+     * @param source Vertex index of the arc source
+     * @param arc    Arc index
+     * @return True if the arc belongs to a shortest path of the last search
+     */
+    public boolean isShortestPathArc(int source, int arc) {
+        int target = graph.getTarget(arc);
+        return origins[target] >= 0 && distances[target] != 0
+                && distances[source] + graph.getWeight(arc) == distances[target];
+    }
+
+    private void reset() {
+        for (int i = 0; i < reachedCount; i++) {
+            int vertex = reached[i];
+            distances[vertex] = Double.POSITIVE_INFINITY;
+            origins[vertex] = -1;
+        }
+        reachedCount = 0;
+        heapSize = 0;
+        if (++searchId == 0) {
+            // The marks have wrapped around
+            Arrays.fill(targetMarks, 0);
+            searchId = 1;
+        }
+    }
+
+    private void dijkstra(int remainingTargets, double radius) {
+        while (heapSize > 0 && remainingTargets > 0) {
+            int vertex = poll();
+            if (targetMarks[vertex] == searchId) {
+                remainingTargets--;
+            }
+            double distance = distances[vertex];
+            int origin = origins[vertex];
+            for (int arc = graph.getFirstArc(vertex); arc < graph.getLastArc(vertex); arc++) {
+                int target = graph.getTarget(arc);
+                double newDistance = distance + graph.getWeight(arc);
+                if (newDistance < distances[target] && newDistance <= radius) {
+                    if (distances[target] == Double.POSITIVE_INFINITY) {
+                        reached[reachedCount++] = target;
+                        heapPositions[target] = heapSize;
+                        heap[heapSize++] = target;
+                    } else if (heapPositions[target] < 0) {
+                        // Already settled, only a negative weight could get here
+                        continue;
+                    }
+                    distances[target] = newDistance;
+                    origins[target] = origin;
+                    siftUp(heapPositions[target]);
+                }
+            }
+        }
+    }
+
+    private void breadthFirst(int remainingTargets, double radius) {
+        int head = 0;
+        while (head < heapSize && remainingTargets > 0) {
+            int vertex = heap[head++];
+            if (targetMarks[vertex] == searchId) {
+                remainingTargets--;
+            }
+            double newDistance = distances[vertex] + 1;
+            if (newDistance > radius) {
+                continue;
+            }
+            int origin = origins[vertex];
+            for (int arc = graph.getFirstArc(vertex); arc < graph.getLastArc(vertex); arc++) {
+                int target = graph.getTarget(arc);
+                if (distances[target] == Double.POSITIVE_INFINITY) {
+                    distances[target] = newDistance;
+                    origins[target] = origin;
+                    reached[reachedCount++] = target;
+                    heap[heapSize++] = target;
+                }
+            }
+        }
+    }
+
+    private int poll() {
+        int top = heap[0];
+        heapSize--;
+        if (heapSize > 0) {
+            heap[0] = heap[heapSize];
+            heapPositions[heap[0]] = 0;
+            siftDown(0);
+        }
+        // Settled vertices are no longer in the heap
+        heapPositions[top] = -1;
+        return top;
+    }
+
+    private void siftUp(int position) {
+        int vertex = heap[position];
+        double distance = distances[vertex];
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            int parentVertex = heap[parent];
+            if (distances[parentVertex] <= distance) {
+                break;
+            }
+            heap[position] = parentVertex;
+            heapPositions[parentVertex] = position;
+            position = parent;
+        }
+        heap[position] = vertex;
+        heapPositions[vertex] = position;
+    }
+
+    private void siftDown(int position) {
+        int vertex = heap[position];
+        double distance = distances[vertex];
+        while (true) {
+            int child = 2 * position + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            if (child + 1 < heapSize && distances[heap[child + 1]] < distances[heap[child]]) {
+                child++;
+            }
+            if (distance <= distances[heap[child]]) {
+                break;
+            }
+            heap[position] = heap[child];
+            heapPositions[heap[position]] = position;
+            position = child;
+        }
+        heap[position] = vertex;
+        heapPositions[vertex] = position;
+    }
+}
@@ -0,0 +1,610 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <a href="http://www.h2database.com">http://www.h2database.com</a>. H2GIS is developed by CNRS
+ * <a href="http://www.cnrs.fr/">http://www.cnrs.fr/</a>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software;
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <a href="http://www.h2gis.org/">http://www.h2gis.org/</a>
+ * or contact directly: info_at_h2gis.org
+ */
+
+package org.h2gis.network.functions;
+
+import org.h2gis.utilities.TableLocation;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.Arrays;
+
+import static org.h2gis.network.functions.GraphConstants.*;
+
+/**
+ * A contraction hierarchy of a graph: the vertices are ranked and shortcut
+ * arcs replace the paths through the lower ranked vertices, so a One-to-One
+ * query only runs two small searches going up the hierarchy, from the source
+ * and from the destination.
+ *
+ * The arcs are numbered from 0. The original arcs of the graph keep their edge
+ * id, a shortcut is made of two arcs meeting at the vertex it bypasses.
+ *
+ * The query arrays are reused from one query to the next, the queries are
+ * synchronized.
+ *
+ * The hierarchy is stored in two tables: the rank of each node, and the arcs.
+ * The orientation and the weight of the graph are kept in the comment of the
+ * nodes table.
+ */
+public class ContractionHierarchy {
+
+    private static final int BATCH_SIZE = 1000;
+
+    private final int[] vertexIds;
+    private final int[] ranks;
+    private final int[] arcSources;
+    private final int[] arcTargets;
+    private final double[] arcWeights;
+    private final int[] arcEdgeIds;
+    private final int[] arcFirst;
+    private final int[] arcSecond;
+    // Arcs going to a higher rank, by source vertex
+    private final int[] upOffsets;
+    private final int[] upArcs;
+    // Arcs coming from a higher rank, by target vertex
+    private final int[] downOffsets;
+    private final int[] downArcs;
+    private Search forward;
+    private Search backward;
+
+    /**
+     * @param vertexIds  Sorted vertex ids
+     * @param ranks      Rank of each vertex index in the hierarchy
+     * @param arcSources Source vertex index of each arc
+     * @param arcTargets Target vertex index of each arc
+     * @param arcWeights Weight of each arc
+     * @param arcEdgeIds Edge id of each original arc
+     * @param arcFirst   First arc of each shortcut, -1 for an original arc
+     * @param arcSecond  Second arc of each shortcut, -1 for an original arc
+     */
+    ContractionHierarchy(int[] vertexIds, int[] ranks, int[] arcSources, int[] arcTargets, double[] arcWeights,
+                         int[] arcEdgeIds, int[] arcFirst, int[] arcSecond) {
+        this.vertexIds = vertexIds;
+        this.ranks = ranks;
+        this.arcSources = arcSources;
+        this.arcTargets = arcTargets;
+        this.arcWeights = arcWeights;
+        this.arcEdgeIds = arcEdgeIds;
+        this.arcFirst = arcFirst;
+        this.arcSecond = arcSecond;
+        int vertexCount = vertexIds.length;
+        upOffsets = new int[vertexCount + 1];
+        downOffsets = new int[vertexCount + 1];
+        for (int arc = 0; arc < arcSources.length; arc++) {
+            int source = arcSources[arc];
+            int target = arcTargets[arc];
+            if (ranks[source] < ranks[target]) {
+                upOffsets[source + 1]++;
+            } else if (ranks[source] > ranks[target]) {
+                downOffsets[target + 1]++;
+            }
+        }
+        for (int i = 0; i < vertexCount; i++) {
+            upOffsets[i + 1] += upOffsets[i];
+            downOffsets[i + 1] += downOffsets[i];
+        }
+        upArcs = new int[upOffsets[vertexCount]];
+        downArcs = new int[downOffsets[vertexCount]];
+        int[] nextUp = Arrays.copyOf(upOffsets, vertexCount);
+        int[] nextDown = Arrays.copyOf(downOffsets, vertexCount);
+        for (int arc = 0; arc < arcSources.length; arc++) {
+            int source = arcSources[arc];
+            int target = arcTargets[arc];
+            if (ranks[source] < ranks[target]) {
+                upArcs[nextUp[source]++] = arc;
+            } else if (ranks[source] > ranks[target]) {
+                downArcs[nextDown[target]++] = arc;
+            }
+        }
+    }
+
+    /**
+     * @return Number of vertices
+     */
+    public int getVertexCount() {
+        return vertexIds.length;
+    }
+
+    /**
+     * @return Number of arcs, original arcs and shortcuts
+     */
+    public int getArcCount() {
+        return arcSources.length;
+    }
+
+    /**
+     * @param index Vertex index
+     * @return Vertex id
+     */
+    public int getVertexId(int index) {
+        return vertexIds[index];
+    }
+
+    /**
+     * @param id Vertex id
+     * @return Vertex index
+     * @throws IllegalArgumentException if the hierarchy does not contain the vertex
+     */
+    public int getExistingVertexIndex(int id) {
+        int index = Arrays.binarySearch(vertexIds, id);
+        if (index < 0) {
+            throw new IllegalArgumentException("The graph does not contain vertex " + id);
+        }
+        return index;
+    }
+
+    /**
+     * @param index Vertex index
+     * @return Rank of the vertex in the hierarchy
+     */
+    public int getRank(int index) {
+        return ranks[index];
+    }
+
+    /**
+     * @param arc Arc
+     * @return Source vertex index
+     */
+    public int getArcSource(int arc) {
+        return arcSources[arc];
+    }
+
+    /**
+     * @param arc Arc
+     * @return Target vertex index
+     */
+    public int getArcTarget(int arc) {
+        return arcTargets[arc];
+    }
+
+    /**
+     * @param arc Arc
+     * @return Weight
+     */
+    public double getArcWeight(int arc) {
+        return arcWeights[arc];
+    }
+
+    /**
+     * @param arc Arc
+     * @return Edge id of an original arc
+     */
+    public int getArcEdgeId(int arc) {
+        return arcEdgeIds[arc];
+    }
+
+    /**
+     * @param arc Arc
+     * @return First arc of the shortcut, -1 for an original arc
+     */
+    public int getArcFirst(int arc) {
+        return arcFirst[arc];
+    }
+
+    /**
+     * @param arc Arc
+     * @return Second arc of the shortcut, -1 for an original arc
+     */
+    public int getArcSecond(int arc) {
+        return arcSecond[arc];
+    }
+
+    /**
+     * @param source      Source vertex index
+     * @param destination Destination vertex index
+     * @return The shortest path length, infinity if the destination cannot be reached
+     */
+    public synchronized double getDistance(int source, int destination) {
+        int meeting = search(source, destination);
+        return meeting < 0 ? Double.POSITIVE_INFINITY
+                : forward.distances[meeting] + backward.distances[meeting];
+    }
+
+    /**
+     * @param source      Source vertex index
+     * @param destination Destination vertex index
+     * @return The original arcs of a shortest path from the source to the
+     * destination, null if the destination cannot be reached
+     */
+    public synchronized int[] getPath(int source, int destination) {
+        int meeting = search(source, destination);
+        if (meeting < 0) {
+            return null;
+        }
+        // Arcs of the hierarchy from the source to the destination
+        int count = 0;
+        for (int v = meeting; forward.parentArcs[v] >= 0; v = arcSources[forward.parentArcs[v]]) {
+            count++;
+        }
+        for (int v = meeting; backward.parentArcs[v] >= 0; v = arcTargets[backward.parentArcs[v]]) {
+            count++;
+        }
+        int[] arcs = new int[count];
+        int position = 0;
+        for (int v = meeting; forward.parentArcs[v] >= 0; v = arcSources[forward.parentArcs[v]]) {
+            arcs[position++] = forward.parentArcs[v];
+        }
+        reverse(arcs, 0, position);
+        for (int v = meeting; backward.parentArcs[v] >= 0; v = arcTargets[backward.parentArcs[v]]) {
+            arcs[position++] = backward.parentArcs[v];
+        }
+        return unpack(arcs);
+    }
+
+    /**
+     * @param parser Parsed orientation and weight
+     * @return The description of the graph kept with the stored hierarchy
+     */
+    public static String getSpecification(GraphFunctionParser parser) {
+        StringBuilder specification = new StringBuilder(parser.getGlobalOrientation().name());
+        if (parser.getEdgeOrientation() != null) {
+            specification.append(" - ").append(parser.getEdgeOrientation().toUpperCase());
+        }
+        if (parser.getWeightColumn() != null) {
+            specification.append("; ").append(parser.getWeightColumn().toUpperCase());
+        }
+        return specification.toString();
+    }
+
+    /**
+     * Store the hierarchy, replacing the existing tables.
+     *
+     * @param connection    Connection
+     * @param nodesName     Table of the vertex ranks
+     * @param arcsName      Table of the arcs
+     * @param specification Description of the graph, see {@link #getSpecification(GraphFunctionParser)}
+     * @throws SQLException
+     */
+    public void save(Connection connection, TableLocation nodesName, TableLocation arcsName, String specification)
+            throws SQLException {
+        try (Statement st = connection.createStatement()) {
+            st.execute("DROP TABLE IF EXISTS " + nodesName + ", " + arcsName);
+            st.execute("CREATE TABLE " + nodesName + "(" + NODE_ID + " INTEGER PRIMARY KEY, "
+                    + CH_RANK + " INTEGER)");
+            st.execute("CREATE TABLE " + arcsName + "(" + ARC_ID + " INTEGER PRIMARY KEY, "
+                    + START_NODE + " INTEGER, " + END_NODE + " INTEGER, " + WEIGHT + " DOUBLE PRECISION, "
+                    + EDGE_ID + " INTEGER, " + FIRST_ARC + " INTEGER, " + SECOND_ARC + " INTEGER)");
+        }
+        final boolean previousAutoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try {
+            try (PreparedStatement ps = connection.prepareStatement("INSERT INTO " + nodesName + " VALUES(?, ?)")) {
+                for (int i = 0; i < vertexIds.length; i++) {
+                    ps.setInt(1, vertexIds[i]);
+                    ps.setInt(2, ranks[i]);
+                    ps.addBatch();
+                    if ((i + 1) % BATCH_SIZE == 0) {
+                        ps.executeBatch();
+                    }
+                }
+                ps.executeBatch();
+            }
+            try (PreparedStatement ps = connection.prepareStatement(
+                    "INSERT INTO " + arcsName + " VALUES(?, ?, ?, ?, ?, ?, ?)")) {
+                for (int arc = 0; arc < arcSources.length; arc++) {
+                    ps.setInt(1, arc);
+                    ps.setInt(2, vertexIds[arcSources[arc]]);
+                    ps.setInt(3, vertexIds[arcTargets[arc]]);
+                    ps.setDouble(4, arcWeights[arc]);
+                    if (arcFirst[arc] < 0) {
+                        ps.setInt(5, arcEdgeIds[arc]);
+                        ps.setNull(6, Types.INTEGER);
+                        ps.setNull(7, Types.INTEGER);
+                    } else {
+                        ps.setNull(5, Types.INTEGER);
+                        ps.setInt(6, arcFirst[arc]);
+                        ps.setInt(7, arcSecond[arc]);
+                    }
+                    ps.addBatch();
+                    if ((arc + 1) % BATCH_SIZE == 0) {
+                        ps.executeBatch();
+                    }
+                }
+                ps.executeBatch();
+            }
+            try (PreparedStatement ps = connection.prepareStatement("COMMENT ON TABLE " + nodesName + " IS ?")) {
+                ps.setString(1, specification);
+                ps.execute();
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(previousAutoCommit);
+        }
+    }
+
+    /**
+     * Load a stored hierarchy.
+     *
+     * @param connection    Connection
+     * @param nodesName     Table of the vertex ranks
+     * @param arcsName      Table of the arcs
+     * @param specification Description of the expected graph
+     * @return The hierarchy, null if it has been built for another orientation or weight
+     * @throws SQLException
+     */
+    public static ContractionHierarchy load(Connection connection, TableLocation nodesName, TableLocation arcsName,
+                                            String specification) throws SQLException {
+        if (!specification.equalsIgnoreCase(readSpecification(connection, nodesName))) {
+            return null;
+        }
+        int vertexCount;
+        int arcCount;
+        try (Statement st = connection.createStatement()) {
+            try (ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM " + nodesName)) {
+                rs.next();
+                vertexCount = rs.getInt(1);
+            }
+            try (ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM " + arcsName)) {
+                rs.next();
+                arcCount = rs.getInt(1);
+            }
+            final int[] vertexIds = new int[vertexCount];
+            final int[] ranks = new int[vertexCount];
+            try (ResultSet rs = st.executeQuery("SELECT " + NODE_ID + ", " + CH_RANK + " FROM " + nodesName
+                    + " ORDER BY " + NODE_ID)) {
+                int i = 0;
+                while (rs.next()) {
+                    vertexIds[i] = rs.getInt(1);
+                    ranks[i++] = rs.getInt(2);
+                }
+            }
+            final int[] arcSources = new int[arcCount];
+            final int[] arcTargets = new int[arcCount];
+            final double[] arcWeights = new double[arcCount];
+            final int[] arcEdgeIds = new int[arcCount];
+            final int[] arcFirst = new int[arcCount];
+            final int[] arcSecond = new int[arcCount];
+            try (ResultSet rs = st.executeQuery("SELECT " + ARC_ID + ", " + START_NODE + ", " + END_NODE + ", "
+                    + WEIGHT + ", " + EDGE_ID + ", " + FIRST_ARC + ", " + SECOND_ARC + " FROM " + arcsName)) {
+                while (rs.next()) {
+                    int arc = rs.getInt(1);
+                    arcSources[arc] = indexOf(vertexIds, rs.getInt(2));
+                    arcTargets[arc] = indexOf(vertexIds, rs.getInt(3));
+                    arcWeights[arc] = rs.getDouble(4);
+                    arcEdgeIds[arc] = rs.getInt(5);
+                    arcFirst[arc] = rs.getInt(6);
+                    if (rs.wasNull()) {
+                        arcFirst[arc] = -1;
+                        arcSecond[arc] = -1;
+                    } else {
+                        arcSecond[arc] = rs.getInt(7);
+                    }
+                }
+            }
+            return new ContractionHierarchy(vertexIds, ranks, arcSources, arcTargets, arcWeights, arcEdgeIds,
+                    arcFirst, arcSecond);
+        }
+    }
+
+    private static int indexOf(int[] vertexIds, int id) throws SQLException {
+        int index = Arrays.binarySearch(vertexIds, id);
+        if (index < 0) {
+            throw new SQLException("The contraction hierarchy does not rank vertex " + id);
+        }
+        return index;
+    }
+
+    /**
+     * @return The description of the graph kept with the stored hierarchy
+     */
+    private static String readSpecification(Connection connection, TableLocation nodesName) throws SQLException {
+        DatabaseMetaData metaData = connection.getMetaData();
+        try (ResultSet rs = metaData.getTables(nodesName.getCatalog(null), nodesName.getSchema(null),
+                nodesName.getTable(), null)) {
+            return rs.next() ? rs.getString("REMARKS") : null;
+        }
+    }
+
+    /**
+     * Replace the shortcuts by the original arcs they are made of.
+     */
+    private int[] unpack(int[] arcs) {
+        int[] path = new int[arcs.length];
+        int length = 0;
+        int[] stack = new int[16];
+        for (int arc : arcs) {
+            int stackSize = 0;
+            stack[stackSize++] = arc;
+            while (stackSize > 0) {
+                int top = stack[--stackSize];
+                if (arcFirst[top] < 0) {
+                    if (length == path.length) {
+                        path = Arrays.copyOf(path, path.length * 2);
+                    }
+                    path[length++] = top;
+                } else {
+                    if (stackSize + 2 > stack.length) {
+                        stack = Arrays.copyOf(stack, stack.length * 2);
+                    }
+                    // The first arc is popped first
+                    stack[stackSize++] = arcSecond[top];
+                    stack[stackSize++] = arcFirst[top];
+                }
+            }
+        }
+        return Arrays.copyOf(path, length);
+    }
+
+    private static void reverse(int[] array, int from, int to) {
+        for (int i = from, j = to - 1; i < j; i++, j--) {
+            int tmp = array[i];
+            array[i] = array[j];
+            array[j] = tmp;
+        }
+    }
+
+    /**
+     * Searches up the hierarchy from both ends.
+     *
+     * @return The vertex of the shortest path with the highest rank, -1 if
+     * the destination cannot be reached
+     */
+    private int search(int source, int destination) {
+        if (forward == null) {
+            forward = new Search(vertexIds.length);
+            backward = new Search(vertexIds.length);
+        }
+        forward.reset();
+        backward.reset();
+        forward.add(source, 0, -1);
+        backward.add(destination, 0, -1);
+        double best = Double.POSITIVE_INFINITY;
+        int meeting = -1;
+        boolean forwardTurn = true;
+        while (true) {
+            boolean forwardDone = forward.heapSize == 0 || forward.minDistance() >= best;
+            boolean backwardDone = backward.heapSize == 0 || backward.minDistance() >= best;
+            if (forwardDone && backwardDone) {
+                break;
+            }
+            boolean isForward = backwardDone || (!forwardDone && forwardTurn);
+            forwardTurn = !forwardTurn;
+            Search side = isForward ? forward : backward;
+            Search other = isForward ? backward : forward;
+            int vertex = side.poll();
+            double distance = side.distances[vertex];
+            if (distance + other.distances[vertex] < best) {
+                best = distance + other.distances[vertex];
+                meeting = vertex;
+            }
+            int[] offsets = isForward ? upOffsets : downOffsets;
+            int[] arcs = isForward ? upArcs : downArcs;
+            for (int i = offsets[vertex]; i < offsets[vertex + 1]; i++) {
+                int arc = arcs[i];
+                int next = isForward ? arcTargets[arc] : arcSources[arc];
+                double newDistance = distance + arcWeights[arc];
+                if (newDistance < side.distances[next]) {
+                    side.add(next, newDistance, arc);
+                }
+            }
+        }
+        return meeting;
+    }
+
+    /**
+     * The state of the search from one end.
+     */
+    private static class Search {
+        final double[] distances;
+        final int[] parentArcs;
+        final int[] heap;
+        final int[] heapPositions;
+        final int[] reached;
+        int heapSize;
+        int reachedCount;
+
+        Search(int vertexCount) {
+            distances = new double[vertexCount];
+            Arrays.fill(distances, Double.POSITIVE_INFINITY);
+            parentArcs = new int[vertexCount];
+            Arrays.fill(parentArcs, -1);
+            heap = new int[vertexCount];
+            heapPositions = new int[vertexCount];
+            Arrays.fill(heapPositions, -1);
+            reached = new int[vertexCount];
+        }
+
+        void reset() {
+            for (int i = 0; i < reachedCount; i++) {
+                int vertex = reached[i];
+                distances[vertex] = Double.POSITIVE_INFINITY;
+                parentArcs[vertex] = -1;
+                heapPositions[vertex] = -1;
+            }
+            reachedCount = 0;
+            heapSize = 0;
+        }
+
+        double minDistance() {
+            return distances[heap[0]];
+        }
+
+        void add(int vertex, double distance, int parentArc) {
+            if (distances[vertex] == Double.POSITIVE_INFINITY) {
+                reached[reachedCount++] = vertex;
+                heapPositions[vertex] = heapSize;
+                heap[heapSize++] = vertex;
+            }
+            distances[vertex] = distance;
+            parentArcs[vertex] = parentArc;
+            // The vertices only go up the hierarchy, a settled vertex is not reached again
+            siftUp(heapPositions[vertex]);
+        }
+
+        int poll() {
+            int top = heap[0];
+            heapSize--;
+            if (heapSize > 0) {
+                heap[0] = heap[heapSize];
+                heapPositions[heap[0]] = 0;
+                siftDown(0);
+            }
+            return top;
+        }
+
+        private void siftUp(int position) {
+            int vertex = heap[position];
+            double distance = distances[vertex];
+            while (position > 0) {
+                int parent = (position - 1) >>> 1;
+                int parentVertex = heap[parent];
+                if (distances[parentVertex] <= distance) {
+                    break;
+                }
+                heap[position] = parentVertex;
+                heapPositions[parentVertex] = position;
+                position = parent;
+            }
+            heap[position] = vertex;
+            heapPositions[vertex] = position;
+        }
+
+        private void siftDown(int position) {
+            int vertex = heap[position];
+            double distance = distances[vertex];
+            while (true) {
+                int child = 2 * position + 1;
+                if (child >= heapSize) {
+                    break;
+                }
+                if (child + 1 < heapSize && distances[heap[child + 1]] < distances[heap[child]]) {
+                    child++;
+                }
+                if (distance <= distances[heap[child]]) {
+                    break;
+                }
+                heap[position] = heap[child];
+                heapPositions[heap[position]] = position;
+                position = child;
+            }
+            heap[position] = vertex;
+            heapPositions[vertex] = position;
+        }
+    }
+}
@@ -0,0 +1,373 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <a href="http://www.h2database.com">http://www.h2database.com</a>. H2GIS is developed by CNRS
+ * <a href="http://www.cnrs.fr/">http://www.cnrs.fr/</a>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software;
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <a href="http://www.h2gis.org/">http://www.h2gis.org/</a>
+ * or contact directly: info_at_h2gis.org
+ */
+
+package org.h2gis.network.functions;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+/**
+ * Builds a {@link ContractionHierarchy} by contracting the vertices of a
+ * {@link CompactGraph} one by one, the least important first. Contracting a
+ * vertex adds a shortcut between two of its neighbours when no other path, the
+ * witness, is as short as the path through the vertex. The importance of a
+ * vertex is its edge difference (shortcuts added minus arcs removed) plus the
+ * number of its contracted neighbours, updated lazily.
+ */
+class ContractionHierarchyBuilder {
+
+    /** Number of vertices settled by a witness search before giving up */
+    static final int WITNESS_SETTLE_LIMIT = 500;
+
+    private final int vertexCount;
+    // All the arcs, original arcs then shortcuts
+    private int arcCount;
+    private int[] arcSources;
+    private int[] arcTargets;
+    private double[] arcWeights;
+    private int[] arcEdgeIds;
+    private int[] arcFirst;
+    private int[] arcSecond;
+    // Arcs leaving and entering each vertex
+    private final int[][] outArcs;
+    private final int[] outCounts;
+    private final int[][] inArcs;
+    private final int[] inCounts;
+    private final boolean[] contracted;
+    private final int[] contractedNeighbours;
+    // Witness search
+    private final double[] witnessDistances;
+    private final int[] witnessReached;
+    private int witnessReachedCount;
+    private final WitnessHeap witnessHeap = new WitnessHeap();
+    // Neighbours of the contracted vertex with the lightest arc to them
+    private final double[] neighbourWeights;
+    private final int[] neighbourArcs;
+
+    private ContractionHierarchyBuilder(CompactGraph graph) {
+        vertexCount = graph.getVertexCount();
+        int capacity = Math.max(16, graph.getArcCount() * 2);
+        arcSources = new int[capacity];
+        arcTargets = new int[capacity];
+        arcWeights = new double[capacity];
+        arcEdgeIds = new int[capacity];
+        arcFirst = new int[capacity];
+        arcSecond = new int[capacity];
+        outArcs = new int[vertexCount][];
+        outCounts = new int[vertexCount];
+        inArcs = new int[vertexCount][];
+        inCounts = new int[vertexCount];
+        for (int vertex = 0; vertex < vertexCount; vertex++) {
+            outArcs[vertex] = new int[graph.getLastArc(vertex) - graph.getFirstArc(vertex) + 1];
+        }
+        for (int i = 0; i < vertexCount; i++) {
+            inArcs[i] = new int[2];
+        }
+        for (int vertex = 0; vertex < vertexCount; vertex++) {
+            for (int arc = graph.getFirstArc(vertex); arc < graph.getLastArc(vertex); arc++) {
+                if (graph.getTarget(arc) != vertex) {
+                    addArc(vertex, graph.getTarget(arc), graph.getWeight(arc), graph.getEdgeId(arc), -1, -1);
+                }
+            }
+        }
+        contracted = new boolean[vertexCount];
+        contractedNeighbours = new int[vertexCount];
+        witnessDistances = new double[vertexCount];
+        Arrays.fill(witnessDistances, Double.POSITIVE_INFINITY);
+        witnessReached = new int[vertexCount];
+        neighbourWeights = new double[vertexCount];
+        Arrays.fill(neighbourWeights, Double.POSITIVE_INFINITY);
+        neighbourArcs = new int[vertexCount];
+    }
+
+    /**
+     * @param graph Graph
+     * @return The contraction hierarchy of the graph
+     */
+    static ContractionHierarchy build(CompactGraph graph) {
+        return new ContractionHierarchyBuilder(graph).contract(graph);
+    }
+
+    private ContractionHierarchy contract(CompactGraph graph) {
+        // Vertices by importance, the entries are updated when they are polled
+        PriorityQueue<long[]> queue = new PriorityQueue<>(Math.max(1, vertexCount),
+                (a, b) -> Long.compare(a[0], b[0]));
+        for (int vertex = 0; vertex < vertexCount; vertex++) {
+            queue.add(new long[]{getImportance(vertex), vertex});
+        }
+        int[] ranks = new int[vertexCount];
+        int rank = 0;
+        while (!queue.isEmpty()) {
+            long[] entry = queue.poll();
+            int vertex = (int) entry[1];
+            long importance = getImportance(vertex);
+            if (!queue.isEmpty() && importance > queue.peek()[0]) {
+                entry[0] = importance;
+                queue.add(entry);
+                continue;
+            }
+            contractVertex(vertex, true);
+            contracted[vertex] = true;
+            ranks[vertex] = rank++;
+            for (int i = 0; i < outCounts[vertex]; i++) {
+                contractedNeighbours[arcTargets[outArcs[vertex][i]]]++;
+            }
+            for (int i = 0; i < inCounts[vertex]; i++) {
+                contractedNeighbours[arcSources[inArcs[vertex][i]]]++;
+            }
+        }
+        int[] vertexIds = new int[vertexCount];
+        for (int i = 0; i < vertexCount; i++) {
+            vertexIds[i] = graph.getVertexId(i);
+        }
+        return new ContractionHierarchy(vertexIds, ranks,
+                Arrays.copyOf(arcSources, arcCount), Arrays.copyOf(arcTargets, arcCount),
+                Arrays.copyOf(arcWeights, arcCount), Arrays.copyOf(arcEdgeIds, arcCount),
+                Arrays.copyOf(arcFirst, arcCount), Arrays.copyOf(arcSecond, arcCount));
+    }
+
+    private long getImportance(int vertex) {
+        int removed = 0;
+        for (int i = 0; i < outCounts[vertex]; i++) {
+            if (!contracted[arcTargets[outArcs[vertex][i]]]) {
+                removed++;
+            }
+        }
+        for (int i = 0; i < inCounts[vertex]; i++) {
+            if (!contracted[arcSources[inArcs[vertex][i]]]) {
+                removed++;
+            }
+        }
+        return (long) contractVertex(vertex, false) - removed + contractedNeighbours[vertex];
+    }
+
+    /**
+     * Find the shortcuts needed to contract the vertex.
+     *
+     * @param vertex Vertex
+     * @param add    True to add the shortcuts, false to only count them
+     * @return Number of shortcuts
+     */
+    private int contractVertex(int vertex, boolean add) {
+        // Lightest arc to each remaining out neighbour
+        int[] targets = new int[outCounts[vertex]];
+        int targetCount = 0;
+        double maxOutWeight = 0;
+        for (int i = 0; i < outCounts[vertex]; i++) {
+            int arc = outArcs[vertex][i];
+            int target = arcTargets[arc];
+            if (contracted[target]) {
+                continue;
+            }
+            if (neighbourWeights[target] == Double.POSITIVE_INFINITY) {
+                targets[targetCount++] = target;
+            }
+            if (arcWeights[arc] < neighbourWeights[target]) {
+                neighbourWeights[target] = arcWeights[arc];
+                neighbourArcs[target] = arc;
+            }
+        }
+        double[] outWeights = new double[targetCount];
+        int[] outArcIds = new int[targetCount];
+        for (int i = 0; i < targetCount; i++) {
+            outWeights[i] = neighbourWeights[targets[i]];
+            outArcIds[i] = neighbourArcs[targets[i]];
+            maxOutWeight = Math.max(maxOutWeight, outWeights[i]);
+            neighbourWeights[targets[i]] = Double.POSITIVE_INFINITY;
+        }
+        // Lightest arc from each remaining in neighbour
+        int[] sources = new int[inCounts[vertex]];
+        int sourceCount = 0;
+        for (int i = 0; i < inCounts[vertex]; i++) {
+            int arc = inArcs[vertex][i];
+            int source = arcSources[arc];
+            if (contracted[source]) {
+                continue;
+            }
+            if (neighbourWeights[source] == Double.POSITIVE_INFINITY) {
+                sources[sourceCount++] = source;
+            }
+            if (arcWeights[arc] < neighbourWeights[source]) {
+                neighbourWeights[source] = arcWeights[arc];
+                neighbourArcs[source] = arc;
+            }
+        }
+        int shortcuts = 0;
+        for (int i = 0; i < sourceCount; i++) {
+            int source = sources[i];
+            double inWeight = neighbourWeights[source];
+            int inArc = neighbourArcs[source];
+            neighbourWeights[source] = Double.POSITIVE_INFINITY;
+            if (targetCount == 0 || (targetCount == 1 && targets[0] == source)) {
+                continue;
+            }
+            witnessSearch(source, vertex, inWeight + maxOutWeight);
+            for (int j = 0; j < targetCount; j++) {
+                int target = targets[j];
+                double weight = inWeight + outWeights[j];
+                if (target != source && witnessDistances[target] > weight) {
+                    shortcuts++;
+                    if (add) {
+                        addArc(source, target, weight, 0, inArc, outArcIds[j]);
+                    }
+                }
+            }
+        }
+        return shortcuts;
+    }
+
+    /**
+     * Dijkstra search from the source in the remaining graph without the
+     * contracted vertex, up to the given distance.
+     */
+    private void witnessSearch(int source, int excluded, double maxDistance) {
+        for (int i = 0; i < witnessReachedCount; i++) {
+            witnessDistances[witnessReached[i]] = Double.POSITIVE_INFINITY;
+        }
+        witnessReachedCount = 0;
+        witnessHeap.clear();
+        witnessDistances[source] = 0;
+        witnessReached[witnessReachedCount++] = source;
+        witnessHeap.add(0, source);
+        int settled = 0;
+        while (!witnessHeap.isEmpty() && settled < WITNESS_SETTLE_LIMIT) {
+            double distance = witnessHeap.peekKey();
+            int vertex = witnessHeap.poll();
+            if (distance > witnessDistances[vertex]) {
+                // Outdated entry
+                continue;
+            }
+            if (distance > maxDistance) {
+                break;
+            }
+            settled++;
+            for (int i = 0; i < outCounts[vertex]; i++) {
+                int arc = outArcs[vertex][i];
+                int target = arcTargets[arc];
+                if (target == excluded || contracted[target]) {
+                    continue;
+                }
+                double newDistance = distance + arcWeights[arc];
+                if (newDistance < witnessDistances[target]) {
+                    if (witnessDistances[target] == Double.POSITIVE_INFINITY) {
+                        witnessReached[witnessReachedCount++] = target;
+                    }
+                    witnessDistances[target] = newDistance;
+                    witnessHeap.add(newDistance, target);
+                }
+            }
+        }
+    }
+
+    private void addArc(int source, int target, double weight, int edgeId, int first, int second) {
+        if (arcCount == arcSources.length) {
+            int capacity = arcCount * 2;
+            arcSources = Arrays.copyOf(arcSources, capacity);
+            arcTargets = Arrays.copyOf(arcTargets, capacity);
+            arcWeights = Arrays.copyOf(arcWeights, capacity);
+            arcEdgeIds = Arrays.copyOf(arcEdgeIds, capacity);
+            arcFirst = Arrays.copyOf(arcFirst, capacity);
+            arcSecond = Arrays.copyOf(arcSecond, capacity);
+        }
+        int arc = arcCount++;
+        arcSources[arc] = source;
+        arcTargets[arc] = target;
+        arcWeights[arc] = weight;
+        arcEdgeIds[arc] = edgeId;
+        arcFirst[arc] = first;
+        arcSecond[arc] = second;
+        if (outCounts[source] == outArcs[source].length) {
+            outArcs[source] = Arrays.copyOf(outArcs[source], outArcs[source].length * 2);
+        }
+        outArcs[source][outCounts[source]++] = arc;
+        if (inCounts[target] == inArcs[target].length) {
+            inArcs[target] = Arrays.copyOf(inArcs[target], inArcs[target].length * 2);
+        }
+        inArcs[target][inCounts[target]++] = arc;
+    }
+
+    /**
+     * Binary heap of vertices by distance, allowing duplicate vertices.
+     */
+    private static class WitnessHeap {
+        private double[] keys = new double[64];
+        private int[] values = new int[64];
+        private int size;
+
+        void clear() {
+            size = 0;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        double peekKey() {
+            return keys[0];
+        }
+
+        void add(double key, int value) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+            int position = size++;
+            while (position > 0) {
+                int parent = (position - 1) >>> 1;
+                if (keys[parent] <= key) {
+                    break;
+                }
+                keys[position] = keys[parent];
+                values[position] = values[parent];
+                position = parent;
+            }
+            keys[position] = key;
+            values[position] = value;
+        }
+
+        int poll() {
+            int top = values[0];
+            size--;
+            if (size > 0) {
+                double key = keys[size];
+                int value = values[size];
+                int position = 0;
+                while (true) {
+                    int child = 2 * position + 1;
+                    if (child >= size) {
+                        break;
+                    }
+                    if (child + 1 < size && keys[child + 1] < keys[child]) {
+                        child++;
+                    }
+                    if (key <= keys[child]) {
+                        break;
+                    }
+                    keys[position] = keys[child];
+                    values[position] = values[child];
+                    position = child;
+                }
+                keys[position] = key;
+                values[position] = value;
+            }
+            return top;
+        }
+    }
+}
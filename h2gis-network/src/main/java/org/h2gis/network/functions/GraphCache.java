@@ -0,0 +1,294 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <a href="http://www.h2database.com">http://www.h2database.com</a>. H2GIS is developed by CNRS
+ * <a href="http://www.cnrs.fr/">http://www.cnrs.fr/</a>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; 
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <a href="http://www.h2gis.org/">http://www.h2gis.org/</a>
+ * or contact directly: info_at_h2gis.org
+ */
+
+package org.h2gis.network.functions;
+
+import org.h2.engine.Session;
+import org.h2.engine.SessionLocal;
+import org.h2.schema.Schema;
+import org.h2.table.Table;
+import org.h2gis.utilities.JDBCUtilities;
+import org.h2gis.utilities.TableLocation;
+import org.h2gis.utilities.TableUtilities;
+import org.javanetworkanalyzer.model.KeyedGraph;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.WeakHashMap;
+import java.util.function.Predicate;
+
+/**
+ * Keeps the graphs loaded by the graph functions of a session, so that repeated
+ * queries on the same edges table do not load it again.
+ *
+ * A graph is identified by the edges table, the orientation, the weight column
+ * and the vertex and edge classes. It is reloaded when the modification id of
+ * the edges table changes. The vertices store the state of the search
+ * algorithms, so a graph is never shared between sessions. The cache is only
+ * used with embedded H2 databases, other connections load the graph each time.
+ */
+public class GraphCache {
+
+    /** Maximum number of graphs kept by a session */
+    public static final int MAX_GRAPHS = 4;
+
+    private static final Map<Session, GraphCache> SESSION_CACHES =
+            Collections.synchronizedMap(new WeakHashMap<Session, GraphCache>());
+
+    private final Map<GraphKey, CachedGraph> graphs = new LinkedHashMap<GraphKey, CachedGraph>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<GraphKey, CachedGraph> eldest) {
+            return size() > MAX_GRAPHS;
+        }
+    };
+
+    /**
+     * Return the graph of the edges table, from the cache of the session if
+     * the table has not been modified since it has been loaded.
+     *
+     * @param connection  Connection
+     * @param inputTable  Input table name
+     * @param parser      Parsed orientation and weight
+     * @param vertexClass Vertex class
+     * @param edgeClass   Edge class
+     * @return Graph
+     * @throws SQLException
+     */
+    public static KeyedGraph getGraph(Connection connection,
+                                      String inputTable,
+                                      GraphFunctionParser parser,
+                                      Class vertexClass,
+                                      Class edgeClass) throws SQLException {
+        return (KeyedGraph) get(connection, inputTable, parser, vertexClass, edgeClass,
+                () -> createGraph(connection, inputTable, parser, vertexClass, edgeClass), null);
+    }
+
+    /**
+     * Return the compact graph of the edges table, from the cache of the
+     * session if the table has not been modified since it has been loaded.
+     *
+     * @param connection Connection
+     * @param inputTable Input table name
+     * @param parser     Parsed orientation and weight
+     * @return Graph
+     * @throws SQLException
+     */
+    public static CompactGraph getCompactGraph(Connection connection,
+                                               String inputTable,
+                                               GraphFunctionParser parser) throws SQLException {
+        return (CompactGraph) get(connection, inputTable, parser, CompactGraph.class, CompactGraph.class,
+                () -> CompactGraph.load(connection, inputTable, parser), null);
+    }
+
+    /**
+     * Return the coordinates of the vertices of a compact graph, from the
+     * cache of the session if the nodes table has not been modified and the
+     * graph is the same.
+     *
+     * @param connection Connection
+     * @param nodesTable Nodes table name
+     * @param parser     Parsed orientation and weight of the graph
+     * @param graph      Graph
+     * @return Coordinates
+     * @throws SQLException
+     */
+    public static VertexCoordinates getVertexCoordinates(Connection connection,
+                                                         String nodesTable,
+                                                         GraphFunctionParser parser,
+                                                         CompactGraph graph) throws SQLException {
+        return (VertexCoordinates) get(connection, nodesTable, parser, VertexCoordinates.class, CompactGraph.class,
+                () -> VertexCoordinates.load(connection, nodesTable, graph),
+                cached -> ((VertexCoordinates) cached).getGraph() == graph);
+    }
+
+    /**
+     * Return the contraction hierarchy stored for the edges table by
+     * ST_ContractionHierarchy, from the cache of the session if the stored
+     * hierarchy has not been modified since it has been loaded.
+     *
+     * @param connection Connection
+     * @param inputTable Input table name
+     * @param parser     Parsed orientation and weight
+     * @return The hierarchy, null if none has been stored for this orientation and weight
+     * @throws SQLException
+     */
+    public static ContractionHierarchy getContractionHierarchy(Connection connection,
+                                                               String inputTable,
+                                                               GraphFunctionParser parser) throws SQLException {
+        final TableLocation tableName = TableUtilities.parseInputTable(connection, inputTable);
+        final TableLocation nodesName = TableUtilities.suffixTableLocation(tableName, GraphConstants.NODE_CH_SUFFIX);
+        final TableLocation arcsName = TableUtilities.suffixTableLocation(tableName, GraphConstants.EDGE_CH_SUFFIX);
+        SessionLocal session = JDBCUtilities.getLocalSession(connection);
+        boolean exists = session == null
+                ? JDBCUtilities.tableExists(connection, arcsName) && JDBCUtilities.tableExists(connection, nodesName)
+                : findTable(session, connection, arcsName.toString()) != null
+                && findTable(session, connection, nodesName.toString()) != null;
+        if (!exists) {
+            return null;
+        }
+        // Both tables are written by the same transaction, the nodes table identifies the version
+        return (ContractionHierarchy) get(connection, nodesName.toString(), parser,
+                ContractionHierarchy.class, ContractionHierarchy.class,
+                () -> ContractionHierarchy.load(connection, nodesName, arcsName,
+                        ContractionHierarchy.getSpecification(parser)), null);
+    }
+
+    private static Object get(Connection connection,
+                              String inputTable,
+                              GraphFunctionParser parser,
+                              Class vertexClass,
+                              Class edgeClass,
+                              GraphLoader loader,
+                              Predicate<Object> isValid) throws SQLException {
+        SessionLocal session = JDBCUtilities.getLocalSession(connection);
+        Table table = session == null ? null : findTable(session, connection, inputTable);
+        if (table == null) {
+            return loader.load();
+        }
+        GraphKey key = new GraphKey(table.getSchema().getName(), table.getName(),
+                parser.getGlobalOrientation(), parser.getEdgeOrientation(), parser.getWeightColumn(),
+                vertexClass, edgeClass);
+        long modificationId = table.getMaxDataModificationId();
+        int tableId = table.getId();
+        GraphCache cache = SESSION_CACHES.computeIfAbsent(session, s -> new GraphCache());
+        synchronized (cache) {
+            CachedGraph cached = cache.graphs.get(key);
+            if (cached != null && cached.tableId == tableId && cached.modificationId == modificationId
+                    && (isValid == null || isValid.test(cached.graph))) {
+                return cached.graph;
+            }
+            Object graph = loader.load();
+            if (graph == null) {
+                cache.graphs.remove(key);
+            } else {
+                cache.graphs.put(key, new CachedGraph(graph, tableId, modificationId));
+            }
+            return graph;
+        }
+    }
+
+    /**
+     * Remove the graphs cached by the session of this connection.
+     *
+     * @param connection Connection
+     * @throws SQLException
+     */
+    public static void clear(Connection connection) throws SQLException {
+        SessionLocal session = JDBCUtilities.getLocalSession(connection);
+        if (session != null) {
+            SESSION_CACHES.remove(session);
+        }
+    }
+
+    private static KeyedGraph createGraph(Connection connection,
+                                          String inputTable,
+                                          GraphFunctionParser parser,
+                                          Class vertexClass,
+                                          Class edgeClass) throws SQLException {
+        return new GraphCreator(connection,
+                inputTable,
+                parser.getGlobalOrientation(), parser.getEdgeOrientation(), parser.getWeightColumn(),
+                vertexClass,
+                edgeClass).prepareGraph();
+    }
+
+    /**
+     * @return The edges table, null if it cannot be found
+     */
+    private static Table findTable(SessionLocal session, Connection connection, String inputTable) throws SQLException {
+        TableLocation location = TableUtilities.parseInputTable(connection, inputTable);
+        Schema schema = session.getDatabase().findSchema(location.getSchema(session.getCurrentSchemaName()));
+        if (schema == null) {
+            return null;
+        }
+        return schema.findTableOrView(session, location.getTable());
+    }
+
+    /**
+     * A graph with the version of the table it has been loaded from.
+     */
+    private static class CachedGraph {
+        private final Object graph;
+        private final int tableId;
+        private final long modificationId;
+
+        CachedGraph(Object graph, int tableId, long modificationId) {
+            this.graph = graph;
+            this.tableId = tableId;
+            this.modificationId = modificationId;
+        }
+    }
+
+    /**
+     * Loads a graph from the edges table.
+     */
+    private interface GraphLoader {
+        Object load() throws SQLException;
+    }
+
+    /**
+     * Identifies a graph built from an edges table.
+     */
+    private static class GraphKey {
+        private final String schema;
+        private final String table;
+        private final GraphFunctionParser.Orientation globalOrientation;
+        private final String edgeOrientation;
+        private final String weightColumn;
+        private final Class vertexClass;
+        private final Class edgeClass;
+
+        GraphKey(String schema, String table, GraphFunctionParser.Orientation globalOrientation,
+                 String edgeOrientation, String weightColumn, Class vertexClass, Class edgeClass) {
+            this.schema = schema;
+            this.table = table;
+            this.globalOrientation = globalOrientation;
+            this.edgeOrientation = edgeOrientation;
+            this.weightColumn = weightColumn;
+            this.vertexClass = vertexClass;
+            this.edgeClass = edgeClass;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof GraphKey)) {
+                return false;
+            }
+            GraphKey other = (GraphKey) o;
+            return schema.equals(other.schema) && table.equals(other.table)
+                    && globalOrientation == other.globalOrientation
+                    && Objects.equals(edgeOrientation, other.edgeOrientation)
+                    && Objects.equals(weightColumn, other.weightColumn)
+                    && vertexClass.equals(other.vertexClass) && edgeClass.equals(other.edgeClass);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(schema, table, globalOrientation, edgeOrientation, weightColumn, vertexClass, edgeClass);
+        }
+    }
+}
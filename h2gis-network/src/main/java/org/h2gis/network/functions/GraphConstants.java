@@ -41,6 +41,12 @@ public interface GraphConstants {
     String CONNECTED_COMPONENT = "CONNECTED_COMPONENT";
     String NODE_COMP_SUFFIX = "_NODE_CC";
     String EDGE_COMP_SUFFIX = "_EDGE_CC";
+    String NODE_CH_SUFFIX = "_NODE_CH";
+    String EDGE_CH_SUFFIX = "_EDGE_CH";
+    String CH_RANK = "CH_RANK";
+    String ARC_ID = "ARC_ID";
+    String FIRST_ARC = "FIRST_ARC";
+    String SECOND_ARC = "SECOND_ARC";
     String PATH_ID = "PATH_ID";
     String PATH_EDGE_ID = "PATH_EDGE_ID";
     String TREE_ID = "TREE_ID";
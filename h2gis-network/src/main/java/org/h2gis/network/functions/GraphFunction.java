@@ -19,7 +19,9 @@
  */
 package org.h2gis.network.functions;
 
+import org.h2.value.Value;
 import org.h2gis.api.AbstractFunction;
+import org.h2gis.utilities.JDBCUtilities;
 import org.javanetworkanalyzer.model.KeyedGraph;
 import org.slf4j.Logger;
 
@@ -36,7 +38,34 @@ public class GraphFunction extends AbstractFunction {
     public static final String ARG_ERROR  = "Unrecognized argument: ";
 
     /**
-     * Return a JGraphT graph from the input edges table.
+     * Session variable selecting the graph representation, for example
+     * <code>SET @GRAPH_BACKEND = 'CSR'</code>
+     */
+    public static final String GRAPH_BACKEND = "GRAPH_BACKEND";
+
+    /**
+     * Compressed sparse row graph, see {@link CompactGraph}
+     */
+    public static final String CSR_BACKEND = "CSR";
+
+    /**
+     * Session variable giving the number of threads of the many-to-many
+     * searches, for example <code>SET @GRAPH_THREADS = 8</code>
+     */
+    public static final String GRAPH_THREADS = "GRAPH_THREADS";
+
+    /**
+     * One-to-One search algorithms
+     */
+    public static final String DIJKSTRA = "DIJKSTRA";
+    public static final String BIDIRECTIONAL = "BIDIRECTIONAL";
+    public static final String ASTAR = "ASTAR";
+    public static final String CH = "CH";
+
+    /**
+     * Return a JGraphT graph from the input edges table. The graph is kept by
+     * the session and reused until the edges table is modified, see
+     * {@link GraphCache}.
      *
      * @param connection  Connection
      * @param inputTable  Input table name
@@ -55,6 +84,138 @@ public class GraphFunction extends AbstractFunction {
                                              Class edgeClass) throws SQLException {
         GraphFunctionParser parser = new GraphFunctionParser();
         parser.parseWeightAndOrientation(orientation, weight);
+        return GraphCache.getGraph(connection, inputTable, parser, vertexClass, edgeClass);
+    }
+
+    /**
+     * Return a compact graph from the input edges table. The graph is kept by
+     * the session and reused until the edges table is modified.
+     *
+     * @param connection  Connection
+     * @param inputTable  Input table name
+     * @param orientation Orientation string
+     * @param weight      Weight column name, null for unweighted graphs
+     * @return Graph
+     * @throws java.sql.SQLException
+     */
+    protected static CompactGraph prepareCompactGraph(Connection connection,
+                                                      String inputTable,
+                                                      String orientation,
+                                                      String weight) throws SQLException {
+        GraphFunctionParser parser = new GraphFunctionParser();
+        parser.parseWeightAndOrientation(orientation, weight);
+        return GraphCache.getCompactGraph(connection, inputTable, parser);
+    }
+
+    /**
+     * Return the contraction hierarchy stored for the input edges table by
+     * {@link ST_ContractionHierarchy} with the same orientation and weight,
+     * requested with the {@link #CH} algorithm. The hierarchy is not checked
+     * against the current edges, so it is never searched implicitly.
+     *
+     * @param connection  Connection
+     * @param inputTable  Input table name
+     * @param orientation Orientation string
+     * @param weight      Weight column name, null for unweighted graphs
+     * @return The hierarchy
+     * @throws SQLException
+     * @throws IllegalArgumentException if the hierarchy has not been built
+     */
+    protected static ContractionHierarchy requireContractionHierarchy(Connection connection,
+                                                                      String inputTable,
+                                                                      String orientation,
+                                                                      String weight) throws SQLException {
+        GraphFunctionParser parser = new GraphFunctionParser();
+        parser.parseWeightAndOrientation(orientation, weight);
+        ContractionHierarchy hierarchy = GraphCache.getContractionHierarchy(connection, inputTable, parser);
+        if (hierarchy == null) {
+            throw new IllegalArgumentException("No contraction hierarchy of " + inputTable
+                    + " for this orientation and weight, call ST_ContractionHierarchy first");
+        }
+        return hierarchy;
+    }
+
+    /**
+     * Search the shortest path between two vertices of a compact graph with
+     * the given algorithm.
+     *
+     * @param connection  Connection
+     * @param inputTable  Input table name
+     * @param orientation Orientation string
+     * @param weight      Weight column name, null for unweighted graphs
+     * @param source      Source vertex id
+     * @param destination Destination vertex id
+     * @param algorithm   {@link #BIDIRECTIONAL} or {@link #ASTAR}
+     * @return The router holding the path and its length
+     * @throws SQLException
+     */
+    protected static CompactGraphRouter route(Connection connection,
+                                              String inputTable,
+                                              String orientation,
+                                              String weight,
+                                              int source,
+                                              int destination,
+                                              String algorithm) throws SQLException {
+        GraphFunctionParser parser = new GraphFunctionParser();
+        parser.parseWeightAndOrientation(orientation, weight);
+        CompactGraph graph = GraphCache.getCompactGraph(connection, inputTable, parser);
+        int sourceIndex = graph.getExistingVertexIndex(source);
+        int destinationIndex = graph.getExistingVertexIndex(destination);
+        CompactGraphRouter router = new CompactGraphRouter(graph);
+        if (BIDIRECTIONAL.equalsIgnoreCase(algorithm)) {
+            router.bidirectional(sourceIndex, destinationIndex);
+        } else if (ASTAR.equalsIgnoreCase(algorithm)) {
+            VertexCoordinates coordinates = GraphCache.getVertexCoordinates(connection,
+                    VertexCoordinates.getNodesTable(inputTable), parser, graph);
+            router.aStar(sourceIndex, destinationIndex, coordinates);
+        } else {
+            throw new IllegalArgumentException(ARG_ERROR + algorithm);
+        }
+        return router;
+    }
+
+    /**
+     * @param connection Connection
+     * @return True if the session selected the compressed sparse row graph
+     * with the {@link #GRAPH_BACKEND} variable
+     * @throws SQLException
+     */
+    protected static boolean isCompactGraphSelected(Connection connection) throws SQLException {
+        Value backend = JDBCUtilities.getSessionVariable(connection, GRAPH_BACKEND);
+        return backend != null && CSR_BACKEND.equalsIgnoreCase(backend.getString());
+    }
+
+    /**
+     * @param connection Connection
+     * @return The number of threads set by the session with the
+     * {@link #GRAPH_THREADS} variable, 1 if it is not set
+     * @throws SQLException
+     */
+    protected static int getThreadCount(Connection connection) throws SQLException {
+        return Math.max(1, JDBCUtilities.getSessionVariable(connection, GRAPH_THREADS, 1));
+    }
+
+    /**
+     * Load a new JGraphT graph from the input edges table, for the functions
+     * that keep their results in the graph.
+     *
+     * @param connection  Connection
+     * @param inputTable  Input table name
+     * @param orientation Orientation string
+     * @param weight      Weight column name, null for unweighted graphs
+     * @param vertexClass
+     * @param edgeClass
+     * @return Graph
+     * @throws java.sql.SQLException
+     */
+    protected static KeyedGraph loadGraph(Connection connection,
+                                          String inputTable,
+                                          String orientation,
+                                          String weight,
+                                          Class vertexClass,
+                                          Class edgeClass) throws SQLException {
+        GraphFunctionParser parser = new GraphFunctionParser();
+        parser.parseWeightAndOrientation(orientation, weight);
 
         return new GraphCreator(connection,
                 inputTable,
@@ -47,6 +47,7 @@ public class NetworkFunctions {
         return new Function[]{
             new ST_Accessibility(),
             new ST_ConnectedComponents(),
+            new ST_ContractionHierarchy(),
             new ST_GraphAnalysis(),
             new ST_ShortestPathLength(),
             new ST_ShortestPathTree(),
@@ -30,7 +30,9 @@ import org.javanetworkanalyzer.model.Edge;
 import org.javanetworkanalyzer.model.KeyedGraph;
 
 import java.sql.*;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 import static org.h2gis.network.functions.GraphConstants.*;
@@ -61,7 +63,10 @@ public class ST_Accessibility extends GraphFunction implements ScalarFunction {
             "* `w` = Name of column containing edge weights as doubles\n" +
             "* `ds` = Comma-separated Destination string ('dest1, dest2, ...')\n" +
             "* `dt` = Destination table name (must contain column containing integer vertex\n" +
-            "  ids)\n";
+            "  ids)\n" +
+            "\n" +
+            "Execute `SET @" + GRAPH_BACKEND + " = '" + CSR_BACKEND + "'` to search a compact graph\n" +
+            "representation, for large networks.\n";
 
     /**
      * Constructor
@@ -109,6 +114,9 @@ public class ST_Accessibility extends GraphFunction implements ScalarFunction {
         if (isColumnListConnection(connection)) {
             return prepareResultSet();
         }
+        if (isCompactGraphSelected(connection)) {
+            return computeCompact(connection, inputTable, orientation, weight, arg4);
+        }
         final KeyedGraph<VAccess, Edge> graph =
                 prepareGraph(connection, inputTable, orientation, weight, VAccess.class, Edge.class);
         // Decide whether this is a destination string or a table string.
@@ -130,6 +138,52 @@ public class ST_Accessibility extends GraphFunction implements ScalarFunction {
         return output;
     }
 
+    /**
+     * Search the reversed compact graph from all the destinations at once: the
+     * origin of each reached vertex is its closest destination.
+     */
+    private static ResultSet computeCompact(Connection connection,
+                                            String inputTable,
+                                            String orientation,
+                                            String weight,
+                                            String arg4) throws SQLException {
+        final CompactGraph graph = prepareCompactGraph(connection, inputTable, orientation, weight);
+        final int[] dests;
+        if (GraphFunctionParser.isDestinationsString(arg4)) {
+            dests = GraphFunctionParser.parseDestinationsString(arg4);
+        } else {
+            dests = prepareDestIds(connection, arg4);
+        }
+        final int[] destinations = new int[dests.length];
+        for (int i = 0; i < dests.length; i++) {
+            destinations[i] = graph.getExistingVertexIndex(dests[i]);
+        }
+        final CompactGraphSearch search = new CompactGraphSearch(graph.reverse());
+        search.calculate(destinations, null, Double.POSITIVE_INFINITY);
+        SimpleResultSet output = prepareResultSet();
+        for (int i = 0; i < graph.getVertexCount(); i++) {
+            final int origin = search.getOrigin(i);
+            output.addRow(graph.getVertexId(i), origin < 0 ? -1 : graph.getVertexId(origin), search.getDistance(i));
+        }
+        return output;
+    }
+
+    private static int[] prepareDestIds(Connection connection, String destTable) throws SQLException {
+        final TableLocation destinationTable = TableUtilities.parseInputTable(connection, destTable);
+        final List<Integer> ids = new ArrayList<Integer>();
+        try (Statement st = connection.createStatement();
+             ResultSet rs = st.executeQuery("SELECT " + DESTINATION + " FROM " + destinationTable)) {
+            while (rs.next()) {
+                ids.add(rs.getInt(1));
+            }
+        }
+        final int[] dests = new int[ids.size()];
+        for (int i = 0; i < dests.length; i++) {
+            dests[i] = ids.get(i);
+        }
+        return dests;
+    }
+
     private static Set<VAccess> prepareDestSet(KeyedGraph<VAccess, Edge> graph, int[] dests) {
         Set<VAccess> destinations = new HashSet<VAccess>();
         for (int i = 0; i < dests.length; i++) {
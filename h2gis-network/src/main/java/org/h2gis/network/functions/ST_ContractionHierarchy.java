@@ -0,0 +1,136 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <a href="http://www.h2database.com">http://www.h2database.com</a>. H2GIS is developed by CNRS
+ * <a href="http://www.cnrs.fr/">http://www.cnrs.fr/</a>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; 
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <a href="http://www.h2gis.org/">http://www.h2gis.org/</a>
+ * or contact directly: info_at_h2gis.org
+ */
+
+package org.h2gis.network.functions;
+
+import org.h2gis.api.ScalarFunction;
+import org.h2gis.utilities.TableLocation;
+import org.h2gis.utilities.TableUtilities;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.h2gis.network.functions.GraphConstants.*;
+
+/**
+ * Builds the contraction hierarchy of a graph, used by the One-to-One queries
+ * of {@link ST_ShortestPathLength} and {@link ST_ShortestPath}.
+ */
+public class ST_ContractionHierarchy extends GraphFunction implements ScalarFunction {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("gui." + ST_ContractionHierarchy.class);
+    public static final String REMARKS =
+            "`ST_ContractionHierarchy` ranks the vertices of a graph and adds shortcut arcs\n" +
+            "bypassing the lower ranked vertices, so that the One-to-One queries of\n" +
+            "`ST_ShortestPathLength` and `ST_ShortestPath` using the `ch` algorithm on the same\n" +
+            "orientation and weight only search a small part of the graph. It produces two tables: the rank of each\n" +
+            "node (`input_edges" + NODE_CH_SUFFIX + "`) and the arcs with their shortcuts\n" +
+            "(`input_edges" + EDGE_CH_SUFFIX + "`). The hierarchy must be built again when the\n" +
+            "edges are modified. Signatures: \n" +
+            "* `ST_ContractionHierarchy('input_edges', 'o[ - eo]')`\n" +
+            "* `ST_ContractionHierarchy('input_edges', 'o[ - eo]', 'w')`\n" +
+            "\n" +
+            "where \n" +
+            "* `input_edges` = Edges table produced by `ST_Graph` from table `input`\n" +
+            "* `o` = Global orientation (directed, reversed or undirected)\n" +
+            "* `eo` = Edge orientation (1 = directed, -1 = reversed, 0 = undirected).\n" +
+            "  Required if global orientation is directed or reversed.\n" +
+            "* `w` = Name of column containing edge weights as doubles\n";
+
+    /**
+     * Constructor
+     */
+    public ST_ContractionHierarchy() {
+        addProperty(PROP_REMARKS, REMARKS);
+    }
+
+    @Override
+    public String getJavaStaticMethod() {
+        return "getContractionHierarchy";
+    }
+
+    /**
+     * Build the contraction hierarchy of an unweighted graph.
+     *
+     * @param connection  Connection
+     * @param inputTable  Edges table produced by ST_Graph
+     * @param orientation Orientation string
+     * @return True if the hierarchy has been stored
+     * @throws SQLException
+     */
+    public static boolean getContractionHierarchy(Connection connection,
+                                                  String inputTable,
+                                                  String orientation) throws SQLException {
+        return getContractionHierarchy(connection, inputTable, orientation, null);
+    }
+
+    /**
+     * Build the contraction hierarchy of a graph.
+     *
+     * @param connection  Connection
+     * @param inputTable  Edges table produced by ST_Graph
+     * @param orientation Orientation string
+     * @param weight      Weight column name, null for unweighted graphs
+     * @return True if the hierarchy has been stored
+     * @throws SQLException
+     */
+    public static boolean getContractionHierarchy(Connection connection,
+                                                  String inputTable,
+                                                  String orientation,
+                                                  String weight) throws SQLException {
+        GraphFunctionParser parser = new GraphFunctionParser();
+        parser.parseWeightAndOrientation(orientation, weight);
+        CompactGraph graph = GraphCache.getCompactGraph(connection, inputTable, parser);
+        if (graph == null) {
+            return false;
+        }
+        LOGGER.debug("Contracting the graph... ");
+        long start = System.currentTimeMillis();
+        ContractionHierarchy hierarchy = ContractionHierarchyBuilder.build(graph);
+        logTime(LOGGER, start);
+
+        final TableLocation tableName = TableUtilities.parseInputTable(connection, inputTable);
+        final TableLocation nodesName = TableUtilities.suffixTableLocation(tableName, NODE_CH_SUFFIX);
+        final TableLocation arcsName = TableUtilities.suffixTableLocation(tableName, EDGE_CH_SUFFIX);
+        LOGGER.debug("Storing the contraction hierarchy... ");
+        start = System.currentTimeMillis();
+        try {
+            hierarchy.save(connection, nodesName, arcsName, ContractionHierarchy.getSpecification(parser));
+        } catch (SQLException e) {
+            cancel(connection, nodesName, arcsName, e);
+            return false;
+        }
+        logTime(LOGGER, start);
+        return true;
+    }
+
+    private static void cancel(Connection connection,
+                               TableLocation nodesName,
+                               TableLocation arcsName,
+                               SQLException e) throws SQLException {
+        LOGGER.error("Could not store the contraction hierarchy.", e);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS " + nodesName + ", " + arcsName);
+        }
+    }
+}
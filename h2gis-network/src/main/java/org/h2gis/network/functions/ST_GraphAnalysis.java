@@ -40,6 +40,7 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Types;
 import java.util.Set;
 
 import static org.h2gis.network.functions.GraphConstants.*;
@@ -52,7 +53,7 @@ import static org.h2gis.network.functions.GraphConstants.*;
  */
 public class ST_GraphAnalysis extends GraphFunction implements ScalarFunction {
 
-    protected static final int BATCH_SIZE = 100;
+    protected static final int BATCH_SIZE = 1000;
     private static final Logger LOGGER = LoggerFactory.getLogger(ST_GraphAnalysis.class);
 
     public static final String REMARKS =
@@ -60,13 +61,19 @@ public class ST_GraphAnalysis extends GraphFunction implements ScalarFunction {
             "as well as betweenness centrality for edges. Possible signatures:\n" +
             "* `ST_GraphAnalysis('input_edges', 'o[ - eo]')`\n" +
             "* `ST_GraphAnalysis('input_edges', 'o[ - eo]', 'w')`\n" +
+            "* `ST_GraphAnalysis('input_edges', 'o[ - eo]', 'w', k)`\n" +
             "\n" +
             "where\n" +
             "* `input_edges` = Edges table produced by `ST_Graph` from table `input`\n" +
             "* `o` = Global orientation (directed, reversed or undirected)\n" +
             "* `eo` = Edge orientation (1 = directed, -1 = reversed, 0 = undirected).\n" +
             "  Required if global orientation is directed or reversed.\n" +
-            "* `w` = Name of column containing edge weights as doubles\n" +
+            "* `w` = Name of column containing edge weights as doubles, may be null\n" +
+            "* `k` = Number of random pivot sources estimating the betweenness, for very\n" +
+            "  large graphs. The closeness is only computed for the pivots, it is null\n" +
+            "  for the other nodes.\n" +
+            "\n" +
+            "Execute `SET @" + GRAPH_THREADS + " = n` to search from the sources on n threads.\n" +
             "\n" +
             "**WARNING**: If ST_GraphAnalysis is called on a graph with more than one\n" +
             "(strongly) connected component, all closeness centrality scores will be zero.\n" +
@@ -127,6 +134,9 @@ public class ST_GraphAnalysis extends GraphFunction implements ScalarFunction {
                                           String weight)
             throws SQLException, InvocationTargetException, NoSuchMethodException,
             InstantiationException, IllegalAccessException {
+        if (isCompactGraphSelected(connection) || getThreadCount(connection) > 1) {
+            return doCompactGraphAnalysis(connection, inputTable, orientation, weight, 0);
+        }
         final TableLocation tableName = TableUtilities.parseInputTable(connection, inputTable);
         final TableLocation nodesName = TableUtilities.suffixTableLocation(tableName, NODE_CENT_SUFFIX);
         final TableLocation edgesName = TableUtilities.suffixTableLocation(tableName, EDGE_CENT_SUFFIX);
@@ -150,13 +160,74 @@ public class ST_GraphAnalysis extends GraphFunction implements ScalarFunction {
         return true;
     }
 
+    /**
+     * Estimate the centrality indices from a sample of random pivot sources.
+     *
+     * @param connection  Connection
+     * @param inputTable  Input table
+     * @param orientation Global orientation
+     * @param weight      Edge weight column name, null for an unweighted graph
+     * @param pivotCount  Number of pivots
+     * @return True if the calculation was successful
+     * @throws SQLException
+     */
+    public static boolean doGraphAnalysis(Connection connection,
+                                          String inputTable,
+                                          String orientation,
+                                          String weight,
+                                          int pivotCount) throws SQLException {
+        if (pivotCount <= 0) {
+            throw new IllegalArgumentException("The number of pivots must be positive");
+        }
+        return doCompactGraphAnalysis(connection, inputTable, orientation, weight, pivotCount);
+    }
+
+    /**
+     * Compute the centrality on the compact graph, on the threads set by the
+     * session, from all the vertices or from pivotCount random vertices.
+     */
+    private static boolean doCompactGraphAnalysis(Connection connection,
+                                                  String inputTable,
+                                                  String orientation,
+                                                  String weight,
+                                                  int pivotCount) throws SQLException {
+        final TableLocation tableName = TableUtilities.parseInputTable(connection, inputTable);
+        final TableLocation nodesName = TableUtilities.suffixTableLocation(tableName, NODE_CENT_SUFFIX);
+        final TableLocation edgesName = TableUtilities.suffixTableLocation(tableName, EDGE_CENT_SUFFIX);
+        try {
+            createTables(connection, nodesName, edgesName);
+            final CompactGraph graph = prepareCompactGraph(connection, inputTable, orientation, weight);
+            final long start = System.currentTimeMillis();
+            final int threadCount = getThreadCount(connection);
+            final CompactGraphCentrality centrality = pivotCount > 0
+                    ? CompactGraphCentrality.compute(graph,
+                    CompactGraphCentrality.samplePivots(graph.getVertexCount(), pivotCount), threadCount)
+                    : CompactGraphCentrality.compute(graph, threadCount);
+            logTime(LOGGER, start);
+            storeNodeCentrality(connection, nodesName, centrality);
+            storeEdgeCentrality(connection, edgesName, centrality);
+        } catch (SQLException e) {
+            LOGGER.error("Problem creating centrality tables.");
+            final Statement statement = connection.createStatement();
+            try {
+                statement.execute("DROP TABLE IF EXISTS " + nodesName);
+                statement.execute("DROP TABLE IF EXISTS " + edgesName);
+            } finally {
+                statement.close();
+            }
+            return false;
+        }
+        return true;
+    }
+
     private static KeyedGraph doAnalysisAndReturnGraph(Connection connection,
                                                        String inputTable,
                                                        String orientation,
                                                        String weight)
             throws SQLException, NoSuchMethodException, InstantiationException,
             IllegalAccessException, InvocationTargetException {
-        final KeyedGraph graph = prepareGraph(connection, inputTable, orientation, weight,
+        // The centrality values are stored in the graph, do not share it
+        final KeyedGraph graph = loadGraph(connection, inputTable, orientation, weight,
                 (weight == null) ? VUCent.class : VWCent.class, EdgeCent.class);
         final DefaultProgressMonitor pm = new DefaultProgressMonitor();
         GraphAnalyzer analyzer = (weight == null) ?
@@ -215,6 +286,76 @@ public class ST_GraphAnalysis extends GraphFunction implements ScalarFunction {
         }
     }
 
+    private static void storeNodeCentrality(Connection connection,
+                                            TableLocation nodesName,
+                                            CompactGraphCentrality centrality) throws SQLException {
+        final CompactGraph graph = centrality.getGraph();
+        final PreparedStatement nodeSt =
+                connection.prepareStatement("INSERT INTO " + nodesName + " VALUES(?,?,?)");
+        try {
+            connection.setAutoCommit(false);
+            int count = 0;
+            for (int v = 0; v < graph.getVertexCount(); v++) {
+                nodeSt.setInt(1, graph.getVertexId(v));
+                nodeSt.setDouble(2, centrality.getBetweenness(v));
+                final double closeness = centrality.getCloseness(v);
+                if (Double.isNaN(closeness)) {
+                    // Not a pivot
+                    nodeSt.setNull(3, Types.DOUBLE);
+                } else {
+                    nodeSt.setDouble(3, closeness);
+                }
+                nodeSt.addBatch();
+                count++;
+                if (count >= BATCH_SIZE) {
+                    nodeSt.executeBatch();
+                    connection.commit();
+                    nodeSt.clearBatch();
+                    count = 0;
+                }
+            }
+            if (count > 0) {
+                nodeSt.executeBatch();
+                connection.commit();
+                nodeSt.clearBatch();
+            }
+        } finally {
+            connection.setAutoCommit(true);
+            nodeSt.close();
+        }
+    }
+
+    private static void storeEdgeCentrality(Connection connection,
+                                            TableLocation edgesName,
+                                            CompactGraphCentrality centrality) throws SQLException {
+        final PreparedStatement edgeSt =
+                connection.prepareStatement("INSERT INTO " + edgesName + " VALUES(?,?)");
+        try {
+            connection.setAutoCommit(false);
+            int count = 0;
+            for (int i = 0; i < centrality.getEdgeCount(); i++) {
+                edgeSt.setInt(1, centrality.getEdgeId(i));
+                edgeSt.setDouble(2, centrality.getEdgeBetweenness(i));
+                edgeSt.addBatch();
+                count++;
+                if (count >= BATCH_SIZE) {
+                    edgeSt.executeBatch();
+                    connection.commit();
+                    edgeSt.clearBatch();
+                    count = 0;
+                }
+            }
+            if (count > 0) {
+                edgeSt.executeBatch();
+                connection.commit();
+                edgeSt.clearBatch();
+            }
+        } finally {
+            connection.setAutoCommit(true);
+            edgeSt.close();
+        }
+    }
+
     private static void storeEdgeCentrality(Connection connection,
                                             TableLocation edgesName,
                                             KeyedGraph graph) throws SQLException {
@@ -55,6 +55,7 @@ public class ST_ShortestPath extends GraphFunction implements ScalarFunction {
             "Possible signatures:\n" +
             "* `ST_ShortestPath('input_edges', 'o[ - eo]', s, d)`  - One-to-One\n" +
             "* `ST_ShortestPath('input_edges', 'o[ - eo]', 'w', s, d)`  - One-to-One weighted\n" +
+            "* `ST_ShortestPath('input_edges', 'o[ - eo]', 'w', s, d, 'a')`  - One-to-One with the given algorithm\n" +
             "\n" +
             "where\n" +
             "* `input_edges` = Edges table produced by `ST_Graph` from table `input`\n" +
@@ -63,7 +64,12 @@ public class ST_ShortestPath extends GraphFunction implements ScalarFunction {
             "  if global orientation is directed or reversed.\n" +
             "* `w` = Name of column containing edge weights as doubles\n" +
             "* `s` = Source vertex id\n" +
-            "* `d` = Destination vertex id\n";
+            "* `d` = Destination vertex id\n" +
+            "* `a` = Search algorithm: `dijkstra` (default), `bidirectional`, `astar` or `ch`.\n" +
+            "  The bidirectional, A* and `ch` searches return one shortest path, A* uses the\n" +
+            "  coordinates of the `input_nodes` table as a lower bound of the distances,\n" +
+            "  `ch` searches the hierarchy built by `ST_ContractionHierarchy`.\n" +
+            "  `w` may be null for an unweighted graph.\n";
 
     /**
      * Constructor
@@ -113,6 +119,84 @@ public class ST_ShortestPath extends GraphFunction implements ScalarFunction {
         return oneToOne(connection, inputTable, orientation, weight, source, destination);
     }
 
+    /**
+     * @param connection  connection
+     * @param inputTable  Edges table produced by ST_Graph
+     * @param orientation Orientation string
+     * @param weight      Weight, null for an unweighted graph
+     * @param source      Source vertex id
+     * @param destination Destination vertex id
+     * @param algorithm   Search algorithm: dijkstra, bidirectional, astar or ch
+     * @return Shortest path
+     * @throws SQLException
+     */
+    public static ResultSet getShortestPath(Connection connection,
+                                            String inputTable,
+                                            String orientation,
+                                            String weight,
+                                            int source,
+                                            int destination,
+                                            String algorithm) throws SQLException {
+        if (algorithm == null || DIJKSTRA.equalsIgnoreCase(algorithm)) {
+            return oneToOne(connection, inputTable, orientation, weight, source, destination);
+        }
+        final TableLocation tableName = TableUtilities.parseInputTable(connection, inputTable);
+        String firstGeometryField = null;
+        try {
+            firstGeometryField = GeometryTableUtilities.getFirstGeometryColumnNameAndIndex(connection, tableName).first();
+        } catch (SQLException ex) {
+        }
+        final boolean containsGeomField = firstGeometryField != null;
+        final SimpleResultSet output = prepareResultSet(containsGeomField);
+        if (isColumnListConnection(connection)) {
+            return output;
+        }
+        if (CH.equalsIgnoreCase(algorithm)) {
+            final ContractionHierarchy hierarchy =
+                    requireContractionHierarchy(connection, inputTable, orientation, weight);
+            final int[] arcs = hierarchy.getPath(hierarchy.getExistingVertexIndex(source),
+                    hierarchy.getExistingVertexIndex(destination));
+            if (arcs == null) {
+                return output;
+            }
+            final Map<Integer, Geometry> edgeGeometryMap = containsGeomField
+                    ? getEdgeGeometryMap(connection, tableName, firstGeometryField) : null;
+            for (int i = arcs.length - 1; i >= 0; i--) {
+                final int arc = arcs[i];
+                final int id = hierarchy.getArcEdgeId(arc);
+                final int localID = arcs.length - i;
+                final int edgeSource = hierarchy.getVertexId(hierarchy.getArcSource(arc));
+                final int edgeDestination = hierarchy.getVertexId(hierarchy.getArcTarget(arc));
+                if (containsGeomField) {
+                    output.addRow(edgeGeometryMap.get(Math.abs(id)), id, 1, localID,
+                            edgeSource, edgeDestination, hierarchy.getArcWeight(arc));
+                } else {
+                    output.addRow(id, 1, localID, edgeSource, edgeDestination, hierarchy.getArcWeight(arc));
+                }
+            }
+            return output;
+        }
+        final CompactGraphRouter router =
+                route(connection, inputTable, orientation, weight, source, destination, algorithm);
+        final CompactGraph graph = router.getGraph();
+        final Map<Integer, Geometry> edgeGeometryMap = containsGeomField
+                ? getEdgeGeometryMap(connection, tableName, firstGeometryField) : null;
+        // Numbered from the destination, as the predecessor edges of Dijkstra
+        for (int i = router.getPathLength() - 1; i >= 0; i--) {
+            final int id = router.getPathEdgeId(i);
+            final int localID = router.getPathLength() - i;
+            final int edgeSource = graph.getVertexId(router.getPathSource(i));
+            final int edgeDestination = graph.getVertexId(router.getPathTarget(i));
+            if (containsGeomField) {
+                output.addRow(edgeGeometryMap.get(Math.abs(id)), id, 1, localID,
+                        edgeSource, edgeDestination, router.getPathWeight(i));
+            } else {
+                output.addRow(id, 1, localID, edgeSource, edgeDestination, router.getPathWeight(i));
+            }
+        }
+        return output;
+    }
+
     private static ResultSet oneToOne(Connection connection,
                                       String inputTable,
                                       String orientation,
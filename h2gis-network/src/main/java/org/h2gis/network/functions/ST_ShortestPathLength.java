@@ -32,10 +32,23 @@ import org.javanetworkanalyzer.model.Edge;
 import org.javanetworkanalyzer.model.KeyedGraph;
 
 import java.sql.*;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.h2gis.network.functions.GraphConstants.*;
 import static org.h2gis.utilities.TableUtilities.isColumnListConnection;
@@ -63,6 +76,7 @@ public class ST_ShortestPathLength extends GraphFunction implements ScalarFuncti
             "* `ST_ShortestPathLength('input_edges', 'o[ - eo]', 'w', 'sdt')` - Many-to-Many weighted\n" +
             "* `ST_ShortestPathLength('input_edges', 'o[ - eo]', 'w', s, d)` - One-to-One weighted\n" +
             "* `ST_ShortestPathLength('input_edges', 'o[ - eo]', 'w', s, 'ds')` - One-to-Several weighted\n" +
+            "* `ST_ShortestPathLength('input_edges', 'o[ - eo]', 'w', s, d, 'a')` - One-to-One with the given algorithm\n" +
             "\n" +
             "where\n" +
             "* `input_edges` = Edges table produced by `ST_Graph` from table `input`\n" +
@@ -74,7 +88,18 @@ public class ST_ShortestPathLength extends GraphFunction implements ScalarFuncti
             "* `d` = Destination vertex id\n" +
             "* `sdt` = Source-Destination table name (must contain columns\n" +
             "  " + SOURCE + " and " + DESTINATION + " containing integer vertex ids)\n" +
-            "* `ds` = Comma-separated Destination string ('dest1, dest2, ...')\n";
+            "* `ds` = Comma-separated Destination string ('dest1, dest2, ...')\n" +
+            "* `a` = Search algorithm: `dijkstra` (default), `bidirectional`, `astar` or `ch`.\n" +
+            "  A* uses the coordinates of the `input_nodes` table as a lower bound of the\n" +
+            "  distances. `ch` searches the hierarchy built by `ST_ContractionHierarchy`.\n" +
+            "  `w` may be null for an unweighted graph.\n" +
+            "\n" +
+            "The contraction hierarchy is only searched with `ch`, it must be built again by\n" +
+            "`ST_ContractionHierarchy` when the edges are modified.\n" +
+            "Execute `SET @" + GRAPH_BACKEND + " = '" + CSR_BACKEND + "'` to search a compact graph\n" +
+            "representation, for large networks.\n" +
+            "Execute `SET @" + GRAPH_THREADS + " = n` to run the Many-to-Many searches on n threads,\n" +
+            "they then always search the compact graph.\n";
 
 
     /**
@@ -241,12 +266,55 @@ public class ST_ShortestPathLength extends GraphFunction implements ScalarFuncti
         }
     }
 
+    /**
+     * Calculate the One-to-One distance with the given algorithm.
+     *
+     * @param connection  Connection
+     * @param inputTable  Edges table produced by ST_Graph
+     * @param orientation Orientation string
+     * @param weight      Weight column name, null for unweighted graphs
+     * @param source      Source vertex id
+     * @param destination Destination vertex id
+     * @param algorithm   Search algorithm: dijkstra, bidirectional, astar or ch
+     * @return Distances table
+     * @throws SQLException
+     */
+    public static ResultSet getShortestPathLength(Connection connection,
+                                                  String inputTable,
+                                                  String orientation,
+                                                  String weight,
+                                                  int source,
+                                                  int destination,
+                                                  String algorithm) throws SQLException {
+        if (isColumnListConnection(connection)) {
+            return prepareResultSet();
+        }
+        if (algorithm == null || DIJKSTRA.equalsIgnoreCase(algorithm)) {
+            return oneToOne(connection, inputTable, orientation, weight, source, destination);
+        }
+        final SimpleResultSet output = prepareResultSet();
+        if (CH.equalsIgnoreCase(algorithm)) {
+            final ContractionHierarchy hierarchy =
+                    requireContractionHierarchy(connection, inputTable, orientation, weight);
+            output.addRow(source, destination, hierarchy.getDistance(
+                    hierarchy.getExistingVertexIndex(source), hierarchy.getExistingVertexIndex(destination)));
+            return output;
+        }
+        final CompactGraphRouter router =
+                route(connection, inputTable, orientation, weight, source, destination, algorithm);
+        output.addRow(source, destination, router.getDistance());
+        return output;
+    }
+
     private static ResultSet oneToOne(Connection connection,
                                      String inputTable,
                                      String orientation,
                                      String weight,
                                      int source,
                                      int destination) throws SQLException {
+        if (isCompactGraphSelected(connection)) {
+            return compactOneToMany(connection, inputTable, orientation, weight, source, new int[]{destination});
+        }
         final SimpleResultSet output = prepareResultSet();
         final KeyedGraph<VDijkstra, Edge> graph =
                 prepareGraph(connection, inputTable, orientation, weight,
@@ -263,6 +331,9 @@ public class ST_ShortestPathLength extends GraphFunction implements ScalarFuncti
                                       String orientation,
                                       String weight,
                                       int source) throws SQLException {
+        if (isCompactGraphSelected(connection)) {
+            return compactOneToMany(connection, inputTable, orientation, weight, source, null);
+        }
         final SimpleResultSet output = prepareResultSet();
         final KeyedGraph<VDijkstra, Edge> graph =
                 prepareGraph(connection, inputTable, orientation, weight,
@@ -281,6 +352,9 @@ public class ST_ShortestPathLength extends GraphFunction implements ScalarFuncti
                                         String orientation,
                                         String weight,
                                         String sourceDestinationTable) throws SQLException {
+        if (isCompactGraphSelected(connection) || getThreadCount(connection) > 1) {
+            return compactManyToMany(connection, inputTable, orientation, weight, sourceDestinationTable);
+        }
         final SimpleResultSet output = prepareResultSet();
         final KeyedGraph<VDijkstra, Edge> graph =
                 prepareGraph(connection, inputTable, orientation, weight,
@@ -317,6 +391,10 @@ public class ST_ShortestPathLength extends GraphFunction implements ScalarFuncti
             String weight,
             String sourceTable,
             String destTable) throws SQLException {
+        if (isCompactGraphSelected(connection) || getThreadCount(connection) > 1) {
+            return compactManyToManySeparateTables(connection, inputTable, orientation, weight,
+                    sourceTable, destTable);
+        }
         final SimpleResultSet output = prepareResultSet();
         final KeyedGraph<VDijkstra, Edge> graph =
                 prepareGraph(connection, inputTable, orientation, weight,
@@ -379,6 +457,10 @@ public class ST_ShortestPathLength extends GraphFunction implements ScalarFuncti
                                           String weight,
                                           int source,
                                           String destString) throws SQLException {
+        if (isCompactGraphSelected(connection)) {
+            return compactOneToMany(connection, inputTable, orientation, weight, source,
+                    GraphFunctionParser.parseDestinationsString(destString));
+        }
         final SimpleResultSet output = prepareResultSet();
         final KeyedGraph<VDijkstra, Edge> graph =
                 prepareGraph(connection, inputTable, orientation, weight,
@@ -402,6 +484,241 @@ public class ST_ShortestPathLength extends GraphFunction implements ScalarFuncti
         return output;
     }
 
+    private static ResultSet compactOneToMany(Connection connection,
+                                              String inputTable,
+                                              String orientation,
+                                              String weight,
+                                              int source,
+                                              int[] destinations) throws SQLException {
+        final SimpleResultSet output = prepareResultSet();
+        final CompactGraph graph = prepareCompactGraph(connection, inputTable, orientation, weight);
+        addDistances(output, new CompactGraphSearch(graph), source, destinations);
+        return output;
+    }
+
+    private static ResultSet compactManyToMany(Connection connection,
+                                               String inputTable,
+                                               String orientation,
+                                               String weight,
+                                               String sourceDestinationTable) throws SQLException {
+        final SimpleResultSet output = prepareResultSet();
+        final CompactGraph graph = prepareCompactGraph(connection, inputTable, orientation, weight);
+        final Map<Integer, Set<Integer>> map = new LinkedHashMap<Integer, Set<Integer>>();
+        try (Statement st = connection.createStatement();
+             ResultSet rs = st.executeQuery("SELECT " + SOURCE + ", " + DESTINATION
+                     + " FROM " + sourceDestinationTable)) {
+            while (rs.next()) {
+                map.computeIfAbsent(rs.getInt(SOURCE_INDEX), k -> new LinkedHashSet<Integer>())
+                        .add(rs.getInt(DESTINATION_INDEX));
+            }
+        }
+        if (map.isEmpty()) {
+            throw new IllegalArgumentException("No sources/destinations requested.");
+        }
+        final int[] sources = new int[map.size()];
+        final int[][] destinations = new int[map.size()][];
+        int s = 0;
+        for (Map.Entry<Integer, Set<Integer>> e : map.entrySet()) {
+            sources[s] = e.getKey();
+            destinations[s] = new int[e.getValue().size()];
+            int i = 0;
+            for (int destination : e.getValue()) {
+                destinations[s][i++] = destination;
+            }
+            s++;
+        }
+        addDistances(output, graph, sources, destinations, getThreadCount(connection));
+        return output;
+    }
+
+    private static ResultSet compactManyToManySeparateTables(Connection connection,
+                                                             String inputTable,
+                                                             String orientation,
+                                                             String weight,
+                                                             String sourceTable,
+                                                             String destTable) throws SQLException {
+        final SimpleResultSet output = prepareResultSet();
+        final CompactGraph graph = prepareCompactGraph(connection, inputTable, orientation, weight);
+        final int[] dests = getIds(connection, graph, destTable);
+        final int[] sources = getIds(connection, graph, sourceTable);
+        final int[][] destinations = new int[sources.length][];
+        Arrays.fill(destinations, dests);
+        addDistances(output, graph, sources, destinations, getThreadCount(connection));
+        return output;
+    }
+
+    /**
+     * Search the graph from each source and add the distances to its
+     * destinations to the output, in the order of the sources. With several
+     * threads, the searches run in parallel, each thread with its own search
+     * arrays, while the rows of the finished searches are added in order.
+     *
+     * @param output       Output
+     * @param graph        Graph
+     * @param sources      Source vertex ids
+     * @param destinations Destination vertex ids of each source
+     * @param threadCount  Number of threads
+     * @throws SQLException
+     */
+    private static void addDistances(SimpleResultSet output,
+                                     CompactGraph graph,
+                                     int[] sources,
+                                     int[][] destinations,
+                                     int threadCount) throws SQLException {
+        // Check all the vertices before starting the searches
+        final int[] sourceIndices = new int[sources.length];
+        final int[][] targets = new int[sources.length][];
+        final Map<int[], int[]> targetsOfDestinations = new IdentityHashMap<int[], int[]>();
+        for (int i = 0; i < sources.length; i++) {
+            sourceIndices[i] = graph.getExistingVertexIndex(sources[i]);
+            targets[i] = targetsOfDestinations.computeIfAbsent(destinations[i], dests -> {
+                final int[] indices = new int[dests.length];
+                for (int j = 0; j < dests.length; j++) {
+                    indices[j] = graph.getExistingVertexIndex(dests[j]);
+                }
+                return indices;
+            });
+        }
+        if (threadCount <= 1 || sources.length <= 1) {
+            final CompactGraphSearch search = new CompactGraphSearch(graph);
+            for (int i = 0; i < sources.length; i++) {
+                addRows(output, sources[i], destinations[i], getDistances(search, sourceIndices[i], targets[i]));
+            }
+            return;
+        }
+        threadCount = Math.min(threadCount, sources.length);
+        // The search arrays are not thread safe, each worker takes a search from this queue
+        final BlockingQueue<CompactGraphSearch> searches = new ArrayBlockingQueue<>(threadCount);
+        for (int i = 0; i < threadCount; i++) {
+            searches.add(new CompactGraphSearch(graph));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        try {
+            Deque<Future<double[]>> pending = new ArrayDeque<>();
+            int next = 0;
+            for (int i = 0; i < sources.length; i++) {
+                // Keep a bounded number of finished searches in memory
+                while (next < sources.length && pending.size() < threadCount * 4) {
+                    final int source = sourceIndices[next];
+                    final int[] sourceTargets = targets[next];
+                    pending.add(executor.submit(() -> {
+                        CompactGraphSearch search = searches.take();
+                        try {
+                            return getDistances(search, source, sourceTargets);
+                        } finally {
+                            searches.add(search);
+                        }
+                    }));
+                    next++;
+                }
+                addRows(output, sources[i], destinations[i], getResult(pending.poll()));
+            }
+        } finally {
+            executor.shutdownNow();
+            try {
+                executor.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static double[] getDistances(CompactGraphSearch search, int source, int[] targets) {
+        search.calculate(new int[]{source}, targets, Double.POSITIVE_INFINITY);
+        final double[] distances = new double[targets.length];
+        for (int i = 0; i < targets.length; i++) {
+            distances[i] = search.getDistance(targets[i]);
+        }
+        return distances;
+    }
+
+    private static void addRows(SimpleResultSet output, int source, int[] destinations, double[] distances) {
+        for (int i = 0; i < destinations.length; i++) {
+            output.addRow(source, destinations[i], distances[i]);
+        }
+    }
+
+    /**
+     * Wait for a search and unwrap its error
+     */
+    private static double[] getResult(Future<double[]> future) throws SQLException {
+        try {
+            return future.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("The shortest path length computation has been interrupted", ex);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new SQLException("Cannot compute the shortest path lengths", cause);
+        }
+    }
+
+    /**
+     * Search the graph from the source and add the distances to the
+     * destinations to the output. Unreachable destinations are at an infinite
+     * distance.
+     *
+     * @param output       Output
+     * @param search       Search object on the graph
+     * @param source       Source vertex id
+     * @param destinations Destination vertex ids, null for all the vertices
+     */
+    private static void addDistances(SimpleResultSet output,
+                                     CompactGraphSearch search,
+                                     int source,
+                                     int[] destinations) {
+        final CompactGraph graph = search.getGraph();
+        final int sourceIndex = graph.getExistingVertexIndex(source);
+        if (destinations == null) {
+            search.calculate(sourceIndex, -1, Double.POSITIVE_INFINITY);
+            for (int i = 0; i < graph.getVertexCount(); i++) {
+                output.addRow(source, graph.getVertexId(i), search.getDistance(i));
+            }
+        } else {
+            final int[] targets = new int[destinations.length];
+            for (int i = 0; i < destinations.length; i++) {
+                targets[i] = graph.getExistingVertexIndex(destinations[i]);
+            }
+            search.calculate(new int[]{sourceIndex}, targets, Double.POSITIVE_INFINITY);
+            for (int i = 0; i < destinations.length; i++) {
+                output.addRow(source, destinations[i], search.getDistance(targets[i]));
+            }
+        }
+    }
+
+    /**
+     * Return the distinct integers contained in the first column of the table.
+     *
+     * @param connection Connection
+     * @param graph      Graph
+     * @param tableName  Table
+     * @return Vertex ids, all contained in the graph
+     * @throws SQLException
+     */
+    private static int[] getIds(Connection connection, CompactGraph graph, String tableName) throws SQLException {
+        final Set<Integer> set = new LinkedHashSet<Integer>();
+        try (Statement st = connection.createStatement();
+             ResultSet intSet = st.executeQuery("SELECT * FROM " + tableName)) {
+            while (intSet.next()) {
+                final int vertexID = intSet.getInt(1);
+                graph.getExistingVertexIndex(vertexID);
+                set.add(vertexID);
+            }
+        }
+        if (set.isEmpty()) {
+            throw new IllegalArgumentException("Table " + tableName + " was empty.");
+        }
+        final int[] ids = new int[set.size()];
+        int i = 0;
+        for (int id : set) {
+            ids[i++] = id;
+        }
+        return ids;
+    }
+
     /**
      * Prepare the source-destination map (to which we will apply Dijkstra) from
      * the source-destination table.
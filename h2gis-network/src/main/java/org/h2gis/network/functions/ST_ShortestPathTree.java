@@ -65,7 +65,10 @@ public class ST_ShortestPathTree extends GraphFunction implements ScalarFunction
             "   Required if global orientation is directed or reversed.\n" +
             "* `s` = Source vertex id\n" +
             "* `r` = Radius by which to limit the search (a `DOUBLE`)\n" +
-            "* `w` = Name of column containing edge weights as `DOUBLES`\n";
+            "* `w` = Name of column containing edge weights as `DOUBLES`\n" +
+            "\n" +
+            "Execute `SET @" + GRAPH_BACKEND + " = '" + CSR_BACKEND + "'` to search a compact graph\n" +
+            "representation, for large networks.\n";
 
     /**
      * Constructor
@@ -165,6 +168,10 @@ public class ST_ShortestPathTree extends GraphFunction implements ScalarFunction
         if (isColumnListConnection(connection)) {
             return output;
         }
+        if (isCompactGraphSelected(connection)) {
+            return compactOneToAll(connection, inputTable, orientation, weight, source, radius,
+                    tableName, firstGeometryField, output);
+        }
         // Do the calculation.
         final KeyedGraph<VDijkstra, Edge> graph =
                 prepareGraph(connection, inputTable, orientation, weight,
@@ -207,6 +214,42 @@ public class ST_ShortestPathTree extends GraphFunction implements ScalarFunction
         return output;
     }
 
+    /**
+     * The shortest path tree of a compact graph is made of the arcs whose
+     * target distance is reached through them.
+     */
+    private static ResultSet compactOneToAll(Connection connection,
+                                             String inputTable,
+                                             String orientation,
+                                             String weight,
+                                             int source,
+                                             double radius,
+                                             TableLocation tableName,
+                                             String firstGeometryField,
+                                             SimpleResultSet output) throws SQLException {
+        final CompactGraph graph = prepareCompactGraph(connection, inputTable, orientation, weight);
+        final CompactGraphSearch search = new CompactGraphSearch(graph);
+        search.calculate(graph.getExistingVertexIndex(source), -1, radius);
+        final Map<Integer, Geometry> edgeGeometryMap = firstGeometryField == null ? null
+                : ST_ShortestPath.getEdgeGeometryMap(connection, tableName, firstGeometryField);
+        for (int i = 0; i < search.getReachedCount(); i++) {
+            final int vertex = search.getReached(i);
+            for (int arc = graph.getFirstArc(vertex); arc < graph.getLastArc(vertex); arc++) {
+                if (search.isShortestPathArc(vertex, arc)) {
+                    final int id = graph.getEdgeId(arc);
+                    final int sourceId = graph.getVertexId(vertex);
+                    final int targetId = graph.getVertexId(graph.getTarget(arc));
+                    if (edgeGeometryMap != null) {
+                        output.addRow(edgeGeometryMap.get(Math.abs(id)), id, sourceId, targetId, graph.getWeight(arc));
+                    } else {
+                        output.addRow(id, sourceId, targetId, graph.getWeight(arc));
+                    }
+                }
+            }
+        }
+        return output;
+    }
+
     /**
      * Return a new {@link org.h2.tools.SimpleResultSet} with SOURCE,
      * DESTINATION and DISTANCE columns.
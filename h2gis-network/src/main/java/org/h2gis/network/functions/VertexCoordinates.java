@@ -0,0 +1,183 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <a href="http://www.h2database.com">http://www.h2database.com</a>. H2GIS is developed by CNRS
+ * <a href="http://www.cnrs.fr/">http://www.cnrs.fr/</a>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software;
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <a href="http://www.h2gis.org/">http://www.h2gis.org/</a>
+ * or contact directly: info_at_h2gis.org
+ */
+
+package org.h2gis.network.functions;
+
+import org.cts.crs.CRSException;
+import org.cts.crs.CoordinateReferenceSystem;
+import org.h2gis.functions.spatial.crs.CRSCache;
+import org.h2gis.functions.spatial.topology.ST_Graph;
+import org.h2gis.utilities.TableLocation;
+import org.h2gis.utilities.TableUtilities;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+
+import static org.h2gis.network.functions.GraphConstants.NODE_ID;
+import static org.h2gis.network.functions.GraphConstants.THE_GEOM;
+
+/**
+ * Coordinates of the vertices of a {@link CompactGraph}, read from the nodes
+ * table produced by {@link ST_Graph}, giving a lower bound of the distance
+ * between two vertices for the A* search.
+ *
+ * The straight line distance is converted to a weight with the lowest ratio
+ * of the arc weights to the distance between their vertices, so the bound
+ * holds whatever the unit of the weights. Longitude/latitude coordinates are
+ * compared with the great circle distance.
+ */
+public class VertexCoordinates {
+
+    private final CompactGraph graph;
+    private final double[] x;
+    private final double[] y;
+    private final boolean geographic;
+    private final double scale;
+
+    /**
+     * @param graph      Graph
+     * @param x          X or longitude of each vertex index
+     * @param y          Y or latitude of each vertex index
+     * @param geographic True for longitude/latitude coordinates in degrees
+     */
+    VertexCoordinates(CompactGraph graph, double[] x, double[] y, boolean geographic) {
+        this.graph = graph;
+        this.x = x;
+        this.y = y;
+        this.geographic = geographic;
+        this.scale = computeScale();
+    }
+
+    /**
+     * @return The graph of the vertices
+     */
+    public CompactGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * @param a Vertex index
+     * @param b Vertex index
+     * @return A lower bound of the shortest path length from a to b
+     */
+    public double getLowerBound(int a, int b) {
+        return scale == 0 ? 0 : scale * distance(a, b);
+    }
+
+    private double distance(int a, int b) {
+        if (geographic) {
+            // Haversine central angle
+            double lat1 = Math.toRadians(y[a]);
+            double lat2 = Math.toRadians(y[b]);
+            double sinDLat = Math.sin((lat2 - lat1) / 2);
+            double sinDLon = Math.sin(Math.toRadians(x[b] - x[a]) / 2);
+            double h = sinDLat * sinDLat + Math.cos(lat1) * Math.cos(lat2) * sinDLon * sinDLon;
+            return 2 * Math.asin(Math.sqrt(Math.min(1, h)));
+        }
+        double dx = x[b] - x[a];
+        double dy = y[b] - y[a];
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    /**
+     * @return The lowest ratio of an arc weight to the distance between its
+     * vertices, 0 if the coordinates cannot bound the weights
+     */
+    private double computeScale() {
+        double minRatio = Double.POSITIVE_INFINITY;
+        for (int vertex = 0; vertex < graph.getVertexCount(); vertex++) {
+            for (int arc = graph.getFirstArc(vertex); arc < graph.getLastArc(vertex); arc++) {
+                double length = distance(vertex, graph.getTarget(arc));
+                if (Double.isNaN(length)) {
+                    // A vertex without coordinates
+                    return 0;
+                }
+                if (length > 0) {
+                    minRatio = Math.min(minRatio, graph.getWeight(arc) / length);
+                }
+            }
+        }
+        return minRatio == Double.POSITIVE_INFINITY || minRatio <= 0 ? 0 : minRatio;
+    }
+
+    /**
+     * @param inputTable Edges table produced by ST_Graph
+     * @return The name of the nodes table produced with the edges table
+     */
+    static String getNodesTable(String inputTable) {
+        int index = inputTable.toUpperCase().lastIndexOf(ST_Graph.EDGES_SUFFIX);
+        if (index < 0) {
+            throw new IllegalArgumentException("Cannot find the nodes table of " + inputTable
+                    + ", the edges table name must contain " + ST_Graph.EDGES_SUFFIX);
+        }
+        return inputTable.substring(0, index) + ST_Graph.NODES_SUFFIX;
+    }
+
+    /**
+     * Reads the coordinates of the vertices of the graph from the nodes table.
+     *
+     * @param connection Connection
+     * @param nodesTable Nodes table produced by ST_Graph
+     * @param graph      Graph
+     * @return The coordinates
+     * @throws SQLException
+     */
+    public static VertexCoordinates load(Connection connection, String nodesTable, CompactGraph graph)
+            throws SQLException {
+        final TableLocation table = TableUtilities.parseInputTable(connection, nodesTable);
+        final double[] x = new double[graph.getVertexCount()];
+        final double[] y = new double[graph.getVertexCount()];
+        Arrays.fill(x, Double.NaN);
+        Arrays.fill(y, Double.NaN);
+        int srid = 0;
+        try (Statement st = connection.createStatement();
+             ResultSet rs = st.executeQuery("SELECT " + CompactGraph.findColumn(connection, table, NODE_ID)
+                     + ", " + CompactGraph.findColumn(connection, table, THE_GEOM) + " FROM " + table)) {
+            while (rs.next()) {
+                int vertex = graph.getVertexIndex(rs.getInt(1));
+                Geometry geometry = (Geometry) rs.getObject(2);
+                if (vertex >= 0 && geometry != null && !geometry.isEmpty()) {
+                    Coordinate coordinate = geometry.getCoordinate();
+                    x[vertex] = coordinate.x;
+                    y[vertex] = coordinate.y;
+                    srid = geometry.getSRID();
+                }
+            }
+        }
+        return new VertexCoordinates(graph, x, y, isGeographic(connection, srid));
+    }
+
+    private static boolean isGeographic(Connection connection, int srid) throws SQLException {
+        if (srid <= 0) {
+            return false;
+        }
+        try {
+            CoordinateReferenceSystem crs = CRSCache.getCache(connection).getCRS(connection, srid);
+            return CoordinateReferenceSystem.Type.GEOGRAPHIC2D.equals(crs.getType());
+        } catch (CRSException e) {
+            throw new SQLException("Cannot find SRID " + srid, e);
+        }
+    }
+}
@@ -0,0 +1,398 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <a href="http://www.h2database.com">http://www.h2database.com</a>. H2GIS is developed by CNRS
+ * <a href="http://www.cnrs.fr/">http://www.cnrs.fr/</a>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software;
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <a href="http://www.h2gis.org/">http://www.h2gis.org/</a>
+ * or contact directly: info_at_h2gis.org
+ */
+
+package org.h2gis.network.functions;
+
+import org.h2gis.functions.factory.H2GISDBFactory;
+import org.h2gis.functions.factory.H2GISFunctions;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the compressed sparse row graph against the default graph.
+ */
+public class CompactGraphTest {
+
+    private static Connection connection;
+    private static final String[] ORIENTATIONS = {
+            "'directed - edge_orientation'", "'reversed - edge_orientation'", "'undirected'"};
+
+    @BeforeAll
+    public static void setUp() throws Exception {
+        // Keep a connection alive to not close the DataBase on each unit test
+        connection = H2GISDBFactory.createSpatialDataBase("CompactGraphTest", true);
+        H2GISFunctions.registerFunction(connection.createStatement(), new ST_ShortestPathLength(), "");
+        H2GISFunctions.registerFunction(connection.createStatement(), new ST_Accessibility(), "");
+        H2GISFunctions.registerFunction(connection.createStatement(), new ST_ShortestPathTree(), "");
+        H2GISFunctions.registerFunction(connection.createStatement(), new ST_ShortestPath(), "");
+        H2GISFunctions.registerFunction(connection.createStatement(), new ST_ContractionHierarchy(), "");
+        GraphCreatorTest.registerCormenGraph(connection);
+        try (Statement st = connection.createStatement()) {
+            st.execute("CREATE TABLE COMPACT_SOURCES(ID INT); INSERT INTO COMPACT_SOURCES VALUES (1), (3), (5);" +
+                    "CREATE TABLE COMPACT_DESTS(ID INT); INSERT INTO COMPACT_DESTS VALUES (2), (4);" +
+                    "CREATE TABLE COMPACT_SOURCE_DEST(SOURCE INT, DESTINATION INT);" +
+                    "INSERT INTO COMPACT_SOURCE_DEST VALUES (1, 2), (1, 5), (4, 3), (5, 1), (5, 4);" +
+                    "CREATE TABLE COMPACT_DEST_TABLE(DESTINATION INT); INSERT INTO COMPACT_DEST_TABLE VALUES (2), (5);" +
+                    "CREATE TABLE CH_EDGES AS SELECT * FROM CORMEN_EDGES_ALL;");
+        }
+    }
+
+    @AfterAll
+    public static void tearDown() throws Exception {
+        connection.close();
+    }
+
+    @Test
+    public void testBuild() {
+        // 0 -> 1 -> 2, 0 -> 2
+        CompactGraph graph = CompactGraph.build(new int[]{0, 1, 0}, new int[]{1, 2, 2},
+                new double[]{1.0, 2.0, 4.0}, new int[]{1, 2, 3}, 3);
+        assertEquals(3, graph.getArcCount());
+        CompactGraphSearch search = new CompactGraphSearch(graph);
+        search.calculate(0, -1, Double.POSITIVE_INFINITY);
+        assertEquals(0.0, search.getDistance(0), 0.0);
+        assertEquals(1.0, search.getDistance(1), 0.0);
+        assertEquals(3.0, search.getDistance(2), 0.0);
+        search.calculate(0, -1, 2.0);
+        assertEquals(Double.POSITIVE_INFINITY, search.getDistance(2), 0.0);
+        search.calculate(2, -1, Double.POSITIVE_INFINITY);
+        assertEquals(Double.POSITIVE_INFINITY, search.getDistance(0), 0.0);
+        assertEquals(-1, search.getOrigin(0));
+        search = new CompactGraphSearch(graph.reverse());
+        search.calculate(2, -1, Double.POSITIVE_INFINITY);
+        assertEquals(3.0, search.getDistance(0), 0.0);
+    }
+
+    @Test
+    public void testShortestPathLength() throws Exception {
+        for (String o : ORIENTATIONS) {
+            assertSameResults("SELECT * FROM ST_ShortestPathLength('CORMEN_EDGES_ALL', " + o + ", 1)");
+            assertSameResults("SELECT * FROM ST_ShortestPathLength('CORMEN_EDGES_ALL', " + o + ", 'weight', 3)");
+            assertSameResults("SELECT * FROM ST_ShortestPathLength('CORMEN_EDGES_ALL', " + o + ", 'weight', 2, 5)");
+            assertSameResults("SELECT * FROM ST_ShortestPathLength('CORMEN_EDGES_ALL', " + o + ", 4, '1, 3, 5')");
+            assertSameResults("SELECT * FROM ST_ShortestPathLength('CORMEN_EDGES_ALL', " + o +
+                    ", 'weight', 'COMPACT_SOURCE_DEST')");
+            assertSameResults("SELECT * FROM ST_ShortestPathLength('CORMEN_EDGES_ALL', " + o +
+                    ", 'weight', 'COMPACT_SOURCES', 'COMPACT_DESTS')");
+        }
+    }
+
+    @Test
+    public void testAccessibility() throws Exception {
+        for (String o : ORIENTATIONS) {
+            // The closest destination is not compared, ties may be broken differently
+            assertSameResults("SELECT SOURCE, DISTANCE FROM ST_Accessibility('CORMEN_EDGES_ALL', " + o + ", '2, 5')");
+            assertSameResults("SELECT SOURCE, DISTANCE FROM ST_Accessibility('CORMEN_EDGES_ALL', " + o +
+                    ", 'weight', 'COMPACT_DEST_TABLE')");
+        }
+    }
+
+    @Test
+    public void testShortestPathTree() throws Exception {
+        for (String o : ORIENTATIONS) {
+            assertSameResults("SELECT EDGE_ID, SOURCE, DESTINATION, WEIGHT " +
+                    "FROM ST_ShortestPathTree('CORMEN_EDGES_ALL', " + o + ", 1)");
+            assertSameResults("SELECT EDGE_ID, SOURCE, DESTINATION, WEIGHT " +
+                    "FROM ST_ShortestPathTree('CORMEN_EDGES_ALL', " + o + ", 'weight', 1)");
+            assertSameResults("SELECT EDGE_ID, SOURCE, DESTINATION, WEIGHT " +
+                    "FROM ST_ShortestPathTree('CORMEN_EDGES_ALL', " + o + ", 'weight', 4, 6.0)");
+        }
+    }
+
+    @Test
+    public void testParallelManyToMany() throws Exception {
+        for (String o : ORIENTATIONS) {
+            assertSameRowsInParallel("SELECT * FROM ST_ShortestPathLength('CORMEN_EDGES_ALL', " + o +
+                    ", 'weight', 'COMPACT_SOURCE_DEST')");
+            assertSameRowsInParallel("SELECT * FROM ST_ShortestPathLength('CORMEN_EDGES_ALL', " + o +
+                    ", 'COMPACT_SOURCES', 'COMPACT_DESTS')");
+        }
+    }
+
+    @Test
+    public void testOneToOneAlgorithms() throws Exception {
+        try (Statement st = connection.createStatement()) {
+            for (String o : ORIENTATIONS) {
+                for (int source = 1; source <= 5; source++) {
+                    for (int destination = 1; destination <= 5; destination++) {
+                        double expected = distance(st, "SELECT * FROM ST_ShortestPathLength('CORMEN_EDGES_ALL', "
+                                + o + ", 'weight', " + source + ", " + destination + ")");
+                        for (String algorithm : new String[]{"bidirectional", "astar"}) {
+                            String query = "ST_ShortestPathLength('CORMEN_EDGES_ALL', " + o + ", 'weight', "
+                                    + source + ", " + destination + ", '" + algorithm + "')";
+                            assertEquals(expected, distance(st, "SELECT * FROM " + query), 0.0, query);
+                            // The weights of the path edges add up to the distance
+                            assertTrue(expected < Double.POSITIVE_INFINITY);
+                            assertEquals(expected, distance(st, "SELECT SUM(WEIGHT) FROM ST_ShortestPath('CORMEN_EDGES_ALL', "
+                                    + o + ", 'weight', " + source + ", " + destination + ", '" + algorithm + "')"), 0.0);
+                        }
+                    }
+                }
+            }
+            // Unweighted graph
+            assertEquals(distance(st, "SELECT * FROM ST_ShortestPathLength('CORMEN_EDGES_ALL', 'undirected', 1, 3)"),
+                    distance(st, "SELECT * FROM ST_ShortestPathLength('CORMEN_EDGES_ALL', 'undirected', NULL, 1, 3, 'astar')"), 0.0);
+        }
+    }
+
+    @Test
+    public void testOneToOneSettledVertices() {
+        // 100 x 100 grid with unit edges
+        final int size = 100;
+        final int[] sources = new int[4 * size * size];
+        final int[] targets = new int[sources.length];
+        final double[] weights = new double[sources.length];
+        final int[] edgeIds = new int[sources.length];
+        final double[] x = new double[size * size];
+        final double[] y = new double[size * size];
+        int arcCount = 0;
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                x[i * size + j] = j;
+                y[i * size + j] = i;
+                if (j + 1 < size) {
+                    arcCount = addEdge(sources, targets, weights, edgeIds, arcCount, i * size + j, i * size + j + 1);
+                }
+                if (i + 1 < size) {
+                    arcCount = addEdge(sources, targets, weights, edgeIds, arcCount, i * size + j, (i + 1) * size + j);
+                }
+            }
+        }
+        CompactGraph graph = CompactGraph.build(sources, targets, weights, edgeIds, arcCount);
+        int source = 45 * size + 10;
+        int destination = 55 * size + 30;
+        CompactGraphSearch dijkstra = new CompactGraphSearch(graph);
+        dijkstra.calculate(source, destination, Double.POSITIVE_INFINITY);
+        CompactGraphRouter router = new CompactGraphRouter(graph);
+        assertEquals(30.0, router.bidirectional(source, destination), 0.0);
+        assertEquals(30, router.getPathLength());
+        assertTrue(router.getSettledCount() < dijkstra.getReachedCount());
+        assertEquals(30.0, router.aStar(source, destination, new VertexCoordinates(graph, x, y, false)), 0.0);
+        assertEquals(30, router.getPathLength());
+        assertEquals(source, router.getPathSource(0));
+        assertEquals(destination, router.getPathTarget(29));
+        assertTrue(router.getSettledCount() < dijkstra.getReachedCount() / 2);
+    }
+
+    @Test
+    public void testContractionHierarchy() throws Exception {
+        try (Statement st = connection.createStatement()) {
+            for (String o : ORIENTATIONS) {
+                try (ResultSet rs = st.executeQuery("SELECT ST_ContractionHierarchy('CH_EDGES', " + o + ", 'weight')")) {
+                    assertTrue(rs.next());
+                    assertTrue(rs.getBoolean(1));
+                }
+                for (int source = 1; source <= 5; source++) {
+                    for (int destination = 1; destination <= 5; destination++) {
+                        double expected = distance(st, "SELECT * FROM ST_ShortestPathLength('CORMEN_EDGES_ALL', "
+                                + o + ", 'weight', " + source + ", " + destination + ")");
+                        // The hierarchy is only searched with 'ch'
+                        String query = "ST_ShortestPathLength('CH_EDGES', " + o + ", 'weight', "
+                                + source + ", " + destination;
+                        assertEquals(expected, distance(st, "SELECT * FROM " + query + ")"), 0.0, query);
+                        assertEquals(expected, distance(st, "SELECT * FROM " + query + ", 'ch')"), 0.0, query);
+                        assertEquals(expected, distance(st, "SELECT SUM(WEIGHT) FROM ST_ShortestPath('CH_EDGES', "
+                                + o + ", 'weight', " + source + ", " + destination + ", 'ch')"), 0.0);
+                    }
+                }
+            }
+            // The stored hierarchy is the undirected one
+            assertThrows(Exception.class, () -> st.executeQuery("SELECT * FROM ST_ShortestPathLength('CH_EDGES', "
+                    + "'directed - edge_orientation', 'weight', 1, 3, 'ch')"));
+            assertEquals(distance(st, "SELECT * FROM ST_ShortestPathLength('CORMEN_EDGES_ALL', "
+                            + "'directed - edge_orientation', 'weight', 1, 3)"),
+                    distance(st, "SELECT * FROM ST_ShortestPathLength('CH_EDGES', "
+                            + "'directed - edge_orientation', 'weight', 1, 3)"), 0.0);
+        }
+    }
+
+    @Test
+    public void testContractionHierarchyModifiedEdges() throws Exception {
+        try (Statement st = connection.createStatement()) {
+            st.execute("CREATE TABLE CH_MODIFIED_EDGES AS SELECT * FROM CORMEN_EDGES_ALL");
+            try (ResultSet rs = st.executeQuery("SELECT ST_ContractionHierarchy('CH_MODIFIED_EDGES', 'undirected', 'weight')")) {
+                assertTrue(rs.next());
+            }
+            assertEquals(7.0, distance(st, "SELECT * FROM ST_ShortestPathLength('CH_MODIFIED_EDGES', "
+                    + "'undirected', 'weight', 1, 5)"), 0.0);
+            st.execute("UPDATE CH_MODIFIED_EDGES SET WEIGHT = 0.5 WHERE EDGE_ID = 10;" +
+                    "INSERT INTO CH_MODIFIED_EDGES VALUES ('LINESTRING (2 0, 3 0)', 11, 1.0, 1, 11, 5, 9)");
+            // The default queries search the modified edges, not the stale hierarchy
+            assertEquals(0.5, distance(st, "SELECT * FROM ST_ShortestPathLength('CH_MODIFIED_EDGES', "
+                    + "'undirected', 'weight', 1, 5)"), 0.0);
+            assertEquals(0.5, distance(st, "SELECT SUM(WEIGHT) FROM ST_ShortestPath('CH_MODIFIED_EDGES', "
+                    + "'undirected', 'weight', 1, 5)"), 0.0);
+            assertEquals(1.5, distance(st, "SELECT * FROM ST_ShortestPathLength('CH_MODIFIED_EDGES', "
+                    + "'undirected', 'weight', 1, 9)"), 0.0);
+            // Once built again, the hierarchy gives the same distances
+            try (ResultSet rs = st.executeQuery("SELECT ST_ContractionHierarchy('CH_MODIFIED_EDGES', 'undirected', 'weight')")) {
+                assertTrue(rs.next());
+            }
+            assertEquals(0.5, distance(st, "SELECT * FROM ST_ShortestPathLength('CH_MODIFIED_EDGES', "
+                    + "'undirected', 'weight', 1, 5, 'ch')"), 0.0);
+            assertEquals(1.5, distance(st, "SELECT * FROM ST_ShortestPathLength('CH_MODIFIED_EDGES', "
+                    + "'undirected', 'weight', 1, 9, 'ch')"), 0.0);
+        }
+    }
+
+    @Test
+    public void testContractionHierarchyPaths() {
+        // 30 x 30 grid with edge weights from 1 to 3
+        final int size = 30;
+        final int[] sources = new int[4 * size * size];
+        final int[] targets = new int[sources.length];
+        final double[] weights = new double[sources.length];
+        final int[] edgeIds = new int[sources.length];
+        int arcCount = 0;
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                if (j + 1 < size) {
+                    arcCount = addEdge(sources, targets, weights, edgeIds, arcCount, i * size + j, i * size + j + 1);
+                    weights[arcCount - 1] = weights[arcCount - 2] = 1 + (i * 7 + j * 3) % 3;
+                }
+                if (i + 1 < size) {
+                    arcCount = addEdge(sources, targets, weights, edgeIds, arcCount, i * size + j, (i + 1) * size + j);
+                }
+            }
+        }
+        CompactGraph graph = CompactGraph.build(sources, targets, weights, edgeIds, arcCount);
+        ContractionHierarchy hierarchy = ContractionHierarchyBuilder.build(graph);
+        CompactGraphSearch dijkstra = new CompactGraphSearch(graph);
+        for (int source = 0; source < size * size; source += 37) {
+            dijkstra.calculate(source, -1, Double.POSITIVE_INFINITY);
+            for (int destination = 0; destination < size * size; destination += 11) {
+                double expected = dijkstra.getDistance(destination);
+                assertEquals(expected, hierarchy.getDistance(source, destination), 1e-9);
+                int[] path = hierarchy.getPath(source, destination);
+                double length = 0;
+                int vertex = source;
+                for (int arc : path) {
+                    assertEquals(-1, hierarchy.getArcFirst(arc));
+                    assertEquals(vertex, hierarchy.getArcSource(arc));
+                    vertex = hierarchy.getArcTarget(arc);
+                    length += hierarchy.getArcWeight(arc);
+                }
+                assertEquals(destination, vertex);
+                assertEquals(expected, length, 1e-9);
+            }
+        }
+    }
+
+    private static int addEdge(int[] sources, int[] targets, double[] weights, int[] edgeIds, int arcCount,
+                               int a, int b) {
+        int edgeId = arcCount / 2 + 1;
+        sources[arcCount] = a;
+        targets[arcCount] = b;
+        weights[arcCount] = 1.0;
+        edgeIds[arcCount++] = edgeId;
+        sources[arcCount] = b;
+        targets[arcCount] = a;
+        weights[arcCount] = 1.0;
+        edgeIds[arcCount++] = edgeId;
+        return arcCount;
+    }
+
+    private static double distance(Statement st, String query) throws Exception {
+        try (ResultSet rs = st.executeQuery(query)) {
+            assertTrue(rs.next());
+            double distance = rs.getDouble(rs.getMetaData().getColumnCount());
+            return rs.wasNull() ? 0.0 : distance;
+        }
+    }
+
+    @Test
+    public void testMissingVertex() throws Exception {
+        try (Statement st = connection.createStatement()) {
+            st.execute("SET @GRAPH_BACKEND = 'CSR'");
+            try {
+                assertThrows(Exception.class, () ->
+                        st.executeQuery("SELECT * FROM ST_ShortestPathLength('CORMEN_EDGES_ALL', 'undirected', 1, 42)"));
+            } finally {
+                st.execute("SET @GRAPH_BACKEND = NULL");
+            }
+        }
+    }
+
+    private static void assertSameResults(String query) throws Exception {
+        try (Statement st = connection.createStatement()) {
+            Set<String> expected = readRows(st, query);
+            st.execute("SET @GRAPH_BACKEND = 'CSR'");
+            try {
+                assertEquals(expected, readRows(st, query), query);
+            } finally {
+                st.execute("SET @GRAPH_BACKEND = NULL");
+            }
+        }
+    }
+
+    private static void assertSameRowsInParallel(String query) throws Exception {
+        try (Statement st = connection.createStatement()) {
+            Set<String> expected = readRows(st, query);
+            st.execute("SET @GRAPH_BACKEND = 'CSR'");
+            List<String> sequential = readOrderedRows(st, query);
+            st.execute("SET @GRAPH_THREADS = 3");
+            try {
+                assertEquals(expected, new TreeSet<>(sequential), query);
+                // The rows are in the same order as the sequential rows
+                assertEquals(sequential, readOrderedRows(st, query), query);
+            } finally {
+                st.execute("SET @GRAPH_BACKEND = NULL");
+                st.execute("SET @GRAPH_THREADS = NULL");
+            }
+        }
+    }
+
+    private static Set<String> readRows(Statement st, String query) throws Exception {
+        return new TreeSet<>(readOrderedRows(st, query));
+    }
+
+    private static List<String> readOrderedRows(Statement st, String query) throws Exception {
+        List<String> rows = new ArrayList<>();
+        try (ResultSet rs = st.executeQuery(query)) {
+            ResultSetMetaData metaData = rs.getMetaData();
+            while (rs.next()) {
+                StringBuilder row = new StringBuilder();
+                for (int i = 1; i <= metaData.getColumnCount(); i++) {
+                    if (metaData.getColumnType(i) == Types.DOUBLE) {
+                        row.append(rs.getDouble(i));
+                    } else {
+                        row.append(rs.getObject(i));
+                    }
+                    row.append(';');
+                }
+                rows.add(row.toString());
+            }
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,94 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <a href="http://www.h2database.com">http://www.h2database.com</a>. H2GIS is developed by CNRS
+ * <a href="http://www.cnrs.fr/">http://www.cnrs.fr/</a>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; 
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <a href="http://www.h2gis.org/">http://www.h2gis.org/</a>
+ * or contact directly: info_at_h2gis.org
+ */
+
+package org.h2gis.network.functions;
+
+import org.h2gis.functions.factory.H2GISDBFactory;
+import org.h2gis.functions.factory.H2GISFunctions;
+import org.javanetworkanalyzer.data.VDijkstra;
+import org.javanetworkanalyzer.model.Edge;
+import org.javanetworkanalyzer.model.EdgeCent;
+import org.javanetworkanalyzer.model.KeyedGraph;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the graphs kept by the sessions.
+ */
+public class GraphCacheTest {
+
+    private static Connection connection;
+
+    @BeforeAll
+    public static void setUp() throws Exception {
+        // Keep a connection alive to not close the DataBase on each unit test
+        connection = H2GISDBFactory.createSpatialDataBase("GraphCacheTest", true);
+        H2GISFunctions.registerFunction(connection.createStatement(), new ST_ShortestPathLength(), "");
+        try (Statement st = connection.createStatement()) {
+            st.execute("CREATE TABLE CACHE_EDGES(EDGE_ID INT PRIMARY KEY, START_NODE INT, END_NODE INT, WEIGHT DOUBLE);" +
+                    "INSERT INTO CACHE_EDGES VALUES (1, 1, 2, 1.0), (2, 2, 3, 1.0), (3, 1, 3, 5.0);");
+        }
+    }
+
+    @AfterAll
+    public static void tearDown() throws Exception {
+        connection.close();
+    }
+
+    @Test
+    public void testGraphIsReused() throws Exception {
+        GraphFunctionParser parser = new GraphFunctionParser();
+        parser.parseWeightAndOrientation("undirected", "weight");
+        KeyedGraph graph = GraphCache.getGraph(connection, "cache_edges", parser, VDijkstra.class, Edge.class);
+        assertNotNull(graph);
+        assertSame(graph, GraphCache.getGraph(connection, "CACHE_EDGES", parser, VDijkstra.class, Edge.class));
+        // Another edge class is another graph
+        assertNotSame(graph, GraphCache.getGraph(connection, "CACHE_EDGES", parser, VDijkstra.class, EdgeCent.class));
+        GraphCache.clear(connection);
+        assertNotSame(graph, GraphCache.getGraph(connection, "CACHE_EDGES", parser, VDijkstra.class, Edge.class));
+    }
+
+    @Test
+    public void testGraphIsReloadedAfterUpdate() throws Exception {
+        try (Statement st = connection.createStatement()) {
+            assertEquals(2.0, shortestPathLength(st), 0.0);
+            assertEquals(2.0, shortestPathLength(st), 0.0);
+            st.execute("UPDATE CACHE_EDGES SET WEIGHT = 0.5 WHERE EDGE_ID = 3");
+            assertEquals(0.5, shortestPathLength(st), 0.0);
+            st.execute("DELETE FROM CACHE_EDGES WHERE EDGE_ID = 3");
+            assertEquals(2.0, shortestPathLength(st), 0.0);
+            st.execute("INSERT INTO CACHE_EDGES VALUES (3, 1, 3, 5.0)");
+        }
+    }
+
+    private static double shortestPathLength(Statement st) throws Exception {
+        try (ResultSet rs = st.executeQuery("SELECT * FROM ST_ShortestPathLength('CACHE_EDGES', 'undirected', 'weight', 1, 3)")) {
+            assertTrue(rs.next());
+            return rs.getDouble(GraphConstants.DISTANCE);
+        }
+    }
+}
@@ -457,6 +457,74 @@ public class ST_GraphAnalysisTest {
             }
     }
 
+    @Test
+    public void testParallelAnalysis() throws Exception {
+        for (String orientation : new String[]{DO, RO, U}) {
+            for (String weight : new String[]{null, W}) {
+                String[] expected = readCentrality(orientation, weight);
+                st.execute("SET @GRAPH_THREADS = 3");
+                try {
+                    String[] parallel = readCentrality(orientation, weight);
+                    assertEquals(expected[0], parallel[0], orientation + weight);
+                    assertEquals(expected[1], parallel[1], orientation + weight);
+                } finally {
+                    st.execute("SET @GRAPH_THREADS = NULL");
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testPivots() throws Exception {
+        // All the vertices are pivots
+        st.execute("DROP TABLE IF EXISTS CORMEN_EDGES_ALL" + NODE_CENT_SUFFIX);
+        st.execute("DROP TABLE IF EXISTS CORMEN_EDGES_ALL" + EDGE_CENT_SUFFIX);
+        checkBoolean(st.executeQuery("SELECT ST_GraphAnalysis('CORMEN_EDGES_ALL', " + DO + ", " + W + ", 10)"));
+        checkEdges(st.executeQuery("SELECT * FROM CORMEN_EDGES_ALL" + EDGE_CENT_SUFFIX), WDO_WRO_EDGE_BETWEENNESS);
+        // The closeness is only known for the pivots
+        st.execute("DROP TABLE IF EXISTS CORMEN_EDGES_ALL" + NODE_CENT_SUFFIX);
+        st.execute("DROP TABLE IF EXISTS CORMEN_EDGES_ALL" + EDGE_CENT_SUFFIX);
+        checkBoolean(st.executeQuery("SELECT ST_GraphAnalysis('CORMEN_EDGES_ALL', " + DO + ", " + W + ", 2)"));
+        ResultSet rs = st.executeQuery("SELECT COUNT(" + CLOSENESS + "), COUNT(*) FROM CORMEN_EDGES_ALL" + NODE_CENT_SUFFIX);
+        try {
+            assertTrue(rs.next());
+            assertEquals(2, rs.getInt(1));
+            assertEquals(5, rs.getInt(2));
+        } finally {
+            rs.close();
+        }
+    }
+
+    /**
+     * @return The node and edge centrality rows, rounded
+     */
+    private String[] readCentrality(String orientation, String weight) throws SQLException {
+        st.execute("DROP TABLE IF EXISTS CORMEN_EDGES_ALL" + NODE_CENT_SUFFIX);
+        st.execute("DROP TABLE IF EXISTS CORMEN_EDGES_ALL" + EDGE_CENT_SUFFIX);
+        checkBoolean(compute(orientation, weight));
+        return new String[]{
+                readRows("SELECT " + NODE_ID + ", ROUND(" + BETWEENNESS + ", 12), ROUND(" + CLOSENESS + ", 12)"
+                        + " FROM CORMEN_EDGES_ALL" + NODE_CENT_SUFFIX + " ORDER BY " + NODE_ID),
+                readRows("SELECT " + EDGE_ID + ", ROUND(" + BETWEENNESS + ", 12)"
+                        + " FROM CORMEN_EDGES_ALL" + EDGE_CENT_SUFFIX + " ORDER BY " + EDGE_ID)};
+    }
+
+    private String readRows(String query) throws SQLException {
+        StringBuilder rows = new StringBuilder();
+        ResultSet rs = st.executeQuery(query);
+        try {
+            while (rs.next()) {
+                for (int i = 1; i <= rs.getMetaData().getColumnCount(); i++) {
+                    rows.append(rs.getString(i)).append(' ');
+                }
+                rows.append('\n');
+            }
+        } finally {
+            rs.close();
+        }
+        return rows.toString();
+    }
+
     protected static String createLineGraphTable(Connection connection, int n) throws SQLException {
         final Statement st = connection.createStatement();
         try {
@@ -19,6 +19,11 @@
  */
 package org.h2gis.utilities;
 
+import org.h2.engine.Session;
+import org.h2.engine.SessionLocal;
+import org.h2.jdbc.JdbcConnection;
+import org.h2.value.Value;
+import org.h2.value.ValueNull;
 import org.h2gis.api.ProgressVisitor;
 
 import java.beans.PropertyChangeEvent;
@@ -439,6 +444,76 @@ public class JDBCUtilities {
         }
     }
 
+    /**
+     * @param connection Connection, may be null
+     * @return The session of an embedded H2 connection, null otherwise
+     * @throws SQLException
+     */
+    public static SessionLocal getLocalSession(Connection connection) throws SQLException {
+        if (connection != null && connection.isWrapperFor(JdbcConnection.class)) {
+            Session session = connection.unwrap(JdbcConnection.class).getSession();
+            if (session instanceof SessionLocal) {
+                return (SessionLocal) session;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Read a variable set in the session with {@code SET @name = value}.
+     *
+     * @param connection Connection, may be null
+     * @param name Session variable name
+     * @return The value of the variable, null if it is not set or if the connection is not an embedded H2 connection
+     * @throws SQLException
+     */
+    public static Value getSessionVariable(Connection connection, String name) throws SQLException {
+        SessionLocal session = getLocalSession(connection);
+        if (session != null) {
+            Value value = session.getVariable(name);
+            if (value != ValueNull.INSTANCE) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param connection Connection, may be null
+     * @param name Session variable name
+     * @param defaultValue Value if the variable is not set
+     * @return The value of the session variable
+     * @throws SQLException
+     */
+    public static int getSessionVariable(Connection connection, String name, int defaultValue) throws SQLException {
+        Value value = getSessionVariable(connection, name);
+        return value == null ? defaultValue : value.getInt();
+    }
+
+    /**
+     * @param connection Connection, may be null
+     * @param name Session variable name
+     * @param defaultValue Value if the variable is not set
+     * @return The value of the session variable
+     * @throws SQLException
+     */
+    public static long getSessionVariable(Connection connection, String name, long defaultValue) throws SQLException {
+        Value value = getSessionVariable(connection, name);
+        return value == null ? defaultValue : value.getLong();
+    }
+
+    /**
+     * @param connection Connection, may be null
+     * @param name Session variable name
+     * @param defaultValue Value if the variable is not set
+     * @return The value of the session variable
+     * @throws SQLException
+     */
+    public static boolean getSessionVariable(Connection connection, String name, boolean defaultValue) throws SQLException {
+        Value value = getSessionVariable(connection, name);
+        return value == null ? defaultValue : value.getBoolean();
+    }
+
     /**
      * @param connection Connection
      * @param tableLocation table identifier
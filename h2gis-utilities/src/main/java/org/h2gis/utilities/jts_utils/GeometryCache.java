@@ -0,0 +1,207 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <a href="http://www.h2database.com">http://www.h2database.com</a>. H2GIS is developed by CNRS
+ * <a href="http://www.cnrs.fr/">http://www.cnrs.fr/</a>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; 
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <a href="http://www.h2gis.org/">http://www.h2gis.org/</a>
+ * or contact directly: info_at_h2gis.org
+ */
+
+package org.h2gis.utilities.jts_utils;
+
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryCollection;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.Polygon;
+
+import java.lang.ref.SoftReference;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * Keeps the objects derived from large geometry arguments, such as spatial
+ * indexes or prepared geometries, so that a function called on every row with
+ * the same geometry argument builds them once.
+ *
+ * The database gives a new copy of the geometry to each call, so the cached
+ * geometry is found by its SRID, number of points and envelope, then compared
+ * with the argument, all the ordinates included. The entries are kept in a
+ * bounded LRU map, through soft references.
+ *
+ * @param <T> Type of the derived objects
+ */
+public class GeometryCache<T> {
+
+    private final int minPoints;
+    private final Map<Key, SoftReference<Entry<T>>> entries;
+
+    /**
+     * @param maxEntries Maximum number of geometries kept
+     * @param minPoints  Geometries with fewer points are not cached, their
+     *                   derived object is built on each call
+     */
+    public GeometryCache(final int maxEntries, int minPoints) {
+        this.minPoints = minPoints;
+        this.entries = new LinkedHashMap<Key, SoftReference<Entry<T>>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, SoftReference<Entry<T>>> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Return the object derived from the geometry, from the cache if the same
+     * geometry has already been given.
+     *
+     * @param geometry Geometry argument
+     * @param builder  Builds the derived object, it must be safe to share
+     *                 between threads once built
+     * @return The derived object
+     */
+    public T get(Geometry geometry, Function<Geometry, T> builder) {
+        if (geometry.getNumPoints() < minPoints) {
+            return builder.apply(geometry);
+        }
+        Key key = new Key(geometry);
+        synchronized (entries) {
+            SoftReference<Entry<T>> reference = entries.get(key);
+            Entry<T> entry = reference == null ? null : reference.get();
+            if (entry != null && (entry.geometry == geometry || sameCoordinates(entry.geometry, geometry))) {
+                return entry.value;
+            }
+        }
+        // Build outside of the lock, other geometries may be looked up meanwhile
+        T value = builder.apply(geometry);
+        synchronized (entries) {
+            entries.put(key, new SoftReference<Entry<T>>(new Entry<T>(geometry, value)));
+        }
+        return value;
+    }
+
+    /**
+     * Remove all the cached objects.
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    /**
+     * @return True if the geometries have the same structure and the same
+     * ordinates, including z and m unlike {@link Geometry#equalsExact(Geometry)}
+     */
+    static boolean sameCoordinates(Geometry a, Geometry b) {
+        if (a.getClass() != b.getClass() || a.getSRID() != b.getSRID()) {
+            return false;
+        }
+        if (a instanceof Point) {
+            return sameCoordinates(((Point) a).getCoordinateSequence(), ((Point) b).getCoordinateSequence());
+        } else if (a instanceof LineString) {
+            return sameCoordinates(((LineString) a).getCoordinateSequence(), ((LineString) b).getCoordinateSequence());
+        } else if (a instanceof Polygon) {
+            Polygon pa = (Polygon) a;
+            Polygon pb = (Polygon) b;
+            if (pa.getNumInteriorRing() != pb.getNumInteriorRing()
+                    || !sameCoordinates(pa.getExteriorRing(), pb.getExteriorRing())) {
+                return false;
+            }
+            for (int i = 0; i < pa.getNumInteriorRing(); i++) {
+                if (!sameCoordinates(pa.getInteriorRingN(i), pb.getInteriorRingN(i))) {
+                    return false;
+                }
+            }
+            return true;
+        } else if (a instanceof GeometryCollection) {
+            if (a.getNumGeometries() != b.getNumGeometries()) {
+                return false;
+            }
+            for (int i = 0; i < a.getNumGeometries(); i++) {
+                if (!sameCoordinates(a.getGeometryN(i), b.getGeometryN(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return a.equalsExact(b);
+    }
+
+    private static boolean sameCoordinates(CoordinateSequence a, CoordinateSequence b) {
+        int size = a.size();
+        int dimension = a.getDimension();
+        if (size != b.size() || dimension != b.getDimension() || a.getMeasures() != b.getMeasures()) {
+            return false;
+        }
+        for (int i = 0; i < size; i++) {
+            for (int d = 0; d < dimension; d++) {
+                // NaN ordinates are equal
+                if (Double.compare(a.getOrdinate(i, d), b.getOrdinate(i, d)) != 0) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * A geometry and the object derived from it.
+     */
+    private static class Entry<T> {
+        private final Geometry geometry;
+        private final T value;
+
+        Entry(Geometry geometry, T value) {
+            this.geometry = geometry;
+            this.value = value;
+        }
+    }
+
+    /**
+     * Summary of a geometry, the same for equal geometries.
+     */
+    private static class Key {
+        private final int srid;
+        private final int numPoints;
+        private final Envelope envelope;
+
+        Key(Geometry geometry) {
+            this.srid = geometry.getSRID();
+            this.numPoints = geometry.getNumPoints();
+            this.envelope = geometry.getEnvelopeInternal();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return srid == other.srid && numPoints == other.numPoints && envelope.equals(other.envelope);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(srid, numPoints, envelope);
+        }
+    }
+}
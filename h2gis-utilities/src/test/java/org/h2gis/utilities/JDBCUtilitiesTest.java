@@ -77,6 +77,23 @@ public class JDBCUtilitiesTest {
         connection.close();
     }
 
+    @Test
+    public void testSessionVariable() throws SQLException {
+        st.execute("SET @TEST_VARIABLE = NULL");
+        assertNull(JDBCUtilities.getSessionVariable(connection, "TEST_VARIABLE"));
+        assertEquals(3, JDBCUtilities.getSessionVariable(connection, "TEST_VARIABLE", 3));
+        assertTrue(JDBCUtilities.getSessionVariable(connection, "TEST_VARIABLE", true));
+        st.execute("SET @TEST_VARIABLE = 42");
+        assertEquals(42, JDBCUtilities.getSessionVariable(connection, "TEST_VARIABLE", 3));
+        assertEquals(42L, JDBCUtilities.getSessionVariable(connection, "TEST_VARIABLE", Long.MAX_VALUE));
+        st.execute("SET @TEST_VARIABLE = FALSE");
+        assertFalse(JDBCUtilities.getSessionVariable(connection, "TEST_VARIABLE", true));
+        st.execute("SET @TEST_VARIABLE = NULL");
+        assertNotNull(JDBCUtilities.getLocalSession(connection));
+        assertNull(JDBCUtilities.getLocalSession(null));
+        assertEquals(3, JDBCUtilities.getSessionVariable(null, "TEST_VARIABLE", 3));
+    }
+
     @Test
     public void testTemporaryTable() throws SQLException {        
         st.execute("DROP view IF EXISTS perstable_view cascade");
@@ -0,0 +1,93 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <a href="http://www.h2database.com">http://www.h2database.com</a>. H2GIS is developed by CNRS
+ * <a href="http://www.cnrs.fr/">http://www.cnrs.fr/</a>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; 
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <a href="http://www.h2gis.org/">http://www.h2gis.org/</a>
+ * or contact directly: info_at_h2gis.org
+ */
+
+package org.h2gis.utilities.jts_utils;
+
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKTReader;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit test of the geometry cache
+ */
+public class GeometryCacheTest {
+
+    private static final WKTReader READER = new WKTReader();
+
+    @Test
+    public void testSameGeometryCopy() throws ParseException {
+        GeometryCache<Integer> cache = new GeometryCache<>(2, 0);
+        AtomicInteger builds = new AtomicInteger();
+        Geometry a = READER.read("LINESTRING Z(0 0 1, 10 0 2, 10 10 3)");
+        assertEquals(1, (int) cache.get(a, g -> builds.incrementAndGet()));
+        // A copy of the geometry finds the cached value
+        assertEquals(1, (int) cache.get(a.copy(), g -> builds.incrementAndGet()));
+        assertEquals(1, (int) cache.get(READER.read("LINESTRING Z(0 0 1, 10 0 2, 10 10 3)"), g -> builds.incrementAndGet()));
+        assertEquals(1, builds.get());
+    }
+
+    @Test
+    public void testDifferentGeometries() throws ParseException {
+        GeometryCache<Integer> cache = new GeometryCache<>(2, 0);
+        AtomicInteger builds = new AtomicInteger();
+        cache.get(READER.read("LINESTRING Z(0 0 1, 10 0 2, 10 10 3)"), g -> builds.incrementAndGet());
+        // Same envelope and number of points, another z or vertex
+        assertEquals(2, (int) cache.get(READER.read("LINESTRING Z(0 0 1, 10 0 5, 10 10 3)"), g -> builds.incrementAndGet()));
+        assertEquals(3, (int) cache.get(READER.read("LINESTRING Z(0 0 1, 5 0 2, 10 10 3)"), g -> builds.incrementAndGet()));
+        assertEquals(4, (int) cache.get(READER.read("LINESTRING (0 0, 10 0, 10 10)"), g -> builds.incrementAndGet()));
+        Geometry srid = READER.read("LINESTRING Z(0 0 1, 10 0 2, 10 10 3)");
+        srid.setSRID(4326);
+        assertEquals(5, (int) cache.get(srid, g -> builds.incrementAndGet()));
+    }
+
+    @Test
+    public void testEviction() throws ParseException {
+        GeometryCache<Integer> cache = new GeometryCache<>(2, 0);
+        AtomicInteger builds = new AtomicInteger();
+        Geometry a = READER.read("POLYGON ((0 0, 1 0, 1 1, 0 0))");
+        Geometry b = READER.read("POLYGON ((0 0, 2 0, 2 2, 0 0))");
+        Geometry c = READER.read("POLYGON ((0 0, 3 0, 3 3, 0 0))");
+        cache.get(a, g -> builds.incrementAndGet());
+        cache.get(b, g -> builds.incrementAndGet());
+        cache.get(a, g -> builds.incrementAndGet());
+        // b is the least recently used
+        cache.get(c, g -> builds.incrementAndGet());
+        assertEquals(3, builds.get());
+        cache.get(a, g -> builds.incrementAndGet());
+        assertEquals(3, builds.get());
+        cache.get(b, g -> builds.incrementAndGet());
+        assertEquals(4, builds.get());
+    }
+
+    @Test
+    public void testSmallGeometry() throws ParseException {
+        GeometryCache<Integer> cache = new GeometryCache<>(2, 10);
+        AtomicInteger builds = new AtomicInteger();
+        Geometry a = READER.read("POINT (1 2)");
+        cache.get(a, g -> builds.incrementAndGet());
+        cache.get(a, g -> builds.incrementAndGet());
+        assertEquals(2, builds.get());
+    }
+}
@@ -19,6 +19,10 @@
  */
 package org.h2gis.postgis_jts;
 
+import org.postgresql.core.BaseConnection;
+import org.postgresql.core.Oid;
+import org.postgresql.core.QueryExecutor;
+
 import java.sql.*;
 import java.util.Map;
 import java.util.Properties;
@@ -31,8 +35,14 @@ import java.util.concurrent.Executor;
  * @author Sylvain PALOMINOS (UBS 2018)
  */
 public class ConnectionWrapper implements Connection {
+    /** Connection property enabling the binary transfer of the geometries, e.g. ?binaryGeometry=true in the url */
+    public static final String BINARY_TRANSFER = "binaryGeometry";
     /** Wrapped {@link java.sql.Connection} */
     private Connection connection;
+    /** Parser and writer reused by all the statements of the connection */
+    private final JtsBinaryParser parser = new JtsBinaryParser();
+    private final JtsBinaryWriter writer = new JtsBinaryWriter();
+    private boolean binaryTransfer = false;
 
     /**
      * Default constructor.
@@ -43,6 +53,55 @@ public class ConnectionWrapper implements Connection {
         this.connection = connection;
     }
 
+    /**
+     * Transfer the geometries as raw EWKB instead of hex encoded EWKB. The results are received in binary format
+     * once the driver uses server side prepared statements, set the prepareThreshold property of the connection
+     * to -1 to use them from the first execution.
+     *
+     * @param binaryTransfer True to send and receive the geometries in binary format
+     * @throws SQLException If the geometry type is not available on the server
+     */
+    public void setBinaryTransfer(boolean binaryTransfer) throws SQLException {
+        if (binaryTransfer == this.binaryTransfer) {
+            return;
+        }
+        BaseConnection pgConnection = connection.unwrap(BaseConnection.class);
+        int oid = pgConnection.getTypeInfo().getPGType("geometry");
+        if (oid == Oid.UNSPECIFIED) {
+            throw new SQLException("The geometry type is not available, PostGIS must be installed");
+        }
+        QueryExecutor queryExecutor = pgConnection.getQueryExecutor();
+        if (binaryTransfer) {
+            queryExecutor.addBinaryReceiveOid(oid);
+            queryExecutor.addBinarySendOid(oid);
+        } else {
+            queryExecutor.removeBinaryReceiveOid(oid);
+            queryExecutor.removeBinarySendOid(oid);
+        }
+        this.binaryTransfer = binaryTransfer;
+    }
+
+    /**
+     * @return True if the geometries are transferred in binary format
+     */
+    public boolean isBinaryTransfer() {
+        return binaryTransfer;
+    }
+
+    /**
+     * @return The EWKB parser of the connection
+     */
+    JtsBinaryParser getParser() {
+        return parser;
+    }
+
+    /**
+     * @return The EWKB writer of the connection
+     */
+    JtsBinaryWriter getWriter() {
+        return writer;
+    }
+
     @Override
     public Statement createStatement() throws SQLException {
         return new StatementWrapper(this, connection.createStatement());
@@ -98,6 +98,18 @@ public class Driver extends JtsWrapper {
 
     @Override
     public Connection connect(String url, Properties info) throws SQLException {
-        return new ConnectionWrapper(super.connect(POSTGIS_PROTOCOL + url.substring(POSTGIS_H2PROTOCOL.length()), info));
+        String jtsUrl = POSTGIS_PROTOCOL + url.substring(POSTGIS_H2PROTOCOL.length());
+        ConnectionWrapper connection = new ConnectionWrapper(super.connect(jtsUrl, info));
+        // The binaryGeometry property may be given in the url of a linked table
+        Properties properties = parseURL(JtsWrapper.mangleURL(jtsUrl), info);
+        if (properties != null && Boolean.parseBoolean(properties.getProperty(ConnectionWrapper.BINARY_TRANSFER))) {
+            try {
+                connection.setBinaryTransfer(true);
+            } catch (SQLException ex) {
+                connection.close();
+                throw ex;
+            }
+        }
+        return connection;
     }
 }
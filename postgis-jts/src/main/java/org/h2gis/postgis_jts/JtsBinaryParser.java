@@ -20,23 +20,55 @@
 package org.h2gis.postgis_jts;
 
 import org.locationtech.jts.geom.*;
-import org.locationtech.jts.geom.impl.PackedCoordinateSequence.Double;
+import org.locationtech.jts.geom.impl.PackedCoordinateSequence;
+import org.locationtech.jts.geom.impl.PackedCoordinateSequenceFactory;
 import net.postgis.jdbc.geometry.binary.ByteGetter;
 import net.postgis.jdbc.geometry.binary.ValueGetter;
 
-import java.util.Arrays;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
 /**
  * Parser class able to convert binary data into a JTS {@link org.locationtech.jts.geom.Geometry}.
  *
+ * When the {@link org.locationtech.jts.geom.CoordinateSequenceFactory} of the geometry factory builds
+ * {@link org.locationtech.jts.geom.impl.PackedCoordinateSequence.Double}, the ordinates of the lines and the rings,
+ * Z and M included, are copied straight into the packed array without creating a
+ * {@link org.locationtech.jts.geom.Coordinate} per vertex.
+ *
  * @author Nicolas Fortin
  * @author Sylvain PALOMINOS (UBS 2018)
  */
 public class JtsBinaryParser {
+    /** Factory of the parsed geometries */
+    private final GeometryFactory geometryFactory;
+    /** True if the coordinate sequences are packed double arrays */
+    private final boolean packed;
+
+    /**
+     * Default constructor, the geometries are built with packed coordinate sequences of doubles.
+     */
+    public JtsBinaryParser() {
+        this(JtsGeometry.geofac);
+    }
+
+    /**
+     * @param geometryFactory Factory of the parsed geometries, its
+     * {@link org.locationtech.jts.geom.CoordinateSequenceFactory} builds the coordinate sequences.
+     */
+    public JtsBinaryParser(GeometryFactory geometryFactory) {
+        this.geometryFactory = geometryFactory;
+        CoordinateSequenceFactory csFactory = geometryFactory.getCoordinateSequenceFactory();
+        this.packed = csFactory instanceof PackedCoordinateSequenceFactory
+                && ((PackedCoordinateSequenceFactory) csFactory).getType() == PackedCoordinateSequenceFactory.DOUBLE;
+    }
+
     /**
-     * Default empty constructor.
+     * @return The factory of the parsed geometries
      */
-    public JtsBinaryParser() {}
+    public GeometryFactory getGeometryFactory() {
+        return geometryFactory;
+    }
 
     /**
      * Return the {@link net.postgis.jdbc.geometry.binary.ValueGetter} for the endian from the given
@@ -64,8 +96,17 @@ public class JtsBinaryParser {
      * @return Parsed JTS {@link org.locationtech.jts.geom.Geometry}.
      */
     public Geometry parse(String value) {
-        ByteGetter.StringByteGetter bytes = new ByteGetter.StringByteGetter(value);
-        return this.parseGeometry(valueGetterForEndian(bytes));
+        // Decoding the whole string once is cheaper than reading each double through the hex digits
+        byte[] bytes = new byte[value.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            int high = Character.digit(value.charAt(2 * i), 16);
+            int low = Character.digit(value.charAt(2 * i + 1), 16);
+            if (high < 0 || low < 0) {
+                throw new IllegalArgumentException("Invalid hexadecimal value at index " + 2 * i);
+            }
+            bytes[i] = (byte) ((high << 4) | low);
+        }
+        return parse(bytes);
     }
 
     /**
@@ -76,8 +117,37 @@ public class JtsBinaryParser {
      * @return Parsed JTS {@link org.locationtech.jts.geom.Geometry}.
      */
     public Geometry parse(byte[] value) {
-        ByteGetter.BinaryByteGetter bytes = new ByteGetter.BinaryByteGetter(value);
-        return this.parseGeometry(valueGetterForEndian(bytes));
+        return parse(ByteBuffer.wrap(value));
+    }
+
+    /**
+     * Parse the EWKB starting at the given offset of the byte array into a JTS
+     * {@link org.locationtech.jts.geom.Geometry}, without copying the bytes.
+     *
+     * @param value byte array to parse.
+     * @param offset Index of the first byte of the geometry.
+     *
+     * @return Parsed JTS {@link org.locationtech.jts.geom.Geometry}.
+     */
+    public Geometry parse(byte[] value, int offset) {
+        return parse(ByteBuffer.wrap(value, offset, value.length - offset));
+    }
+
+    /**
+     * Parse the EWKB starting at the position of the buffer into a JTS {@link org.locationtech.jts.geom.Geometry}.
+     * The position of the buffer is moved after the parsed geometry, so the geometries written one after the other
+     * in a buffer are read by calling this method until the buffer has no remaining bytes. The buffer can then be
+     * cleared and filled again with the next geometries. The byte order of the buffer is not modified.
+     *
+     * @param buffer Buffer to read.
+     *
+     * @return Parsed JTS {@link org.locationtech.jts.geom.Geometry}.
+     */
+    public Geometry parse(ByteBuffer buffer) {
+        BufferValueGetter data = new BufferValueGetter(buffer.slice());
+        Geometry geometry = this.parseGeometry(data);
+        buffer.position(buffer.position() + data.buffer.position());
+        return geometry;
     }
 
     /**
@@ -167,21 +237,7 @@ public class JtsBinaryParser {
      * @return The parsed {@link org.locationtech.jts.geom.Point}.
      */
     private Point parsePoint(ValueGetter data, boolean haveZ, boolean haveM) {
-        double X = data.getDouble();
-        double Y = data.getDouble();
-        Point result;
-        if (haveZ) {
-            double Z = data.getDouble();
-            result = JtsGeometry.geofac.createPoint(new Coordinate(X, Y, Z));
-        } else {
-            result = JtsGeometry.geofac.createPoint(new Coordinate(X, Y));
-        }
-
-        if (haveM) {
-            data.getDouble();
-        }
-
-        return result;
+        return geometryFactory.createPoint(this.readCS(data, 1, haveZ, haveM));
     }
 
     /**
@@ -210,22 +266,40 @@ public class JtsBinaryParser {
      * @return The parsed {@link org.locationtech.jts.geom.CoordinateSequence}.
      */
     public CoordinateSequence parseCS(ValueGetter data, boolean haveZ, boolean haveM) {
-        int count = data.getInt();
-        int dims = haveZ ? 3 : 2;
-        Coordinate[] coordinates = new Coordinate[count];
-        Arrays.fill(coordinates, new Coordinate());
-        CoordinateSequence cs = new Double(coordinates, dims);
+        return this.readCS(data, data.getInt(), haveZ, haveM);
+    }
 
-        for(int i = 0; i < count; ++i) {
-            for(int d = 0; d < dims; ++d) {
-                cs.setOrdinate(i, d, data.getDouble());
+    /**
+     * Read the given count of coordinates into a JTS {@link org.locationtech.jts.geom.CoordinateSequence}.
+     *
+     * @param data {@link net.postgis.jdbc.geometry.binary.ValueGetter} to parse.
+     * @param count Number of coordinates.
+     * @param haveZ True if the coordinates have a Z component.
+     * @param haveM True if the coordinates have a M component.
+     *
+     * @return The parsed {@link org.locationtech.jts.geom.CoordinateSequence}.
+     */
+    private CoordinateSequence readCS(ValueGetter data, int count, boolean haveZ, boolean haveM) {
+        int measures = haveM ? 1 : 0;
+        int dimension = (haveZ ? 3 : 2) + measures;
+        if (packed) {
+            // The EWKB ordinates X, Y, Z, M have the order of the packed array
+            double[] ordinates = new double[count * dimension];
+            if (data instanceof BufferValueGetter) {
+                ((BufferValueGetter) data).getDoubles(ordinates);
+            } else {
+                for (int i = 0; i < ordinates.length; i++) {
+                    ordinates[i] = data.getDouble();
+                }
             }
-
-            if (haveM) {
-                data.getDouble();
+            return new PackedCoordinateSequence.Double(ordinates, dimension, measures);
+        }
+        CoordinateSequence cs = geometryFactory.getCoordinateSequenceFactory().create(count, dimension, measures);
+        for (int i = 0; i < count; i++) {
+            for (int d = 0; d < dimension; d++) {
+                cs.setOrdinate(i, d, data.getDouble());
             }
         }
-
         return cs;
     }
 
@@ -241,7 +315,7 @@ public class JtsBinaryParser {
     private MultiPoint parseMultiPoint(ValueGetter data, int srid) {
         Point[] points = new Point[data.getInt()];
         this.parseGeometryArray(data, points, srid);
-        return JtsGeometry.geofac.createMultiPoint(points);
+        return geometryFactory.createMultiPoint(points);
     }
 
     /**
@@ -255,7 +329,7 @@ public class JtsBinaryParser {
      * @return The parsed {@link org.locationtech.jts.geom.LineString}.
      */
     private LineString parseLineString(ValueGetter data, boolean haveZ, boolean haveM) {
-        return JtsGeometry.geofac.createLineString(this.parseCS(data, haveZ, haveM));
+        return geometryFactory.createLineString(this.parseCS(data, haveZ, haveM));
     }
 
     /**
@@ -269,7 +343,7 @@ public class JtsBinaryParser {
      * @return The parsed {@link org.locationtech.jts.geom.LinearRing}.
      */
     private LinearRing parseLinearRing(ValueGetter data, boolean haveZ, boolean haveM) {
-        return JtsGeometry.geofac.createLinearRing(this.parseCS(data, haveZ, haveM));
+        return geometryFactory.createLinearRing(this.parseCS(data, haveZ, haveM));
     }
 
 
@@ -294,7 +368,7 @@ public class JtsBinaryParser {
             rings[i].setSRID(srid);
         }
 
-        return JtsGeometry.geofac.createPolygon(shell, rings);
+        return geometryFactory.createPolygon(shell, rings);
     }
 
     /**
@@ -310,7 +384,7 @@ public class JtsBinaryParser {
         int count = data.getInt();
         LineString[] strings = new LineString[count];
         this.parseGeometryArray(data, strings, srid);
-        return JtsGeometry.geofac.createMultiLineString(strings);
+        return geometryFactory.createMultiLineString(strings);
     }
 
     /**
@@ -326,7 +400,7 @@ public class JtsBinaryParser {
         int count = data.getInt();
         Polygon[] polys = new Polygon[count];
         this.parseGeometryArray(data, polys, srid);
-        return JtsGeometry.geofac.createMultiPolygon(polys);
+        return geometryFactory.createMultiPolygon(polys);
     }
 
     /**
@@ -342,7 +416,84 @@ public class JtsBinaryParser {
         int count = data.getInt();
         Geometry[] geoms = new Geometry[count];
         this.parseGeometryArray(data, geoms, srid);
-        return JtsGeometry.geofac.createGeometryCollection(geoms);
+        return geometryFactory.createGeometryCollection(geoms);
     }
-}
 
+    /**
+     * {@link net.postgis.jdbc.geometry.binary.ValueGetter} reading the values with the position of a
+     * {@link java.nio.ByteBuffer} instead of assembling them byte per byte.
+     */
+    private static class BufferValueGetter extends ValueGetter {
+        private final ByteBuffer buffer;
+
+        /**
+         * @param buffer Buffer starting with the endian byte of the geometry, its byte order is set from it.
+         */
+        BufferValueGetter(ByteBuffer buffer) {
+            super(new BufferByteGetter(buffer), readEndian(buffer));
+            this.buffer = buffer.order(endian == ValueGetter.XDR.NUMBER ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+        }
+
+        private static byte readEndian(ByteBuffer buffer) {
+            byte endian = buffer.get(buffer.position());
+            if (endian != ValueGetter.XDR.NUMBER && endian != ValueGetter.NDR.NUMBER) {
+                throw new IllegalArgumentException("Unknown Endian type:" + endian);
+            }
+            return endian;
+        }
+
+        @Override
+        public byte getByte() {
+            return buffer.get();
+        }
+
+        @Override
+        public int getInt() {
+            return buffer.getInt();
+        }
+
+        @Override
+        public long getLong() {
+            return buffer.getLong();
+        }
+
+        @Override
+        public double getDouble() {
+            return buffer.getDouble();
+        }
+
+        /**
+         * Read the next doubles into the given array.
+         */
+        void getDoubles(double[] values) {
+            buffer.asDoubleBuffer().get(values);
+            buffer.position(buffer.position() + values.length * 8);
+        }
+
+        @Override
+        protected int getInt(int index) {
+            return buffer.getInt(index);
+        }
+
+        @Override
+        protected long getLong(int index) {
+            return buffer.getLong(index);
+        }
+    }
+
+    /**
+     * {@link net.postgis.jdbc.geometry.binary.ByteGetter} of a {@link java.nio.ByteBuffer}.
+     */
+    private static class BufferByteGetter extends ByteGetter {
+        private final ByteBuffer buffer;
+
+        BufferByteGetter(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int get(int index) {
+            return buffer.get(index) & 0xFF;
+        }
+    }
+}
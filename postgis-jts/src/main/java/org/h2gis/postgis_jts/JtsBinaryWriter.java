@@ -71,24 +71,26 @@ public class JtsBinaryWriter {
         if (geom == null) {
             throw new NullPointerException();
         } else {
-            int dimension;
-            if (geom.isEmpty()) {
-                dimension = 0;
-            } else {
-                dimension = getCoordDim(geom);
+            boolean hasZ = false;
+            boolean hasM = false;
+            if (!geom.isEmpty()) {
+                CoordinateSequence coords = getCoordSequence(geom);
+                int dimension = getCoordSequenceDim(coords);
                 if (dimension < 2 || dimension > 4) {
                     throw new IllegalArgumentException("Unsupported geometry dimensionality: " + dimension);
                 }
+                hasZ = hasZ(coords);
+                hasM = hasM(coords);
             }
 
             dest.setByte(dest.endian);
             int plaintype = getWKBType(geom);
             int typeword = plaintype;
-            if (dimension == 3 || dimension == 4) {
+            if (hasZ) {
                 typeword = plaintype | -2147483648;
             }
 
-            if (dimension == 4) {
+            if (hasM) {
                 typeword |= 1073741824;
             }
 
@@ -154,13 +156,23 @@ public class JtsBinaryWriter {
     }
 
     private void writePoint(Point geom, ValueSetter dest) {
-        this.writeCoordinates(geom.getCoordinateSequence(), getCoordDim(geom), dest);
+        this.writeCoordinates(geom.getCoordinateSequence(), dest);
     }
 
-    private void writeCoordinates(CoordinateSequence seq, int dims, ValueSetter dest) {
+    /**
+     * Write the ordinates in the XYZM order of EWKB, whatever their order in the sequence.
+     */
+    private void writeCoordinates(CoordinateSequence seq, ValueSetter dest) {
+        boolean hasZ = hasZ(seq);
+        boolean hasM = hasM(seq);
         for(int i = 0; i < seq.size(); ++i) {
-            for(int d = 0; d < dims; ++d) {
-                dest.setDouble(seq.getOrdinate(i, d));
+            dest.setDouble(seq.getX(i));
+            dest.setDouble(seq.getY(i));
+            if (hasZ) {
+                dest.setDouble(seq.getZ(i));
+            }
+            if (hasM) {
+                dest.setDouble(seq.getM(i));
             }
         }
 
@@ -177,7 +189,7 @@ public class JtsBinaryWriter {
 
     private void writeLineString(LineString geom, ValueSetter dest) {
         dest.setInt(geom.getNumPoints());
-        this.writeCoordinates(geom.getCoordinateSequence(), getCoordDim(geom), dest);
+        this.writeCoordinates(geom.getCoordinateSequence(), dest);
     }
 
     private void writePolygon(Polygon geom, ValueSetter dest) {
@@ -302,28 +314,50 @@ public class JtsBinaryWriter {
     }
 
     public static int getCoordDim(Geometry geom) {
-        if (geom.isEmpty()) {
-            return 0;
-        } else if (geom instanceof Point) {
-            return getCoordSequenceDim(((Point)geom).getCoordinateSequence());
-        } else if (geom instanceof LineString) {
-            return getCoordSequenceDim(((LineString)geom).getCoordinateSequence());
-        } else {
-            return geom instanceof Polygon ? getCoordSequenceDim(((Polygon)geom).getExteriorRing().getCoordinateSequence()) : getCoordDim(geom.getGeometryN(0));
-        }
+        return geom.isEmpty() ? 0 : getCoordSequenceDim(getCoordSequence(geom));
     }
 
+    /**
+     * @return The number of ordinates written for each coordinate of the sequence, Z and M included
+     */
     public static int getCoordSequenceDim(CoordinateSequence coords) {
         if (coords != null && coords.size() != 0) {
-            int dimensions = coords.getDimension();
-            if (dimensions == 3) {
-                return Double.isNaN(coords.getOrdinate(0, 2)) ? 2 : 3;
-            } else {
-                return dimensions;
-            }
+            return 2 + (hasZ(coords) ? 1 : 0) + (hasM(coords) ? 1 : 0);
         } else {
             return 0;
         }
     }
+
+    /**
+     * @return The sequence of the first non empty part of the geometry, its ordinates are the ones of the geometry
+     */
+    private static CoordinateSequence getCoordSequence(Geometry geom) {
+        if (geom instanceof Point) {
+            return ((Point)geom).getCoordinateSequence();
+        } else if (geom instanceof LineString) {
+            return ((LineString)geom).getCoordinateSequence();
+        } else if (geom instanceof Polygon) {
+            return ((Polygon)geom).getExteriorRing().getCoordinateSequence();
+        } else {
+            for(int i = 0; i < geom.getNumGeometries(); ++i) {
+                if (!geom.getGeometryN(i).isEmpty()) {
+                    return getCoordSequence(geom.getGeometryN(i));
+                }
+            }
+            return null;
+        }
+    }
+
+    private static boolean hasZ(CoordinateSequence coords) {
+        if (!coords.hasZ()) {
+            return false;
+        }
+        // A 3D sequence without measure whose first Z is NaN is written in 2D
+        return coords.hasM() || coords.getDimension() != 3 || coords.size() == 0 || !Double.isNaN(coords.getZ(0));
+    }
+
+    private static boolean hasM(CoordinateSequence coords) {
+        return coords.getMeasures() > 0;
+    }
 }
 
@@ -22,14 +22,19 @@ package org.h2gis.postgis_jts;
 import org.locationtech.jts.geom.*;
 import org.locationtech.jts.geom.impl.PackedCoordinateSequenceFactory;
 import org.locationtech.jts.io.WKTReader;
+import org.postgresql.util.PGBinaryObject;
 import org.postgresql.util.PGobject;
 
 import java.sql.SQLException;
 
-public class JtsGeometry extends PGobject {
+public class JtsGeometry extends PGobject implements PGBinaryObject {
     private static final long serialVersionUID = 256L;
     private Geometry geom;
-    private static final JtsBinaryParser bp = new JtsBinaryParser();
+    /** Writer of the connection, the shared writer if null */
+    private transient JtsBinaryWriter writer;
+    /** EWKB of the geometry, kept between the size and the copy requests of the driver */
+    private transient byte[] binaryValue;
+    private static final JtsBinaryParser bp;
     private static final JtsBinaryWriter bw = new JtsBinaryWriter();
     private static final PrecisionModel prec = new PrecisionModel();
     private static final CoordinateSequenceFactory csfac;
@@ -45,6 +50,15 @@ public class JtsGeometry extends PGobject {
         this.geom = geom;
     }
 
+    /**
+     * @param geom Geometry to send
+     * @param writer Writer reused by the connection to encode the geometry
+     */
+    public JtsGeometry(Geometry geom, JtsBinaryWriter writer) {
+        this(geom);
+        this.writer = writer;
+    }
+
     public JtsGeometry(String value) throws SQLException {
         this();
         this.setValue(value);
@@ -52,6 +66,43 @@ public class JtsGeometry extends PGobject {
 
     public void setValue(String value) throws SQLException {
         this.geom = geomFromString(value);
+        this.binaryValue = null;
+    }
+
+    /**
+     * Called by the driver when the geometry is received in binary format, the EWKB is read from the
+     * driver buffer without being hex encoded.
+     */
+    @Override
+    public void setByteValue(byte[] value, int offset) throws SQLException {
+        try {
+            this.geom = bp.parse(value, offset);
+            this.binaryValue = null;
+        } catch (Exception ex) {
+            throw new SQLException("Error parsing SQL data:" + ex, ex);
+        }
+    }
+
+    @Override
+    public int lengthInBytes() {
+        return getBinaryValue().length;
+    }
+
+    @Override
+    public void toBytes(byte[] bytes, int offset) {
+        byte[] value = getBinaryValue();
+        System.arraycopy(value, 0, bytes, offset, value.length);
+    }
+
+    private byte[] getBinaryValue() {
+        if (binaryValue == null) {
+            binaryValue = getWriter().writeBinary(this.geom);
+        }
+        return binaryValue;
+    }
+
+    private JtsBinaryWriter getWriter() {
+        return writer != null ? writer : bw;
     }
 
     public static Geometry geomFromString(String value) throws SQLException {
@@ -107,11 +158,11 @@ public class JtsGeometry extends PGobject {
     }
 
     public String getValue() {
-        return bw.writeHexed(this.getGeometry());
+        return getWriter().writeHexed(this.getGeometry());
     }
 
     public Object clone() {
-        JtsGeometry obj = new JtsGeometry(this.geom);
+        JtsGeometry obj = new JtsGeometry(this.geom, this.writer);
         obj.setType(this.type);
         return obj;
     }
@@ -136,6 +187,7 @@ public class JtsGeometry extends PGobject {
         geofac = new GeometryFactory(prec, 0, csfac);
         reader = new WKTReader(geofac);
         reader.setIsOldJtsCoordinateSyntaxAllowed(false);
+        bp = new JtsBinaryParser(geofac);
     }
 }
 
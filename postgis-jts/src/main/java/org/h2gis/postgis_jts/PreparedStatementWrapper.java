@@ -149,7 +149,7 @@ public class PreparedStatementWrapper implements PreparedStatement {
     @Override
     public void setObject(int parameterIndex, Object x) throws SQLException {
         if(x instanceof Geometry) {
-            JtsGeometry geometry = new JtsGeometry((Geometry) x);
+            JtsGeometry geometry = new JtsGeometry((Geometry) x, connectionWrapper.getWriter());
             preparedStatement.setObject(parameterIndex, geometry);
         } else {
             preparedStatement.setObject(parameterIndex, x);
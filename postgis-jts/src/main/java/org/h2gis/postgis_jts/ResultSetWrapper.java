@@ -25,6 +25,7 @@ import org.locationtech.jts.geom.GeometryFactory;
 import org.locationtech.jts.io.WKBWriter;
 import net.postgis.jdbc.PGboxbase;
 import net.postgis.jdbc.geometry.Point;
+import org.postgresql.PGResultSetMetaData;
 import org.postgresql.util.PGobject;
 
 import java.io.InputStream;
@@ -44,6 +45,9 @@ public class ResultSetWrapper implements ResultSet {
     public static final Set<String> GEOMETRY_COLUMNS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList("geometry", "box2d", "box3d")));
     private Set<Integer> spatialFields = new HashSet<Integer>();
     private Set<Integer> tidFields = new HashSet<>();
+    /** Geometry fields received as raw EWKB */
+    private Set<Integer> binaryFields = new HashSet<>();
+    private JtsBinaryParser parser;
     private static GeometryFactory geometryFactory = new GeometryFactory();
 
     public ResultSetWrapper(Statement statementWrapper, ResultSet rs) {
@@ -53,10 +57,19 @@ public class ResultSetWrapper implements ResultSet {
         try {
             ResultSetMetaData meta = rs.getMetaData();
             int columnCount = meta.getColumnCount();
+            Connection connection = statementWrapper.getConnection();
+            PGResultSetMetaData pgMeta = null;
+            if(connection instanceof ConnectionWrapper && ((ConnectionWrapper) connection).isBinaryTransfer()) {
+                parser = ((ConnectionWrapper) connection).getParser();
+                pgMeta = meta.unwrap(PGResultSetMetaData.class);
+            }
             for(int col = 1; col <= columnCount; col++) {
                 String typeName = meta.getColumnTypeName(col);
                 if(GEOMETRY_COLUMNS.contains(typeName)) {
                     spatialFields.add(col);
+                    if(pgMeta != null && typeName.equals("geometry") && pgMeta.getFormat(col) == 1) {
+                        binaryFields.add(col);
+                    }
                 } else if(typeName.equals("tid")) {
                     tidFields.add(col);
                 }
@@ -68,6 +81,18 @@ public class ResultSetWrapper implements ResultSet {
 
     @Override
     public Object getObject(int columnIndex) throws SQLException {
+        if(binaryFields.contains(columnIndex)) {
+            // The driver gives its own buffer of the binary fields
+            byte[] bytes = rs.getBytes(columnIndex);
+            if(bytes == null) {
+                return null;
+            }
+            try {
+                return parser.parse(bytes);
+            } catch (IllegalArgumentException ex) {
+                throw new SQLException("Error parsing SQL data:" + ex, ex);
+            }
+        }
         Object object = rs.getObject(columnIndex);
         if(spatialFields.contains(columnIndex)) {
             if(object instanceof JtsGeometry) {
@@ -24,9 +24,20 @@ import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.CoordinateSequence;
 import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.geom.impl.PackedCoordinateSequence;
+import org.locationtech.jts.io.WKTReader;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.Properties;
@@ -98,4 +109,121 @@ public class PostGIS_JTSTest {
             }
         }
     }
+
+    @Test
+    @EnabledIfSystemProperty(named = "test.postgis", matches = "true")
+    public void testBinaryTransfer() throws Exception {
+        Properties props = new Properties();
+        props.setProperty("user", "orbisgis");
+        props.setProperty("password", "orbisgis");
+        // Use server side prepared statements from the first execution to receive binary results
+        props.setProperty("prepareThreshold", "-1");
+        try (ConnectionWrapper binaryConnection = (ConnectionWrapper) new Driver().connect(
+                "jdbc:postgresql_h2://localhost:5432/orbisgis_db?binaryGeometry=true", props)) {
+            assertTrue(binaryConnection.isBinaryTransfer());
+            Statement st = binaryConnection.createStatement();
+            st.execute("DROP TABLE IF EXISTS BINARY_GEOMTABLE; CREATE TABLE BINARY_GEOMTABLE(ID INTEGER, THE_GEOM GEOMETRY);");
+            Geometry polygon = new WKTReader().read("POLYGON Z((150 360 1, 200 360 2, 200 310 3, 150 310 4, 150 360 1))");
+            polygon.setSRID(4326);
+            Geometry point = new WKTReader().read("POINT(195.5 279)");
+            try (PreparedStatement ps = binaryConnection.prepareStatement("INSERT INTO BINARY_GEOMTABLE VALUES (?, ?)")) {
+                ps.setInt(1, 1);
+                ps.setObject(2, polygon);
+                ps.execute();
+                ps.setInt(1, 2);
+                ps.setObject(2, point);
+                ps.execute();
+            }
+            st.execute("INSERT INTO BINARY_GEOMTABLE VALUES (3, NULL)");
+            try (PreparedStatement ps = binaryConnection.prepareStatement("SELECT THE_GEOM FROM BINARY_GEOMTABLE ORDER BY ID");
+                 ResultSet rs = ps.executeQuery()) {
+                assertTrue(rs.next());
+                Geometry geom = (Geometry) rs.getObject(1);
+                assertTrue(polygon.equalsExact(geom));
+                assertEquals(4326, geom.getSRID());
+                assertEquals(4, geom.getCoordinates()[3].getZ());
+                assertTrue(rs.next());
+                assertTrue(point.equalsExact((Geometry) rs.getObject(1)));
+                assertTrue(rs.next());
+                assertNull(rs.getObject(1));
+                assertFalse(rs.next());
+            }
+            st.execute("DROP TABLE BINARY_GEOMTABLE");
+        }
+    }
+
+    @Test
+    public void testParsePackedCoordinates() throws Exception {
+        JtsBinaryParser parser = new JtsBinaryParser();
+        JtsBinaryWriter writer = new JtsBinaryWriter();
+        Geometry polygon = new WKTReader().read("POLYGON Z((0 0 1, 10 0 2, 10 10 3, 0 0 1), (1 1 0, 2 1 0, 2 2 0, 1 1 0))");
+        polygon.setSRID(2154);
+        Geometry parsed = parser.parse(writer.writeBinary(polygon));
+        assertTrue(polygon.equalsExact(parsed));
+        assertEquals(2154, parsed.getSRID());
+        assertEquals(3, parsed.getCoordinates()[2].getZ());
+        assertTrue(polygon.equalsExact(parser.parse(writer.writeHexed(polygon))));
+        // Two geometries in one buffer: a big endian LINESTRING ZM with SRID then a little endian POINT M
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+        buffer.put((byte) 0).putInt(2 | 0x80000000 | 0x40000000 | 0x20000000).putInt(4326).putInt(2);
+        buffer.putDouble(1).putDouble(2).putDouble(3).putDouble(4);
+        buffer.putDouble(5).putDouble(6).putDouble(7).putDouble(8);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put((byte) 1).putInt(1 | 0x40000000).putDouble(9).putDouble(10).putDouble(11);
+        buffer.order(ByteOrder.BIG_ENDIAN).flip();
+        LineString line = (LineString) parser.parse(buffer);
+        assertEquals(4326, line.getSRID());
+        CoordinateSequence cs = line.getCoordinateSequence();
+        assertTrue(cs instanceof PackedCoordinateSequence.Double);
+        assertEquals(4, cs.getDimension());
+        assertEquals(1, cs.getMeasures());
+        assertEquals(7, cs.getZ(1));
+        assertEquals(8, cs.getM(1));
+        Point point = (Point) parser.parse(buffer);
+        assertEquals(9, point.getX());
+        assertEquals(10, point.getY());
+        assertEquals(11, point.getCoordinateSequence().getM(0));
+        assertFalse(point.getCoordinateSequence().hasZ());
+        assertFalse(buffer.hasRemaining());
+        assertEquals(ByteOrder.BIG_ENDIAN, buffer.order());
+        // The writer sets the M flag of a POINT M and writes the measure after X and Y
+        ByteBuffer written = ByteBuffer.wrap(writer.writeBinary(new WKTReader().read("POINT M(1 2 3)")))
+                .order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(1, written.get());
+        assertEquals(1 | 0x40000000, written.getInt());
+        assertEquals(1, written.getDouble());
+        assertEquals(2, written.getDouble());
+        assertEquals(3, written.getDouble());
+        assertFalse(written.hasRemaining());
+        // Write then parse geometries with measures
+        assertMeasuresRoundTrip(parser, writer, "LINESTRING M(0 0 1, 10 0 2, 10 10 3)", false);
+        assertMeasuresRoundTrip(parser, writer, "LINESTRING ZM(0 0 4 1, 10 0 5 2, 10 10 6 3)", true);
+        assertMeasuresRoundTrip(parser, writer, "POLYGON M((0 0 1, 10 0 2, 10 10 3, 0 0 1))", false);
+        assertMeasuresRoundTrip(parser, writer, "MULTIPOINT ZM((0 0 4 1), (10 0 5 2))", true);
+    }
+
+    private static void assertMeasuresRoundTrip(JtsBinaryParser parser, JtsBinaryWriter writer,
+                                                String wkt, boolean hasZ) throws Exception {
+        Geometry geometry = new WKTReader().read(wkt);
+        geometry.setSRID(4326);
+        for (Geometry parsed : new Geometry[]{parser.parse(writer.writeBinary(geometry)),
+                parser.parse(writer.writeHexed(geometry))}) {
+            assertTrue(geometry.equalsExact(parsed), wkt);
+            assertEquals(4326, parsed.getSRID());
+            Geometry part = parsed.getGeometryN(0);
+            CoordinateSequence cs = part instanceof Polygon ? ((Polygon) part).getExteriorRing().getCoordinateSequence()
+                    : part instanceof Point ? ((Point) part).getCoordinateSequence()
+                    : ((LineString) part).getCoordinateSequence();
+            assertEquals(hasZ, cs.hasZ(), wkt);
+            assertTrue(cs.hasM(), wkt);
+            Coordinate[] expected = geometry.getCoordinates();
+            Coordinate[] actual = parsed.getCoordinates();
+            for (int i = 0; i < expected.length; i++) {
+                assertEquals(expected[i].getM(), actual[i].getM(), wkt);
+                if (hasZ) {
+                    assertEquals(expected[i].getZ(), actual[i].getZ(), wkt);
+                }
+            }
+        }
+    }
 }